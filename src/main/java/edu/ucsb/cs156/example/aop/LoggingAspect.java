@@ -1,10 +1,14 @@
 package edu.ucsb.cs156.example.aop;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
-import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Before;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
@@ -14,10 +18,16 @@ import java.util.Arrays;
 import java.util.Optional;
 
 /**
- * This class is an Aspect that logs all invocations of controller methods that are annotated
+ * This class is an Aspect that logs and times all invocations of controller methods that are annotated
  * with {@code @RequestMapping}, {@code @GetMapping}, {@code @PostMapping}, {@code @PutMapping}, {@code @DeleteMapping},
  * or {@code @PatchMapping}.
  * 
+ * Each handler gets a Micrometer timer ({@code app.controller.requests}) with p50/p95/p99 and a
+ * percentile histogram, plus an error counter ({@code app.controller.errors}).  These are
+ * available to admins through the actuator at {@code /actuator/metrics} and {@code /actuator/prometheus}.
+ * Response sizes are recorded separately by {@link edu.ucsb.cs156.example.config.ResponseSizeMetricsFilter},
+ * which reads the handler name this aspect stores in the request.
+ * 
  * For more information on Aspect Oriented Programming (AOP)
  * and AspectJ, including what a {@code JoinPoint} is, 
  * refer to <a href="https://www.baeldung.com/aspectj">https://www.baeldung.com/aspectj</a> 
@@ -38,25 +48,71 @@ public class LoggingAspect {
       @annotation(org.springframework.web.bind.annotation.PatchMapping)
       """;
 
+  /**
+   * Name of the request attribute holding the {@code Controller.method} name of the handler
+   */
+  public static final String HANDLER_ATTRIBUTE = LoggingAspect.class.getName() + ".handler";
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
   private ArrayList<String> stoplist = new ArrayList<String>(Arrays.asList(
       "edu.ucsb.cs156.example.controllers.FrontendProxyController"));
 
   /**
-   * This method is called before any controller method that is annotated with
+   * This method wraps any controller method that is annotated with
    * {@code @RequestMapping}, {@code @GetMapping}, {@code @PostMapping}, {@code @PutMapping}, {@code @DeleteMapping},
-   * or {@code @PatchMapping}.
+   * or {@code @PatchMapping}.  It logs the request, then records the time taken by the handler
+   * (and any exception it throws) in Micrometer.
    * @param joinPoint the join point (injected by Spring framework)
+   * @return whatever the controller method returns
+   * @throws Throwable whatever the controller method throws
    */
-  @Before(pointcut)
-  public void logControllers(JoinPoint joinPoint) {
-    getCurrentHttpRequest().ifPresent(
+  @Around(pointcut)
+  public Object logControllers(ProceedingJoinPoint joinPoint) throws Throwable {
+    String declaringTypeName = joinPoint.getSignature().getDeclaringTypeName();
+    if (stoplist.contains(declaringTypeName)) {
+      return joinPoint.proceed();
+    }
+
+    String handler = "%s.%s".formatted(joinPoint.getSignature().getDeclaringType().getSimpleName(),
+        joinPoint.getSignature().getName());
+    Optional<HttpServletRequest> currentRequest = getCurrentHttpRequest();
+    currentRequest.ifPresent(
         request -> {
-          String declaringTypeName = joinPoint.getSignature().getDeclaringTypeName();
-          if (!stoplist.contains(declaringTypeName)) {
-            log.info("===== %s %s handled by %s in %s".formatted(request.getMethod(), request.getRequestURI(),
-                joinPoint.getSignature().getName(), declaringTypeName));
-          }
+          log.info("===== %s %s handled by %s in %s".formatted(request.getMethod(), request.getRequestURI(),
+              joinPoint.getSignature().getName(), declaringTypeName));
+          request.setAttribute(HANDLER_ATTRIBUTE, handler);
         });
+    String method = currentRequest.map(HttpServletRequest::getMethod).orElse("NONE");
+
+    String outcome = "SUCCESS";
+    String exception = "none";
+    Timer.Sample sample = Timer.start(meterRegistry);
+    try {
+      return joinPoint.proceed();
+    } catch (Throwable t) {
+      outcome = "ERROR";
+      exception = t.getClass().getSimpleName();
+      Counter.builder("app.controller.errors")
+          .description("Exceptions thrown by controller methods")
+          .tag("handler", handler)
+          .tag("method", method)
+          .tag("exception", exception)
+          .register(meterRegistry)
+          .increment();
+      throw t;
+    } finally {
+      sample.stop(Timer.builder("app.controller.requests")
+          .description("Time spent in controller methods")
+          .tag("handler", handler)
+          .tag("method", method)
+          .tag("outcome", outcome)
+          .tag("exception", exception)
+          .publishPercentiles(0.5, 0.95, 0.99)
+          .publishPercentileHistogram()
+          .register(meterRegistry));
+    }
   }
 
   /**
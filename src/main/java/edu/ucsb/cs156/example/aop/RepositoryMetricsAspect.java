@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.aop;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is an Aspect that times every call to a Spring Data repository
+ * (UserRepository, JobsRepository, and the entity repositories).
+ * 
+ * Each repository method gets a Micrometer timer ({@code app.repository.calls}),
+ * calls slower than {@code app.repository.slow-query-threshold-ms} are logged as warnings,
+ * and every call is counted in {@link RequestQueryCounter} so that the per-request totals
+ * can be reported by {@link edu.ucsb.cs156.example.config.QueryCountFilter}.
+ */
+
+@Slf4j
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${app.repository.slow-query-threshold-ms:250}")
+  private long slowQueryThresholdMs;
+
+  private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+  /**
+   * This method wraps every method of every Spring Data repository, recording how long it took.
+   * @param joinPoint the join point (injected by Spring framework)
+   * @return whatever the repository method returns
+   * @throws Throwable whatever the repository method throws
+   */
+  @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+  public Object timeRepositories(ProceedingJoinPoint joinPoint) throws Throwable {
+    RequestQueryCounter.repositoryCalled();
+    String repository = repositoryNames.computeIfAbsent(joinPoint.getThis().getClass(),
+        proxyClass -> repositoryName(joinPoint.getThis(), joinPoint.getSignature().getDeclaringType()));
+    String method = joinPoint.getSignature().getName();
+
+    String outcome = "SUCCESS";
+    long start = System.nanoTime();
+    try {
+      return joinPoint.proceed();
+    } catch (Throwable t) {
+      outcome = "ERROR";
+      throw t;
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      Timer.builder("app.repository.calls")
+          .description("Time spent in Spring Data repository methods")
+          .tag("repository", repository)
+          .tag("method", method)
+          .tag("outcome", outcome)
+          .publishPercentiles(0.5, 0.95, 0.99)
+          .register(meterRegistry)
+          .record(elapsed, TimeUnit.NANOSECONDS);
+      long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsed);
+      if (elapsedMs >= slowQueryThresholdMs) {
+        log.warn("Slow repository call {}.{} took {} ms", repository, method, elapsedMs);
+      }
+    }
+  }
+
+  /**
+   * Finds the application's repository interface (e.g. UserRepository) behind a proxy,
+   * since methods such as findAll are declared on CrudRepository.
+   */
+  private static String repositoryName(Object proxy, Class<?> declaringType) {
+    for (Class<?> candidate : AopProxyUtils.proxiedUserInterfaces(proxy)) {
+      if (Repository.class.isAssignableFrom(candidate)
+          && !candidate.getName().startsWith("org.springframework.")) {
+        return candidate.getSimpleName();
+      }
+    }
+    return declaringType.getSimpleName();
+  }
+}
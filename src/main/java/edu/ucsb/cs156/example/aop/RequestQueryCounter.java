@@ -0,0 +1,56 @@
+package edu.ucsb.cs156.example.aop;
+
+/**
+ * Per-thread counters of the database work done while handling the current request.
+ * 
+ * The counters are reset by {@link edu.ucsb.cs156.example.config.QueryCountFilter} at the
+ * start of each request; repository calls are counted by {@link RepositoryMetricsAspect}
+ * and JDBC statements by {@link edu.ucsb.cs156.example.config.StatementCountingInspector}.
+ */
+public final class RequestQueryCounter {
+
+  private static final ThreadLocal<long[]> COUNTS = ThreadLocal.withInitial(() -> new long[2]);
+
+  private static final int STATEMENTS = 0;
+  private static final int REPOSITORY_CALLS = 1;
+
+  private RequestQueryCounter() {
+  }
+
+  /**
+   * Resets both counters for the current thread
+   */
+  public static void reset() {
+    long[] counts = COUNTS.get();
+    counts[STATEMENTS] = 0;
+    counts[REPOSITORY_CALLS] = 0;
+  }
+
+  /**
+   * Records that Hibernate prepared a JDBC statement on the current thread
+   */
+  public static void statementPrepared() {
+    COUNTS.get()[STATEMENTS]++;
+  }
+
+  /**
+   * Records that a Spring Data repository method was called on the current thread
+   */
+  public static void repositoryCalled() {
+    COUNTS.get()[REPOSITORY_CALLS]++;
+  }
+
+  /**
+   * @return the number of JDBC statements prepared since the last reset
+   */
+  public static long getStatements() {
+    return COUNTS.get()[STATEMENTS];
+  }
+
+  /**
+   * @return the number of repository calls made since the last reset
+   */
+  public static long getRepositoryCalls() {
+    return COUNTS.get()[REPOSITORY_CALLS];
+  }
+}
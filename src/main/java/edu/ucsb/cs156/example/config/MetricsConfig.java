@@ -0,0 +1,45 @@
+package edu.ucsb.cs156.example.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The `MetricsConfig` class registers the servlet filters that feed request metrics
+ * into Micrometer (in addition to the timers recorded by the LoggingAspect).
+ */
+@Configuration
+public class MetricsConfig {
+
+  /**
+   * Registers the filter that records response body sizes for the API endpoints.
+   * 
+   * @param meterRegistry the meter registry (injected by Spring framework)
+   * @return the filter registration
+   */
+  @Bean
+  public FilterRegistrationBean<ResponseSizeMetricsFilter> responseSizeMetricsFilter(MeterRegistry meterRegistry) {
+    FilterRegistrationBean<ResponseSizeMetricsFilter> registration = new FilterRegistrationBean<>(
+        new ResponseSizeMetricsFilter(meterRegistry));
+    registration.addUrlPatterns("/api/*");
+    return registration;
+  }
+
+  /**
+   * Registers the filter that counts statements and repository calls per request.
+   * 
+   * @param meterRegistry the meter registry (injected by Spring framework)
+   * @param statementBudget statements per request above which a warning is logged
+   * @return the filter registration
+   */
+  @Bean
+  public FilterRegistrationBean<QueryCountFilter> queryCountFilter(MeterRegistry meterRegistry,
+      @Value("${app.query-budget.statements-per-request:20}") long statementBudget) {
+    FilterRegistrationBean<QueryCountFilter> registration = new FilterRegistrationBean<>(
+        new QueryCountFilter(meterRegistry, statementBudget));
+    registration.addUrlPatterns("/api/*");
+    return registration;
+  }
+}
@@ -0,0 +1,70 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.aop.LoggingAspect;
+import edu.ucsb.cs156.example.aop.RequestQueryCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * This filter reports how many JDBC statements and repository calls each request made.
+ * 
+ * The counts are recorded per handler in the {@code app.request.statements} and
+ * {@code app.request.repository.calls} distribution summaries; requests that prepare more
+ * statements than the configured budget are logged as warnings, which is usually the sign
+ * of an N+1 query pattern.
+ */
+@Slf4j
+public class QueryCountFilter extends OncePerRequestFilter {
+
+  private final MeterRegistry meterRegistry;
+  private final long statementBudget;
+
+  /**
+   * Create the filter
+   * @param meterRegistry registry the counts are recorded in
+   * @param statementBudget number of statements per request above which a warning is logged
+   */
+  public QueryCountFilter(MeterRegistry meterRegistry, long statementBudget) {
+    this.meterRegistry = meterRegistry;
+    this.statementBudget = statementBudget;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    RequestQueryCounter.reset();
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      long statements = RequestQueryCounter.getStatements();
+      long repositoryCalls = RequestQueryCounter.getRepositoryCalls();
+      Object handler = request.getAttribute(LoggingAspect.HANDLER_ATTRIBUTE);
+      String handlerName = handler == null ? "none" : handler.toString();
+
+      DistributionSummary.builder("app.request.statements")
+          .description("JDBC statements prepared per request")
+          .tag("handler", handlerName)
+          .register(meterRegistry)
+          .record(statements);
+      DistributionSummary.builder("app.request.repository.calls")
+          .description("Repository calls made per request")
+          .tag("handler", handlerName)
+          .register(meterRegistry)
+          .record(repositoryCalls);
+
+      if (statements > statementBudget) {
+        log.warn("{} {} ({}) prepared {} statements in {} repository calls; budget is {}",
+            request.getMethod(), request.getRequestURI(), handlerName, statements, repositoryCalls,
+            statementBudget);
+      }
+    }
+  }
+}
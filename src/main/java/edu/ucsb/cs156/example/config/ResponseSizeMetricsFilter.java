@@ -0,0 +1,143 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.aop.LoggingAspect;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * This filter counts the bytes written to the response body and records them in the
+ * {@code app.controller.response.size} distribution summary, tagged with the handler
+ * that {@link LoggingAspect} stored in the request.
+ * 
+ * Requests that were not handled by a controller method (static assets, swagger, etc.)
+ * are not recorded.
+ */
+public class ResponseSizeMetricsFilter extends OncePerRequestFilter {
+
+  private final MeterRegistry meterRegistry;
+
+  /**
+   * Create the filter
+   * @param meterRegistry registry the response sizes are recorded in
+   */
+  public ResponseSizeMetricsFilter(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    CountingResponseWrapper countingResponse = new CountingResponseWrapper(response);
+    try {
+      filterChain.doFilter(request, countingResponse);
+    } finally {
+      if (request.isAsyncStarted()) {
+        // streamed bodies (StreamingResponseBody) are written after the handler returns
+        request.getAsyncContext().addListener(new AsyncListener() {
+          @Override
+          public void onComplete(AsyncEvent event) {
+            record(request, countingResponse);
+          }
+
+          @Override
+          public void onTimeout(AsyncEvent event) {
+          }
+
+          @Override
+          public void onError(AsyncEvent event) {
+          }
+
+          @Override
+          public void onStartAsync(AsyncEvent event) {
+          }
+        });
+      } else {
+        record(request, countingResponse);
+      }
+    }
+  }
+
+  private void record(HttpServletRequest request, CountingResponseWrapper countingResponse) {
+    Object handler = request.getAttribute(LoggingAspect.HANDLER_ATTRIBUTE);
+    if (handler != null) {
+      DistributionSummary.builder("app.controller.response.size")
+          .description("Size of response bodies written by controller methods")
+          .baseUnit("bytes")
+          .tag("handler", handler.toString())
+          .tag("method", request.getMethod())
+          .publishPercentiles(0.5, 0.95, 0.99)
+          .register(meterRegistry)
+          .record(countingResponse.getByteCount());
+    }
+  }
+
+  /**
+   * Counts the bytes written through {@code getOutputStream()}; this is the path used by
+   * Spring's message converters.
+   */
+  static final class CountingResponseWrapper extends HttpServletResponseWrapper {
+    private long byteCount;
+    private ServletOutputStream outputStream;
+
+    CountingResponseWrapper(HttpServletResponse response) {
+      super(response);
+    }
+
+    long getByteCount() {
+      return byteCount;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (outputStream == null) {
+        ServletOutputStream delegate = super.getOutputStream();
+        outputStream = new ServletOutputStream() {
+          @Override
+          public boolean isReady() {
+            return delegate.isReady();
+          }
+
+          @Override
+          public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+          }
+
+          @Override
+          public void write(int b) throws IOException {
+            delegate.write(b);
+            byteCount++;
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            byteCount += len;
+          }
+
+          @Override
+          public void flush() throws IOException {
+            delegate.flush();
+          }
+
+          @Override
+          public void close() throws IOException {
+            delegate.close();
+          }
+        };
+      }
+      return outputStream;
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package edu.ucsb.cs156.example.config;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.authorization.method.PreAuthorizeAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * AuthorizationManager for @PreAuthorize that answers the plain
+ * <code>hasRole('...')</code> expressions used on our controllers without
+ * evaluating SpEL.
+ * 
+ * Every role name is assigned a bit (at most 64 of them).  The roles reachable
+ * from an Authentication through the role hierarchy are resolved once into a
+ * bitset, which is cached for as long as that Authentication object is alive
+ * (i.e. for the life of the session).  The role a method requires is resolved
+ * once per method, so a check is a map lookup and a bit test.
+ * 
+ * Anything else (other expressions, annotations on the class, more than 64
+ * roles) is delegated to the standard PreAuthorizeAuthorizationManager,
+ * configured with the same role hierarchy.  SecurityConfig installs it around
+ * the manager Spring Security builds for @PreAuthorize.
+ */
+public class RoleBitsetAuthorizationManager implements AuthorizationManager<MethodInvocation> {
+
+  private static final Pattern HAS_ROLE = Pattern.compile("^\\s*hasRole\\(\\s*'([A-Za-z0-9_]+)'\\s*\\)\\s*$");
+  private static final String ROLE_PREFIX = "ROLE_";
+  private static final int NO_BIT = -1;
+
+  private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+  private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+  private final RoleHierarchy roleHierarchy;
+  private final AuthorizationManager<MethodInvocation> fallback;
+
+  private final Map<String, Integer> roleBits = new ConcurrentHashMap<>();
+  private final Map<Method, Integer> requiredBits = new ConcurrentHashMap<>();
+  private final Cache<Authentication, Long> authenticationBits = Caffeine.newBuilder()
+      .weakKeys()
+      .maximumSize(10_000)
+      .build();
+
+  /**
+   * Creates a manager that falls back to a PreAuthorizeAuthorizationManager of
+   * its own, configured with the given role hierarchy.
+   * 
+   * @param roleHierarchy role hierarchy used to resolve the roles a user holds
+   */
+  public RoleBitsetAuthorizationManager(RoleHierarchy roleHierarchy) {
+    this(roleHierarchy, expressionAuthorizationManager(roleHierarchy));
+  }
+
+  /**
+   * Creates a manager that falls back to the given manager (in the application,
+   * the one Spring Security builds for @PreAuthorize).
+   * 
+   * @param roleHierarchy role hierarchy used to resolve the roles a user holds
+   * @param fallback manager for everything other than a plain hasRole('...')
+   */
+  RoleBitsetAuthorizationManager(RoleHierarchy roleHierarchy, AuthorizationManager<MethodInvocation> fallback) {
+    this.roleHierarchy = roleHierarchy;
+    this.fallback = fallback;
+  }
+
+  /**
+   * The SpEL-evaluating manager Spring Security would use by default, with the
+   * given role hierarchy.
+   * 
+   * @param roleHierarchy role hierarchy
+   * @return a PreAuthorizeAuthorizationManager
+   */
+  public static PreAuthorizeAuthorizationManager expressionAuthorizationManager(RoleHierarchy roleHierarchy) {
+    DefaultMethodSecurityExpressionHandler expressionHandler = new DefaultMethodSecurityExpressionHandler();
+    expressionHandler.setRoleHierarchy(roleHierarchy);
+    PreAuthorizeAuthorizationManager manager = new PreAuthorizeAuthorizationManager();
+    manager.setExpressionHandler(expressionHandler);
+    return manager;
+  }
+
+  @Override
+  public AuthorizationResult authorize(Supplier<Authentication> authentication, MethodInvocation invocation) {
+    int bit = requiredBits.computeIfAbsent(invocation.getMethod(), this::requiredRoleBit);
+    if (bit == NO_BIT) {
+      return fallback.authorize(authentication, invocation);
+    }
+    long roles = authenticationBits.get(authentication.get(), this::roleBitsFor);
+    return (roles & (1L << bit)) != 0 ? GRANTED : DENIED;
+  }
+
+  @Override
+  @Deprecated
+  public AuthorizationDecision check(Supplier<Authentication> authentication, MethodInvocation invocation) {
+    AuthorizationResult result = authorize(authentication, invocation);
+    if (result == null || result instanceof AuthorizationDecision) {
+      return (AuthorizationDecision) result;
+    }
+    return new AuthorizationDecision(result.isGranted());
+  }
+
+  private int requiredRoleBit(Method method) {
+    PreAuthorize preAuthorize = AnnotationUtils.findAnnotation(method, PreAuthorize.class);
+    if (preAuthorize == null) {
+      return NO_BIT;
+    }
+    Matcher matcher = HAS_ROLE.matcher(preAuthorize.value());
+    if (!matcher.matches()) {
+      return NO_BIT;
+    }
+    // same prefixing rule as SecurityExpressionRoot.hasRole
+    String role = matcher.group(1);
+    return bitFor(role.startsWith(ROLE_PREFIX) ? role : ROLE_PREFIX + role);
+  }
+
+  private long roleBitsFor(Authentication authentication) {
+    long roles = 0L;
+    for (GrantedAuthority authority : roleHierarchy.getReachableGrantedAuthorities(authentication.getAuthorities())) {
+      if (authority.getAuthority() != null) {
+        int bit = bitFor(authority.getAuthority());
+        if (bit != NO_BIT) {
+          roles |= 1L << bit;
+        }
+      }
+    }
+    return roles;
+  }
+
+  /*
+   * Bits are handed out in first-seen order, both for roles required by methods
+   * and for authorities held by users, and never reassigned.  So a role either
+   * got its bit before any bitset containing it was computed, or never gets
+   * one (and those checks go to the fallback).
+   */
+  private int bitFor(String authority) {
+    Integer bit = roleBits.get(authority);
+    if (bit != null) {
+      return bit;
+    }
+    synchronized (roleBits) {
+      bit = roleBits.get(authority);
+      if (bit == null) {
+        if (roleBits.size() == Long.SIZE) {
+          return NO_BIT;
+        }
+        bit = roleBits.size();
+        roleBits.put(authority, bit);
+      }
+      return bit;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * The `SecondLevelCacheConfig` class sets up the Caffeine (JCache) caches that
+ * back Hibernate's second-level and query caches, and hands the cache manager
+ * to Hibernate.
+ *
+ * Only the read-mostly reference entities are cached (see the {@code @Cache}
+ * annotations on UCSBDiningCommons, UCSBOrganization, UCSBDate,
+ * UCSBDiningCommonsMenuItem and Restaurant).  Each region's size and
+ * time-to-live can be set with {@code app.cache.regions.<region>.max-size} and
+ * {@code app.cache.regions.<region>.ttl}, falling back to
+ * {@code app.cache.default-max-size} and {@code app.cache.default-ttl}.
+ * Hit/miss/eviction counts are published as {@code cache.*} metrics tagged
+ * with the region name.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+  /** Regions for the cached entities (the names used in their {@code @Cache} annotations). */
+  public static final List<String> ENTITY_REGIONS = List.of(
+      "ucsbdiningcommons", "ucsborganization", "ucsbdates", "ucsbdiningcommonsmenuitems", "restaurants");
+
+  /**
+   * Creates (or reuses) the JCache cache manager and a cache for every region
+   * Hibernate will ask for.
+   *
+   * @param environment the environment, for the per-region settings (injected by Spring framework)
+   * @param meterRegistry the meter registry (injected by Spring framework)
+   * @return the cache manager
+   */
+  @Bean
+  public CacheManager hibernateCacheManager(Environment environment, MeterRegistry meterRegistry) {
+    CacheManager cacheManager = Caching
+        .getCachingProvider(CaffeineCachingProvider.class.getName())
+        .getCacheManager();
+    long defaultMaxSize = environment.getProperty("app.cache.default-max-size", Long.class, 10_000L);
+    Duration defaultTtl = environment.getProperty("app.cache.default-ttl", Duration.class, Duration.ofHours(1));
+    boolean statistics = environment.getProperty("app.cache.statistics-enabled", Boolean.class, true);
+
+    for (String region : ENTITY_REGIONS) {
+      createCache(cacheManager, meterRegistry, region, statistics,
+          OptionalLong.of(environment.getProperty("app.cache.regions." + region + ".max-size", Long.class, defaultMaxSize)),
+          OptionalLong.of(environment.getProperty("app.cache.regions." + region + ".ttl", Duration.class, defaultTtl).toNanos()));
+    }
+    createCache(cacheManager, meterRegistry, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, statistics,
+        OptionalLong.of(environment.getProperty("app.cache.query-results.max-size", Long.class, defaultMaxSize)),
+        OptionalLong.of(environment.getProperty("app.cache.query-results.ttl", Duration.class, defaultTtl).toNanos()));
+    // Hibernate requires the update timestamps never to be evicted or expire while
+    // query results that depend on them are still cached.
+    createCache(cacheManager, meterRegistry, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, statistics,
+        OptionalLong.empty(), OptionalLong.empty());
+    return cacheManager;
+  }
+
+  /**
+   * Passes the cache manager to Hibernate, so that its regions use the caches
+   * configured here.
+   *
+   * @param hibernateCacheManager the cache manager
+   * @return the customizer
+   */
+  @Bean
+  public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+    return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+  }
+
+  private static void createCache(CacheManager cacheManager, MeterRegistry meterRegistry, String region,
+      boolean statistics, OptionalLong maxSize, OptionalLong ttlNanos) {
+    Cache<Object, Object> cache = cacheManager.getCache(region);
+    if (cache == null) {
+      CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+      configuration.setMaximumSize(maxSize);
+      configuration.setExpireAfterWrite(ttlNanos);
+      configuration.setStatisticsEnabled(statistics);
+      cache = cacheManager.createCache(region, configuration);
+    }
+    JCacheMetrics.monitor(meterRegistry, cache);
+  }
+}
@@ -4,16 +4,25 @@ import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Role;
 import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
 import org.springframework.security.access.hierarchicalroles.RoleHierarchyImpl;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.Customizer;
+import org.springframework.security.config.ObjectPostProcessor;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -37,6 +46,7 @@ import org.springframework.security.web.csrf.CsrfToken;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
 
 import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
 
@@ -87,7 +97,10 @@ public class SecurityConfig {
             .csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
             .csrfTokenRequestHandler(new SpaCsrfTokenRequestHandler()))
         .addFilterAfter(new CsrfCookieFilter(), BasicAuthenticationFilter.class)
-        .authorizeHttpRequests(auth -> auth.anyRequest().permitAll())
+        .authorizeHttpRequests(auth -> auth
+            // metrics include per-endpoint latencies and error counts; admins only
+            .requestMatchers(antMatcher("/actuator/**")).hasRole("ADMIN")
+            .anyRequest().permitAll())
         .logout(logout -> logout.logoutRequestMatcher(new AntPathRequestMatcher("/logout")).logoutSuccessUrl("/"));
     return http.build();
   }
@@ -154,6 +167,38 @@ public class SecurityConfig {
             .role("ADMIN").implies("USER")
             .build();
   }
+
+  /**
+   * Wraps the @PreAuthorize AuthorizationManager that Spring Security builds in
+   * a {@link RoleBitsetAuthorizationManager}, which answers plain
+   * hasRole('...') checks from a per-authentication role bitset and hands every
+   * other expression to Spring's manager.  @PostAuthorize, @PreFilter and
+   * @PostFilter are not affected.
+   * 
+   * Spring Security only applies a post processor for this manager if it is the
+   * only one (or the primary one), and it defines its own for observations, so
+   * this one is primary and applies that one afterwards.
+   * 
+   * @param roleHierarchy the role hierarchy defined above
+   * @param observation Spring Security's observation post processor, if defined
+   * @return the post processor for the @PreAuthorize AuthorizationManager
+   */
+  @Bean
+  @Primary
+  @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+  static ObjectPostProcessor<AuthorizationManager<MethodInvocation>> preAuthorizeRoleBitsetPostProcessor(
+      RoleHierarchy roleHierarchy,
+      @Qualifier("methodAuthorizationManagerPostProcessor") ObjectProvider<ObjectPostProcessor<AuthorizationManager<MethodInvocation>>> observation) {
+    return new ObjectPostProcessor<>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public <O extends AuthorizationManager<MethodInvocation>> O postProcess(O manager) {
+        O bitset = (O) new RoleBitsetAuthorizationManager(roleHierarchy, manager);
+        ObjectPostProcessor<AuthorizationManager<MethodInvocation>> next = observation.getIfAvailable();
+        return next == null ? bitset : next.postProcess(bitset);
+      }
+    };
+  }
 }
 
 final class SpaCsrfTokenRequestHandler extends CsrfTokenRequestAttributeHandler {
@@ -194,14 +239,29 @@ final class SpaCsrfTokenRequestHandler extends CsrfTokenRequestAttributeHandler
   }
 }
 
+/**
+ * Makes sure the browser has an XSRF-TOKEN cookie for the SPA to read.
+ * 
+ * The token is only materialized (generated, XOR-masked and written as a cookie) when the
+ * request does not already carry the cookie; otherwise the existing cookie is still valid and
+ * there is nothing to do.  State-changing requests are unaffected: CsrfFilter has already
+ * loaded and checked the token for them before this filter runs.
+ */
 final class CsrfCookieFilter extends OncePerRequestFilter {
 
+  static final String CSRF_COOKIE_NAME = "XSRF-TOKEN";
+
   @Override
   protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
       throws ServletException, IOException {
-    CsrfToken csrfToken = (CsrfToken) request.getAttribute("_csrf");
-    // Render the token value to a cookie by causing the deferred token to be loaded
-    csrfToken.getToken();
+    Cookie existing = WebUtils.getCookie(request, CSRF_COOKIE_NAME);
+    if (existing == null || !StringUtils.hasText(existing.getValue())) {
+      CsrfToken csrfToken = (CsrfToken) request.getAttribute("_csrf");
+      if (csrfToken != null) {
+        // Render the token value to a cookie by causing the deferred token to be loaded
+        csrfToken.getToken();
+      }
+    }
     filterChain.doFilter(request, response);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.aop.RequestQueryCounter;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate calls this inspector once for every SQL statement it prepares; we use it
+ * to count statements per request (see {@link RequestQueryCounter}).
+ * 
+ * It is registered in application.properties via
+ * {@code spring.jpa.properties.hibernate.session_factory.statement_inspector}.
+ */
+public class StatementCountingInspector implements StatementInspector {
+
+  @Override
+  public String inspect(String sql) {
+    RequestQueryCounter.statementPrepared();
+    return sql;
+  }
+}
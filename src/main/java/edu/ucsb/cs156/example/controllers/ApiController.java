@@ -1,16 +1,29 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.VersionedEntity;
+import edu.ucsb.cs156.example.errors.BadRequestException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.WebRequest;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * This is an abstract class that provides common functionality for all API controllers.
@@ -18,6 +31,26 @@ import java.util.Map;
 
 @Slf4j
 public abstract class ApiController {
+  /**
+   * Number of rows returned by a paged /all endpoint when no size is given
+   */
+  public static final int DEFAULT_PAGE_SIZE = 100;
+
+  /**
+   * Largest page a client can ask for; larger sizes are capped to this
+   */
+  public static final int MAX_PAGE_SIZE = 500;
+
+  /**
+   * Response header carrying the cursor for the next page (absent on the last page)
+   */
+  public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+  /**
+   * Largest number of rows a bulk delete accepts in one request
+   */
+  public static final int MAX_BULK_DELETE = 1000;
+
   @Autowired
   private CurrentUserService currentUserService;
 
@@ -29,6 +62,15 @@ public abstract class ApiController {
     return currentUserService.getCurrentUser();
   }
 
+  /**
+   * This method returns the current user's email, lower-cased, for looking up the
+   * user's own rows through the indexes on lower-cased email columns.
+   * @return the lower-cased email
+   */
+  protected String currentUserEmail() {
+    return getCurrentUser().getUser().getEmail().toLowerCase(Locale.ROOT);
+  }
+
   /**
    * This method returns a generic message.
    * @param message the message
@@ -38,6 +80,183 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  /**
+   * This method returns the Limit to pass to a keyset query for a page of the
+   * given size: one more row than the (capped) page size, so that keysetPage
+   * can tell whether there is a next page.
+   * @param size requested page size
+   * @return limit for the repository query
+   */
+  protected Limit pageLimit(int size) {
+    return Limit.of(pageSize(size) + 1);
+  }
+
+  /**
+   * This method turns the rows returned by a keyset query (limited by pageLimit)
+   * into a response, with the cursor for the next page in the X-Next-Cursor header.
+   * @param <T> the type of the rows
+   * @param rows rows from the repository, in key order
+   * @param size requested page size
+   * @param key function returning the sort key of a row
+   * @return a response with at most size rows
+   */
+  protected <T> ResponseEntity<Iterable<T>> keysetPage(List<T> rows, int size, Function<T, ?> key) {
+    int pageSize = pageSize(size);
+    if (rows.size() <= pageSize) {
+      return ResponseEntity.ok(rows);
+    }
+    List<T> page = rows.subList(0, pageSize);
+    return ResponseEntity.ok()
+        .header(NEXT_CURSOR_HEADER, encodeCursor(key.apply(page.get(pageSize - 1))))
+        .body(page);
+  }
+
+  /**
+   * This method returns a strong ETag for a single row, from its key and its
+   * version column.
+   * @param key the id (or other key) of the row
+   * @param version the row's version
+   * @return the ETag, including the surrounding quotes
+   */
+  protected String rowETag(Object key, long version) {
+    return "\"%s-%d\"".formatted(key, version);
+  }
+
+  /**
+   * This method checks whether the request's If-None-Match header matches the
+   * current ETag, i.e. whether the client's copy is up to date.
+   * @param request the request
+   * @param etag the current ETag
+   * @return true if a 304 Not Modified response should be sent
+   */
+  protected boolean isNotModified(WebRequest request, String etag) {
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    ETag current = ETag.create(etag);
+    return ETag.parse(ifNoneMatch).stream()
+        .anyMatch(tag -> tag.isWildcard() || tag.compare(current, false));
+  }
+
+  /**
+   * This method returns an empty 304 Not Modified response.
+   * @param <T> the type of the body the endpoint would otherwise return
+   * @param etag the current ETag
+   * @return the response
+   */
+  protected <T> ResponseEntity<T> notModified(String etag) {
+    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+  }
+
+  /**
+   * This method adds an ETag header to a response.
+   * @param <T> the type of the body
+   * @param response the response
+   * @param etag the ETag
+   * @return a copy of the response with the ETag header
+   */
+  protected <T> ResponseEntity<T> withETag(ResponseEntity<T> response, String etag) {
+    return ResponseEntity.status(response.getStatusCode())
+        .headers(response.getHeaders())
+        .eTag(etag)
+        .body(response.getBody());
+  }
+
+  /**
+   * This method encodes a sort key as an opaque cursor.
+   * @param key the sort key of the last row on a page
+   * @return the cursor
+   */
+  protected String encodeCursor(Object key) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(key.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * This method decodes a cursor produced by encodeCursor.
+   * @param cursor the cursor
+   * @return the sort key
+   * @throws BadRequestException if the cursor is not valid
+   */
+  protected String decodeCursor(String cursor) {
+    try {
+      return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Invalid cursor: %s".formatted(cursor));
+    }
+  }
+
+  /**
+   * This method decodes a cursor for a numeric (id) sort key.
+   * @param cursor the cursor
+   * @return the id
+   * @throws BadRequestException if the cursor is not valid
+   */
+  protected long decodeIdCursor(String cursor) {
+    try {
+      return Long.parseLong(decodeCursor(cursor));
+    } catch (NumberFormatException e) {
+      throw new BadRequestException("Invalid cursor: %s".formatted(cursor));
+    }
+  }
+
+  /**
+   * This method checks the keys given to a bulk delete endpoint.
+   * @param <K> the type of the keys
+   * @param keys the keys of the rows to delete
+   * @return the same keys
+   * @throws BadRequestException if there are none, or more than MAX_BULK_DELETE
+   */
+  protected <K> List<K> bulkDeleteKeys(List<K> keys) {
+    if (keys.isEmpty()) {
+      throw new BadRequestException("Nothing to delete");
+    }
+    if (keys.size() > MAX_BULK_DELETE) {
+      throw new BadRequestException("At most %d rows can be deleted at once".formatted(MAX_BULK_DELETE));
+    }
+    return keys;
+  }
+
+  /**
+   * This method prepares a row from a request body or an import file to be
+   * inserted: any id or version the client sent is ignored, so the row gets a
+   * generated id and starts at version 0.
+   * @param row the row to create
+   */
+  protected void resetForCreate(VersionedEntity row) {
+    row.setId(0);
+    row.setVersion(0);
+  }
+
+  /**
+   * This method returns the page size to use for a request: the requested size,
+   * capped at MAX_PAGE_SIZE.
+   * @param size requested page size
+   * @return the page size
+   * @throws BadRequestException if size is less than 1
+   */
+  protected int pageSize(int size) {
+    if (size < 1) {
+      throw new BadRequestException("size must be at least 1");
+    }
+    return Math.min(size, MAX_PAGE_SIZE);
+  }
+
+  /**
+   * This method handles the BadRequestException.
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({ BadRequestException.class })
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleBadRequestException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
   /**
    * This method handles the EntityNotFoundException.
    * @param e the exception
@@ -51,4 +270,19 @@ public abstract class ApiController {
       "message", e.getMessage()
     );
   }
+
+  /**
+   * This method handles the OptimisticLockingFailureException, i.e. an update
+   * of a row that someone else has changed in the meantime.
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({ OptimisticLockingFailureException.class })
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleOptimisticLockingFailureException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
 }
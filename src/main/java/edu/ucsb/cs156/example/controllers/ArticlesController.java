@@ -2,8 +2,13 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Article;
 import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.errors.BadRequestException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.services.ArticleSearchService;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.TableVersions;
+import edu.ucsb.cs156.example.services.PatchService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -14,18 +19,27 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import java.time.LocalDateTime;
 
 /**
@@ -41,35 +55,164 @@ import java.time.LocalDateTime;
     @Autowired
     ArticlesRepository articlesRepository;
 
+    @Autowired
+    EntityStreamService entityStreamService;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    PatchService patchService;
+
+    @Autowired
+    ArticleSearchService articleSearchService;
+
+    private static final Set<String> PATCHABLE_FIELDS = Set.of("title", "url", "explanation", "email", "dateAdded");
+
 
     /**
      * List all Articles
      * 
-     * @return an iterable of Article 
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @param unpaged if true, return all rows (old behavior)
+     * @param request the request, used to check If-None-Match
+     * @return a page of Article in id order, or all of them if unpaged
      */
     @Operation(summary= "List all articles")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<Article> allArticles() {
-        Iterable<Article> articles= articlesRepository.findAll();
-        return articles;
+    public ResponseEntity<Iterable<Article>> allArticles(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size,
+            @Parameter(name="unpaged", description="return every row in one response, ignoring cursor and size") @RequestParam(defaultValue = "false") boolean unpaged,
+            WebRequest request) {
+        String etag = tableVersions.etag(Article.class);
+        if (isNotModified(request, etag)) {
+            return notModified(etag);
+        }
+        if (unpaged) {
+            return ResponseEntity.ok().eTag(etag).body(articlesRepository.findAll());
+        }
+        long after = cursor == null ? Long.MIN_VALUE : decodeIdCursor(cursor);
+        List<Article> rows = articlesRepository.findByIdGreaterThanOrderByIdAsc(after, pageLimit(size));
+        return withETag(keysetPage(rows, size, Article::getId), etag);
+    }
+
+    /**
+     * List the current user's articles (the ones they submitted), a page at a time.
+     * Emails are compared without regard to case.
+     * 
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @return a page of the current user's Article rows, in id order
+     */
+    @Operation(summary= "List the current user's articles")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/mine")
+    public ResponseEntity<Iterable<Article>> myArticles(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size) {
+        long after = cursor == null ? Long.MIN_VALUE : decodeIdCursor(cursor);
+        List<Article> rows = articlesRepository.findMine(currentUserEmail(), after, pageLimit(size));
+        return keysetPage(rows, size, Article::getId);
+    }
+
+    /**
+     * Stream all Article rows as a JSON array, in id order.  Rows are written
+     * as they are read from the database, so memory use does not depend on the
+     * size of the table.
+     * 
+     * @return a streaming JSON array of all Article rows
+     */
+    @Operation(summary= "Stream all Article rows as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/all/stream")
+    public ResponseEntity<StreamingResponseBody> allArticlesStream() {
+        return entityStreamService.jsonArray(articlesRepository::streamAll);
+    }
+
+    /**
+     * Export all articles as CSV or NDJSON.  Rows are written as they are read
+     * from the database, so this works for tables of any size.
+     * 
+     * @param format  csv (with a header row) or ndjson
+     * @param columns properties to include, in order; omit for all of them
+     * @param gzip    if true, the body is gzipped (Content-Encoding: gzip)
+     * @return a streaming download of every Article row
+     */
+    @Operation(summary= "Export all articles as CSV or NDJSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportArticles(
+            @Parameter(name="format", description="csv or ndjson") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(name="columns", description="comma separated properties to include (default: all)") @RequestParam(required = false) List<String> columns,
+            @Parameter(name="gzip", description="gzip the response") @RequestParam(defaultValue = "false") boolean gzip) {
+        return entityStreamService.export("articles", Article.class, articlesRepository::streamAll, format, columns, gzip);
+    }
+
+    /**
+     * Search articles by the words in their title and explanation, best match first.
+     * 
+     * @param q the words to search for
+     * @param size maximum number of articles to return (capped at 500)
+     * @return the matching articles
+     */
+    @Operation(summary= "Search articles by title and explanation")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/search")
+    public List<Article> searchArticles(
+            @Parameter(name="q", description="words to search for") @RequestParam String q,
+            @Parameter(name="size", description="maximum number of results (default 20, at most 500)") @RequestParam(defaultValue = "20") int size) {
+        if (q.isBlank()) {
+            throw new BadRequestException("q must not be blank");
+        }
+        return articleSearchService.search(q, pageSize(size));
+    }
+
+    /**
+     * Create many articles in one request.  The rows are saved in a single
+     * transaction, and Hibernate sends the inserts to the database in JDBC batches.
+     * 
+     * @param rows the articles to create (any ids in the request are ignored)
+     * @return the saved articles
+     */
+    @Operation(summary= "Create many articles at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public Iterable<Article> postArticleBulk(
+            @RequestBody List<Article> rows) {
+        rows.forEach(this::resetForCreate);
+        Iterable<Article> saved = articlesRepository.saveAll(rows);
+        articleSearchService.indexed(saved);
+        return saved;
     }
 
  /**
      * Get a single article by id
      * 
      * @param id the id of the article
+     * @param request the request, used to check If-None-Match
      * @return a Article
      */
     @Operation(summary= "Get a single article by id")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public Article getById(
-            @Parameter(name="id") @RequestParam Long id) {
+    public ResponseEntity<Article> getById(
+            @Parameter(name="id") @RequestParam Long id,
+            WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            long version = articlesRepository.findVersionById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
+            String etag = rowETag(id, version);
+            if (isNotModified(request, etag)) {
+                return notModified(etag);
+            }
+        }
         Article article = articlesRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
 
-        return article;
+        return ResponseEntity.ok().eTag(rowETag(id, article.getVersion())).body(article);
     }
 
     /**
@@ -106,6 +249,7 @@ import java.time.LocalDateTime;
         article.setDateAdded(dateAdded);
 
         Article savedArticle = articlesRepository.save(article);
+        articleSearchService.indexed(List.of(savedArticle));
 
         return savedArticle;
     }
@@ -134,7 +278,28 @@ import java.time.LocalDateTime;
         article.setDateAdded(incoming.getDateAdded());
 
         articlesRepository.save(article);
+        articleSearchService.indexed(List.of(article));
+
+        return article;
+    }
 
+    /**
+     * Update some fields of a single article with one UPDATE statement.  The body
+     * must include the version of the article the client last read; if it has
+     * been updated since, nothing is changed and the response is 409 Conflict.
+     * 
+     * @param id      id of the article to update
+     * @param changes the fields to change, plus "version"
+     * @return the updated article
+     */
+    @Operation(summary= "Update some fields of a single article")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public Article patchArticle(
+            @Parameter(name="id") @RequestParam Long id,
+            @RequestBody Map<String, Object> changes) {
+        Article article = patchService.patch(Article.class, id, changes, PATCHABLE_FIELDS);
+        articleSearchService.indexed(List.of(article));
         return article;
     }
 
@@ -149,10 +314,28 @@ import java.time.LocalDateTime;
     @DeleteMapping("")
     public Object deleteArticle(
             @Parameter(name="id") @RequestParam Long id) {
-        Article article = articlesRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
-
-        articlesRepository.delete(article);
+        if (articlesRepository.deleteRowById(id) == 0) {
+            throw new EntityNotFoundException(Article.class, id);
+        }
+        tableVersions.changed(Article.class);
+        articleSearchService.removed(List.of(id));
         return genericMessage("Article with id %s deleted".formatted(id));
+    }
+
+    /**
+     * Delete many articles in one request, with a single DELETE statement.
+     * 
+     * @param ids ids of the articles to delete (at most 1000)
+     * @return a message with the number of articles deleted
+     */
+    @Operation(summary= "Delete many articles at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteArticlesBulk(
+            @Parameter(name="ids", description="comma separated ids") @RequestParam List<Long> ids) {
+        int deleted = articlesRepository.deleteRowsByIdIn(bulkDeleteKeys(ids));
+        tableVersions.changed(Article.class);
+        articleSearchService.removed(ids);
+        return genericMessage("%d Article rows deleted".formatted(deleted));
     }    
  }
\ No newline at end of file
@@ -2,9 +2,14 @@ package edu.ucsb.cs156.example.controllers;
 
 
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.HelpRequestQueueService;
+import edu.ucsb.cs156.example.services.TableVersions;
+import edu.ucsb.cs156.example.services.PatchService;
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import java.time.ZonedDateTime;
 import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.errors.BadRequestException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 
@@ -17,19 +22,31 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 
 /**
  * This is a REST controller for HelpRequests
@@ -44,18 +61,161 @@ public class HelpRequestController extends ApiController{
     @Autowired
     HelpRequestRepository helpRequestRepository;
 
+    @Autowired
+    EntityStreamService entityStreamService;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    PatchService patchService;
+
+    @Autowired
+    HelpRequestQueueService helpRequestQueueService;
+
+    private static final Set<String> PATCHABLE_FIELDS = Set.of("requesterEmail", "teamId", "tableOrBreakoutRoom", "requestTime", "explanation", "solved");
+
 
       /**
      * List all HelpRequests
      * 
-     * @return an iterable of HelpRequests
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @param unpaged if true, return all rows (old behavior)
+     * @param request the request, used to check If-None-Match
+     * @return a page of HelpRequest in id order, or all of them if unpaged
      */
     @Operation(summary= "List all help requests")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<HelpRequest> allHelpRequests() {
-        Iterable<HelpRequest> helprequests = helpRequestRepository.findAll();
-        return helprequests;
+    public ResponseEntity<Iterable<HelpRequest>> allHelpRequests(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size,
+            @Parameter(name="unpaged", description="return every row in one response, ignoring cursor and size") @RequestParam(defaultValue = "false") boolean unpaged,
+            WebRequest request) {
+        String etag = tableVersions.etag(HelpRequest.class);
+        if (isNotModified(request, etag)) {
+            return notModified(etag);
+        }
+        if (unpaged) {
+            return ResponseEntity.ok().eTag(etag).body(helpRequestRepository.findAll());
+        }
+        long after = cursor == null ? Long.MIN_VALUE : decodeIdCursor(cursor);
+        List<HelpRequest> rows = helpRequestRepository.findByIdGreaterThanOrderByIdAsc(after, pageLimit(size));
+        return withETag(keysetPage(rows, size, HelpRequest::getId), etag);
+    }
+
+    /**
+     * List the current user's help requests (the ones they requested), a page at a time.
+     * Emails are compared without regard to case.
+     * 
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @return a page of the current user's HelpRequest rows, in id order
+     */
+    @Operation(summary= "List the current user's help requests")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/mine")
+    public ResponseEntity<Iterable<HelpRequest>> myHelpRequests(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size) {
+        long after = cursor == null ? Long.MIN_VALUE : decodeIdCursor(cursor);
+        List<HelpRequest> rows = helpRequestRepository.findMine(currentUserEmail(), after, pageLimit(size));
+        return keysetPage(rows, size, HelpRequest::getId);
+    }
+
+    /**
+     * Stream all HelpRequest rows as a JSON array, in id order.  Rows are written
+     * as they are read from the database, so memory use does not depend on the
+     * size of the table.
+     * 
+     * @return a streaming JSON array of all HelpRequest rows
+     */
+    @Operation(summary= "Stream all HelpRequest rows as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/all/stream")
+    public ResponseEntity<StreamingResponseBody> allHelpRequestsStream() {
+        return entityStreamService.jsonArray(helpRequestRepository::streamAll);
+    }
+
+    /**
+     * List the help requests that match the given filters, oldest first.  Every
+     * filter is optional; e.g. teamId=s24-5pm-1 and solved=false gives that
+     * team's open requests.
+     *
+     * @param teamId only requests from this team
+     * @param tableOrBreakoutRoom only requests from this table or breakout room
+     * @param solved only solved (true) or unsolved (false) requests
+     * @param requestedAfter only requests made at or after this time
+     * @param requestedBefore only requests made before this time
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @return a page of matching HelpRequests, ordered by requestTime then id
+     */
+    @Operation(summary= "List help requests matching the given filters, oldest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/queue")
+    public ResponseEntity<Iterable<HelpRequest>> helpRequestQueue(
+            @Parameter(name="teamId") @RequestParam(required = false) String teamId,
+            @Parameter(name="tableOrBreakoutRoom") @RequestParam(required = false) String tableOrBreakoutRoom,
+            @Parameter(name="solved") @RequestParam(required = false) Boolean solved,
+            @Parameter(name="requestedAfter", description="ISO date-time, e.g. 2024-01-01T00:00:00Z (inclusive)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime requestedAfter,
+            @Parameter(name="requestedBefore", description="ISO date-time, e.g. 2024-01-01T00:00:00Z (exclusive)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime requestedBefore,
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size) {
+        HelpRequestQueueService.Filter filter = new HelpRequestQueueService.Filter(
+                teamId, tableOrBreakoutRoom, solved, requestedAfter, requestedBefore);
+        HelpRequestQueueService.Position after = cursor == null ? null : decodeQueueCursor(cursor);
+        List<HelpRequest> rows = helpRequestQueueService.queue(filter, after, pageLimit(size).max());
+        return keysetPage(rows, size, h -> h.getRequestTime().toInstant() + "/" + h.getId());
+    }
+
+    private HelpRequestQueueService.Position decodeQueueCursor(String cursor) {
+        String[] key = decodeCursor(cursor).split("/");
+        try {
+            if (key.length == 2) {
+                return new HelpRequestQueueService.Position(
+                        ZonedDateTime.ofInstant(Instant.parse(key[0]), ZoneOffset.UTC), Long.parseLong(key[1]));
+            }
+        } catch (DateTimeParseException | NumberFormatException e) {
+            // reported below
+        }
+        throw new BadRequestException("Invalid cursor: %s".formatted(cursor));
+    }
+
+    /**
+     * Export all help requests as CSV or NDJSON.  Rows are written as they are read
+     * from the database, so this works for tables of any size.
+     * 
+     * @param format  csv (with a header row) or ndjson
+     * @param columns properties to include, in order; omit for all of them
+     * @param gzip    if true, the body is gzipped (Content-Encoding: gzip)
+     * @return a streaming download of every HelpRequest row
+     */
+    @Operation(summary= "Export all help requests as CSV or NDJSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportHelpRequests(
+            @Parameter(name="format", description="csv or ndjson") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(name="columns", description="comma separated properties to include (default: all)") @RequestParam(required = false) List<String> columns,
+            @Parameter(name="gzip", description="gzip the response") @RequestParam(defaultValue = "false") boolean gzip) {
+        return entityStreamService.export("help-requests", HelpRequest.class, helpRequestRepository::streamAll, format, columns, gzip);
+    }
+
+    /**
+     * Create many help requests in one request.  The rows are saved in a single
+     * transaction, and Hibernate sends the inserts to the database in JDBC batches.
+     * 
+     * @param rows the help requests to create (any ids in the request are ignored)
+     * @return the saved help requests
+     */
+    @Operation(summary= "Create many help requests at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public Iterable<HelpRequest> postHelpRequestBulk(
+            @RequestBody List<HelpRequest> rows) {
+        rows.forEach(this::resetForCreate);
+        return helpRequestRepository.saveAll(rows);
     }
 
 
@@ -109,17 +269,27 @@ public class HelpRequestController extends ApiController{
      * Get a single HelpRequest by id
      * 
      * @param id the id of the HelpRequest
+     * @param request the request, used to check If-None-Match
      * @return a HelpRequest
      */
     @Operation(summary= "Get a single HelpRequest")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public HelpRequest getById(
-            @Parameter(name="id") @RequestParam Long id) {
+    public ResponseEntity<HelpRequest> getById(
+            @Parameter(name="id") @RequestParam Long id,
+            WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            long version = helpRequestRepository.findVersionById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
+            String etag = rowETag(id, version);
+            if (isNotModified(request, etag)) {
+                return notModified(etag);
+            }
+        }
         HelpRequest helpRequest = helpRequestRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
 
-        return helpRequest;
+        return ResponseEntity.ok().eTag(rowETag(id, helpRequest.getVersion())).body(helpRequest);
     }
 
 
@@ -154,6 +324,24 @@ public class HelpRequestController extends ApiController{
         return helpRequest;
     }
 
+    /**
+     * Update some fields of a single helprequest with one UPDATE statement.  The body
+     * must include the version of the helprequest the client last read; if it has
+     * been updated since, nothing is changed and the response is 409 Conflict.
+     * 
+     * @param id      id of the helprequest to update
+     * @param changes the fields to change, plus "version"
+     * @return the updated helprequest
+     */
+    @Operation(summary= "Update some fields of a single helprequest")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public HelpRequest patchHelpRequest(
+            @Parameter(name="id") @RequestParam Long id,
+            @RequestBody Map<String, Object> changes) {
+        return patchService.patch(HelpRequest.class, id, changes, PATCHABLE_FIELDS);
+    }
+
 
       /**
      * Delete a HelpRequest
@@ -166,14 +354,46 @@ public class HelpRequestController extends ApiController{
     @DeleteMapping("")
     public Object deleteHelpRequest(
             @Parameter(name="id") @RequestParam Long id) {
-        HelpRequest helpRequest = helpRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
-
-        helpRequestRepository.delete(helpRequest);
-        
+        if (helpRequestRepository.deleteRowById(id) == 0) {
+            throw new EntityNotFoundException(HelpRequest.class, id);
+        }
+        tableVersions.changed(HelpRequest.class);
         return genericMessage("HelpRequest with id %s deleted".formatted(id));
     }
 
+    /**
+     * Delete many help requests in one request, with a single DELETE statement.
+     * 
+     * @param ids ids of the help requests to delete (at most 1000)
+     * @return a message with the number of help requests deleted
+     */
+    @Operation(summary= "Delete many help requests at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteHelpRequestsBulk(
+            @Parameter(name="ids", description="comma separated ids") @RequestParam List<Long> ids) {
+        int deleted = helpRequestRepository.deleteRowsByIdIn(bulkDeleteKeys(ids));
+        tableVersions.changed(HelpRequest.class);
+        return genericMessage("%d HelpRequest rows deleted".formatted(deleted));
+    }
+
+    /**
+     * Delete every solved help request made before the given time, with a single
+     * DELETE statement.
+     * 
+     * @param before solved requests made before this time are deleted
+     * @return a message with the number of help requests deleted
+     */
+    @Operation(summary= "Delete solved help requests made before a given time")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/solved")
+    public Object deleteSolvedHelpRequests(
+            @Parameter(name="before", description="ISO date-time, e.g. 2024-01-01T00:00:00Z") @RequestParam("before") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime before) {
+        int deleted = helpRequestRepository.deleteSolvedBefore(before);
+        tableVersions.changed(HelpRequest.class);
+        return genericMessage("%d solved HelpRequest rows deleted".formatted(deleted));
+    }
+
 
 
 
@@ -4,26 +4,44 @@ import java.time.LocalDateTime;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.jobs.RebuildRatingSummariesJob;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.MenuItemRatingService;
+import edu.ucsb.cs156.example.services.TableVersions;
+import edu.ucsb.cs156.example.services.PatchService;
+import edu.ucsb.cs156.example.services.jobs.JobService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -38,23 +56,128 @@ public class MenuItemReviewController extends ApiController {
 
     @Autowired
     MenuItemReviewRepository menuItemReviewRepository;
+
+    @Autowired
+    EntityStreamService entityStreamService;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    PatchService patchService;
+
+    @Autowired
+    MenuItemRatingService menuItemRatingService;
+
+    @Autowired
+    JobService jobService;
+
+    private static final Set<String> PATCHABLE_FIELDS = Set.of("reviewerEmail", "stars", "dateReviewed", "comments");
     
     /**
      * List all Menu Item Reviews
      * 
-     * @return an iterable of MenuItemReview
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @param unpaged if true, return all rows (old behavior)
+     * @param request the request, used to check If-None-Match
+     * @return a page of MenuItemReview in id order, or all of them if unpaged
      */
     @Operation(summary= "List all menu item reviews")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<MenuItemReview> allReviews() {
-        Iterable<MenuItemReview> menuItemReview = menuItemReviewRepository.findAll();
-        return menuItemReview;
+    public ResponseEntity<Iterable<MenuItemReview>> allReviews(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size,
+            @Parameter(name="unpaged", description="return every row in one response, ignoring cursor and size") @RequestParam(defaultValue = "false") boolean unpaged,
+            WebRequest request) {
+        String etag = tableVersions.etag(MenuItemReview.class);
+        if (isNotModified(request, etag)) {
+            return notModified(etag);
+        }
+        if (unpaged) {
+            return ResponseEntity.ok().eTag(etag).body(menuItemReviewRepository.findAll());
+        }
+        long after = cursor == null ? Long.MIN_VALUE : decodeIdCursor(cursor);
+        List<MenuItemReview> rows = menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(after, pageLimit(size));
+        return withETag(keysetPage(rows, size, MenuItemReview::getId), etag);
+    }
+
+    /**
+     * List the current user's menu item reviews (the ones they wrote), a page at a time.
+     * Emails are compared without regard to case.
+     * 
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @return a page of the current user's MenuItemReview rows, in id order
+     */
+    @Operation(summary= "List the current user's menu item reviews")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/mine")
+    public ResponseEntity<Iterable<MenuItemReview>> myMenuItemReviews(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size) {
+        long after = cursor == null ? Long.MIN_VALUE : decodeIdCursor(cursor);
+        List<MenuItemReview> rows = menuItemReviewRepository.findMine(currentUserEmail(), after, pageLimit(size));
+        return keysetPage(rows, size, MenuItemReview::getId);
+    }
+
+    /**
+     * Stream all MenuItemReview rows as a JSON array, in id order.  Rows are written
+     * as they are read from the database, so memory use does not depend on the
+     * size of the table.
+     * 
+     * @return a streaming JSON array of all MenuItemReview rows
+     */
+    @Operation(summary= "Stream all MenuItemReview rows as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/all/stream")
+    public ResponseEntity<StreamingResponseBody> allReviewsStream() {
+        return entityStreamService.jsonArray(menuItemReviewRepository::streamAll);
+    }
+
+    /**
+     * Export all menu item reviews as CSV or NDJSON.  Rows are written as they are read
+     * from the database, so this works for tables of any size.
+     * 
+     * @param format  csv (with a header row) or ndjson
+     * @param columns properties to include, in order; omit for all of them
+     * @param gzip    if true, the body is gzipped (Content-Encoding: gzip)
+     * @return a streaming download of every MenuItemReview row
+     */
+    @Operation(summary= "Export all menu item reviews as CSV or NDJSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportReviews(
+            @Parameter(name="format", description="csv or ndjson") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(name="columns", description="comma separated properties to include (default: all)") @RequestParam(required = false) List<String> columns,
+            @Parameter(name="gzip", description="gzip the response") @RequestParam(defaultValue = "false") boolean gzip) {
+        return entityStreamService.export("menu-item-reviews", MenuItemReview.class, menuItemReviewRepository::streamAll, format, columns, gzip);
+    }
+
+    /**
+     * Create many menu item reviews in one request.  The rows are saved in a single
+     * transaction, and Hibernate sends the inserts to the database in JDBC batches.
+     * 
+     * @param rows the menu item reviews to create (any ids in the request are ignored)
+     * @return the saved menu item reviews
+     */
+    @Operation(summary= "Create many menu item reviews at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    @Transactional
+    public Iterable<MenuItemReview> postMenuItemReviewBulk(
+            @RequestBody List<MenuItemReview> rows) {
+        rows.forEach(this::resetForCreate);
+        Iterable<MenuItemReview> saved = menuItemReviewRepository.saveAll(rows);
+        menuItemRatingService.added(saved);
+        return saved;
     }
 
     /**
      * Create a new menu item review
      * 
+     * @param itemId the id of the menu item reviewed
      * @param reviewerEmail
      * @param stars the integer (from 0 to 5) of stars given by the reviewer
      * @param dateReviewed the timestamp on the review without time zone information
@@ -64,7 +187,9 @@ public class MenuItemReviewController extends ApiController {
     @Operation(summary= "Create a new review")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PostMapping("/post")
+    @Transactional
     public MenuItemReview postMenuItemReview(
+            @Parameter(name="itemId") @RequestParam long itemId,
             @Parameter(name="reviewerEmail") @RequestParam String reviewerEmail,
             @Parameter(name="stars") @RequestParam int stars,
             @Parameter(name="dateReviewed", description="date (in iso format, e.g. YYYY-mm-ddTHH:MM:SS; see https://en.wikipedia.org/wiki/ISO_8601)") @RequestParam("dateReviewed") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateReviewed,
@@ -77,12 +202,14 @@ public class MenuItemReviewController extends ApiController {
         log.info("localDateTime={}", dateReviewed);
 
         MenuItemReview menuItemReview = new MenuItemReview();
+        menuItemReview.setItemId(itemId);
         menuItemReview.setComments(comments);
         menuItemReview.setDateReviewed(dateReviewed);
         menuItemReview.setReviewerEmail(reviewerEmail);
         menuItemReview.setStars(stars);
 
         MenuItemReview savedMenuItemReview = menuItemReviewRepository.save(menuItemReview);
+        menuItemRatingService.added(List.of(savedMenuItemReview));
 
         return savedMenuItemReview;
     }
@@ -91,17 +218,27 @@ public class MenuItemReviewController extends ApiController {
      * Get a single menu item review by id
      * 
      * @param id the id of the menu item review
+     * @param request the request, used to check If-None-Match
      * @return a MenuItemReview
      */
     @Operation(summary= "Get a single menu item review")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public MenuItemReview getById(
-            @Parameter(name="id") @RequestParam Long id) {
+    public ResponseEntity<MenuItemReview> getById(
+            @Parameter(name="id") @RequestParam Long id,
+            WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            long version = menuItemReviewRepository.findVersionById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+            String etag = rowETag(id, version);
+            if (isNotModified(request, etag)) {
+                return notModified(etag);
+            }
+        }
         MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
 
-        return menuItemReview;
+        return ResponseEntity.ok().eTag(rowETag(id, menuItemReview.getVersion())).body(menuItemReview);
     }
 
     /**
@@ -114,12 +251,14 @@ public class MenuItemReviewController extends ApiController {
     @Operation(summary= "Update a single menu item review")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
+    @Transactional
     public MenuItemReview updateMenuItemReview(
             @Parameter(name="id") @RequestParam Long id,
             @RequestBody @Valid MenuItemReview incoming) {
 
         MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+        int oldStars = menuItemReview.getStars();
 
         menuItemReview.setComments(incoming.getComments());
         menuItemReview.setDateReviewed(incoming.getDateReviewed());
@@ -127,10 +266,36 @@ public class MenuItemReviewController extends ApiController {
         menuItemReview.setStars(incoming.getStars());
         
         menuItemReviewRepository.save(menuItemReview);
+        menuItemRatingService.changed(menuItemReview.getItemId(), oldStars, menuItemReview.getStars());
 
         return menuItemReview;
     }
 
+    /**
+     * Update some fields of a single menu item review with one UPDATE statement.  The body
+     * must include the version of the menu item review the client last read; if it has
+     * been updated since, nothing is changed and the response is 409 Conflict.
+     * 
+     * @param id      id of the menu item review to update
+     * @param changes the fields to change, plus "version"
+     * @return the updated menu item review
+     */
+    @Operation(summary= "Update some fields of a single menu item review")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    @Transactional
+    public MenuItemReview patchMenuItemReview(
+            @Parameter(name="id") @RequestParam Long id,
+            @RequestBody Map<String, Object> changes) {
+        if (!changes.containsKey("stars")) {
+            return patchService.patch(MenuItemReview.class, id, changes, PATCHABLE_FIELDS);
+        }
+        List<MenuItemReviewRepository.Rating> before = menuItemReviewRepository.lockRatingsByIdIn(List.of(id));
+        MenuItemReview patched = patchService.patch(MenuItemReview.class, id, changes, PATCHABLE_FIELDS);
+        menuItemRatingService.changed(patched.getItemId(), before.get(0).getStars(), patched.getStars());
+        return patched;
+    }
+
     /**
      * Delete a MenuItemReview
      * 
@@ -140,12 +305,74 @@ public class MenuItemReviewController extends ApiController {
     @Operation(summary= "Delete a MenuItemReview")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteUCSBDate(
             @Parameter(name="id") @RequestParam Long id) {
-        MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
-
-        menuItemReviewRepository.delete(menuItemReview);
+        List<MenuItemReviewRepository.Rating> ratings = menuItemReviewRepository.lockRatingsByIdIn(List.of(id));
+        if (ratings.isEmpty()) {
+            throw new EntityNotFoundException(MenuItemReview.class, id);
+        }
+        menuItemReviewRepository.deleteRowById(id);
+        menuItemRatingService.removed(ratings);
+        tableVersions.changed(MenuItemReview.class);
         return genericMessage("MenuItemReview with id %s deleted".formatted(id));
     }
+
+    /**
+     * Delete many menu item reviews in one request, with a single DELETE statement.
+     * The reviews are locked before their ratings are read, and only the reviews that
+     * were locked are deleted and taken out of the rating summaries, so overlapping
+     * bulk deletes don't subtract the same review twice.
+     * 
+     * @param ids ids of the menu item reviews to delete (at most 1000)
+     * @return a message with the number of menu item reviews deleted
+     */
+    @Operation(summary= "Delete many menu item reviews at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    @Transactional
+    public Object deleteMenuItemReviewsBulk(
+            @Parameter(name="ids", description="comma separated ids") @RequestParam List<Long> ids) {
+        List<MenuItemReviewRepository.Rating> ratings = menuItemReviewRepository.lockRatingsByIdIn(bulkDeleteKeys(ids));
+        if (ratings.isEmpty()) {
+            return genericMessage("0 MenuItemReview rows deleted");
+        }
+        int deleted = menuItemReviewRepository.deleteRowsByIdIn(
+                ratings.stream().map(MenuItemReviewRepository.Rating::getId).toList());
+        menuItemRatingService.removed(ratings);
+        tableVersions.changed(MenuItemReview.class);
+        return genericMessage("%d MenuItemReview rows deleted".formatted(deleted));
+    }
+
+    /**
+     * Get the rating summary of a menu item: its number of reviews, average stars,
+     * and how many reviews gave it each number of stars.  The summary is kept up to
+     * date as reviews change, so this does not read the reviews.
+     * 
+     * @param itemId the id of the menu item
+     * @return the rating summary (all zero if the item has no reviews)
+     */
+    @Operation(summary= "Get the rating summary of a menu item")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/summary")
+    public MenuItemRatingSummary getRatingSummary(
+            @Parameter(name="itemId") @RequestParam long itemId) {
+        return menuItemRatingService.summary(itemId);
+    }
+
+    /**
+     * Recompute every rating summary from the reviews, in a background job.  This
+     * repairs summaries that have drifted, e.g. after reviews were changed directly
+     * in the database.
+     * 
+     * @return the job that is rebuilding the summaries
+     */
+    @Operation(summary= "Rebuild the rating summaries of all menu items (runs as a job)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/summary/rebuild")
+    public Job rebuildRatingSummaries() {
+        return jobService.runAsJob(RebuildRatingSummariesJob.builder()
+                .menuItemRatingService(menuItemRatingService)
+                .build());
+    }
 }
\ No newline at end of file
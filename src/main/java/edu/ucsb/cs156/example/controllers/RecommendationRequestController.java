@@ -1,8 +1,12 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.errors.BadRequestException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.TableVersions;
+import edu.ucsb.cs156.example.services.PatchService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,19 +17,29 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 
 /**
  * This is a REST controller for Recommendation Request
@@ -40,17 +54,177 @@ public class RecommendationRequestController extends ApiController {
     @Autowired
     RecommendationRequestRepository recommendationRequestRepository;
 
+    @Autowired
+    EntityStreamService entityStreamService;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    PatchService patchService;
+
+    private static final Set<String> PATCHABLE_FIELDS = Set.of("requesterEmail", "professorEmail", "explanation", "dateRequested", "dateNeeded", "done");
+
     /**
      * List all UCSB dates
      * 
-     * @return an iterable of recommendation requests
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @param unpaged if true, return all rows (old behavior)
+     * @param request the request, used to check If-None-Match
+     * @return a page of RecommendationRequest in id order, or all of them if unpaged
      */
     @Operation(summary= "List all recommendation requests")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<RecommendationRequest> allRecommendationRequest() {
-        Iterable<RecommendationRequest> requests = recommendationRequestRepository.findAll();
-        return requests;
+    public ResponseEntity<Iterable<RecommendationRequest>> allRecommendationRequest(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size,
+            @Parameter(name="unpaged", description="return every row in one response, ignoring cursor and size") @RequestParam(defaultValue = "false") boolean unpaged,
+            WebRequest request) {
+        String etag = tableVersions.etag(RecommendationRequest.class);
+        if (isNotModified(request, etag)) {
+            return notModified(etag);
+        }
+        if (unpaged) {
+            return ResponseEntity.ok().eTag(etag).body(recommendationRequestRepository.findAll());
+        }
+        long after = cursor == null ? Long.MIN_VALUE : decodeIdCursor(cursor);
+        List<RecommendationRequest> rows = recommendationRequestRepository.findByIdGreaterThanOrderByIdAsc(after, pageLimit(size));
+        return withETag(keysetPage(rows, size, RecommendationRequest::getId), etag);
+    }
+
+    /**
+     * List open (not done) recommendation requests, soonest needed first, a page at
+     * a time.  Requests without a dateNeeded are left out.
+     * 
+     * @param professorEmail if given, only requests to this professor
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @return a page of open RecommendationRequest in (dateNeeded, id) order
+     */
+    @Operation(summary= "List open recommendation requests, soonest needed first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/due")
+    public ResponseEntity<Iterable<RecommendationRequest>> dueRecommendationRequests(
+            @Parameter(name="professorEmail", description="only requests to this professor") @RequestParam(required = false) String professorEmail,
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size) {
+        List<RecommendationRequest> rows;
+        if (cursor == null) {
+            rows = professorEmail == null
+                    ? recommendationRequestRepository.findByDoneFalseAndDateNeededNotNullOrderByDateNeededAscIdAsc(pageLimit(size))
+                    : recommendationRequestRepository.findByDoneFalseAndProfessorEmailAndDateNeededNotNullOrderByDateNeededAscIdAsc(professorEmail, pageLimit(size));
+        } else {
+            DuePosition after = decodeDueCursor(cursor);
+            rows = professorEmail == null
+                    ? recommendationRequestRepository.findDueAfter(after.dateNeeded(), after.id(), pageLimit(size))
+                    : recommendationRequestRepository.findDueForProfessorAfter(professorEmail, after.dateNeeded(), after.id(), pageLimit(size));
+        }
+        return keysetPage(rows, size, r -> r.getDateNeeded() + "/" + r.getId());
+    }
+
+    private record DuePosition(LocalDateTime dateNeeded, long id) {
+    }
+
+    private DuePosition decodeDueCursor(String cursor) {
+        String[] key = decodeCursor(cursor).split("/");
+        try {
+            if (key.length == 2) {
+                return new DuePosition(LocalDateTime.parse(key[0]), Long.parseLong(key[1]));
+            }
+        } catch (DateTimeParseException | NumberFormatException e) {
+            // reported below
+        }
+        throw new BadRequestException("Invalid cursor: %s".formatted(cursor));
+    }
+
+    /**
+     * Count the open (not done) recommendation requests of each professor.  The
+     * counts come from one grouped query, not from reading the requests.
+     * 
+     * @param request the request, used to check If-None-Match
+     * @return one entry per professor with open requests, the professor whose next
+     *         request is needed soonest first
+     */
+    @Operation(summary= "Count open recommendation requests per professor")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/due/counts")
+    public ResponseEntity<List<RecommendationRequestRepository.ProfessorDue>> dueRecommendationRequestCounts(
+            WebRequest request) {
+        String etag = tableVersions.etag(RecommendationRequest.class);
+        if (isNotModified(request, etag)) {
+            return notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).body(recommendationRequestRepository.countDueByProfessor());
+    }
+
+    /**
+     * List the current user's recommendation requests (the ones they requested), a page at a time.
+     * Emails are compared without regard to case.
+     * 
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @return a page of the current user's RecommendationRequest rows, in id order
+     */
+    @Operation(summary= "List the current user's recommendation requests")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/mine")
+    public ResponseEntity<Iterable<RecommendationRequest>> myRecommendationRequests(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size) {
+        long after = cursor == null ? Long.MIN_VALUE : decodeIdCursor(cursor);
+        List<RecommendationRequest> rows = recommendationRequestRepository.findMine(currentUserEmail(), after, pageLimit(size));
+        return keysetPage(rows, size, RecommendationRequest::getId);
+    }
+
+    /**
+     * Stream all RecommendationRequest rows as a JSON array, in id order.  Rows are written
+     * as they are read from the database, so memory use does not depend on the
+     * size of the table.
+     * 
+     * @return a streaming JSON array of all RecommendationRequest rows
+     */
+    @Operation(summary= "Stream all RecommendationRequest rows as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/all/stream")
+    public ResponseEntity<StreamingResponseBody> allRecommendationRequestStream() {
+        return entityStreamService.jsonArray(recommendationRequestRepository::streamAll);
+    }
+
+    /**
+     * Export all recommendation requests as CSV or NDJSON.  Rows are written as they are read
+     * from the database, so this works for tables of any size.
+     * 
+     * @param format  csv (with a header row) or ndjson
+     * @param columns properties to include, in order; omit for all of them
+     * @param gzip    if true, the body is gzipped (Content-Encoding: gzip)
+     * @return a streaming download of every RecommendationRequest row
+     */
+    @Operation(summary= "Export all recommendation requests as CSV or NDJSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportRecommendationRequests(
+            @Parameter(name="format", description="csv or ndjson") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(name="columns", description="comma separated properties to include (default: all)") @RequestParam(required = false) List<String> columns,
+            @Parameter(name="gzip", description="gzip the response") @RequestParam(defaultValue = "false") boolean gzip) {
+        return entityStreamService.export("recommendation-requests", RecommendationRequest.class, recommendationRequestRepository::streamAll, format, columns, gzip);
+    }
+
+    /**
+     * Create many recommendation requests in one request.  The rows are saved in a single
+     * transaction, and Hibernate sends the inserts to the database in JDBC batches.
+     * 
+     * @param rows the recommendation requests to create (any ids in the request are ignored)
+     * @return the saved recommendation requests
+     */
+    @Operation(summary= "Create many recommendation requests at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public Iterable<RecommendationRequest> postRecommendationRequestBulk(
+            @RequestBody List<RecommendationRequest> rows) {
+        rows.forEach(this::resetForCreate);
+        return recommendationRequestRepository.saveAll(rows);
     }
 
     /**
@@ -99,17 +273,27 @@ public class RecommendationRequestController extends ApiController {
      * Get a single recommendation request by id
      * 
      * @param id the id of the recommendation request
+     * @param request the request, used to check If-None-Match
      * @return a RecommendationRequest object
      */
     @Operation(summary= "Get a single recommendation request")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public RecommendationRequest getById(
-            @Parameter(name="id") @RequestParam Long id) {
+    public ResponseEntity<RecommendationRequest> getById(
+            @Parameter(name="id") @RequestParam Long id,
+            WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            long version = recommendationRequestRepository.findVersionById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
+            String etag = rowETag(id, version);
+            if (isNotModified(request, etag)) {
+                return notModified(etag);
+            }
+        }
         RecommendationRequest recommendationRequest = recommendationRequestRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
 
-        return recommendationRequest;
+        return ResponseEntity.ok().eTag(rowETag(id, recommendationRequest.getVersion())).body(recommendationRequest);
     }
 
     /**
@@ -141,6 +325,24 @@ public class RecommendationRequestController extends ApiController {
         return recommendationRequest;
     }
 
+    /**
+     * Update some fields of a single recommendation request with one UPDATE statement.  The body
+     * must include the version of the recommendation request the client last read; if it has
+     * been updated since, nothing is changed and the response is 409 Conflict.
+     * 
+     * @param id      id of the recommendation request to update
+     * @param changes the fields to change, plus "version"
+     * @return the updated recommendation request
+     */
+    @Operation(summary= "Update some fields of a single recommendation request")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public RecommendationRequest patchRecommendationRequest(
+            @Parameter(name="id") @RequestParam Long id,
+            @RequestBody Map<String, Object> changes) {
+        return patchService.patch(RecommendationRequest.class, id, changes, PATCHABLE_FIELDS);
+    }
+
     /**
      * Delete a RecommendationRequest
      * 
@@ -152,10 +354,26 @@ public class RecommendationRequestController extends ApiController {
     @DeleteMapping("")
     public Object deleteRecommendationRequest(
             @Parameter(name="id") @RequestParam Long id) {
-        RecommendationRequest recommendationRequest = recommendationRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
-
-        recommendationRequestRepository.delete(recommendationRequest);
+        if (recommendationRequestRepository.deleteRowById(id) == 0) {
+            throw new EntityNotFoundException(RecommendationRequest.class, id);
+        }
+        tableVersions.changed(RecommendationRequest.class);
         return genericMessage("RecommendationRequest with id %s deleted".formatted(id));
     }
+
+    /**
+     * Delete many recommendation requests in one request, with a single DELETE statement.
+     * 
+     * @param ids ids of the recommendation requests to delete (at most 1000)
+     * @return a message with the number of recommendation requests deleted
+     */
+    @Operation(summary= "Delete many recommendation requests at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteRecommendationRequestsBulk(
+            @Parameter(name="ids", description="comma separated ids") @RequestParam List<Long> ids) {
+        int deleted = recommendationRequestRepository.deleteRowsByIdIn(bulkDeleteKeys(ids));
+        tableVersions.changed(RecommendationRequest.class);
+        return genericMessage("%d RecommendationRequest rows deleted".formatted(deleted));
+    }
 }
@@ -1,26 +1,40 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.errors.BadRequestException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.RestaurantSearchService;
+import edu.ucsb.cs156.example.services.TableVersions;
+import edu.ucsb.cs156.example.services.PatchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * This is a REST controller for Restaurants
  */
@@ -33,32 +47,143 @@ public class RestaurantsController extends ApiController {
     @Autowired
     RestaurantRepository restaurantRepository;
 
+    @Autowired
+    EntityStreamService entityStreamService;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    PatchService patchService;
+
+    @Autowired
+    RestaurantSearchService restaurantSearchService;
+
+    private static final Set<String> PATCHABLE_FIELDS = Set.of("name", "description");
+
     /**
      * This method returns a list of all restaurants.
-     * @return a list of all restaurants
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @param unpaged if true, return all rows (old behavior)
+     * @param request the request, used to check If-None-Match
+     * @return a page of Restaurant in id order, or all of them if unpaged
      */
     @Operation(summary = "List all restaurants")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<Restaurant> allRestaurants() {
-        Iterable<Restaurant> restaurants = restaurantRepository.findAll();
-        return restaurants;
+    public ResponseEntity<Iterable<Restaurant>> allRestaurants(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size,
+            @Parameter(name="unpaged", description="return every row in one response, ignoring cursor and size") @RequestParam(defaultValue = "false") boolean unpaged,
+            WebRequest request) {
+        String etag = tableVersions.etag(Restaurant.class);
+        if (isNotModified(request, etag)) {
+            return notModified(etag);
+        }
+        if (unpaged) {
+            return ResponseEntity.ok().eTag(etag).body(restaurantRepository.findAll());
+        }
+        long after = cursor == null ? Long.MIN_VALUE : decodeIdCursor(cursor);
+        List<Restaurant> rows = restaurantRepository.findByIdGreaterThanOrderByIdAsc(after, pageLimit(size));
+        return withETag(keysetPage(rows, size, Restaurant::getId), etag);
+    }
+
+    /**
+     * Stream all Restaurant rows as a JSON array, in id order.  Rows are written
+     * as they are read from the database, so memory use does not depend on the
+     * size of the table.
+     * 
+     * @return a streaming JSON array of all Restaurant rows
+     */
+    @Operation(summary= "Stream all Restaurant rows as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/all/stream")
+    public ResponseEntity<StreamingResponseBody> allRestaurantsStream() {
+        return entityStreamService.jsonArray(restaurantRepository::streamAll);
+    }
+
+    /**
+     * Export all restaurants as CSV or NDJSON.  Rows are written as they are read
+     * from the database, so this works for tables of any size.
+     * 
+     * @param format  csv (with a header row) or ndjson
+     * @param columns properties to include, in order; omit for all of them
+     * @param gzip    if true, the body is gzipped (Content-Encoding: gzip)
+     * @return a streaming download of every Restaurant row
+     */
+    @Operation(summary= "Export all restaurants as CSV or NDJSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportRestaurants(
+            @Parameter(name="format", description="csv or ndjson") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(name="columns", description="comma separated properties to include (default: all)") @RequestParam(required = false) List<String> columns,
+            @Parameter(name="gzip", description="gzip the response") @RequestParam(defaultValue = "false") boolean gzip) {
+        return entityStreamService.export("restaurants", Restaurant.class, restaurantRepository::streamAll, format, columns, gzip);
+    }
+
+    /**
+     * Search restaurants by name and description, most similar first.  Matching
+     * is by trigram similarity, so misspelled words still find the restaurant.
+     * 
+     * @param q the words to search for
+     * @param size maximum number of restaurants to return (capped at 500)
+     * @return the matching restaurants
+     */
+    @Operation(summary= "Search restaurants by name and description, allowing for typos")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/search")
+    public List<Restaurant> searchRestaurants(
+            @Parameter(name="q", description="words to search for; misspellings are allowed") @RequestParam String q,
+            @Parameter(name="size", description="maximum number of results (default 20, at most 500)") @RequestParam(defaultValue = "20") int size) {
+        if (q.isBlank()) {
+            throw new BadRequestException("q must not be blank");
+        }
+        return restaurantSearchService.search(q, pageSize(size));
+    }
+
+    /**
+     * Create many restaurants in one request.  The rows are saved in a single
+     * transaction, and Hibernate sends the inserts to the database in JDBC batches.
+     * 
+     * @param rows the restaurants to create (any ids in the request are ignored)
+     * @return the saved restaurants
+     */
+    @Operation(summary= "Create many restaurants at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public Iterable<Restaurant> postRestaurantBulk(
+            @RequestBody List<Restaurant> rows) {
+        rows.forEach(this::resetForCreate);
+        Iterable<Restaurant> saved = restaurantRepository.saveAll(rows);
+        restaurantSearchService.indexed(saved);
+        return saved;
     }
 
     /**
      * This method returns a single restaurant.
      * @param id id of the restaurant to get
+     * @param request the request, used to check If-None-Match
      * @return a single restaurant
      */
     @Operation(summary = "Get a single restaurant")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public Restaurant getById(
-            @Parameter(name = "id") @RequestParam Long id) {
+    public ResponseEntity<Restaurant> getById(
+            @Parameter(name = "id") @RequestParam Long id,
+            WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            long version = restaurantRepository.findVersionById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
+            String etag = rowETag(id, version);
+            if (isNotModified(request, etag)) {
+                return notModified(etag);
+            }
+        }
         Restaurant restaurant = restaurantRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
 
-        return restaurant;
+        return ResponseEntity.ok().eTag(rowETag(id, restaurant.getVersion())).body(restaurant);
     }
 
     /**
@@ -79,6 +204,7 @@ public class RestaurantsController extends ApiController {
         restaurant.setDescription(description);
         
         Restaurant savedrestaurant = restaurantRepository.save(restaurant);
+        restaurantSearchService.indexed(List.of(savedrestaurant));
         return savedrestaurant;
     }
 
@@ -92,13 +218,31 @@ public class RestaurantsController extends ApiController {
     @DeleteMapping("")
     public Object deleteRestaurant(
             @Parameter(name = "id") @RequestParam Long id) {
-        Restaurant restaurant = restaurantRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
-
-        restaurantRepository.delete(restaurant);
+        if (restaurantRepository.deleteRowById(id) == 0) {
+            throw new EntityNotFoundException(Restaurant.class, id);
+        }
+        tableVersions.changed(Restaurant.class);
+        restaurantSearchService.removed(List.of(id));
         return genericMessage("Restaurant with id %s deleted".formatted(id));
     }
 
+    /**
+     * Delete many restaurants in one request, with a single DELETE statement.
+     * 
+     * @param ids ids of the restaurants to delete (at most 1000)
+     * @return a message with the number of restaurants deleted
+     */
+    @Operation(summary= "Delete many restaurants at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteRestaurantsBulk(
+            @Parameter(name="ids", description="comma separated ids") @RequestParam List<Long> ids) {
+        int deleted = restaurantRepository.deleteRowsByIdIn(bulkDeleteKeys(ids));
+        tableVersions.changed(Restaurant.class);
+        restaurantSearchService.removed(ids);
+        return genericMessage("%d Restaurant rows deleted".formatted(deleted));
+    }
+
     /**
      * Update a single restaurant. Accessible only to users with the role "ROLE_ADMIN".
      * @param id id of the restaurant to update
@@ -119,7 +263,28 @@ public class RestaurantsController extends ApiController {
         restaurant.setDescription(incoming.getDescription());
 
         restaurantRepository.save(restaurant);
+        restaurantSearchService.indexed(List.of(restaurant));
 
         return restaurant;
     }
+
+    /**
+     * Update some fields of a single restaurant with one UPDATE statement.  The body
+     * must include the version of the restaurant the client last read; if it has
+     * been updated since, nothing is changed and the response is 409 Conflict.
+     * 
+     * @param id      id of the restaurant to update
+     * @param changes the fields to change, plus "version"
+     * @return the updated restaurant
+     */
+    @Operation(summary= "Update some fields of a single restaurant")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public Restaurant patchRestaurant(
+            @Parameter(name="id") @RequestParam Long id,
+            @RequestBody Map<String, Object> changes) {
+        Restaurant restaurant = patchService.patch(Restaurant.class, id, changes, PATCHABLE_FIELDS);
+        restaurantSearchService.indexed(List.of(restaurant));
+        return restaurant;
+    }
 }
\ No newline at end of file
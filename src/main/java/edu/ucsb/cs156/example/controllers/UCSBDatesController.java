@@ -1,9 +1,19 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.BadRequestException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.jobs.ImportJob;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.CollectionResponseCache;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.TableVersions;
+import edu.ucsb.cs156.example.services.PatchService;
+import edu.ucsb.cs156.example.services.UpcomingUCSBDates;
+import edu.ucsb.cs156.example.services.jobs.JobService;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -12,20 +22,36 @@ import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 
 /**
  * This is a REST controller for UCSBDates
@@ -40,34 +66,256 @@ public class UCSBDatesController extends ApiController {
     @Autowired
     UCSBDateRepository ucsbDateRepository;
 
+    @Autowired
+    EntityStreamService entityStreamService;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    CollectionResponseCache collectionResponseCache;
+
+    @Autowired
+    PatchService patchService;
+
+    @Autowired
+    UpcomingUCSBDates upcomingUCSBDates;
+
+    private static final Set<String> PATCHABLE_FIELDS = Set.of("quarterYYYYQ", "name", "localDateTime");
+
+    @Autowired
+    JobService jobService;
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Value("${app.import.chunk-size:500}")
+    int importChunkSize;
+
     /**
      * List all UCSB dates
      * 
-     * @return an iterable of UCSBDate
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @param unpaged if true, return all rows (old behavior)
+     * @param request the request, used to check If-None-Match
+     * @return a page of UCSBDate in id order, or all of them if unpaged
      */
     @Operation(summary= "List all ucsb dates")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDate> allUCSBDates() {
-        Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-        return dates;
+    public ResponseEntity<?> allUCSBDates(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size,
+            @Parameter(name="unpaged", description="return every row in one response, ignoring cursor and size") @RequestParam(defaultValue = "false") boolean unpaged,
+            WebRequest request) {
+        String etag = tableVersions.etag(UCSBDate.class);
+        String responseETag = unpaged ? collectionResponseCache.etag(etag, request) : etag;
+        if (isNotModified(request, responseETag)) {
+            return notModified(responseETag);
+        }
+        if (unpaged) {
+            return collectionResponseCache.response(UCSBDate.class, etag, ucsbDateRepository::findAll, request);
+        }
+        long after = cursor == null ? Long.MIN_VALUE : decodeIdCursor(cursor);
+        List<UCSBDate> rows = ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(after, pageLimit(size));
+        return withETag(keysetPage(rows, size, UCSBDate::getId), etag);
+    }
+
+    /**
+     * List the dates of one quarter, in date order.
+     * 
+     * @param yyyyq the quarter, e.g. 20241 for Winter 2024
+     * @param request the request, used to check If-None-Match
+     * @return the dates of the quarter
+     */
+    @Operation(summary= "List the dates of a quarter")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/quarter/{yyyyq}")
+    public ResponseEntity<List<UCSBDate>> quarterUCSBDates(
+            @Parameter(name="yyyyq", description="quarter in the format YYYYQ, e.g. 20241") @PathVariable String yyyyq,
+            WebRequest request) {
+        if (!yyyyq.matches("\\d{4}[1-4]")) {
+            throw new BadRequestException("quarter must look like 20241");
+        }
+        String etag = tableVersions.etag(UCSBDate.class);
+        if (isNotModified(request, etag)) {
+            return notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).body(ucsbDateRepository.findByQuarterYYYYQOrderByLocalDateTimeAscIdAsc(yyyyq));
+    }
+
+    /**
+     * List the dates in a range, in date order, a page at a time.
+     * 
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @return a page of UCSBDate in (localDateTime, id) order
+     */
+    @Operation(summary= "List the dates in a range")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/range")
+    public ResponseEntity<Iterable<UCSBDate>> rangeUCSBDates(
+            @Parameter(name="from", description="ISO date-time, e.g. 2024-01-01T00:00:00 (inclusive)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(name="to", description="ISO date-time, e.g. 2024-04-01T00:00:00 (exclusive)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size) {
+        RangePosition after = cursor == null ? new RangePosition(from, Long.MIN_VALUE) : decodeRangeCursor(cursor);
+        List<UCSBDate> rows = ucsbDateRepository.findInRange(from, to, after.localDateTime(), after.id(), pageLimit(size));
+        return keysetPage(rows, size, d -> d.getLocalDateTime() + "/" + d.getId());
+    }
+
+    private record RangePosition(LocalDateTime localDateTime, long id) {
+    }
+
+    private RangePosition decodeRangeCursor(String cursor) {
+        String[] key = decodeCursor(cursor).split("/");
+        try {
+            if (key.length == 2) {
+                return new RangePosition(LocalDateTime.parse(key[0]), Long.parseLong(key[1]));
+            }
+        } catch (DateTimeParseException | NumberFormatException e) {
+            // reported below
+        }
+        throw new BadRequestException("Invalid cursor: %s".formatted(cursor));
+    }
+
+    /**
+     * List the dates of the current quarter and every later quarter.  The list is
+     * kept in memory until the next quarter starts or a date is changed, so this
+     * does not query the database.
+     * 
+     * @return the current quarter and its dates
+     */
+    @Operation(summary= "List the dates of the current and upcoming quarters")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/upcoming")
+    public UpcomingUCSBDates.Upcoming upcomingUCSBDates() {
+        return upcomingUCSBDates.upcoming();
+    }
+
+    /**
+     * Stream all UCSBDate rows as a JSON array, in id order.  Rows are written
+     * as they are read from the database, so memory use does not depend on the
+     * size of the table.
+     * 
+     * @return a streaming JSON array of all UCSBDate rows
+     */
+    @Operation(summary= "Stream all UCSBDate rows as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/all/stream")
+    public ResponseEntity<StreamingResponseBody> allUCSBDatesStream() {
+        return entityStreamService.jsonArray(ucsbDateRepository::streamAll);
+    }
+
+    /**
+     * Export all ucsb dates as CSV or NDJSON.  Rows are written as they are read
+     * from the database, so this works for tables of any size.
+     * 
+     * @param format  csv (with a header row) or ndjson
+     * @param columns properties to include, in order; omit for all of them
+     * @param gzip    if true, the body is gzipped (Content-Encoding: gzip)
+     * @return a streaming download of every UCSBDate row
+     */
+    @Operation(summary= "Export all ucsb dates as CSV or NDJSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUCSBDates(
+            @Parameter(name="format", description="csv or ndjson") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(name="columns", description="comma separated properties to include (default: all)") @RequestParam(required = false) List<String> columns,
+            @Parameter(name="gzip", description="gzip the response") @RequestParam(defaultValue = "false") boolean gzip) {
+        return entityStreamService.export("ucsb-dates", UCSBDate.class, ucsbDateRepository::streamAll, format, columns, gzip);
+    }
+
+    /**
+     * Create many ucsb dates in one request.  The rows are saved in a single
+     * transaction, and Hibernate sends the inserts to the database in JDBC batches.
+     * 
+     * @param rows the ucsb dates to create (any ids in the request are ignored)
+     * @return the saved ucsb dates
+     */
+    @Operation(summary= "Create many ucsb dates at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public Iterable<UCSBDate> postUCSBDateBulk(
+            @RequestBody List<UCSBDate> rows) {
+        rows.forEach(this::resetForCreate);
+        return ucsbDateRepository.saveAll(rows);
+    }
+
+    /**
+     * Import ucsb dates from an uploaded CSV or NDJSON file.  The file is read and
+     * saved in chunks by a background job; use the Jobs API to follow its progress.
+     * 
+     * @param file   CSV file (with a header row of property names) or NDJSON file
+     * @param format csv or ndjson; if omitted, it is taken from the file extension
+     * @return the job that is importing the file
+     * @throws IOException if the upload cannot be stored
+     */
+    @Operation(summary= "Import ucsb dates from a CSV or NDJSON file (runs as a job)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Job importUCSBDates(
+            @Parameter(name="file") @RequestParam("file") MultipartFile file,
+            @Parameter(name="format", description="csv or ndjson (default: from the file extension)") @RequestParam(required = false) String format)
+            throws IOException {
+        ImportJob.Format importFormat = ImportJob.Format.of(format, file.getOriginalFilename());
+        ImportJob<UCSBDate> importJob = ImportJob.<UCSBDate>builder()
+                .file(ImportJob.storeUpload(file, importFormat))
+                .format(importFormat)
+                .type(UCSBDate.class)
+                .repository(ucsbDateRepository)
+                .mapper(mapper)
+                .chunkSize(importChunkSize)
+                .validator(UCSBDatesController::validateForImport)
+                .prepare(this::resetForCreate)
+                .build();
+        return jobService.runAsJob(importJob);
+    }
+
+    private static String validateForImport(UCSBDate row) {
+        if (!StringUtils.hasText(row.getQuarterYYYYQ())) {
+            return "quarterYYYYQ is required";
+        }
+        if (!StringUtils.hasText(row.getName())) {
+            return "name is required";
+        }
+        if (!row.getQuarterYYYYQ().matches("\\d{4}[1-4]")) {
+            return "quarterYYYYQ must look like 20241";
+        }
+        if (row.getLocalDateTime() == null) {
+            return "localDateTime is required";
+        }
+        return null;
     }
 
     /**
      * Get a single date by id
      * 
      * @param id the id of the date
+     * @param request the request, used to check If-None-Match
      * @return a UCSBDate
      */
     @Operation(summary= "Get a single date")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBDate getById(
-            @Parameter(name="id") @RequestParam Long id) {
+    public ResponseEntity<UCSBDate> getById(
+            @Parameter(name="id") @RequestParam Long id,
+            WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            long version = ucsbDateRepository.findVersionById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+            String etag = rowETag(id, version);
+            if (isNotModified(request, etag)) {
+                return notModified(etag);
+            }
+        }
         UCSBDate ucsbDate = ucsbDateRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
 
-        return ucsbDate;
+        return ResponseEntity.ok().eTag(rowETag(id, ucsbDate.getVersion())).body(ucsbDate);
     }
 
     /**
@@ -113,13 +361,29 @@ public class UCSBDatesController extends ApiController {
     @DeleteMapping("")
     public Object deleteUCSBDate(
             @Parameter(name="id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-        ucsbDateRepository.delete(ucsbDate);
+        if (ucsbDateRepository.deleteRowById(id) == 0) {
+            throw new EntityNotFoundException(UCSBDate.class, id);
+        }
+        tableVersions.changed(UCSBDate.class);
         return genericMessage("UCSBDate with id %s deleted".formatted(id));
     }
 
+    /**
+     * Delete many ucsb dates in one request, with a single DELETE statement.
+     * 
+     * @param ids ids of the ucsb dates to delete (at most 1000)
+     * @return a message with the number of ucsb dates deleted
+     */
+    @Operation(summary= "Delete many ucsb dates at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteUCSBDatesBulk(
+            @Parameter(name="ids", description="comma separated ids") @RequestParam List<Long> ids) {
+        int deleted = ucsbDateRepository.deleteRowsByIdIn(bulkDeleteKeys(ids));
+        tableVersions.changed(UCSBDate.class);
+        return genericMessage("%d UCSBDate rows deleted".formatted(deleted));
+    }
+
     /**
      * Update a single date
      * 
@@ -145,4 +409,22 @@ public class UCSBDatesController extends ApiController {
 
         return ucsbDate;
     }
+
+    /**
+     * Update some fields of a single ucsb date with one UPDATE statement.  The body
+     * must include the version of the ucsb date the client last read; if it has
+     * been updated since, nothing is changed and the response is 409 Conflict.
+     * 
+     * @param id      id of the ucsb date to update
+     * @param changes the fields to change, plus "version"
+     * @return the updated ucsb date
+     */
+    @Operation(summary= "Update some fields of a single ucsb date")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public UCSBDate patchUCSBDate(
+            @Parameter(name="id") @RequestParam Long id,
+            @RequestBody Map<String, Object> changes) {
+        return patchService.patch(UCSBDate.class, id, changes, PATCHABLE_FIELDS);
+    }
 }
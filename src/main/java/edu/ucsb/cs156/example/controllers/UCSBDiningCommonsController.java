@@ -1,16 +1,29 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.BadRequestException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.jobs.ImportJob;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.CollectionResponseCache;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.NearestDiningCommons;
+import edu.ucsb.cs156.example.services.TableVersions;
+import edu.ucsb.cs156.example.services.jobs.JobService;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -19,9 +32,15 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 
+import java.io.IOException;
+import java.util.List;
+
 /**
  * This is a REST controller for UCSBDiningCommons
  */
@@ -35,32 +54,192 @@ public class UCSBDiningCommonsController extends ApiController {
     @Autowired
     UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+    @Autowired
+    EntityStreamService entityStreamService;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    CollectionResponseCache collectionResponseCache;
+
+    @Autowired
+    NearestDiningCommons nearestDiningCommons;
+
+    @Autowired
+    JobService jobService;
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Value("${app.import.chunk-size:500}")
+    int importChunkSize;
+
     /**
      * THis method returns a list of all ucsbdiningcommons.
-     * @return a list of all ucsbdiningcommons
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @param unpaged if true, return all rows (old behavior)
+     * @param request the request, used to check If-None-Match
+     * @return a page of UCSBDiningCommons in code order, or all of them if unpaged
      */
     @Operation(summary= "List all ucsb dining commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommons> allCommonss() {
-        Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-        return commons;
+    public ResponseEntity<?> allCommonss(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size,
+            @Parameter(name="unpaged", description="return every row in one response, ignoring cursor and size") @RequestParam(defaultValue = "false") boolean unpaged,
+            WebRequest request) {
+        String etag = tableVersions.etag(UCSBDiningCommons.class);
+        String responseETag = unpaged ? collectionResponseCache.etag(etag, request) : etag;
+        if (isNotModified(request, responseETag)) {
+            return notModified(responseETag);
+        }
+        if (unpaged) {
+            return collectionResponseCache.response(UCSBDiningCommons.class, etag, ucsbDiningCommonsRepository::findAll, request);
+        }
+        String after = cursor == null ? "" : decodeCursor(cursor);
+        List<UCSBDiningCommons> rows = ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(after, pageLimit(size));
+        return withETag(keysetPage(rows, size, UCSBDiningCommons::getCode), etag);
+    }
+
+    /**
+     * Stream all UCSBDiningCommons rows as a JSON array, in code order.  Rows are written
+     * as they are read from the database, so memory use does not depend on the
+     * size of the table.
+     * 
+     * @return a streaming JSON array of all UCSBDiningCommons rows
+     */
+    @Operation(summary= "Stream all UCSBDiningCommons rows as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/all/stream")
+    public ResponseEntity<StreamingResponseBody> allCommonssStream() {
+        return entityStreamService.jsonArray(ucsbDiningCommonsRepository::streamAll);
+    }
+
+    /**
+     * Export all dining commons as CSV or NDJSON.  Rows are written as they are read
+     * from the database, so this works for tables of any size.
+     * 
+     * @param format  csv (with a header row) or ndjson
+     * @param columns properties to include, in order; omit for all of them
+     * @param gzip    if true, the body is gzipped (Content-Encoding: gzip)
+     * @return a streaming download of every UCSBDiningCommons row
+     */
+    @Operation(summary= "Export all dining commons as CSV or NDJSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportCommons(
+            @Parameter(name="format", description="csv or ndjson") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(name="columns", description="comma separated properties to include (default: all)") @RequestParam(required = false) List<String> columns,
+            @Parameter(name="gzip", description="gzip the response") @RequestParam(defaultValue = "false") boolean gzip) {
+        return entityStreamService.export("dining-commons", UCSBDiningCommons.class, ucsbDiningCommonsRepository::streamAll, format, columns, gzip);
+    }
+
+    /**
+     * Create many ucsb dining commons in one request.  The rows are saved in a single
+     * transaction, and Hibernate sends the inserts to the database in JDBC batches.
+     * 
+     * @param rows the ucsb dining commons to create or replace, keyed by code
+     * @return the saved ucsb dining commons
+     */
+    @Operation(summary= "Create many ucsb dining commons at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public Iterable<UCSBDiningCommons> postUCSBDiningCommonsBulk(
+            @RequestBody List<UCSBDiningCommons> rows) {
+        return ucsbDiningCommonsRepository.saveAll(rows);
+    }
+
+    /**
+     * Import ucsb dining commons from an uploaded CSV or NDJSON file.  The file is read and
+     * saved in chunks by a background job; use the Jobs API to follow its progress.
+     * 
+     * @param file   CSV file (with a header row of property names) or NDJSON file
+     * @param format csv or ndjson; if omitted, it is taken from the file extension
+     * @return the job that is importing the file
+     * @throws IOException if the upload cannot be stored
+     */
+    @Operation(summary= "Import ucsb dining commons from a CSV or NDJSON file (runs as a job)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Job importCommons(
+            @Parameter(name="file") @RequestParam("file") MultipartFile file,
+            @Parameter(name="format", description="csv or ndjson (default: from the file extension)") @RequestParam(required = false) String format)
+            throws IOException {
+        ImportJob.Format importFormat = ImportJob.Format.of(format, file.getOriginalFilename());
+        ImportJob<UCSBDiningCommons> importJob = ImportJob.<UCSBDiningCommons>builder()
+                .file(ImportJob.storeUpload(file, importFormat))
+                .format(importFormat)
+                .type(UCSBDiningCommons.class)
+                .repository(ucsbDiningCommonsRepository)
+                .mapper(mapper)
+                .chunkSize(importChunkSize)
+                .validator(UCSBDiningCommonsController::validateForImport)
+                .build();
+        return jobService.runAsJob(importJob);
+    }
+
+    private static String validateForImport(UCSBDiningCommons row) {
+        if (!StringUtils.hasText(row.getCode())) {
+            return "code is required";
+        }
+        if (!StringUtils.hasText(row.getName())) {
+            return "name is required";
+        }
+        return null;
     }
 
     /**
      * This method returns a single diningcommons.
      * @param code code of the diningcommons
+     * @param request the request, used to check If-None-Match
      * @return a single diningcommons
      */
     @Operation(summary= "Get a single commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBDiningCommons getById(
-            @Parameter(name="code") @RequestParam String code) {
+    public ResponseEntity<UCSBDiningCommons> getById(
+            @Parameter(name="code") @RequestParam String code,
+            WebRequest request) {
+        String etag = tableVersions.etag(UCSBDiningCommons.class);
+        if (isNotModified(request, etag)) {
+            return notModified(etag);
+        }
         UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
-        return commons;
+        return ResponseEntity.ok().eTag(etag).body(commons);
+    }
+
+    /**
+     * Find the dining commons nearest to a location, nearest first, with their
+     * great-circle distances.  Commons without a latitude and longitude are never
+     * returned.
+     * 
+     * @param lat latitude of the location, in degrees
+     * @param lon longitude of the location, in degrees
+     * @param k the maximum number of commons to return (capped at 500)
+     * @param hasSackMeal if given, only commons with (true) or without (false) sack meals
+     * @param hasTakeOutMeal if given, only commons with (true) or without (false) take out meals
+     * @param hasDiningCam if given, only commons with (true) or without (false) a dining cam
+     * @return the nearest commons, with distanceKm
+     */
+    @Operation(summary= "Find the dining commons nearest to a location")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/nearest")
+    public List<NearestDiningCommons.Nearby> nearestCommons(
+            @Parameter(name="lat", description="latitude, -90 to 90") @RequestParam double lat,
+            @Parameter(name="lon", description="longitude, -180 to 180") @RequestParam double lon,
+            @Parameter(name="k", description="number of commons to return (default 5, at most 500)") @RequestParam(defaultValue = "5") int k,
+            @Parameter(name="hasSackMeal") @RequestParam(required = false) Boolean hasSackMeal,
+            @Parameter(name="hasTakeOutMeal") @RequestParam(required = false) Boolean hasTakeOutMeal,
+            @Parameter(name="hasDiningCam") @RequestParam(required = false) Boolean hasDiningCam) {
+        if (!(lat >= -90 && lat <= 90) || !(lon >= -180 && lon <= 180)) {
+            throw new BadRequestException("lat must be between -90 and 90 and lon between -180 and 180");
+        }
+        return nearestDiningCommons.nearest(lat, lon, pageSize(k), hasSackMeal, hasTakeOutMeal, hasDiningCam);
     }
 
     /**
@@ -112,13 +291,29 @@ public class UCSBDiningCommonsController extends ApiController {
     @DeleteMapping("")
     public Object deleteCommons(
             @Parameter(name="code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-        ucsbDiningCommonsRepository.delete(commons);
+        if (ucsbDiningCommonsRepository.deleteRowById(code) == 0) {
+            throw new EntityNotFoundException(UCSBDiningCommons.class, code);
+        }
+        tableVersions.changed(UCSBDiningCommons.class);
         return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
     }
 
+    /**
+     * Delete many dining commons in one request, with a single DELETE statement.
+     * 
+     * @param codes codes of the dining commons to delete (at most 1000)
+     * @return a message with the number of dining commons deleted
+     */
+    @Operation(summary= "Delete many dining commons at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteCommonsBulk(
+            @Parameter(name="codes", description="comma separated codes") @RequestParam List<String> codes) {
+        int deleted = ucsbDiningCommonsRepository.deleteRowsByIdIn(bulkDeleteKeys(codes));
+        tableVersions.changed(UCSBDiningCommons.class);
+        return genericMessage("%d UCSBDiningCommons rows deleted".formatted(deleted));
+    }
+
     /**
      * Update a single diningcommons. Accessible only to users with the role "ROLE_ADMIN".
      * @param code code of the diningcommons
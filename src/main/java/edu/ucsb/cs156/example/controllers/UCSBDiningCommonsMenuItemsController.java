@@ -2,27 +2,50 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.jobs.ImportJob;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.CollectionResponseCache;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.TableVersions;
+import edu.ucsb.cs156.example.services.PatchService;
+import edu.ucsb.cs156.example.services.TopRatedMenuItems;
+import edu.ucsb.cs156.example.services.jobs.JobService;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * This is a REST controller for UCSBDiningCommonsMenuItems
@@ -37,17 +60,149 @@ public class UCSBDiningCommonsMenuItemsController extends ApiController {
     @Autowired
     UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
 
+    @Autowired
+    EntityStreamService entityStreamService;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    CollectionResponseCache collectionResponseCache;
+
+    @Autowired
+    PatchService patchService;
+
+    @Autowired
+    TopRatedMenuItems topRatedMenuItems;
+
+    private static final Set<String> PATCHABLE_FIELDS = Set.of("diningCommonsCode", "name", "station");
+
+    @Autowired
+    JobService jobService;
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Value("${app.import.chunk-size:500}")
+    int importChunkSize;
+
     /**
      * List all UCSB Dining Commons Menu Items
      * 
-     * @return an iterable of UCSBDiningCommonsMenuItems
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @param unpaged if true, return all rows (old behavior)
+     * @param request the request, used to check If-None-Match
+     * @return a page of UCSBDiningCommonsMenuItem in id order, or all of them if unpaged
      */
     @Operation(summary = "List all UCSB Dining Commons Menu Items")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommonsMenuItem> allUCSBDiningCommonsMenuItems() {
-        Iterable<UCSBDiningCommonsMenuItem> menuItems = ucsbDiningCommonsMenuItemRepository.findAll();
-        return menuItems;
+    public ResponseEntity<?> allUCSBDiningCommonsMenuItems(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size,
+            @Parameter(name="unpaged", description="return every row in one response, ignoring cursor and size") @RequestParam(defaultValue = "false") boolean unpaged,
+            WebRequest request) {
+        String etag = tableVersions.etag(UCSBDiningCommonsMenuItem.class);
+        String responseETag = unpaged ? collectionResponseCache.etag(etag, request) : etag;
+        if (isNotModified(request, responseETag)) {
+            return notModified(responseETag);
+        }
+        if (unpaged) {
+            return collectionResponseCache.response(UCSBDiningCommonsMenuItem.class, etag, ucsbDiningCommonsMenuItemRepository::findAll, request);
+        }
+        long after = cursor == null ? Long.MIN_VALUE : decodeIdCursor(cursor);
+        List<UCSBDiningCommonsMenuItem> rows = ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(after, pageLimit(size));
+        return withETag(keysetPage(rows, size, UCSBDiningCommonsMenuItem::getId), etag);
+    }
+
+    /**
+     * Stream all UCSBDiningCommonsMenuItem rows as a JSON array, in id order.  Rows are written
+     * as they are read from the database, so memory use does not depend on the
+     * size of the table.
+     * 
+     * @return a streaming JSON array of all UCSBDiningCommonsMenuItem rows
+     */
+    @Operation(summary= "Stream all UCSBDiningCommonsMenuItem rows as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/all/stream")
+    public ResponseEntity<StreamingResponseBody> allUCSBDiningCommonsMenuItemsStream() {
+        return entityStreamService.jsonArray(ucsbDiningCommonsMenuItemRepository::streamAll);
+    }
+
+    /**
+     * Export all dining commons menu items as CSV or NDJSON.  Rows are written as they are read
+     * from the database, so this works for tables of any size.
+     * 
+     * @param format  csv (with a header row) or ndjson
+     * @param columns properties to include, in order; omit for all of them
+     * @param gzip    if true, the body is gzipped (Content-Encoding: gzip)
+     * @return a streaming download of every UCSBDiningCommonsMenuItem row
+     */
+    @Operation(summary= "Export all dining commons menu items as CSV or NDJSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUCSBDiningCommonsMenuItems(
+            @Parameter(name="format", description="csv or ndjson") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(name="columns", description="comma separated properties to include (default: all)") @RequestParam(required = false) List<String> columns,
+            @Parameter(name="gzip", description="gzip the response") @RequestParam(defaultValue = "false") boolean gzip) {
+        return entityStreamService.export("dining-commons-menu-items", UCSBDiningCommonsMenuItem.class, ucsbDiningCommonsMenuItemRepository::streamAll, format, columns, gzip);
+    }
+
+    /**
+     * Create many ucsb dining commons menu items in one request.  The rows are saved in a single
+     * transaction, and Hibernate sends the inserts to the database in JDBC batches.
+     * 
+     * @param rows the ucsb dining commons menu items to create (any ids in the request are ignored)
+     * @return the saved ucsb dining commons menu items
+     */
+    @Operation(summary= "Create many ucsb dining commons menu items at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public Iterable<UCSBDiningCommonsMenuItem> postUCSBDiningCommonsMenuItemBulk(
+            @RequestBody List<UCSBDiningCommonsMenuItem> rows) {
+        rows.forEach(this::resetForCreate);
+        return ucsbDiningCommonsMenuItemRepository.saveAll(rows);
+    }
+
+    /**
+     * Import ucsb dining commons menu items from an uploaded CSV or NDJSON file.  The file is read and
+     * saved in chunks by a background job; use the Jobs API to follow its progress.
+     * 
+     * @param file   CSV file (with a header row of property names) or NDJSON file
+     * @param format csv or ndjson; if omitted, it is taken from the file extension
+     * @return the job that is importing the file
+     * @throws IOException if the upload cannot be stored
+     */
+    @Operation(summary= "Import ucsb dining commons menu items from a CSV or NDJSON file (runs as a job)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Job importMenuItems(
+            @Parameter(name="file") @RequestParam("file") MultipartFile file,
+            @Parameter(name="format", description="csv or ndjson (default: from the file extension)") @RequestParam(required = false) String format)
+            throws IOException {
+        ImportJob.Format importFormat = ImportJob.Format.of(format, file.getOriginalFilename());
+        ImportJob<UCSBDiningCommonsMenuItem> importJob = ImportJob.<UCSBDiningCommonsMenuItem>builder()
+                .file(ImportJob.storeUpload(file, importFormat))
+                .format(importFormat)
+                .type(UCSBDiningCommonsMenuItem.class)
+                .repository(ucsbDiningCommonsMenuItemRepository)
+                .mapper(mapper)
+                .chunkSize(importChunkSize)
+                .validator(UCSBDiningCommonsMenuItemsController::validateForImport)
+                .prepare(this::resetForCreate)
+                .build();
+        return jobService.runAsJob(importJob);
+    }
+
+    private static String validateForImport(UCSBDiningCommonsMenuItem row) {
+        if (!StringUtils.hasText(row.getDiningCommonsCode())) {
+            return "diningCommonsCode is required";
+        }
+        if (!StringUtils.hasText(row.getName())) {
+            return "name is required";
+        }
+        return null;
     }
 
     /**
@@ -87,17 +242,27 @@ public class UCSBDiningCommonsMenuItemsController extends ApiController {
      * Get a single UCSB Dining Commons Menu Item by id
      * 
      * @param id the id of the UCSB Dining Commons Menu Item
+     * @param request the request, used to check If-None-Match
      * @return a UCSB Dining Commons Menu Item
      */
     @Operation(summary = "Get a single UCSB Dining Commons Menu Item")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBDiningCommonsMenuItem getById(
-            @Parameter(name = "id") @RequestParam Long id) {
+    public ResponseEntity<UCSBDiningCommonsMenuItem> getById(
+            @Parameter(name = "id") @RequestParam Long id,
+            WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            long version = ucsbDiningCommonsMenuItemRepository.findVersionById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
+            String etag = rowETag(id, version);
+            if (isNotModified(request, etag)) {
+                return notModified(etag);
+            }
+        }
         UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
 
-        return ucsbDiningCommonsMenuItem;
+        return ResponseEntity.ok().eTag(rowETag(id, ucsbDiningCommonsMenuItem.getVersion())).body(ucsbDiningCommonsMenuItem);
     }
 
     /**
@@ -126,6 +291,24 @@ public class UCSBDiningCommonsMenuItemsController extends ApiController {
         return ucsbDiningCommonsMenuItem;
     }
 
+    /**
+     * Update some fields of a single ucsb dining commons menu item with one UPDATE statement.  The body
+     * must include the version of the ucsb dining commons menu item the client last read; if it has
+     * been updated since, nothing is changed and the response is 409 Conflict.
+     * 
+     * @param id      id of the ucsb dining commons menu item to update
+     * @param changes the fields to change, plus "version"
+     * @return the updated ucsb dining commons menu item
+     */
+    @Operation(summary= "Update some fields of a single ucsb dining commons menu item")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public UCSBDiningCommonsMenuItem patchUCSBDiningCommonsMenuItem(
+            @Parameter(name="id") @RequestParam Long id,
+            @RequestBody Map<String, Object> changes) {
+        return patchService.patch(UCSBDiningCommonsMenuItem.class, id, changes, PATCHABLE_FIELDS);
+    }
+
     /**
      * Delete a UCSB Dining Commons Menu Item
      * 
@@ -137,11 +320,44 @@ public class UCSBDiningCommonsMenuItemsController extends ApiController {
     @DeleteMapping("")
     public Object deleteUCSBDiningCommonsMenuItem(
             @Parameter(name = "id") @RequestParam Long id) {
+        if (ucsbDiningCommonsMenuItemRepository.deleteRowById(id) == 0) {
+            throw new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id);
+        }
+        tableVersions.changed(UCSBDiningCommonsMenuItem.class);
+        return genericMessage("UCSBDiningCommonsMenuItem with id %s deleted".formatted(id));
+    }
 
-        UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
+    /**
+     * Delete many dining commons menu items in one request, with a single DELETE statement.
+     * 
+     * @param ids ids of the dining commons menu items to delete (at most 1000)
+     * @return a message with the number of dining commons menu items deleted
+     */
+    @Operation(summary= "Delete many dining commons menu items at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteUCSBDiningCommonsMenuItemsBulk(
+            @Parameter(name="ids", description="comma separated ids") @RequestParam List<Long> ids) {
+        int deleted = ucsbDiningCommonsMenuItemRepository.deleteRowsByIdIn(bulkDeleteKeys(ids));
+        tableVersions.changed(UCSBDiningCommonsMenuItem.class);
+        return genericMessage("%d UCSBDiningCommonsMenuItem rows deleted".formatted(deleted));
+    }
 
-        ucsbDiningCommonsMenuItemRepository.delete(ucsbDiningCommonsMenuItem);
-        return genericMessage("UCSBDiningCommonsMenuItem with id %s deleted".formatted(id));
+    /**
+     * List the best rated menu items of a dining commons, from lists kept in memory
+     * and updated as reviews change.  Only items with at least
+     * app.menu-items.top-rated.min-reviews reviews are included.
+     * 
+     * @param diningCommonsCode code of the dining commons, e.g. carrillo
+     * @param limit the maximum number of items to return (at most 500)
+     * @return the items, with their review count and average stars, best first
+     */
+    @Operation(summary = "List the best rated menu items of a dining commons")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/toprated")
+    public List<TopRatedMenuItems.RatedItem> topRatedMenuItems(
+            @Parameter(name="diningCommonsCode") @RequestParam String diningCommonsCode,
+            @Parameter(name="limit", description="number of items (default 10, at most 500)") @RequestParam(defaultValue = "10") int limit) {
+        return topRatedMenuItems.top(diningCommonsCode, pageSize(limit));
     }
 }
\ No newline at end of file
@@ -2,16 +2,29 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.BadRequestException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.jobs.ImportJob;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.CollectionResponseCache;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.OrganizationSuggestions;
+import edu.ucsb.cs156.example.services.TableVersions;
+import edu.ucsb.cs156.example.services.jobs.JobService;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -20,11 +33,17 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.nimbusds.openid.connect.sdk.assurance.evidences.Organization;
 
 import jakarta.validation.Valid;
 
+import java.io.IOException;
+import java.util.List;
+
 
 /**
  * This is a REST controller for UCSBOrganizations
@@ -39,32 +58,187 @@ public class UCSBOrganizationController extends ApiController {
     @Autowired
     UCSBOrganizationRepository ucsbOrganizationRepository;
 
+    @Autowired
+    EntityStreamService entityStreamService;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    CollectionResponseCache collectionResponseCache;
+
+    @Autowired
+    OrganizationSuggestions organizationSuggestions;
+
+    @Autowired
+    JobService jobService;
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Value("${app.import.chunk-size:500}")
+    int importChunkSize;
+
     /**
      * This method returns a list of all ucsborganizations.
-     * @return a list of all ucsborganizations
+     * @param cursor cursor for the next page, from the X-Next-Cursor header
+     * @param size page size (capped at 500)
+     * @param unpaged if true, return all rows (old behavior)
+     * @param request the request, used to check If-None-Match
+     * @return a page of UCSBOrganization in orgCode order, or all of them if unpaged
      */
     @Operation(summary= "List all ucsb oranizations")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBOrganization> allOrganizations() {
-        Iterable<UCSBOrganization> organization = ucsbOrganizationRepository.findAll();
-        return organization;
+    public ResponseEntity<?> allOrganizations(
+            @Parameter(name="cursor", description="cursor from the X-Next-Cursor header of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="size", description="page size (default 100, at most 500)") @RequestParam(defaultValue = "100") int size,
+            @Parameter(name="unpaged", description="return every row in one response, ignoring cursor and size") @RequestParam(defaultValue = "false") boolean unpaged,
+            WebRequest request) {
+        String etag = tableVersions.etag(UCSBOrganization.class);
+        String responseETag = unpaged ? collectionResponseCache.etag(etag, request) : etag;
+        if (isNotModified(request, responseETag)) {
+            return notModified(responseETag);
+        }
+        if (unpaged) {
+            return collectionResponseCache.response(UCSBOrganization.class, etag, ucsbOrganizationRepository::findAll, request);
+        }
+        String after = cursor == null ? "" : decodeCursor(cursor);
+        List<UCSBOrganization> rows = ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(after, pageLimit(size));
+        return withETag(keysetPage(rows, size, UCSBOrganization::getOrgCode), etag);
+    }
+
+    /**
+     * Suggest organizations for a typed prefix (for typeahead).  An organization
+     * matches if its orgCode, orgTranslationShort or orgTranslation, or any word in
+     * a translation, starts with the prefix, ignoring case.  Suggestions come from
+     * an in-memory index, not the database.
+     * 
+     * @param prefix what the user has typed so far
+     * @param limit the maximum number of organizations to return (capped at 500)
+     * @param includeInactive whether to include inactive organizations
+     * @return the matching organizations
+     */
+    @Operation(summary= "Suggest organizations for a typed prefix")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/suggest")
+    public List<UCSBOrganization> suggestOrganizations(
+            @Parameter(name="prefix", description="start of an org code or name") @RequestParam String prefix,
+            @Parameter(name="limit", description="number of organizations to return (default 10, at most 500)") @RequestParam(defaultValue = "10") int limit,
+            @Parameter(name="includeInactive", description="include inactive organizations") @RequestParam(defaultValue = "false") boolean includeInactive) {
+        if (!StringUtils.hasText(prefix)) {
+            throw new BadRequestException("prefix must not be blank");
+        }
+        return organizationSuggestions.suggest(prefix, pageSize(limit), includeInactive);
+    }
+
+    /**
+     * Stream all UCSBOrganization rows as a JSON array, in orgCode order.  Rows are written
+     * as they are read from the database, so memory use does not depend on the
+     * size of the table.
+     * 
+     * @return a streaming JSON array of all UCSBOrganization rows
+     */
+    @Operation(summary= "Stream all UCSBOrganization rows as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/all/stream")
+    public ResponseEntity<StreamingResponseBody> allOrganizationsStream() {
+        return entityStreamService.jsonArray(ucsbOrganizationRepository::streamAll);
+    }
+
+    /**
+     * Export all ucsb organizations as CSV or NDJSON.  Rows are written as they are read
+     * from the database, so this works for tables of any size.
+     * 
+     * @param format  csv (with a header row) or ndjson
+     * @param columns properties to include, in order; omit for all of them
+     * @param gzip    if true, the body is gzipped (Content-Encoding: gzip)
+     * @return a streaming download of every UCSBOrganization row
+     */
+    @Operation(summary= "Export all ucsb organizations as CSV or NDJSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportOrganizations(
+            @Parameter(name="format", description="csv or ndjson") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(name="columns", description="comma separated properties to include (default: all)") @RequestParam(required = false) List<String> columns,
+            @Parameter(name="gzip", description="gzip the response") @RequestParam(defaultValue = "false") boolean gzip) {
+        return entityStreamService.export("ucsb-organizations", UCSBOrganization.class, ucsbOrganizationRepository::streamAll, format, columns, gzip);
+    }
+
+    /**
+     * Create many ucsb organizations in one request.  The rows are saved in a single
+     * transaction, and Hibernate sends the inserts to the database in JDBC batches.
+     * 
+     * @param rows the ucsb organizations to create or replace, keyed by orgCode
+     * @return the saved ucsb organizations
+     */
+    @Operation(summary= "Create many ucsb organizations at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public Iterable<UCSBOrganization> postUCSBOrganizationBulk(
+            @RequestBody List<UCSBOrganization> rows) {
+        return ucsbOrganizationRepository.saveAll(rows);
+    }
+
+    /**
+     * Import ucsb organizations from an uploaded CSV or NDJSON file.  The file is read and
+     * saved in chunks by a background job; use the Jobs API to follow its progress.
+     * 
+     * @param file   CSV file (with a header row of property names) or NDJSON file
+     * @param format csv or ndjson; if omitted, it is taken from the file extension
+     * @return the job that is importing the file
+     * @throws IOException if the upload cannot be stored
+     */
+    @Operation(summary= "Import ucsb organizations from a CSV or NDJSON file (runs as a job)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Job importOrganizations(
+            @Parameter(name="file") @RequestParam("file") MultipartFile file,
+            @Parameter(name="format", description="csv or ndjson (default: from the file extension)") @RequestParam(required = false) String format)
+            throws IOException {
+        ImportJob.Format importFormat = ImportJob.Format.of(format, file.getOriginalFilename());
+        ImportJob<UCSBOrganization> importJob = ImportJob.<UCSBOrganization>builder()
+                .file(ImportJob.storeUpload(file, importFormat))
+                .format(importFormat)
+                .type(UCSBOrganization.class)
+                .repository(ucsbOrganizationRepository)
+                .mapper(mapper)
+                .chunkSize(importChunkSize)
+                .validator(UCSBOrganizationController::validateForImport)
+                .build();
+        return jobService.runAsJob(importJob);
+    }
+
+    private static String validateForImport(UCSBOrganization row) {
+        if (!StringUtils.hasText(row.getOrgCode())) {
+            return "orgCode is required";
+        }
+        if (!StringUtils.hasText(row.getOrgTranslationShort())) {
+            return "orgTranslationShort is required";
+        }
+        return null;
     }
 
     /**
      * This method returns a single organization.
      * @param orgCode org code of the organization
+     * @param request the request, used to check If-None-Match
      * @return a single organization
      */
     @Operation(summary= "Get a single organization")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBOrganization getById(
-            @Parameter(name="orgCode") @RequestParam String orgCode) {
+    public ResponseEntity<UCSBOrganization> getById(
+            @Parameter(name="orgCode") @RequestParam String orgCode,
+            WebRequest request) {
+        String etag = tableVersions.etag(UCSBOrganization.class);
+        if (isNotModified(request, etag)) {
+            return notModified(etag);
+        }
         UCSBOrganization organization = ucsbOrganizationRepository.findById(orgCode)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
 
-        return organization;
+        return ResponseEntity.ok().eTag(etag).body(organization);
     }
 
     /**
@@ -107,13 +281,29 @@ public class UCSBOrganizationController extends ApiController {
     @DeleteMapping("")
     public Object deleteOrganization(
             @Parameter(name="orgCode") @RequestParam String orgCode) {
-        UCSBOrganization organization = ucsbOrganizationRepository.findById(orgCode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
-
-        ucsbOrganizationRepository.delete(organization);
+        if (ucsbOrganizationRepository.deleteRowById(orgCode) == 0) {
+            throw new EntityNotFoundException(UCSBOrganization.class, orgCode);
+        }
+        tableVersions.changed(UCSBOrganization.class);
         return genericMessage("UCSBOrganization with id %s deleted".formatted(orgCode));
     }
 
+    /**
+     * Delete many organizations in one request, with a single DELETE statement.
+     * 
+     * @param orgCodes orgCodes of the organizations to delete (at most 1000)
+     * @return a message with the number of organizations deleted
+     */
+    @Operation(summary= "Delete many organizations at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteOrganizationsBulk(
+            @Parameter(name="orgCodes", description="comma separated orgCodes") @RequestParam List<String> orgCodes) {
+        int deleted = ucsbOrganizationRepository.deleteRowsByIdIn(bulkDeleteKeys(orgCodes));
+        tableVersions.changed(UCSBOrganization.class);
+        return genericMessage("%d UCSBOrganization rows deleted".formatted(deleted));
+    }
+
     /**
      * Update a single organization. Accessible only to users with the role "ROLE_ADMIN".
      * @param orgCode code of the organization
@@ -1,33 +1,72 @@
 package edu.ucsb.cs156.example.controllers;
 
-import edu.ucsb.cs156.example.models.CurrentUser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.services.CurrentUserResponseCache;
+import edu.ucsb.cs156.example.services.CurrentUserResponseCache.CachedResponse;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpSession;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.security.Principal;
 
 /**
  * This is a REST controller for getting information about the current user.
+ * 
+ * The JSON is computed once per session and cached (see {@link CurrentUserResponseCache});
+ * clients that send the ETag back in {@code If-None-Match} get a 304.
  */
 
 @Tag(name="Current User Information")
 @RequestMapping("/api/currentUser")
 @RestController
 public class UserInfoController extends ApiController {
+
+  @Autowired
+  CurrentUserResponseCache currentUserResponseCache;
+
+  @Autowired
+  ObjectMapper mapper;
  
   /**
    * This method returns the current user.
-   * @return the current user
+   * @param session the user's session (injected by Spring)
+   * @param principal the authenticated principal (injected by Spring)
+   * @param webRequest the request, used to check If-None-Match (injected by Spring)
+   * @return the current user, as JSON
+   * @throws JsonProcessingException if there is an error processing the JSON
    */
 
   @Operation(summary= "Get information about current user")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public CurrentUser getCurrentUser() {
-    return super.getCurrentUser();
+  public ResponseEntity<byte[]> getCurrentUser(HttpSession session, Principal principal, WebRequest webRequest)
+      throws JsonProcessingException {
+    CachedResponse cached = currentUserResponseCache.get(session, principal.getName()).orElse(null);
+    if (cached == null) {
+      long generation = currentUserResponseCache.getGeneration();
+      byte[] body = mapper.writeValueAsBytes(super.getCurrentUser());
+      cached = currentUserResponseCache.put(session, generation, principal.getName(), body);
+    }
+
+    if (webRequest.checkNotModified(cached.etag())) {
+      return null;
+    }
+    return ResponseEntity.ok()
+        .cacheControl(CacheControl.noCache().cachePrivate())
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(cached.body());
   }
 }
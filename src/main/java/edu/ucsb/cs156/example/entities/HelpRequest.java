@@ -1,9 +1,13 @@
 package edu.ucsb.cs156.example.entities;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
+import edu.ucsb.cs156.example.services.TableVersionsListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,9 +24,11 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Builder
 @Entity(name = "helprequests")
-public class HelpRequest {
+@EntityListeners(TableVersionsListener.class)
+public class HelpRequest implements VersionedEntity {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "helprequests_seq")
+  @SequenceGenerator(name = "helprequests_seq", sequenceName = "HELPREQUESTS_SEQ", allocationSize = 50)
   private long id;
 
 private String requesterEmail;
@@ -31,4 +37,7 @@ private String tableOrBreakoutRoom;
 private ZonedDateTime requestTime;
 private String explanation;
 private boolean solved;
+
+  @Version
+  private long version;
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that represents the ratings of one menu item: how many
+ * reviews it has, the total of their stars, and how many gave it each of 1 to 5
+ * stars.
+ *
+ * The rows are maintained by MenuItemRatingService as reviews are created,
+ * updated and deleted, so the average rating can be read without scanning the
+ * reviews.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "MenuItemRatingSummary")
+public class MenuItemRatingSummary {
+  @Id
+  private long itemId;
+
+  private long reviewCount;
+  private long starsSum;
+
+  private long oneStar;
+  private long twoStar;
+  private long threeStar;
+  private long fourStar;
+  private long fiveStar;
+
+  /**
+   * Returns the average number of stars.
+   *
+   * @return the average, or 0 if the item has no reviews
+   */
+  public double getAverageStars() {
+    return reviewCount == 0 ? 0 : (double) starsSum / reviewCount;
+  }
+}
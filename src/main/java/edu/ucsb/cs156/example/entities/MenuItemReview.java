@@ -1,9 +1,13 @@
 package edu.ucsb.cs156.example.entities;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
+import edu.ucsb.cs156.example.services.TableVersionsListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -21,9 +25,11 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Builder
 @Entity(name = "MenuItemReview")
-public class MenuItemReview {
+@EntityListeners(TableVersionsListener.class)
+public class MenuItemReview implements VersionedEntity {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "menu_item_review_seq")
+  @SequenceGenerator(name = "menu_item_review_seq", sequenceName = "MENU_ITEM_REVIEW_SEQ", allocationSize = 50)
   private long id;
   private long itemId;
 
@@ -31,4 +37,7 @@ public class MenuItemReview {
   private int stars;
   private LocalDateTime dateReviewed;
   private String comments;
+
+  @Version
+  private long version;
 }
\ No newline at end of file
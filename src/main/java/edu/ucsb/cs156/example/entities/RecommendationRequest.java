@@ -3,9 +3,13 @@ package edu.ucsb.cs156.example.entities;
 import java.time.LocalDateTime;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
+import edu.ucsb.cs156.example.services.TableVersionsListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,9 +24,11 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @Builder
 @Entity(name = "RecommendationRequest")
-public class RecommendationRequest {
+@EntityListeners(TableVersionsListener.class)
+public class RecommendationRequest implements VersionedEntity {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recommendation_request_seq")
+  @SequenceGenerator(name = "recommendation_request_seq", sequenceName = "RECOMMENDATION_REQUEST_SEQ", allocationSize = 50)
   private long id;
 
   private String requesterEmail;
@@ -31,5 +37,7 @@ public class RecommendationRequest {
   private LocalDateTime dateRequested;
   private LocalDateTime dateNeeded;
   private Boolean done;
-  
+
+  @Version
+  private long version;
 }
@@ -1,9 +1,15 @@
 package edu.ucsb.cs156.example.entities;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
+import edu.ucsb.cs156.example.services.TableVersionsListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,12 +26,18 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdiningcommonsmenuitems")  // table name should be plural
-public class UCSBDiningCommonsMenuItem {      // class name should be singular
+@EntityListeners(TableVersionsListener.class)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ucsbdiningcommonsmenuitems")
+public class UCSBDiningCommonsMenuItem implements VersionedEntity {      // class name should be singular
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ucsbdiningcommonsmenuitems_seq")
+  @SequenceGenerator(name = "ucsbdiningcommonsmenuitems_seq", sequenceName = "UCSBDININGCOMMONSMENUITEMS_SEQ", allocationSize = 50)
   private long id;
 
   private String diningCommonsCode;
   private String name;
   private String station;
+
+  @Version
+  private long version;
 }
\ No newline at end of file
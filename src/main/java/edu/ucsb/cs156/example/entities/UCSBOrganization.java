@@ -1,7 +1,11 @@
 package edu.ucsb.cs156.example.entities;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
+import edu.ucsb.cs156.example.services.TableVersionsListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -19,6 +23,8 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsborganization")    
+@EntityListeners(TableVersionsListener.class)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ucsborganization")
 public class UCSBOrganization {
     @Id
     private String orgCode;
@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.entities;
+
+/**
+ * An entity with a generated id and a version column (for optimistic locking
+ * and the row ETags).  The setters are the ones Lombok generates.
+ */
+public interface VersionedEntity {
+  /**
+   * @param id the id of the row
+   */
+  void setId(long id);
+
+  /**
+   * @param version the version of the row
+   */
+  void setVersion(long version);
+}
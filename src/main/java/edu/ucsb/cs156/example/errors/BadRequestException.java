@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate
+ * that a request parameter is malformed or out of range (e.g. an invalid paging cursor).
+ */
+public class BadRequestException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   * 
+   * @param message description of what is wrong with the request
+   */
+  public BadRequestException(String message) {
+    super(message);
+  }
+}
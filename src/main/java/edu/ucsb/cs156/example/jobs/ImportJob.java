@@ -0,0 +1,181 @@
+package edu.ucsb.cs156.example.jobs;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import edu.ucsb.cs156.example.errors.BadRequestException;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.Builder;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Job that imports rows of one entity type from an uploaded CSV or NDJSON file.
+ *
+ * <p>The file is read one row at a time, and valid rows are saved with {@code saveAll} in chunks
+ * of {@code chunkSize}; each chunk is its own transaction, and Hibernate sends its inserts in JDBC
+ * batches. Memory use therefore depends on the chunk size, not on the size of the file. Rows that
+ * cannot be parsed or fail validation are reported in the job log and skipped; after {@code
+ * maxErrors} of them the job stops (chunks already saved stay saved). Progress is logged every
+ * {@code progressEveryChunks} chunks, since every log line rewrites and saves the whole job log.
+ * The file is deleted when the job ends.
+ *
+ * <p>CSV files must have a header row naming the entity's properties (e.g. {@code
+ * orgCode,orgTranslationShort,orgTranslation,inactive}); NDJSON files have one JSON object per
+ * line. Unknown columns/properties are ignored.
+ */
+@Builder
+public class ImportJob<T> implements JobContextConsumer {
+
+  /** Supported file formats */
+  public enum Format {
+    CSV,
+    NDJSON;
+
+    /**
+     * Works out the format of an upload, from an explicit format parameter if there is one, and
+     * otherwise from the file extension.
+     *
+     * @param format "csv" or "ndjson" (case insensitive), or null
+     * @param filename name of the uploaded file
+     * @return the format
+     * @throws BadRequestException if the format cannot be determined
+     */
+    public static Format of(String format, String filename) {
+      if (format != null) {
+        try {
+          return valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+          throw new BadRequestException("Unsupported format: %s".formatted(format));
+        }
+      }
+      String name = filename == null ? "" : filename.toLowerCase(Locale.ROOT);
+      if (name.endsWith(".csv")) {
+        return CSV;
+      }
+      if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+        return NDJSON;
+      }
+      throw new BadRequestException(
+          "Cannot tell the format of %s; pass format=csv or format=ndjson".formatted(filename));
+    }
+  }
+
+  private Path file;
+  private Format format;
+  private Class<T> type;
+  private CrudRepository<T, ?> repository;
+  private ObjectMapper mapper;
+
+  @Builder.Default private int chunkSize = 500;
+
+  @Builder.Default private int maxErrors = 100;
+
+  @Builder.Default private int progressEveryChunks = 20;
+
+  /** Returns a description of what is wrong with a row, or null if it is valid */
+  @Builder.Default private Function<T, String> validator = row -> null;
+
+  /** Adjusts a valid row before it is saved (e.g. clearing its id) */
+  @Builder.Default private Consumer<T> prepare = row -> {};
+
+  /**
+   * Copies an upload to a temporary file, which the job deletes when it is done.
+   *
+   * @param upload the uploaded file
+   * @param format its format
+   * @return path of the temporary file
+   * @throws IOException if the file cannot be written
+   */
+  public static Path storeUpload(MultipartFile upload, Format format) throws IOException {
+    Path file = Files.createTempFile("import-", "." + format.name().toLowerCase(Locale.ROOT));
+    upload.transferTo(file);
+    return file;
+  }
+
+  @Override
+  public void accept(JobContext ctx) throws Exception {
+    try (MappingIterator<T> rows = openRows()) {
+      ctx.log("Importing %s rows from %s".formatted(type.getSimpleName(), format));
+      List<T> chunk = new ArrayList<>(chunkSize);
+      long record = 0;
+      long imported = 0;
+      long chunks = 0;
+      int errors = 0;
+      while (true) {
+        T row;
+        record++;
+        try {
+          if (!rows.hasNextValue()) {
+            break;
+          }
+          row = rows.nextValue();
+        } catch (JsonProcessingException e) {
+          errors = reject(ctx, errors, record, e.getOriginalMessage());
+          continue;
+        }
+        String problem = validator.apply(row);
+        if (problem != null) {
+          errors = reject(ctx, errors, record, problem);
+          continue;
+        }
+        prepare.accept(row);
+        chunk.add(row);
+        if (chunk.size() == chunkSize) {
+          imported += save(chunk);
+          chunk = new ArrayList<>(chunkSize);
+          if (++chunks % progressEveryChunks == 0) {
+            ctx.log("Imported %d rows so far".formatted(imported));
+          }
+        }
+      }
+      imported += save(chunk);
+      ctx.log("Imported %d rows, rejected %d".formatted(imported, errors));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private MappingIterator<T> openRows() throws IOException {
+    if (format == Format.CSV) {
+      CsvMapper csvMapper =
+          CsvMapper.builder()
+              .addModule(new JavaTimeModule())
+              .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+              .build();
+      return csvMapper
+          .readerFor(type)
+          .with(CsvSchema.emptySchema().withHeader())
+          .readValues(file.toFile());
+    }
+    return mapper.readerFor(type).readValues(file.toFile());
+  }
+
+  private int save(List<T> chunk) {
+    if (!chunk.isEmpty()) {
+      repository.saveAll(chunk);
+    }
+    return chunk.size();
+  }
+
+  private int reject(JobContext ctx, int errors, long record, String problem) throws Exception {
+    ctx.log("Row %d rejected: %s".formatted(record, problem));
+    if (errors + 1 >= maxErrors) {
+      throw new Exception("Too many rejected rows (%d); stopping".formatted(errors + 1));
+    }
+    return errors + 1;
+  }
+}
@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.jobs;
+
+import edu.ucsb.cs156.example.services.MenuItemRatingService;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import lombok.Builder;
+
+/**
+ * Job that recomputes the rating summary of every menu item from its reviews, to repair
+ * summaries that no longer match the reviews.
+ */
+@Builder
+public class RebuildRatingSummariesJob implements JobContextConsumer {
+
+  private MenuItemRatingService menuItemRatingService;
+
+  @Override
+  public void accept(JobContext ctx) throws Exception {
+    ctx.log("Rebuilding menu item rating summaries");
+    int items = menuItemRatingService.rebuild();
+    ctx.log("Rebuilt rating summaries for %d menu items".formatted(items));
+  }
+}
@@ -2,13 +2,106 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Article;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * The UCSBDateRepository is a repository for UCSBDate entities.
  */
 
 @Repository
-public interface ArticlesRepository extends CrudRepository<Article, Long> {
+public interface ArticlesRepository extends CrudRepository<Article, Long>, PagingAndSortingRepository<Article, Long> {
+  /**
+   * This method returns the next page of Article entities in id order (keyset pagination).
+   * @param id id of the last entity on the previous page (use Long.MIN_VALUE for the first page)
+   * @param limit maximum number of entities to return
+   * @return Article entities with an id greater than the given one, in id order
+   */
+  List<Article> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns the next page of one submitter's Article entities in id order (keyset
+   * pagination).  The email is compared lower-cased, which matches the index on
+   * lower(email).
+   * @param email the submitter's email, lower-cased
+   * @param id id of the last entity on the previous page (use Long.MIN_VALUE for the first page)
+   * @param limit maximum number of entities to return
+   * @return the submitter's Article entities with an id greater than the given one, in id order
+   */
+  @Query("select e from articles e where lower(e.email) = :email and e.id > :id order by e.id")
+  List<Article> findMine(@Param("email") String email, @Param("id") long id, Limit limit);
+
+  /**
+   * This method returns all Article entities in id order as a Stream, fetching
+   * rows from the database in batches.  It must be called inside a transaction,
+   * and the stream must be closed.
+   * @return a stream of all Article entities
+   */
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query("select e from articles e order by e.id")
+  Stream<Article> streamAll();
+
+  /**
+   * This method returns the articles whose title or explanation match a web-search style
+   * query (e.g. {@code gaucho -football "storke tower"}), best match first, using the
+   * Postgres full-text index created by changeset Articles-4.  It only works on Postgres.
+   * @param query the query
+   * @param limit maximum number of entities to return
+   * @return the matching Article entities, by descending rank
+   */
+  @Query(value = "select * from articles"
+      + " where to_tsvector('english', coalesce(title, '') || ' ' || coalesce(explanation, ''))"
+      + " @@ websearch_to_tsquery('english', :query)"
+      + " order by ts_rank_cd(to_tsvector('english', coalesce(title, '') || ' ' || coalesce(explanation, '')),"
+      + " websearch_to_tsquery('english', :query)) desc, id"
+      + " limit :limit", nativeQuery = true)
+  List<Article> searchFullText(@Param("query") String query, @Param("limit") int limit);
+
+  /**
+   * This method returns just the version of the Article with the given id, without
+   * loading the entity (used to answer conditional GETs).
+   * @param id id of the entity
+   * @return the version, or empty if there is no such entity
+   */
+  @Query("select e.version from articles e where e.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+
+  /**
+   * This method deletes the Article with the given id with a single DELETE statement,
+   * without loading it first.
+   * @param id id of the entity to delete
+   * @return the number of rows deleted (0 if there was no such entity)
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from articles e where e.id = :id")
+  int deleteRowById(@Param("id") long id);
+
+  /**
+   * This method deletes every Article whose id is in the list, with a single DELETE statement.
+   * @param ids ids of the entities to delete
+   * @return the number of rows deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from articles e where e.id in :ids")
+  int deleteRowsByIdIn(@Param("ids") Collection<Long> ids);
 }
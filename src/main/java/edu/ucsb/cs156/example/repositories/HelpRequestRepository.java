@@ -4,8 +4,24 @@ package edu.ucsb.cs156.example.repositories;
 import edu.ucsb.cs156.example.entities.HelpRequest;
 
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 
 /**
@@ -14,9 +30,78 @@ import org.springframework.stereotype.Repository;
 
 
 @Repository
-public interface HelpRequestRepository extends CrudRepository<HelpRequest, Long> {
+public interface HelpRequestRepository extends CrudRepository<HelpRequest, Long>, PagingAndSortingRepository<HelpRequest, Long> {
+  /**
+   * This method returns the next page of HelpRequest entities in id order (keyset pagination).
+   * @param id id of the last entity on the previous page (use Long.MIN_VALUE for the first page)
+   * @param limit maximum number of entities to return
+   * @return HelpRequest entities with an id greater than the given one, in id order
+   */
+  List<HelpRequest> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns the next page of one requester's HelpRequest entities in id order (keyset
+   * pagination).  The requesterEmail is compared lower-cased, which matches the index on
+   * lower(requesterEmail).
+   * @param email the requester's email, lower-cased
+   * @param id id of the last entity on the previous page (use Long.MIN_VALUE for the first page)
+   * @param limit maximum number of entities to return
+   * @return the requester's HelpRequest entities with an id greater than the given one, in id order
+   */
+  @Query("select e from helprequests e where lower(e.requesterEmail) = :email and e.id > :id order by e.id")
+  List<HelpRequest> findMine(@Param("email") String email, @Param("id") long id, Limit limit);
+
+  /**
+   * This method returns all HelpRequest entities in id order as a Stream, fetching
+   * rows from the database in batches.  It must be called inside a transaction,
+   * and the stream must be closed.
+   * @return a stream of all HelpRequest entities
+   */
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query("select e from helprequests e order by e.id")
+  Stream<HelpRequest> streamAll();
 
+  /**
+   * This method returns just the version of the HelpRequest with the given id, without
+   * loading the entity (used to answer conditional GETs).
+   * @param id id of the entity
+   * @return the version, or empty if there is no such entity
+   */
+  @Query("select e.version from helprequests e where e.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
 
+  /**
+   * This method deletes the HelpRequest with the given id with a single DELETE statement,
+   * without loading it first.
+   * @param id id of the entity to delete
+   * @return the number of rows deleted (0 if there was no such entity)
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from helprequests e where e.id = :id")
+  int deleteRowById(@Param("id") long id);
 
+  /**
+   * This method deletes every HelpRequest whose id is in the list, with a single DELETE statement.
+   * @param ids ids of the entities to delete
+   * @return the number of rows deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from helprequests e where e.id in :ids")
+  int deleteRowsByIdIn(@Param("ids") Collection<Long> ids);
 
+  /**
+   * This method deletes every solved HelpRequest whose request time is before the
+   * given time, with a single DELETE statement.
+   * @param before only requests made before this time are deleted
+   * @return the number of rows deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from helprequests e where e.solved = true and e.requestTime < :before")
+  int deleteSolvedBefore(@Param("before") ZonedDateTime before);
 }
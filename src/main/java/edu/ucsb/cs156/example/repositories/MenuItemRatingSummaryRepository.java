@@ -0,0 +1,80 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The MenuItemRatingSummaryRepository is a repository for MenuItemRatingSummary entities.
+ */
+@Repository
+public interface MenuItemRatingSummaryRepository extends CrudRepository<MenuItemRatingSummary, Long> {
+
+  /**
+   * This method adds the given amounts to the summary of one menu item, with a single
+   * UPDATE statement (so concurrent changes to the same item are not lost).
+   * It must be called inside a transaction.
+   * @param itemId id of the menu item
+   * @param reviews change in the number of reviews
+   * @param stars change in the total number of stars
+   * @param one change in the number of 1 star reviews
+   * @param two change in the number of 2 star reviews
+   * @param three change in the number of 3 star reviews
+   * @param four change in the number of 4 star reviews
+   * @param five change in the number of 5 star reviews
+   * @return the number of rows updated (0 if the item has no summary yet)
+   */
+  @Modifying
+  @Query("update MenuItemRatingSummary s set s.reviewCount = s.reviewCount + :reviews, s.starsSum = s.starsSum + :stars, "
+      + "s.oneStar = s.oneStar + :one, s.twoStar = s.twoStar + :two, s.threeStar = s.threeStar + :three, "
+      + "s.fourStar = s.fourStar + :four, s.fiveStar = s.fiveStar + :five where s.itemId = :itemId")
+  int adjust(@Param("itemId") long itemId, @Param("reviews") long reviews, @Param("stars") long stars,
+      @Param("one") long one, @Param("two") long two, @Param("three") long three,
+      @Param("four") long four, @Param("five") long five);
+
+  /**
+   * This method creates an all-zero summary for a menu item that has none, with a single
+   * INSERT ... ON CONFLICT DO NOTHING statement run in a transaction of its own, so the
+   * row is visible to concurrent transactions (and to the caller's next UPDATE) as soon
+   * as this returns.  On databases that run the statement as a MERGE (e.g. H2), two
+   * concurrent calls for the same item may still fail with a
+   * DataIntegrityViolationException, which only rolls back this method's transaction.
+   * @param itemId id of the menu item
+   * @return the number of rows inserted (0 if the item already had a summary)
+   */
+  @Modifying
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  @Query("insert into MenuItemRatingSummary (itemId, reviewCount, starsSum, oneStar, twoStar, threeStar, fourStar, fiveStar) "
+      + "values (:itemId, 0, 0, 0, 0, 0, 0, 0) on conflict (itemId) do nothing")
+  int insertEmptySummary(@Param("itemId") long itemId);
+
+  /**
+   * This method deletes every summary, with a single DELETE statement.
+   * It must be called inside a transaction.
+   * @return the number of rows deleted
+   */
+  @Modifying
+  @Query("delete from MenuItemRatingSummary s")
+  int deleteAllSummaries();
+
+  /**
+   * This method computes a summary for every menu item from its reviews, with a single
+   * INSERT ... SELECT statement.  It must be called inside a transaction, after
+   * deleteAllSummaries.
+   * @return the number of summaries inserted
+   */
+  @Modifying
+  @Query("insert into MenuItemRatingSummary (itemId, reviewCount, starsSum, oneStar, twoStar, threeStar, fourStar, fiveStar) "
+      + "select r.itemId, count(r), sum(r.stars), "
+      + "sum(case when r.stars = 1 then 1 else 0 end), sum(case when r.stars = 2 then 1 else 0 end), "
+      + "sum(case when r.stars = 3 then 1 else 0 end), sum(case when r.stars = 4 then 1 else 0 end), "
+      + "sum(case when r.stars = 5 then 1 else 0 end) "
+      + "from MenuItemReview r group by r.itemId")
+  int insertSummariesFromReviews();
+}
@@ -3,13 +3,125 @@ package edu.ucsb.cs156.example.repositories;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * The MenuItemReviewRepository is a repository for MenuItemReview entities.
  */
 @Repository
-public interface MenuItemReviewRepository extends CrudRepository<MenuItemReview, Long> {
-  
-}
+public interface MenuItemReviewRepository extends CrudRepository<MenuItemReview, Long>, PagingAndSortingRepository<MenuItemReview, Long> {
+  /**
+   * The menu item and stars of a review (a projection, used to adjust the rating
+   * summaries when reviews are deleted).
+   */
+  interface Rating {
+    /**
+     * @return id of the review
+     */
+    long getId();
+
+    /**
+     * @return id of the menu item reviewed
+     */
+    long getItemId();
+
+    /**
+     * @return the number of stars given
+     */
+    int getStars();
+  }
+
+  /**
+   * This method returns the next page of MenuItemReview entities in id order (keyset pagination).
+   * @param id id of the last entity on the previous page (use Long.MIN_VALUE for the first page)
+   * @param limit maximum number of entities to return
+   * @return MenuItemReview entities with an id greater than the given one, in id order
+   */
+  List<MenuItemReview> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns the next page of one reviewer's MenuItemReview entities in id order (keyset
+   * pagination).  The reviewerEmail is compared lower-cased, which matches the index on
+   * lower(reviewerEmail).
+   * @param email the reviewer's email, lower-cased
+   * @param id id of the last entity on the previous page (use Long.MIN_VALUE for the first page)
+   * @param limit maximum number of entities to return
+   * @return the reviewer's MenuItemReview entities with an id greater than the given one, in id order
+   */
+  @Query("select e from MenuItemReview e where lower(e.reviewerEmail) = :email and e.id > :id order by e.id")
+  List<MenuItemReview> findMine(@Param("email") String email, @Param("id") long id, Limit limit);
+
+  /**
+   * This method returns all MenuItemReview entities in id order as a Stream, fetching
+   * rows from the database in batches.  It must be called inside a transaction,
+   * and the stream must be closed.
+   * @return a stream of all MenuItemReview entities
+   */
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query("select e from MenuItemReview e order by e.id")
+  Stream<MenuItemReview> streamAll();
+
+  /**
+   * This method returns just the version of the MenuItemReview with the given id, without
+   * loading the entity (used to answer conditional GETs).
+   * @param id id of the entity
+   * @return the version, or empty if there is no such entity
+   */
+  @Query("select e.version from MenuItemReview e where e.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+
+  /**
+   * This method deletes the MenuItemReview with the given id with a single DELETE statement,
+   * without loading it first.
+   * @param id id of the entity to delete
+   * @return the number of rows deleted (0 if there was no such entity)
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from MenuItemReview e where e.id = :id")
+  int deleteRowById(@Param("id") long id);
+
+  /**
+   * This method deletes every MenuItemReview whose id is in the list, with a single DELETE statement.
+   * @param ids ids of the entities to delete
+   * @return the number of rows deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from MenuItemReview e where e.id in :ids")
+  int deleteRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+  /**
+   * This method returns the menu item and stars of every MenuItemReview whose id is in
+   * the list, without loading the entities, and locks those rows until the end of the
+   * transaction.  The rows are locked in id order, so that two transactions locking
+   * overlapping sets of rows wait for each other rather than deadlock.  A row deleted
+   * by another transaction while this one waited is not returned.
+   * @param ids ids of the entities
+   * @return the ratings of the entities that exist, in id order
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select e.id as id, e.itemId as itemId, e.stars as stars from MenuItemReview e where e.id in :ids order by e.id")
+  List<Rating> lockRatingsByIdIn(@Param("ids") Collection<Long> ids);
+}
\ No newline at end of file
@@ -3,13 +3,168 @@ package edu.ucsb.cs156.example.repositories;
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
 
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * The UCSBDiningCommonsRepository is a repository for UCSBDiningCommons entities
  */
 @Repository
-public interface RecommendationRequestRepository extends CrudRepository<RecommendationRequest, Long> {
- 
-}
\ No newline at end of file
+public interface RecommendationRequestRepository extends CrudRepository<RecommendationRequest, Long>, PagingAndSortingRepository<RecommendationRequest, Long> {
+  /**
+   * This method returns the next page of RecommendationRequest entities in id order (keyset pagination).
+   * @param id id of the last entity on the previous page (use Long.MIN_VALUE for the first page)
+   * @param limit maximum number of entities to return
+   * @return RecommendationRequest entities with an id greater than the given one, in id order
+   */
+  List<RecommendationRequest> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns the next page of one requester's RecommendationRequest entities in id order (keyset
+   * pagination).  The requesterEmail is compared lower-cased, which matches the index on
+   * lower(requesterEmail).
+   * @param email the requester's email, lower-cased
+   * @param id id of the last entity on the previous page (use Long.MIN_VALUE for the first page)
+   * @param limit maximum number of entities to return
+   * @return the requester's RecommendationRequest entities with an id greater than the given one, in id order
+   */
+  @Query("select e from RecommendationRequest e where lower(e.requesterEmail) = :email and e.id > :id order by e.id")
+  List<RecommendationRequest> findMine(@Param("email") String email, @Param("id") long id, Limit limit);
+
+  /**
+   * Number of open requests to one professor, and the earliest date one of them is needed
+   */
+  interface ProfessorDue {
+    /**
+     * @return the professor's email
+     */
+    String getProfessorEmail();
+
+    /**
+     * @return the number of open requests to the professor
+     */
+    long getOpenCount();
+
+    /**
+     * @return the earliest dateNeeded of those requests
+     */
+    LocalDateTime getNextDateNeeded();
+  }
+
+  /**
+   * This method returns the first page of open (not done) RecommendationRequest entities,
+   * soonest needed first.
+   * @param limit maximum number of entities to return
+   * @return open RecommendationRequest entities in (dateNeeded, id) order
+   */
+  List<RecommendationRequest> findByDoneFalseAndDateNeededNotNullOrderByDateNeededAscIdAsc(Limit limit);
+
+  /**
+   * This method returns the next page of open (not done) RecommendationRequest entities,
+   * soonest needed first (keyset pagination).
+   * @param afterDateNeeded dateNeeded of the last entity on the previous page
+   * @param afterId id of the last entity on the previous page
+   * @param limit maximum number of entities to return
+   * @return open RecommendationRequest entities after the given one, in (dateNeeded, id) order
+   */
+  @Query("select e from RecommendationRequest e where e.done = false"
+      + " and (e.dateNeeded > :afterDateNeeded or (e.dateNeeded = :afterDateNeeded and e.id > :afterId))"
+      + " order by e.dateNeeded, e.id")
+  List<RecommendationRequest> findDueAfter(@Param("afterDateNeeded") LocalDateTime afterDateNeeded,
+      @Param("afterId") long afterId, Limit limit);
+
+  /**
+   * This method returns the first page of one professor's open (not done)
+   * RecommendationRequest entities, soonest needed first.
+   * @param professorEmail the professor's email
+   * @param limit maximum number of entities to return
+   * @return open RecommendationRequest entities in (dateNeeded, id) order
+   */
+  List<RecommendationRequest> findByDoneFalseAndProfessorEmailAndDateNeededNotNullOrderByDateNeededAscIdAsc(
+      String professorEmail, Limit limit);
+
+  /**
+   * This method returns the next page of one professor's open (not done)
+   * RecommendationRequest entities, soonest needed first (keyset pagination).
+   * @param professorEmail the professor's email
+   * @param afterDateNeeded dateNeeded of the last entity on the previous page
+   * @param afterId id of the last entity on the previous page
+   * @param limit maximum number of entities to return
+   * @return open RecommendationRequest entities after the given one, in (dateNeeded, id) order
+   */
+  @Query("select e from RecommendationRequest e where e.done = false and e.professorEmail = :professorEmail"
+      + " and (e.dateNeeded > :afterDateNeeded or (e.dateNeeded = :afterDateNeeded and e.id > :afterId))"
+      + " order by e.dateNeeded, e.id")
+  List<RecommendationRequest> findDueForProfessorAfter(@Param("professorEmail") String professorEmail,
+      @Param("afterDateNeeded") LocalDateTime afterDateNeeded, @Param("afterId") long afterId, Limit limit);
+
+  /**
+   * This method counts the open (not done) RecommendationRequest entities of each
+   * professor that have a dateNeeded, with a single grouped query.
+   * @return one row per professor with open requests, the professor whose next request
+   *         is needed soonest first
+   */
+  @Query("select e.professorEmail as professorEmail, count(e) as openCount, min(e.dateNeeded) as nextDateNeeded"
+      + " from RecommendationRequest e where e.done = false and e.dateNeeded is not null"
+      + " group by e.professorEmail order by min(e.dateNeeded), e.professorEmail")
+  List<ProfessorDue> countDueByProfessor();
+
+  /**
+   * This method returns all RecommendationRequest entities in id order as a Stream, fetching
+   * rows from the database in batches.  It must be called inside a transaction,
+   * and the stream must be closed.
+   * @return a stream of all RecommendationRequest entities
+   */
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query("select e from RecommendationRequest e order by e.id")
+  Stream<RecommendationRequest> streamAll();
+
+  /**
+   * This method returns just the version of the RecommendationRequest with the given id, without
+   * loading the entity (used to answer conditional GETs).
+   * @param id id of the entity
+   * @return the version, or empty if there is no such entity
+   */
+  @Query("select e.version from RecommendationRequest e where e.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+
+  /**
+   * This method deletes the RecommendationRequest with the given id with a single DELETE statement,
+   * without loading it first.
+   * @param id id of the entity to delete
+   * @return the number of rows deleted (0 if there was no such entity)
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from RecommendationRequest e where e.id = :id")
+  int deleteRowById(@Param("id") long id);
+
+  /**
+   * This method deletes every RecommendationRequest whose id is in the list, with a single DELETE statement.
+   * @param ids ids of the entities to delete
+   * @return the number of rows deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from RecommendationRequest e where e.id in :ids")
+  int deleteRowsByIdIn(@Param("ids") Collection<Long> ids);
+}
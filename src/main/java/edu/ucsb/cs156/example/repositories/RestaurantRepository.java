@@ -2,12 +2,88 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Restaurant;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * The RestaurantRepository is a repository for Restaurant entities
  */
 @Repository
-public interface RestaurantRepository extends CrudRepository<Restaurant, Long> {
+public interface RestaurantRepository extends CrudRepository<Restaurant, Long>, PagingAndSortingRepository<Restaurant, Long> {
+  /**
+   * This method returns the next page of Restaurant entities in id order (keyset pagination).
+   * @param id id of the last entity on the previous page (use Long.MIN_VALUE for the first page)
+   * @param limit maximum number of entities to return
+   * @return Restaurant entities with an id greater than the given one, in id order
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<Restaurant> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns all Restaurant entities.  The result is kept in the query cache
+   * until a Restaurant is inserted, updated or deleted.
+   * @return all Restaurant entities
+   */
+  @Override
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  Iterable<Restaurant> findAll();
+
+  /**
+   * This method returns all Restaurant entities in id order as a Stream, fetching
+   * rows from the database in batches.  It must be called inside a transaction,
+   * and the stream must be closed.
+   * @return a stream of all Restaurant entities
+   */
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+      @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+  })
+  @Query("select e from restaurants e order by e.id")
+  Stream<Restaurant> streamAll();
+
+  /**
+   * This method returns just the version of the Restaurant with the given id, without
+   * loading the entity (used to answer conditional GETs).
+   * @param id id of the entity
+   * @return the version, or empty if there is no such entity
+   */
+  @Query("select e.version from restaurants e where e.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+
+  /**
+   * This method deletes the Restaurant with the given id with a single DELETE statement,
+   * without loading it first.
+   * @param id id of the entity to delete
+   * @return the number of rows deleted (0 if there was no such entity)
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from restaurants e where e.id = :id")
+  int deleteRowById(@Param("id") long id);
+
+  /**
+   * This method deletes every Restaurant whose id is in the list, with a single DELETE statement.
+   * @param ids ids of the entities to delete
+   * @return the number of rows deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from restaurants e where e.id in :ids")
+  int deleteRowsByIdIn(@Param("ids") Collection<Long> ids);
 }
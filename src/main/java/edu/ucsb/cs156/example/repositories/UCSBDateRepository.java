@@ -2,19 +2,130 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * The UCSBDateRepository is a repository for UCSBDate entities.
  */
 
 @Repository
-public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
+public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long>, PagingAndSortingRepository<UCSBDate, Long> {
   /**
    * This method returns all UCSBDate entities with a given quarterYYYYQ.
    * @param quarterYYYYQ quarter in the format YYYYQ (e.g. 20241 for Winter 2024, 20242 for Spring 2024, 20243 for Summer 2024, 20244 for Fall 2024)
    * @return all UCSBDate entities with a given quarterYYYYQ
    */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
   Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);
-}
\ No newline at end of file
+
+  /**
+   * This method returns the dates of one quarter in date order.
+   * @param quarterYYYYQ quarter in the format YYYYQ
+   * @return the dates of the quarter, in (localDateTime, id) order
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<UCSBDate> findByQuarterYYYYQOrderByLocalDateTimeAscIdAsc(String quarterYYYYQ);
+
+  /**
+   * This method returns the dates of a quarter and of every later quarter, in date order.
+   * @param quarterYYYYQ the first quarter, in the format YYYYQ
+   * @return the dates, in (localDateTime, id) order
+   */
+  @Query("select e from ucsbdates e where e.quarterYYYYQ >= :quarterYYYYQ order by e.localDateTime, e.id")
+  List<UCSBDate> findFromQuarter(@Param("quarterYYYYQ") String quarterYYYYQ);
+
+  /**
+   * This method returns the next page of UCSBDate entities in a date range, in
+   * (localDateTime, id) order (keyset pagination).
+   * @param from start of the range (inclusive)
+   * @param to end of the range (exclusive)
+   * @param afterTime localDateTime of the last entity on the previous page (use from for the first page)
+   * @param afterId id of the last entity on the previous page (use Long.MIN_VALUE for the first page)
+   * @param limit maximum number of entities to return
+   * @return UCSBDate entities in the range that come after the given position
+   */
+  @Query("select e from ucsbdates e where e.localDateTime >= :from and e.localDateTime < :to"
+      + " and (e.localDateTime > :afterTime or (e.localDateTime = :afterTime and e.id > :afterId))"
+      + " order by e.localDateTime, e.id")
+  List<UCSBDate> findInRange(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+      @Param("afterTime") LocalDateTime afterTime, @Param("afterId") long afterId, Limit limit);
+
+  /**
+   * This method returns the next page of UCSBDate entities in id order (keyset pagination).
+   * @param id id of the last entity on the previous page (use Long.MIN_VALUE for the first page)
+   * @param limit maximum number of entities to return
+   * @return UCSBDate entities with an id greater than the given one, in id order
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<UCSBDate> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns all UCSBDate entities.  The result is kept in the query cache
+   * until a UCSBDate is inserted, updated or deleted.
+   * @return all UCSBDate entities
+   */
+  @Override
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  Iterable<UCSBDate> findAll();
+
+  /**
+   * This method returns all UCSBDate entities in id order as a Stream, fetching
+   * rows from the database in batches.  It must be called inside a transaction,
+   * and the stream must be closed.
+   * @return a stream of all UCSBDate entities
+   */
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+      @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+  })
+  @Query("select e from ucsbdates e order by e.id")
+  Stream<UCSBDate> streamAll();
+
+  /**
+   * This method returns just the version of the UCSBDate with the given id, without
+   * loading the entity (used to answer conditional GETs).
+   * @param id id of the entity
+   * @return the version, or empty if there is no such entity
+   */
+  @Query("select e.version from ucsbdates e where e.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+
+  /**
+   * This method deletes the UCSBDate with the given id with a single DELETE statement,
+   * without loading it first.
+   * @param id id of the entity to delete
+   * @return the number of rows deleted (0 if there was no such entity)
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdates e where e.id = :id")
+  int deleteRowById(@Param("id") long id);
+
+  /**
+   * This method deletes every UCSBDate whose id is in the list, with a single DELETE statement.
+   * @param ids ids of the entities to delete
+   * @return the number of rows deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdates e where e.id in :ids")
+  int deleteRowsByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -2,15 +2,148 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * The UCSBDiningCommonsMenuItemRepository is a repository for UCSBDiningCommonsMenuItem entities.
  */
 
 @Repository
-public interface UCSBDiningCommonsMenuItemRepository extends CrudRepository<UCSBDiningCommonsMenuItem, Long> {
+public interface UCSBDiningCommonsMenuItemRepository extends CrudRepository<UCSBDiningCommonsMenuItem, Long>, PagingAndSortingRepository<UCSBDiningCommonsMenuItem, Long> {
   // Spring Boot automatically implement the class with all the methods we need 
   // you can specify custom ones
-}
\ No newline at end of file
+
+  /**
+   * A menu item with the review count and total stars from its rating summary
+   * (a projection, used to build the top rated lists).
+   */
+  interface ItemRating {
+    /**
+     * @return id of the menu item
+     */
+    long getItemId();
+
+    /**
+     * @return code of the dining commons that serves it
+     */
+    String getDiningCommonsCode();
+
+    /**
+     * @return name of the menu item
+     */
+    String getName();
+
+    /**
+     * @return station that serves it
+     */
+    String getStation();
+
+    /**
+     * @return number of reviews, or null if it has never been reviewed
+     */
+    Long getReviewCount();
+
+    /**
+     * @return total stars of its reviews, or null if it has never been reviewed
+     */
+    Long getStarsSum();
+  }
+
+  /**
+   * This method returns the next page of UCSBDiningCommonsMenuItem entities in id order (keyset pagination).
+   * @param id id of the last entity on the previous page (use Long.MIN_VALUE for the first page)
+   * @param limit maximum number of entities to return
+   * @return UCSBDiningCommonsMenuItem entities with an id greater than the given one, in id order
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<UCSBDiningCommonsMenuItem> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns all UCSBDiningCommonsMenuItem entities.  The result is kept in the query cache
+   * until a UCSBDiningCommonsMenuItem is inserted, updated or deleted.
+   * @return all UCSBDiningCommonsMenuItem entities
+   */
+  @Override
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  Iterable<UCSBDiningCommonsMenuItem> findAll();
+
+  /**
+   * This method returns all UCSBDiningCommonsMenuItem entities in id order as a Stream, fetching
+   * rows from the database in batches.  It must be called inside a transaction,
+   * and the stream must be closed.
+   * @return a stream of all UCSBDiningCommonsMenuItem entities
+   */
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+      @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+  })
+  @Query("select e from ucsbdiningcommonsmenuitems e order by e.id")
+  Stream<UCSBDiningCommonsMenuItem> streamAll();
+
+  /**
+   * This method returns just the version of the UCSBDiningCommonsMenuItem with the given id, without
+   * loading the entity (used to answer conditional GETs).
+   * @param id id of the entity
+   * @return the version, or empty if there is no such entity
+   */
+  @Query("select e.version from ucsbdiningcommonsmenuitems e where e.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+
+  /**
+   * This method deletes the UCSBDiningCommonsMenuItem with the given id with a single DELETE statement,
+   * without loading it first.
+   * @param id id of the entity to delete
+   * @return the number of rows deleted (0 if there was no such entity)
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommonsmenuitems e where e.id = :id")
+  int deleteRowById(@Param("id") long id);
+
+  /**
+   * This method deletes every UCSBDiningCommonsMenuItem whose id is in the list, with a single DELETE statement.
+   * @param ids ids of the entities to delete
+   * @return the number of rows deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommonsmenuitems e where e.id in :ids")
+  int deleteRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+  /**
+   * This method returns every menu item with its rating summary, if it has one, in a
+   * single query.
+   * @return the menu items and their ratings
+   */
+  @Query("select m.id as itemId, m.diningCommonsCode as diningCommonsCode, m.name as name, m.station as station, "
+      + "s.reviewCount as reviewCount, s.starsSum as starsSum "
+      + "from ucsbdiningcommonsmenuitems m left join MenuItemRatingSummary s on s.itemId = m.id")
+  List<ItemRating> findAllWithRatings();
+
+  /**
+   * This method returns one menu item with its rating summary, if it has one.
+   * @param id id of the menu item
+   * @return the menu item and its rating, or empty if there is no such menu item
+   */
+  @Query("select m.id as itemId, m.diningCommonsCode as diningCommonsCode, m.name as name, m.station as station, "
+      + "s.reviewCount as reviewCount, s.starsSum as starsSum "
+      + "from ucsbdiningcommonsmenuitems m left join MenuItemRatingSummary s on s.itemId = m.id where m.id = :id")
+  Optional<ItemRating> findWithRatingById(@Param("id") long id);
+}
@@ -3,13 +3,78 @@ package edu.ucsb.cs156.example.repositories;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The UCSBDiningCommonsRepository is a repository for UCSBDiningCommons entities
  */
 @Repository
-public interface UCSBDiningCommonsRepository extends CrudRepository<UCSBDiningCommons, String> {
- 
-}
\ No newline at end of file
+public interface UCSBDiningCommonsRepository extends CrudRepository<UCSBDiningCommons, String>, PagingAndSortingRepository<UCSBDiningCommons, String> {
+  /**
+   * This method returns the next page of UCSBDiningCommons entities in code order (keyset pagination).
+   * @param code code of the last entity on the previous page (use the empty string for the first page)
+   * @param limit maximum number of entities to return
+   * @return UCSBDiningCommons entities with a code greater than the given one, in code order
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<UCSBDiningCommons> findByCodeGreaterThanOrderByCodeAsc(String code, Limit limit);
+
+  /**
+   * This method returns all UCSBDiningCommons entities.  The result is kept in the query cache
+   * until a UCSBDiningCommons is inserted, updated or deleted.
+   * @return all UCSBDiningCommons entities
+   */
+  @Override
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  Iterable<UCSBDiningCommons> findAll();
+
+  /**
+   * This method returns all UCSBDiningCommons entities in code order as a Stream, fetching
+   * rows from the database in batches.  It must be called inside a transaction,
+   * and the stream must be closed.
+   * @return a stream of all UCSBDiningCommons entities
+   */
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+      @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+  })
+  @Query("select e from ucsbdiningcommons e order by e.code")
+  Stream<UCSBDiningCommons> streamAll();
+
+  /**
+   * This method deletes the UCSBDiningCommons with the given code with a single DELETE statement,
+   * without loading it first.
+   * @param code code of the entity to delete
+   * @return the number of rows deleted (0 if there was no such entity)
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommons e where e.code = :code")
+  int deleteRowById(@Param("code") String code);
+
+  /**
+   * This method deletes every UCSBDiningCommons whose code is in the list, with a single DELETE statement.
+   * @param codes codes of the entities to delete
+   * @return the number of rows deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommons e where e.code in :codes")
+  int deleteRowsByIdIn(@Param("codes") Collection<String> codes);
+}
@@ -3,13 +3,78 @@ package edu.ucsb.cs156.example.repositories;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The UCSBOrganizationRepository is a repository for UCSBOrganiation entities
  */
 @Repository
-public interface UCSBOrganizationRepository extends CrudRepository<UCSBOrganization, String> {
- 
-}
\ No newline at end of file
+public interface UCSBOrganizationRepository extends CrudRepository<UCSBOrganization, String>, PagingAndSortingRepository<UCSBOrganization, String> {
+  /**
+   * This method returns the next page of UCSBOrganization entities in orgCode order (keyset pagination).
+   * @param orgCode orgCode of the last entity on the previous page (use the empty string for the first page)
+   * @param limit maximum number of entities to return
+   * @return UCSBOrganization entities with a orgCode greater than the given one, in orgCode order
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<UCSBOrganization> findByOrgCodeGreaterThanOrderByOrgCodeAsc(String orgCode, Limit limit);
+
+  /**
+   * This method returns all UCSBOrganization entities.  The result is kept in the query cache
+   * until a UCSBOrganization is inserted, updated or deleted.
+   * @return all UCSBOrganization entities
+   */
+  @Override
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  Iterable<UCSBOrganization> findAll();
+
+  /**
+   * This method returns all UCSBOrganization entities in orgCode order as a Stream, fetching
+   * rows from the database in batches.  It must be called inside a transaction,
+   * and the stream must be closed.
+   * @return a stream of all UCSBOrganization entities
+   */
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+      @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+  })
+  @Query("select e from ucsborganization e order by e.orgCode")
+  Stream<UCSBOrganization> streamAll();
+
+  /**
+   * This method deletes the UCSBOrganization with the given orgCode with a single DELETE statement,
+   * without loading it first.
+   * @param orgCode orgCode of the entity to delete
+   * @return the number of rows deleted (0 if there was no such entity)
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsborganization e where e.orgCode = :orgCode")
+  int deleteRowById(@Param("orgCode") String orgCode);
+
+  /**
+   * This method deletes every UCSBOrganization whose orgCode is in the list, with a single DELETE statement.
+   * @param orgCodes orgCodes of the entities to delete
+   * @return the number of rows deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsborganization e where e.orgCode in :orgCodes")
+  int deleteRowsByIdIn(@Param("orgCodes") Collection<String> orgCodes);
+}
@@ -0,0 +1,97 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * This is a service for ranked full-text search over the title and explanation
+ * of articles.
+ *
+ * With {@code app.articles.search-backend=index} (the default) it uses a
+ * {@link Bm25Index} held in memory, loaded and kept up to date by
+ * {@link SearchIndexLoader}: ArticlesController calls {@link #indexed} and
+ * {@link #removed} whenever it saves or deletes articles.  Like every index
+ * that loader keeps, it assumes a single application instance.
+ *
+ * With {@code app.articles.search-backend=postgres} (used in production) it
+ * uses the Postgres full-text index on ARTICLES instead, and keeps nothing in
+ * memory, so it is safe with any number of instances.
+ */
+@Service
+public class ArticleSearchService {
+
+  @Autowired
+  ArticlesRepository articlesRepository;
+
+  @Autowired
+  SearchIndexLoader searchIndexLoader;
+
+  @Value("${app.articles.search-backend:index}")
+  String backend;
+
+  final Bm25Index index = new Bm25Index();
+
+  final SearchIndexLoader.Index<Article> loadedIndex = new SearchIndexLoader.Index<>(
+      () -> articlesRepository.streamAll(), index::clear, article -> index.put(article.getId(), text(article)));
+
+  /**
+   * Returns the articles that best match a query, best first.
+   *
+   * @param query the words to search for
+   * @param limit the maximum number of articles to return
+   * @return the matching articles
+   */
+  public List<Article> search(String query, int limit) {
+    if (usePostgres()) {
+      return articlesRepository.searchFullText(query, limit);
+    }
+    if (!loadedIndex.isLoaded()) {
+      searchIndexLoader.load(loadedIndex);
+    }
+    List<Bm25Index.Hit> hits = index.search(query, limit);
+    Map<Long, Article> byId = new HashMap<>();
+    articlesRepository.findAllById(hits.stream().map(Bm25Index.Hit::id).toList())
+        .forEach(article -> byId.put(article.getId(), article));
+    return hits.stream()
+        .map(hit -> byId.get(hit.id()))
+        .filter(Objects::nonNull)
+        .toList();
+  }
+
+  /**
+   * Adds or replaces articles in the in-memory index, after they have been saved.
+   *
+   * @param articles the saved articles
+   */
+  public void indexed(Iterable<Article> articles) {
+    searchIndexLoader.apply(loadedIndex,
+        () -> articles.forEach(article -> index.put(article.getId(), text(article))));
+  }
+
+  /**
+   * Removes articles from the in-memory index, after they have been deleted.
+   *
+   * @param ids ids of the deleted articles
+   */
+  public void removed(Collection<Long> ids) {
+    searchIndexLoader.apply(loadedIndex, () -> ids.forEach(index::remove));
+  }
+
+  private boolean usePostgres() {
+    return "postgres".equals(backend);
+  }
+
+  private static String text(Article article) {
+    return Objects.toString(article.getTitle(), "") + " " + Objects.toString(article.getExplanation(), "");
+  }
+}
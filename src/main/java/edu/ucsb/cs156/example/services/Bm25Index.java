@@ -0,0 +1,118 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory inverted index over short texts keyed by a numeric id, ranked
+ * with Okapi BM25.
+ *
+ * Each term's postings hold the term's frequency in each document.  The
+ * postings, deletion and per-thread scoring are shared with
+ * {@link TrigramIndex} (see {@link PostingsIndex}); this class adds the
+ * tokenizer and the document lengths that BM25 normalizes by.
+ */
+public class Bm25Index extends PostingsIndex<String> {
+
+  static final float K1 = 1.2f;
+  static final float B = 0.75f;
+
+  private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private int[] lengths = new int[1024];
+  private long totalLength;
+
+  /**
+   * Adds a document, replacing any earlier document with the same id.
+   *
+   * @param id the document id
+   * @param text the text to index (may be null)
+   */
+  public void put(long id, String text) {
+    List<String> tokens = tokenize(text);
+    Map<String, Integer> frequencies = new HashMap<>();
+    for (String token : tokens) {
+      frequencies.merge(token, 1, Integer::sum);
+    }
+    put(id, frequencies, doc -> {
+      lengths[doc] = tokens.size();
+      totalLength += tokens.size();
+    });
+  }
+
+  /**
+   * Returns the documents that best match a query, best first.  A document
+   * matches if it contains at least one of the query's terms.
+   *
+   * @param query the query text
+   * @param limit the maximum number of results
+   * @return at most limit hits, by descending score (ties by ascending id)
+   */
+  public List<Hit> search(String query, int limit) {
+    return search(new LinkedHashSet<>(tokenize(query)), limit, liveCount -> {
+      float averageLength = (float) totalLength / liveCount;
+      return new Scoring() {
+        @Override
+        public float weight(Postings list) {
+          return (float) Math.log(1 + (liveCount - list.liveDocs + 0.5) / (list.liveDocs + 0.5));
+        }
+
+        @Override
+        public float add(int doc, int freq, float idf) {
+          return idf * freq * (K1 + 1) / (freq + K1 * (1 - B + B * lengths[doc] / averageLength));
+        }
+
+        @Override
+        public float score(int doc, float sum) {
+          return sum;
+        }
+      };
+    });
+  }
+
+  /**
+   * Splits text into lower case words (runs of letters and digits).
+   *
+   * @param text the text (may be null)
+   * @return the words, in order
+   */
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    if (text == null) {
+      return tokens;
+    }
+    for (String token : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+      if (!token.isEmpty()) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+  @Override
+  protected void grow(int capacity) {
+    lengths = Arrays.copyOf(lengths, capacity);
+  }
+
+  @Override
+  protected void removed(int doc) {
+    totalLength -= lengths[doc];
+  }
+
+  @Override
+  protected void moved(int from, int to) {
+    lengths[to] = lengths[from];
+  }
+
+  @Override
+  protected void cleared() {
+    lengths = new int[1024];
+    totalLength = 0;
+  }
+}
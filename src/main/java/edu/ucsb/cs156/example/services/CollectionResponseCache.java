@@ -0,0 +1,168 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This is a service that caches the serialized JSON (and a gzipped copy of it)
+ * for the unpaged {@code /all} endpoints of the reference tables, so that
+ * repeated requests are answered by copying bytes rather than loading and
+ * serializing every row again.
+ *
+ * Each entry is stored under the table's ETag from {@link TableVersions}.  Any
+ * write to the table changes that ETag, so a stale entry is never served; it is
+ * simply replaced by the next request.  Collections whose JSON is larger than
+ * {@code app.response-cache.max-bytes} are serialized per request and not kept.
+ *
+ * Since {@code server.compression.enabled=false}, the gzipped copy is only sent
+ * to clients whose {@code Accept-Encoding} allows gzip.  It is a different
+ * representation from the plain JSON, so it is sent with its own ETag (see
+ * {@link #etag(String, WebRequest)}).
+ */
+@Service
+public class CollectionResponseCache {
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Value("${app.response-cache.max-bytes:8388608}")
+  long maxBytes;
+
+  /**
+   * A cached collection
+   *
+   * @param etag the table ETag the body was computed for
+   * @param json the JSON, as UTF-8 bytes
+   * @param gzip the JSON, gzipped
+   */
+  public record CachedCollection(String etag, byte[] json, byte[] gzip) {
+  }
+
+  private final ConcurrentHashMap<Class<?>, CachedCollection> entries = new ConcurrentHashMap<>();
+
+  /**
+   * This method returns the collection for an entity type, serializing it only
+   * if there is no cached copy for the given ETag.
+   *
+   * @param type the entity class
+   * @param etag the table's ETag, read before the rows are loaded
+   * @param rows loads the rows, e.g. repository::findAll
+   * @return the cached (or freshly serialized) collection
+   */
+  public CachedCollection get(Class<?> type, String etag, Supplier<?> rows) {
+    CachedCollection cached = entries.get(type);
+    if (cached != null && cached.etag().equals(etag)) {
+      return cached;
+    }
+    try {
+      byte[] json = mapper.writeValueAsBytes(rows.get());
+      cached = new CachedCollection(etag, json, gzip(json));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not serialize %s collection".formatted(type.getSimpleName()), e);
+    }
+    if (cached.json().length <= maxBytes) {
+      entries.put(type, cached);
+    } else {
+      entries.remove(type);
+    }
+    return cached;
+  }
+
+  /**
+   * This method returns the ETag of the body a request would get: the table's
+   * ETag for the plain JSON, or that ETag with a {@code -gzip} suffix for the
+   * gzipped copy.  Strong ETags must differ between content codings (RFC 9110,
+   * section 8.8.3), so a client's If-None-Match should be checked against this.
+   *
+   * @param etag the table's ETag
+   * @param request the request, for its Accept-Encoding header
+   * @return the ETag of the negotiated coding
+   */
+  public String etag(String etag, WebRequest request) {
+    if (acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+      return etag.substring(0, etag.length() - 1) + "-gzip\"";
+    }
+    return etag;
+  }
+
+  /**
+   * This method empties the cache.
+   */
+  public void clear() {
+    entries.clear();
+  }
+
+  /**
+   * This method returns the collection for an entity type as a 200 response,
+   * gzipped if the client accepts it.
+   *
+   * @param type the entity class
+   * @param etag the table's ETag, read before the rows are loaded
+   * @param rows loads the rows, e.g. repository::findAll
+   * @param request the request, for its Accept-Encoding header
+   * @return the response
+   */
+  public ResponseEntity<byte[]> response(Class<?> type, String etag, Supplier<?> rows, WebRequest request) {
+    CachedCollection cached = get(type, etag, rows);
+    ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .eTag(etag(etag, request))
+        .varyBy(HttpHeaders.ACCEPT_ENCODING);
+    if (acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+      return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(cached.gzip());
+    }
+    return builder.body(cached.json());
+  }
+
+  /**
+   * This method checks whether an Accept-Encoding header allows gzip.  An
+   * explicit gzip entry takes precedence over {@code *}.
+   *
+   * @param acceptEncoding the header value (may be null)
+   * @return true if gzip (or, failing that, *) is listed without q=0
+   */
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    Boolean wildcard = null;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.trim().split(";");
+      boolean accepted = true;
+      for (int i = 1; i < parts.length; i++) {
+        if (parts[i].replace(" ", "").matches("q=0(\\.0*)?")) {
+          accepted = false;
+        }
+      }
+      if (parts[0].trim().equalsIgnoreCase("gzip")) {
+        return accepted;
+      }
+      if (parts[0].trim().equals("*")) {
+        wildcard = accepted;
+      }
+    }
+    return Boolean.TRUE.equals(wildcard);
+  }
+
+  private static byte[] gzip(byte[] json) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(json);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,88 @@
+package edu.ucsb.cs156.example.services;
+
+import jakarta.servlet.http.HttpSession;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.io.Serializable;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a service that caches the serialized JSON for {@code /api/currentUser} in the
+ * user's session, together with an ETag for that JSON.
+ * 
+ * Entries are tied to the principal that created them, and are discarded whenever
+ * {@link #invalidateAll()} is called (e.g. when a user's admin status changes).
+ */
+@Service
+public class CurrentUserResponseCache {
+
+  /**
+   * Name of the session attribute the cached response is stored under
+   */
+  public static final String SESSION_ATTRIBUTE_NAME = CurrentUserResponseCache.class.getName();
+
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * A cached response body
+   * 
+   * @param generation the cache generation the body was computed in
+   * @param principalName name of the principal the body describes
+   * @param body the JSON, as UTF-8 bytes
+   * @param etag a strong ETag for the body
+   */
+  public record CachedResponse(long generation, String principalName, byte[] body, String etag)
+      implements Serializable {
+  }
+
+  /**
+   * This method returns the current generation; read it before computing a body to pass to
+   * {@link #put}, so that an invalidation that happens in between is not lost.
+   * 
+   * @return the current generation
+   */
+  public long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * This method returns the cached response for this session, if it is still valid.
+   * 
+   * @param session the user's session
+   * @param principalName name of the currently authenticated principal
+   * @return the cached response, or empty if there is none or it is stale
+   */
+  public Optional<CachedResponse> get(HttpSession session, String principalName) {
+    if (session.getAttribute(SESSION_ATTRIBUTE_NAME) instanceof CachedResponse cached
+        && cached.generation() == generation.get()
+        && cached.principalName().equals(principalName)) {
+      return Optional.of(cached);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * This method stores a response body in the session.
+   * 
+   * @param session the user's session
+   * @param generation the generation read before the body was computed
+   * @param principalName name of the currently authenticated principal
+   * @param body the JSON, as UTF-8 bytes
+   * @return the cached response
+   */
+  public CachedResponse put(HttpSession session, long generation, String principalName, byte[] body) {
+    String etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+    CachedResponse cached = new CachedResponse(generation, principalName, body, etag);
+    session.setAttribute(SESSION_ATTRIBUTE_NAME, cached);
+    return cached;
+  }
+
+  /**
+   * This method invalidates every cached response, in every session.
+   */
+  public void invalidateAll() {
+    generation.incrementAndGet();
+  }
+}
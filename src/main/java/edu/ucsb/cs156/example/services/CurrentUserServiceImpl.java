@@ -37,6 +37,9 @@ public class CurrentUserServiceImpl extends CurrentUserService {
   @Autowired
   GrantedAuthoritiesService grantedAuthoritiesService;
 
+  @Autowired
+  CurrentUserResponseCache currentUserResponseCache;
+
   @Value("${app.admin.emails}")
   final private List<String> adminEmails = new ArrayList<String>();
 
@@ -85,6 +88,7 @@ public class CurrentUserServiceImpl extends CurrentUserService {
       if (adminEmails.contains(email) && !u.getAdmin()) {
         u.setAdmin(true);
         userRepository.save(u);
+        currentUserResponseCache.invalidateAll();
       }
       return u;
     }
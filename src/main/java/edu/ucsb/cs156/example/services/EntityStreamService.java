@@ -0,0 +1,218 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import edu.ucsb.cs156.example.errors.BadRequestException;
+import edu.ucsb.cs156.example.jobs.ImportJob;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * This is a service that writes query results to the response as a JSON array
+ * while they are being read, instead of loading them all into memory first.
+ * 
+ * Rows come from a repository method returning a Stream (with a JDBC fetch size
+ * set), are written one at a time through a JsonGenerator, and are detached from
+ * the persistence context as soon as they are written, so memory use does not
+ * grow with the size of the table.  The same approach is used to export tables
+ * as CSV or NDJSON.
+ */
+@Service
+public class EntityStreamService {
+
+  public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+  public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+  // CsvMapper sorts properties by name by default; columns follow the entity's fields instead
+  private static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+      .disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+      .addModule(new JavaTimeModule())
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+      .build();
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  @Lazy
+  @Autowired
+  EntityStreamService self;
+
+  /**
+   * Returns a response that streams the rows as a JSON array.  The rows are read
+   * (inside a read-only transaction) when the body is written, not when this
+   * method is called.
+   * 
+   * @param <T> the type of the rows
+   * @param rows supplies the stream of rows, e.g. repository::streamAll
+   * @return a 200 response with a streaming JSON body
+   */
+  public <T> ResponseEntity<StreamingResponseBody> jsonArray(Supplier<Stream<T>> rows) {
+    StreamingResponseBody body = out -> self.writeJsonArray(rows, out);
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+  }
+
+  /**
+   * Writes the rows to the output stream as a JSON array, detaching each one from
+   * the persistence context after it is written.
+   * 
+   * @param <T> the type of the rows
+   * @param rows supplies the stream of rows
+   * @param out where the JSON is written (not closed)
+   * @throws IOException if writing fails
+   */
+  @Transactional(readOnly = true)
+  public <T> void writeJsonArray(Supplier<Stream<T>> rows, OutputStream out) throws IOException {
+    ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    try (Stream<T> stream = rows.get();
+        JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.writeStartArray();
+      Iterator<T> iterator = stream.iterator();
+      while (iterator.hasNext()) {
+        T row = iterator.next();
+        writer.writeValue(generator, row);
+        entityManager.detach(row);
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  /**
+   * Returns a response that streams the rows as a CSV file (with a header row) or
+   * as NDJSON (one JSON object per line).  Nothing is buffered beyond Jackson's
+   * write buffer: there is no Content-Length, so the response is sent with
+   * chunked transfer encoding as rows are read.
+   * 
+   * @param <T> the type of the rows
+   * @param name base name of the download, e.g. "restaurants"
+   * @param type the type of the rows
+   * @param rows supplies the stream of rows, e.g. repository::streamAll
+   * @param format "csv" or "ndjson"
+   * @param columns properties to include, in this order; null or empty for all of them
+   * @param gzip whether to gzip the body (sent with Content-Encoding: gzip)
+   * @return a 200 response with a streaming body
+   * @throws BadRequestException if the format or a column is unknown
+   */
+  public <T> ResponseEntity<StreamingResponseBody> export(String name, Class<T> type,
+      Supplier<Stream<T>> rows, String format, List<String> columns, boolean gzip) {
+    ImportJob.Format exportFormat = ImportJob.Format.of(format, null);
+    CsvSchema allColumns = CSV_MAPPER.schemaFor(type);
+    boolean selected = columns != null && !columns.isEmpty();
+    if (selected) {
+      for (String column : columns) {
+        if (allColumns.column(column) == null) {
+          throw new BadRequestException("Unknown column: %s".formatted(column));
+        }
+      }
+    }
+
+    ObjectWriter writer;
+    Function<T, ?> projection = Function.identity();
+    MediaType contentType;
+    if (exportFormat == ImportJob.Format.CSV) {
+      CsvSchema schema = allColumns;
+      if (selected) {
+        CsvSchema.Builder builder = CsvSchema.builder();
+        columns.forEach(column -> builder.addColumn(column, allColumns.column(column).getType()));
+        schema = builder.build();
+      }
+      writer = CSV_MAPPER.writer(schema.withHeader())
+          .with(JsonGenerator.Feature.IGNORE_UNKNOWN);
+      contentType = TEXT_CSV;
+    } else {
+      writer = mapper.writer().withRootValueSeparator("\n");
+      if (selected) {
+        projection = row -> mapper.<ObjectNode>valueToTree(row).retain(columns);
+      }
+      contentType = APPLICATION_NDJSON;
+    }
+    ObjectWriter rowWriter = writer
+        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+        .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    Function<T, ?> rowProjection = projection;
+    boolean ndjson = exportFormat == ImportJob.Format.NDJSON;
+
+    StreamingResponseBody body = out -> {
+      OutputStream target = gzip ? new GZIPOutputStream(out, 8192) : out;
+      long count = self.writeRows(rows, rowWriter, rowProjection, target);
+      if (ndjson && count > 0) {
+        target.write('\n');
+      }
+      if (target instanceof GZIPOutputStream gzipped) {
+        gzipped.finish();
+      }
+    };
+    String filename = name + "." + exportFormat.name().toLowerCase(Locale.ROOT);
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+        .contentType(contentType)
+        .header(HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename(filename).build().toString());
+    if (gzip) {
+      response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+    return response.body(body);
+  }
+
+  /**
+   * Writes each row (after applying the projection) with a SequenceWriter,
+   * detaching it from the persistence context after it is written.
+   * 
+   * @param <T> the type of the rows
+   * @param rows supplies the stream of rows
+   * @param writer writes each row; it must not close the output stream
+   * @param projection turns a row into the value that is written
+   * @param out where the rows are written (not closed)
+   * @return the number of rows written
+   * @throws IOException if writing fails
+   */
+  @Transactional(readOnly = true)
+  public <T> long writeRows(Supplier<Stream<T>> rows, ObjectWriter writer,
+      Function<T, ?> projection, OutputStream out) throws IOException {
+    long count = 0;
+    try (Stream<T> stream = rows.get();
+        SequenceWriter sequence = writer.writeValues(out)) {
+      Iterator<T> iterator = stream.iterator();
+      while (iterator.hasNext()) {
+        T row = iterator.next();
+        sequence.write(projection.apply(row));
+        entityManager.detach(row);
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import org.springframework.stereotype.Service;
+
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is a service that finds help requests matching a filter, oldest first
+ * (by request time, then id), one page at a time.
+ *
+ * Only the conditions that were given are put in the query, so each
+ * combination of filters can use the index that starts with its column (see
+ * changeset HelpRequest-4).  The solved condition is written as a literal
+ * rather than a parameter, which lets Postgres use the partial indexes on
+ * unsolved rows; those stay the size of the open queue however many solved
+ * requests pile up.  Pages continue from the last row of the previous page
+ * rather than using an offset.
+ */
+@Service
+public class HelpRequestQueueService {
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  /**
+   * Conditions on the help requests to return.  Null fields are not checked.
+   *
+   * @param teamId only requests from this team
+   * @param tableOrBreakoutRoom only requests from this table or breakout room
+   * @param solved only solved (true) or unsolved (false) requests
+   * @param requestedAfter only requests made at or after this time
+   * @param requestedBefore only requests made before this time
+   */
+  public record Filter(String teamId, String tableOrBreakoutRoom, Boolean solved,
+      ZonedDateTime requestedAfter, ZonedDateTime requestedBefore) {
+  }
+
+  /**
+   * The position of a row in the queue: the sort key of the last row on a page.
+   *
+   * @param requestTime the row's request time
+   * @param id the row's id
+   */
+  public record Position(ZonedDateTime requestTime, long id) {
+  }
+
+  /**
+   * Returns the help requests that match the filter and come after the given
+   * position, ordered by request time and then id.  Requests without a request
+   * time are never returned.
+   *
+   * @param filter the conditions the requests must meet
+   * @param after the position of the last row already returned, or null for the first page
+   * @param limit the maximum number of rows to return
+   * @return the matching help requests
+   */
+  public List<HelpRequest> queue(Filter filter, Position after, int limit) {
+    StringBuilder jpql = new StringBuilder("select e from helprequests e where e.requestTime is not null");
+    Map<String, Object> parameters = new LinkedHashMap<>();
+    if (filter.teamId() != null) {
+      jpql.append(" and e.teamId = :teamId");
+      parameters.put("teamId", filter.teamId());
+    }
+    if (filter.tableOrBreakoutRoom() != null) {
+      jpql.append(" and e.tableOrBreakoutRoom = :tableOrBreakoutRoom");
+      parameters.put("tableOrBreakoutRoom", filter.tableOrBreakoutRoom());
+    }
+    if (filter.solved() != null) {
+      jpql.append(filter.solved() ? " and e.solved = true" : " and e.solved = false");
+    }
+    if (filter.requestedAfter() != null) {
+      jpql.append(" and e.requestTime >= :requestedAfter");
+      parameters.put("requestedAfter", filter.requestedAfter());
+    }
+    if (filter.requestedBefore() != null) {
+      jpql.append(" and e.requestTime < :requestedBefore");
+      parameters.put("requestedBefore", filter.requestedBefore());
+    }
+    if (after != null) {
+      jpql.append(" and (e.requestTime > :afterTime or (e.requestTime = :afterTime and e.id > :afterId))");
+      parameters.put("afterTime", after.requestTime());
+      parameters.put("afterId", after.id());
+    }
+    jpql.append(" order by e.requestTime, e.id");
+
+    TypedQuery<HelpRequest> query = entityManager.createQuery(jpql.toString(), HelpRequest.class);
+    parameters.forEach(query::setParameter);
+    return query.setMaxResults(limit).getResultList();
+  }
+}
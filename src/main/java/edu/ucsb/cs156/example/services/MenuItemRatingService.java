@@ -0,0 +1,120 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.repositories.MenuItemRatingSummaryRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This is a service that keeps a {@link MenuItemRatingSummary} for each menu
+ * item (its review count, total stars and star histogram) in step with the
+ * reviews, so that a rating can be read with one primary key lookup instead of
+ * a scan of the reviews.
+ *
+ * MenuItemReviewController calls {@link #added}, {@link #changed} and
+ * {@link #removed} in the same transaction as the review write, so a summary
+ * change is committed or rolled back together with the review.  Each change is
+ * a single relative UPDATE of the item's row.  When the first review of an item
+ * is counted, its row is first created (all zero) in a transaction of its own,
+ * so two transactions counting first reviews of the same item at the same time
+ * both end up updating the one row instead of both inserting it.  Writes that bypass the
+ * controller (e.g. SQL run by hand) are not seen; {@link #rebuild} recomputes
+ * every summary from the reviews to repair that.  Every change is also passed
+ * on to {@link TopRatedMenuItems}.
+ *
+ * Reviews with a number of stars outside 1 to 5 count towards the review count
+ * and the total, but not towards the histogram.
+ */
+@Service
+public class MenuItemRatingService {
+
+  @Autowired
+  MenuItemRatingSummaryRepository menuItemRatingSummaryRepository;
+
+  @Autowired
+  TopRatedMenuItems topRatedMenuItems;
+
+  /**
+   * Returns the rating summary of a menu item.
+   *
+   * @param itemId id of the menu item
+   * @return the summary (all zero if the item has no reviews)
+   */
+  public MenuItemRatingSummary summary(long itemId) {
+    return menuItemRatingSummaryRepository.findById(itemId)
+        .orElseGet(() -> MenuItemRatingSummary.builder().itemId(itemId).build());
+  }
+
+  /**
+   * Counts reviews that have just been saved.
+   *
+   * @param reviews the new reviews
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void added(Iterable<MenuItemReview> reviews) {
+    reviews.forEach(review -> adjust(review.getItemId(), 1, review.getStars()));
+  }
+
+  /**
+   * Moves a review from one number of stars to another, after it has been updated.
+   *
+   * @param itemId id of the menu item reviewed
+   * @param oldStars the stars before the update
+   * @param newStars the stars after the update
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void changed(long itemId, int oldStars, int newStars) {
+    if (oldStars != newStars) {
+      adjust(itemId, -1, oldStars);
+      adjust(itemId, 1, newStars);
+    }
+  }
+
+  /**
+   * Stops counting reviews that have just been deleted.
+   *
+   * @param ratings the ratings of the deleted reviews, locked and read before they were deleted
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void removed(Iterable<MenuItemReviewRepository.Rating> ratings) {
+    ratings.forEach(rating -> adjust(rating.getItemId(), -1, rating.getStars()));
+  }
+
+  /**
+   * Replaces every summary with one computed from the reviews.
+   *
+   * @return the number of menu items that have reviews
+   */
+  @Transactional
+  public int rebuild() {
+    menuItemRatingSummaryRepository.deleteAllSummaries();
+    int items = menuItemRatingSummaryRepository.insertSummariesFromReviews();
+    topRatedMenuItems.invalidate();
+    return items;
+  }
+
+  private void adjust(long itemId, int reviews, int stars) {
+    long[] histogram = new long[6];
+    if (stars >= 1 && stars <= 5) {
+      histogram[stars] = reviews;
+    }
+    int updated = menuItemRatingSummaryRepository.adjust(itemId, reviews, (long) reviews * stars,
+        histogram[1], histogram[2], histogram[3], histogram[4], histogram[5]);
+    if (updated == 0 && reviews > 0) {
+      try {
+        menuItemRatingSummaryRepository.insertEmptySummary(itemId);
+      } catch (DataIntegrityViolationException e) {
+        // a concurrent transaction created it first
+      }
+      menuItemRatingSummaryRepository.adjust(itemId, reviews, (long) reviews * stars,
+          histogram[1], histogram[2], histogram[3], histogram[4], histogram[5]);
+    }
+    topRatedMenuItems.ratingChanged(itemId);
+  }
+}
@@ -0,0 +1,126 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a service that finds the dining commons nearest to a location, using
+ * a {@link SphereKdTree} of the commons that have a latitude and longitude.
+ *
+ * The tree is built from the dining commons table on first use, and rebuilt on
+ * the next request whenever the table changes (its {@link TableVersions}
+ * counter moves).  A lookup reuses per-thread result buffers, so the only
+ * allocation is the returned list.
+ */
+@Service
+public class NearestDiningCommons {
+
+  static final int SACK_MEAL = 1;
+  static final int TAKE_OUT_MEAL = 2;
+  static final int DINING_CAM = 4;
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired
+  TableVersions tableVersions;
+
+  /**
+   * A dining commons and its distance from the location searched for
+   *
+   * @param commons the dining commons
+   * @param distanceKm great-circle distance, in kilometres
+   */
+  public record Nearby(UCSBDiningCommons commons, double distanceKm) {
+  }
+
+  private record Index(long version, SphereKdTree tree, UCSBDiningCommons[] commons) {
+  }
+
+  private static final class Buffers {
+    int[] found = new int[0];
+    double[] distancesKm = new double[0];
+  }
+
+  private volatile Index index;
+
+  private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+  /**
+   * Returns the dining commons nearest to a location, nearest first.  Each
+   * filter that is not null restricts the result to commons that have (true)
+   * or do not have (false) that feature.
+   *
+   * @param latitude latitude of the location, in degrees
+   * @param longitude longitude of the location, in degrees
+   * @param k the maximum number of commons to return (at least 1)
+   * @param hasSackMeal filter on sack meals, or null
+   * @param hasTakeOutMeal filter on take out meals, or null
+   * @param hasDiningCam filter on a dining cam, or null
+   * @return the commons, with their distances
+   */
+  public List<Nearby> nearest(double latitude, double longitude, int k,
+      Boolean hasSackMeal, Boolean hasTakeOutMeal, Boolean hasDiningCam) {
+    Index current = index;
+    if (current == null || current.version() != tableVersions.version(UCSBDiningCommons.class)) {
+      current = load();
+    }
+    int mustSet = (Boolean.TRUE.equals(hasSackMeal) ? SACK_MEAL : 0)
+        | (Boolean.TRUE.equals(hasTakeOutMeal) ? TAKE_OUT_MEAL : 0)
+        | (Boolean.TRUE.equals(hasDiningCam) ? DINING_CAM : 0);
+    int mustClear = (Boolean.FALSE.equals(hasSackMeal) ? SACK_MEAL : 0)
+        | (Boolean.FALSE.equals(hasTakeOutMeal) ? TAKE_OUT_MEAL : 0)
+        | (Boolean.FALSE.equals(hasDiningCam) ? DINING_CAM : 0);
+
+    Buffers buffer = buffers.get();
+    if (buffer.found.length < k) {
+      buffer.found = new int[k];
+      buffer.distancesKm = new double[k];
+    }
+    int count = current.tree().nearest(latitude, longitude, k, mustSet, mustClear, buffer.found, buffer.distancesKm);
+    List<Nearby> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(new Nearby(current.commons()[buffer.found[i]], buffer.distancesKm[i]));
+    }
+    return result;
+  }
+
+  /**
+   * Builds the tree from the database, unless another thread has just done so.
+   */
+  synchronized Index load() {
+    long version = tableVersions.version(UCSBDiningCommons.class);
+    Index current = index;
+    if (current != null && current.version() == version) {
+      return current;
+    }
+    List<UCSBDiningCommons> located = new ArrayList<>();
+    for (UCSBDiningCommons commons : ucsbDiningCommonsRepository.findAll()) {
+      if (commons.getLatitude() != null && commons.getLongitude() != null) {
+        located.add(commons);
+      }
+    }
+    int size = located.size();
+    double[] latitudes = new double[size];
+    double[] longitudes = new double[size];
+    int[] flags = new int[size];
+    for (int i = 0; i < size; i++) {
+      UCSBDiningCommons commons = located.get(i);
+      latitudes[i] = commons.getLatitude();
+      longitudes[i] = commons.getLongitude();
+      flags[i] = (commons.getHasSackMeal() ? SACK_MEAL : 0)
+          | (commons.getHasTakeOutMeal() ? TAKE_OUT_MEAL : 0)
+          | (commons.getHasDiningCam() ? DINING_CAM : 0);
+    }
+    current = new Index(version, new SphereKdTree(latitudes, longitudes, flags),
+        located.toArray(new UCSBDiningCommons[0]));
+    index = current;
+    return current;
+  }
+}
@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a service that suggests UCSB organizations for a typed prefix, for
+ * the organization picker's typeahead.
+ *
+ * An organization can be found by the start of its orgCode, orgTranslationShort
+ * or orgTranslation, or by the start of any word in the two translations.  The
+ * suggestions come from a {@link PrefixIndex} of every organization, built on
+ * first use.  When the organizations table changes (its {@link TableVersions}
+ * counter moves), the next request builds a new index and swaps it in; requests
+ * already running keep using the old one.
+ */
+@Service
+public class OrganizationSuggestions {
+
+  @Autowired
+  UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @Autowired
+  TableVersions tableVersions;
+
+  private record Index(long version, PrefixIndex<UCSBOrganization> index) {
+  }
+
+  private volatile Index index;
+
+  /**
+   * Returns the organizations that match a prefix.
+   *
+   * @param prefix the start of an orgCode, a translation, or a word in a translation
+   * @param limit the maximum number of organizations to return
+   * @param includeInactive whether to include inactive organizations
+   * @return the matching organizations
+   */
+  public List<UCSBOrganization> suggest(String prefix, int limit, boolean includeInactive) {
+    Index current = index;
+    if (current == null || current.version() != tableVersions.version(UCSBOrganization.class)) {
+      current = load();
+    }
+    return current.index().search(prefix, limit, org -> includeInactive || !org.getInactive());
+  }
+
+  /**
+   * Builds the index from the database, unless another thread has just done so.
+   */
+  synchronized Index load() {
+    long version = tableVersions.version(UCSBOrganization.class);
+    Index current = index;
+    if (current != null && current.version() == version) {
+      return current;
+    }
+    List<UCSBOrganization> orgs = new ArrayList<>();
+    ucsbOrganizationRepository.findAll().forEach(orgs::add);
+    current = new Index(version, new PrefixIndex<>(orgs, OrganizationSuggestions::terms));
+    index = current;
+    return current;
+  }
+
+  /**
+   * Returns the terms an organization can be found by: its orgCode, and each
+   * translation from the start of every word to the end.
+   */
+  static List<String> terms(UCSBOrganization org) {
+    List<String> terms = new ArrayList<>();
+    if (org.getOrgCode() != null) {
+      terms.add(org.getOrgCode());
+    }
+    addWordStarts(terms, org.getOrgTranslationShort());
+    addWordStarts(terms, org.getOrgTranslation());
+    return terms;
+  }
+
+  private static void addWordStarts(List<String> terms, String text) {
+    if (text == null) {
+      return;
+    }
+    for (int i = 0; i < text.length(); i++) {
+      boolean wordStart = i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1));
+      if (wordStart && Character.isLetterOrDigit(text.charAt(i))) {
+        terms.add(text.substring(i));
+      }
+    }
+  }
+}
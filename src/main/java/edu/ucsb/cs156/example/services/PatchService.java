@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.errors.BadRequestException;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This is a service that applies partial updates (PATCH requests) to entities.
+ * 
+ * Instead of loading the row and saving it back, it issues a single
+ * {@code UPDATE ... SET <changed fields>, version = version + 1 WHERE id = ? AND version = ?}.
+ * The client sends the version it last read; if someone else has updated the row
+ * since, no row matches and the update is rejected with an
+ * {@link OptimisticLockingFailureException} (409 Conflict) rather than silently
+ * overwriting their change.
+ */
+@Service
+public class PatchService {
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  @Autowired
+  TableVersions tableVersions;
+
+  /**
+   * Updates the given fields of one row, if its version is still the one the
+   * client read.
+   * 
+   * @param <T> the type of the entity; it must have an {@code id} and a {@code @Version version}
+   * @param type the entity class
+   * @param id id of the row to update
+   * @param changes the new field values (as parsed from the JSON body), plus the expected "version"
+   * @param patchable the fields clients are allowed to change
+   * @return the row as it is after the update
+   * @throws BadRequestException if the version is missing, or a field is not patchable or has an invalid value
+   * @throws EntityNotFoundException if there is no row with this id
+   * @throws OptimisticLockingFailureException if the row has been updated since the given version
+   */
+  @Transactional
+  public <T> T patch(Class<T> type, long id, Map<String, Object> changes, Set<String> patchable) {
+    if (!(changes.get("version") instanceof Number version)) {
+      throw new BadRequestException("version is required");
+    }
+    Map<String, Object> fields = new LinkedHashMap<>(changes);
+    fields.remove("version");
+    if (fields.isEmpty()) {
+      throw new BadRequestException("No fields to update");
+    }
+    for (String field : fields.keySet()) {
+      if (!patchable.contains(field)) {
+        throw new BadRequestException("Field %s cannot be updated".formatted(field));
+      }
+    }
+
+    BeanWrapper values;
+    try {
+      values = new BeanWrapperImpl(mapper.convertValue(fields, type));
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Invalid value: %s".formatted(e.getMessage()));
+    }
+
+    StringBuilder jpql = new StringBuilder("update ")
+        .append(type.getAnnotation(Entity.class).name())
+        .append(" e set ");
+    for (String field : fields.keySet()) {
+      jpql.append("e.").append(field).append(" = :").append(field).append(", ");
+    }
+    jpql.append("e.version = e.version + 1 where e.id = :id and e.version = :version");
+
+    Query update = entityManager.createQuery(jpql.toString());
+    for (String field : fields.keySet()) {
+      update.setParameter(field, values.getPropertyValue(field));
+    }
+    update.setParameter("id", id);
+    update.setParameter("version", version.longValue());
+
+    if (update.executeUpdate() == 0) {
+      if (entityManager.find(type, id) == null) {
+        throw new EntityNotFoundException(type, id);
+      }
+      throw new OptimisticLockingFailureException(
+          "%s with id %d has been updated since version %d".formatted(type.getSimpleName(), id, version.longValue()));
+    }
+    tableVersions.changed(type);
+    return entityManager.find(type, id);
+  }
+}
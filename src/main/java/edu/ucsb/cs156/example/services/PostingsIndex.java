@@ -0,0 +1,341 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * The inverted index shared by {@link Bm25Index} and {@link TrigramIndex}: the
+ * documents, keyed by a numeric id, and for each key (a term or a trigram) a
+ * postings list of (document, value) pairs held in primitive arrays.  What the
+ * value means, and how a query scores the documents it finds, is up to the
+ * subclass.
+ *
+ * Documents are numbered internally in the order they are added; removing or
+ * replacing a document only marks its number as deleted, and the postings
+ * lists are compacted once deleted documents outnumber live ones.  A query
+ * only visits the postings of its own keys, so its cost depends on how many
+ * documents contain those keys rather than on the size of the index: scores
+ * are summed in a per-thread buffer, and only the entries the query touched
+ * are cleared afterwards.
+ *
+ * The index is safe for concurrent use: searches share a read lock, changes
+ * take the write lock.
+ *
+ * @param <K> the type of the keys
+ */
+abstract class PostingsIndex<K> {
+
+  /**
+   * A search result
+   *
+   * @param id the document id
+   * @param score the document's score for the query
+   */
+  public record Hit(long id, float score) {
+  }
+
+  static final class Postings {
+    int[] docs = new int[4];
+    int[] values = new int[4];
+    int size;
+    int liveDocs;
+
+    void add(int doc, int value) {
+      if (size == docs.length) {
+        docs = Arrays.copyOf(docs, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      docs[size] = doc;
+      values[size] = value;
+      size++;
+      liveDocs++;
+    }
+  }
+
+  /**
+   * How one query scores documents.  It is created for each query, under the
+   * read lock.
+   */
+  interface Scoring {
+    /**
+     * @param list the postings list of one of the query's keys
+     * @return the weight of the key, passed to {@link #add}
+     */
+    float weight(Postings list);
+
+    /**
+     * @param doc a live document in the key's postings list
+     * @param value the posting's value
+     * @param weight the weight of the key
+     * @return how much the posting adds to the document's score
+     */
+    float add(int doc, int value, float weight);
+
+    /**
+     * @param doc a document that matched at least one key
+     * @param sum the sum of what its postings added
+     * @return the document's score, or NaN to leave it out of the results
+     */
+    float score(int doc, float sum);
+  }
+
+  private static final class Buffers {
+    float[] sums = new float[0];
+    int[] matched = new int[16];
+  }
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+  private final Map<Long, Integer> docsById = new HashMap<>();
+  private final Map<K, Postings> postings = new HashMap<>();
+
+  private long[] ids = new long[1024];
+  private Object[][] keys = new Object[1024][];
+  private int docCount;
+  private int liveCount;
+
+  /**
+   * Removes a document, if it is in the index.
+   *
+   * @param id the document id
+   */
+  public void remove(long id) {
+    lock.writeLock().lock();
+    try {
+      removeLocked(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes every document.
+   */
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      docsById.clear();
+      postings.clear();
+      ids = new long[1024];
+      keys = new Object[1024][];
+      docCount = 0;
+      liveCount = 0;
+      cleared();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of documents in the index.
+   *
+   * @return the number of documents
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return liveCount;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds a document, replacing any earlier document with the same id.
+   *
+   * @param id the document id
+   * @param values the document's keys, each with the value of its posting
+   * @param added called with the new document's number, under the write lock
+   */
+  protected final void put(long id, Map<K, Integer> values, IntConsumer added) {
+    lock.writeLock().lock();
+    try {
+      removeLocked(id);
+      if (docCount == ids.length) {
+        ids = Arrays.copyOf(ids, docCount * 2);
+        keys = Arrays.copyOf(keys, docCount * 2);
+        grow(docCount * 2);
+      }
+      int doc = docCount++;
+      for (Map.Entry<K, Integer> entry : values.entrySet()) {
+        postings.computeIfAbsent(entry.getKey(), k -> new Postings()).add(doc, entry.getValue());
+      }
+      ids[doc] = id;
+      keys[doc] = values.keySet().toArray();
+      docsById.put(id, doc);
+      liveCount++;
+      added.accept(doc);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the documents that best match a query, best first.
+   *
+   * @param queryKeys the distinct keys of the query
+   * @param limit the maximum number of results
+   * @param scoring creates the query's scoring, given the number of live documents
+   * @return at most limit hits, by descending score (ties by ascending id)
+   */
+  protected final List<Hit> search(Collection<K> queryKeys, int limit, IntFunction<Scoring> scoring) {
+    lock.readLock().lock();
+    try {
+      if (liveCount == 0 || queryKeys.isEmpty()) {
+        return List.of();
+      }
+      Scoring query = scoring.apply(liveCount);
+      Buffers buffer = buffers.get();
+      if (buffer.sums.length < docCount) {
+        buffer.sums = new float[Math.max(docCount, buffer.sums.length * 2)];
+      }
+      float[] sums = buffer.sums;
+      int matchedCount = 0;
+      try {
+        for (K key : queryKeys) {
+          Postings list = postings.get(key);
+          if (list == null) {
+            continue;
+          }
+          float weight = query.weight(list);
+          for (int i = 0; i < list.size; i++) {
+            int doc = list.docs[i];
+            if (keys[doc] == null) {
+              continue;
+            }
+            if (sums[doc] == 0) {
+              if (matchedCount == buffer.matched.length) {
+                buffer.matched = Arrays.copyOf(buffer.matched, matchedCount * 2);
+              }
+              buffer.matched[matchedCount++] = doc;
+            }
+            sums[doc] += query.add(doc, list.values[i], weight);
+          }
+        }
+
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, PostingsIndex::worseFirst);
+        for (int i = 0; i < matchedCount; i++) {
+          int doc = buffer.matched[i];
+          float score = query.score(doc, sums[doc]);
+          if (Float.isNaN(score)) {
+            continue;
+          }
+          Hit hit = new Hit(ids[doc], score);
+          if (best.size() < limit) {
+            best.add(hit);
+          } else if (worseFirst(hit, best.peek()) > 0) {
+            best.poll();
+            best.add(hit);
+          }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort((a, b) -> worseFirst(b, a));
+        return hits;
+      } finally {
+        for (int i = 0; i < matchedCount; i++) {
+          sums[buffer.matched[i]] = 0;
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Called under the write lock when the per-document arrays grow, so that a
+   * subclass can grow its own.
+   *
+   * @param capacity the new capacity
+   */
+  protected void grow(int capacity) {
+  }
+
+  /**
+   * Called under the write lock when a document is removed or replaced.
+   *
+   * @param doc the document's number
+   */
+  protected void removed(int doc) {
+  }
+
+  /**
+   * Called under the write lock when compaction renumbers a document.
+   *
+   * @param from the document's old number
+   * @param to its new number
+   */
+  protected void moved(int from, int to) {
+  }
+
+  /**
+   * Called under the write lock when every document has been removed.
+   */
+  protected void cleared() {
+  }
+
+  private static int worseFirst(Hit a, Hit b) {
+    int byScore = Float.compare(a.score(), b.score());
+    return byScore != 0 ? byScore : Long.compare(b.id(), a.id());
+  }
+
+  private void removeLocked(long id) {
+    Integer doc = docsById.remove(id);
+    if (doc == null) {
+      return;
+    }
+    for (Object key : keys[doc]) {
+      Postings list = postings.get(key);
+      if (--list.liveDocs == 0) {
+        postings.remove(key);
+      }
+    }
+    removed(doc);
+    keys[doc] = null;
+    liveCount--;
+    if (docCount - liveCount > Math.max(1024, liveCount)) {
+      compact();
+    }
+  }
+
+  private void compact() {
+    int[] renumbered = new int[docCount];
+    int next = 0;
+    for (int doc = 0; doc < docCount; doc++) {
+      renumbered[doc] = keys[doc] == null ? -1 : next++;
+    }
+    for (Postings list : postings.values()) {
+      int kept = 0;
+      for (int i = 0; i < list.size; i++) {
+        int doc = renumbered[list.docs[i]];
+        if (doc >= 0) {
+          list.docs[kept] = doc;
+          list.values[kept] = list.values[i];
+          kept++;
+        }
+      }
+      list.size = kept;
+    }
+    for (int doc = 0; doc < docCount; doc++) {
+      int to = renumbered[doc];
+      if (to >= 0) {
+        ids[to] = ids[doc];
+        keys[to] = keys[doc];
+        moved(doc, to);
+        docsById.put(ids[to], to);
+      }
+    }
+    Arrays.fill(keys, next, docCount, null);
+    docCount = next;
+  }
+}
@@ -0,0 +1,119 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * An immutable index for prefix (typeahead) searches over a list of items.
+ *
+ * Each item has some terms; the terms of every item are lower-cased and kept in
+ * one sorted array, with a parallel array of the item each term belongs to.
+ * The terms that start with a prefix are then a contiguous run of the array:
+ * a search finds the start of the run by binary search and reads forward until
+ * a term no longer matches, so its cost depends on the number of matches read,
+ * not on the number of items.
+ *
+ * To change the items, build a new index and replace the old one.
+ */
+public final class PrefixIndex<T> {
+
+  private final List<T> items;
+  private final String[] terms;
+  private final int[] owners;
+
+  private record Entry(String term, int owner) {
+  }
+
+  /**
+   * Builds an index.
+   *
+   * @param items the items, in the order that breaks ties between equal terms
+   * @param termsOf the terms an item can be found by
+   */
+  public PrefixIndex(List<T> items, Function<T, List<String>> termsOf) {
+    this.items = List.copyOf(items);
+    List<Entry> entries = new ArrayList<>();
+    for (int i = 0; i < this.items.size(); i++) {
+      for (String term : termsOf.apply(this.items.get(i))) {
+        entries.add(new Entry(normalize(term), i));
+      }
+    }
+    Entry[] sorted = entries.toArray(new Entry[0]);
+    Arrays.sort(sorted, Comparator.comparing(Entry::term).thenComparingInt(Entry::owner));
+    this.terms = new String[sorted.length];
+    this.owners = new int[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      terms[i] = sorted[i].term();
+      owners[i] = sorted[i].owner();
+    }
+  }
+
+  /**
+   * Returns the number of terms in the index.
+   *
+   * @return the number of terms
+   */
+  public int size() {
+    return terms.length;
+  }
+
+  /**
+   * Finds the items with a term that starts with a prefix (ignoring case), in
+   * order of their first matching term.  Each item is returned at most once.
+   *
+   * @param prefix the prefix
+   * @param limit the maximum number of items to return
+   * @param filter only items that pass this filter are returned
+   * @return the matching items
+   */
+  public List<T> search(String prefix, int limit, Predicate<T> filter) {
+    String normalized = normalize(prefix);
+    List<T> found = new ArrayList<>(Math.min(limit, 16));
+    BitSet seen = new BitSet();
+    for (int i = lowerBound(normalized); i < terms.length && found.size() < limit; i++) {
+      if (!terms[i].startsWith(normalized)) {
+        break;
+      }
+      int owner = owners[i];
+      if (!seen.get(owner)) {
+        seen.set(owner);
+        T item = items.get(owner);
+        if (filter.test(item)) {
+          found.add(item);
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns the form terms and prefixes are compared in: trimmed and lower-cased.
+   *
+   * @param text the text
+   * @return the normalized text
+   */
+  static String normalize(String text) {
+    return text.strip().toLowerCase(Locale.ROOT);
+  }
+
+  /** Returns the position of the first term that is not less than key. */
+  private int lowerBound(String key) {
+    int lo = 0;
+    int hi = terms.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (terms[mid].compareTo(key) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+}
@@ -0,0 +1,80 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * This is a service for typo-tolerant search over the name and description of
+ * restaurants.
+ *
+ * It uses a {@link TrigramIndex} held in memory, so "woodstok" or "pizzaria"
+ * still find the restaurant that was meant.  The index is loaded and kept up to
+ * date by {@link SearchIndexLoader}: RestaurantsController calls
+ * {@link #indexed} and {@link #removed} whenever it saves or deletes
+ * restaurants.  There is no database backend for this search, so it assumes a
+ * single application instance.
+ */
+@Service
+public class RestaurantSearchService {
+
+  @Autowired
+  RestaurantRepository restaurantRepository;
+
+  @Autowired
+  SearchIndexLoader searchIndexLoader;
+
+  final TrigramIndex index = new TrigramIndex();
+
+  final SearchIndexLoader.Index<Restaurant> loadedIndex = new SearchIndexLoader.Index<>(
+      () -> restaurantRepository.streamAll(), index::clear,
+      restaurant -> index.put(restaurant.getId(), restaurant.getName(), restaurant.getDescription()));
+
+  /**
+   * Returns the restaurants most similar to a query, best first.
+   *
+   * @param query the (possibly misspelled) words to search for
+   * @param limit the maximum number of restaurants to return
+   * @return the matching restaurants
+   */
+  public List<Restaurant> search(String query, int limit) {
+    if (!loadedIndex.isLoaded()) {
+      searchIndexLoader.load(loadedIndex);
+    }
+    List<TrigramIndex.Hit> hits = index.search(query, limit);
+    Map<Long, Restaurant> byId = new HashMap<>();
+    restaurantRepository.findAllById(hits.stream().map(TrigramIndex.Hit::id).toList())
+        .forEach(restaurant -> byId.put(restaurant.getId(), restaurant));
+    return hits.stream()
+        .map(hit -> byId.get(hit.id()))
+        .filter(Objects::nonNull)
+        .toList();
+  }
+
+  /**
+   * Adds or replaces restaurants in the in-memory index, after they have been saved.
+   *
+   * @param restaurants the saved restaurants
+   */
+  public void indexed(Iterable<Restaurant> restaurants) {
+    searchIndexLoader.apply(loadedIndex, () -> restaurants.forEach(restaurant ->
+        index.put(restaurant.getId(), restaurant.getName(), restaurant.getDescription())));
+  }
+
+  /**
+   * Removes restaurants from the in-memory index, after they have been deleted.
+   *
+   * @param ids ids of the deleted restaurants
+   */
+  public void removed(Collection<Long> ids) {
+    searchIndexLoader.apply(loadedIndex, () -> ids.forEach(index::remove));
+  }
+}
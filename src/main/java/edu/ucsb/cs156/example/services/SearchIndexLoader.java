@@ -0,0 +1,106 @@
+package edu.ucsb.cs156.example.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * This is a service that loads the in-memory search indexes of
+ * {@link ArticleSearchService} and {@link RestaurantSearchService} and keeps
+ * them in step with later writes.
+ *
+ * An index is loaded from the database on its first search, from rows that
+ * are streamed and detached as they are indexed, so they are not all held in
+ * the persistence context at once.  After that, the owning service passes
+ * every change it makes to {@link #apply}.  A change made while the index is
+ * being loaded waits for the load, so it is applied after the rows that were
+ * read rather than lost; a change made before the first search is skipped,
+ * since the load will read it from the database.
+ *
+ * The indexes assume a single application instance, like
+ * {@link TableVersions}: a change is applied only to the indexes of the
+ * instance that made it, and an index is never reloaded, so other instances
+ * would keep serving the old hits.  Writes that bypass the controllers (e.g.
+ * SQL run by hand) are not seen until a restart.
+ */
+@Service
+public class SearchIndexLoader {
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  /**
+   * An in-memory index, with where its rows come from and whether it has been
+   * loaded.
+   *
+   * @param <T> the type of the rows
+   */
+  public static final class Index<T> {
+    private final Supplier<Stream<T>> rows;
+    private final Runnable clear;
+    private final Consumer<T> put;
+    private volatile boolean loaded;
+
+    /**
+     * @param rows streams every row, e.g. repository::streamAll
+     * @param clear empties the index
+     * @param put adds a row to the index
+     */
+    public Index(Supplier<Stream<T>> rows, Runnable clear, Consumer<T> put) {
+      this.rows = rows;
+      this.clear = clear;
+      this.put = put;
+    }
+
+    /**
+     * @return true once the index has been loaded
+     */
+    public boolean isLoaded() {
+      return loaded;
+    }
+  }
+
+  /**
+   * Loads every row into an index, unless that has already been done.
+   *
+   * @param <T> the type of the rows
+   * @param index the index
+   */
+  @Transactional(readOnly = true)
+  public <T> void load(Index<T> index) {
+    synchronized (index) {
+      if (index.loaded) {
+        return;
+      }
+      index.clear.run();
+      try (Stream<T> rows = index.rows.get()) {
+        rows.forEach(row -> {
+          index.put.accept(row);
+          entityManager.detach(row);
+        });
+      }
+      index.loaded = true;
+    }
+  }
+
+  /**
+   * Applies a change to an index, after the rows have been saved or deleted,
+   * if the index has been loaded.
+   *
+   * @param index the index
+   * @param change the change, e.g. putting the saved rows
+   */
+  public void apply(Index<?> index, Runnable change) {
+    synchronized (index) {
+      if (index.loaded) {
+        change.run();
+      }
+    }
+  }
+}
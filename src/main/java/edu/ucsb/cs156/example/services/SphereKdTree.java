@@ -0,0 +1,265 @@
+package edu.ucsb.cs156.example.services;
+
+/**
+ * An immutable k-d tree of points on the earth's surface, for finding the k
+ * nearest points to a location.
+ *
+ * Points are stored as unit vectors (x, y, z) rather than latitude and
+ * longitude, so straight-line distance in the tree orders points exactly as
+ * great-circle distance does, with no special cases at the poles or the
+ * antimeridian.  The tree is implicit: the points are kept in primitive arrays,
+ * arranged so that the median of each range (by the axis for its depth) sits in
+ * the middle of the range.
+ *
+ * Each point can carry bit flags, and a search can require some flags to be set
+ * and others to be clear.  A search allocates nothing: the caller supplies the
+ * arrays the results are written to.
+ */
+public final class SphereKdTree {
+
+  /** Mean radius of the earth, in kilometres. */
+  public static final double EARTH_RADIUS_KM = 6371.0088;
+
+  private final int size;
+  private final double[] coordinates;
+  private final double[] latitudes;
+  private final double[] longitudes;
+  private final int[] indexes;
+  private final int[] flags;
+
+  /**
+   * Builds a tree of points.
+   *
+   * @param latitudes latitude of each point, in degrees
+   * @param longitudes longitude of each point, in degrees
+   * @param flags flags of each point
+   * @throws IllegalArgumentException if the arrays are not all the same length
+   */
+  public SphereKdTree(double[] latitudes, double[] longitudes, int[] flags) {
+    if (longitudes.length != latitudes.length || flags.length != latitudes.length) {
+      throw new IllegalArgumentException("latitudes, longitudes and flags must have the same length");
+    }
+    size = latitudes.length;
+    double[] points = new double[3 * size];
+    int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      toUnitVector(Math.toRadians(latitudes[i]), Math.toRadians(longitudes[i]), points, 3 * i);
+      order[i] = i;
+    }
+    arrange(order, points, 0, size, 0);
+
+    this.coordinates = new double[3 * size];
+    this.latitudes = new double[size];
+    this.longitudes = new double[size];
+    this.indexes = order;
+    this.flags = new int[size];
+    for (int node = 0; node < size; node++) {
+      int i = order[node];
+      System.arraycopy(points, 3 * i, coordinates, 3 * node, 3);
+      this.latitudes[node] = Math.toRadians(latitudes[i]);
+      this.longitudes[node] = Math.toRadians(longitudes[i]);
+      this.flags[node] = flags[i];
+    }
+  }
+
+  /**
+   * Returns the number of points in the tree.
+   *
+   * @return the number of points
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Finds the points nearest to a location, among those whose flags include
+   * every bit of mustSet and no bit of mustClear.
+   *
+   * @param latitude latitude of the location, in degrees
+   * @param longitude longitude of the location, in degrees
+   * @param k the maximum number of points to find
+   * @param mustSet flags the points must have
+   * @param mustClear flags the points must not have
+   * @param found receives the positions (in the arrays the tree was built from) of the points found, nearest first
+   * @param distancesKm receives the haversine distance to each point found, in kilometres
+   * @return the number of points found (at most k)
+   * @throws IllegalArgumentException if k is less than 1 or the result arrays are shorter than k
+   */
+  public int nearest(double latitude, double longitude, int k, int mustSet, int mustClear,
+      int[] found, double[] distancesKm) {
+    if (k < 1 || found.length < k || distancesKm.length < k) {
+      throw new IllegalArgumentException("k must be at least 1 and fit in the result arrays");
+    }
+    double lat = Math.toRadians(latitude);
+    double lon = Math.toRadians(longitude);
+    double cosLat = Math.cos(lat);
+    double qx = cosLat * Math.cos(lon);
+    double qy = cosLat * Math.sin(lon);
+    double qz = Math.sin(lat);
+
+    // found/distancesKm hold a max-heap of (node, squared chord length) while searching
+    int count = search(0, size, 0, qx, qy, qz, k, mustSet, mustClear, found, distancesKm, 0);
+
+    // heap sort into nearest-first order, then report positions and haversine distances
+    for (int last = count - 1; last > 0; last--) {
+      swap(found, distancesKm, 0, last);
+      siftDown(found, distancesKm, 0, last);
+    }
+    for (int i = 0; i < count; i++) {
+      int node = found[i];
+      found[i] = indexes[node];
+      distancesKm[i] = haversineKm(lat, lon, latitudes[node], longitudes[node]);
+    }
+    return count;
+  }
+
+  /**
+   * Returns the great-circle distance between two locations, by the haversine
+   * formula.
+   *
+   * @param lat1 latitude of the first location, in radians
+   * @param lon1 longitude of the first location, in radians
+   * @param lat2 latitude of the second location, in radians
+   * @param lon2 longitude of the second location, in radians
+   * @return the distance in kilometres
+   */
+  public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+    double sinLat = Math.sin((lat2 - lat1) / 2);
+    double sinLon = Math.sin((lon2 - lon1) / 2);
+    double a = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+    return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  private int search(int lo, int hi, int depth, double qx, double qy, double qz, int k,
+      int mustSet, int mustClear, int[] heap, double[] heapDistances, int count) {
+    if (lo >= hi) {
+      return count;
+    }
+    int node = (lo + hi) >>> 1;
+    int base = 3 * node;
+    int flag = flags[node];
+    if ((flag & mustSet) == mustSet && (flag & mustClear) == 0) {
+      double dx = coordinates[base] - qx;
+      double dy = coordinates[base + 1] - qy;
+      double dz = coordinates[base + 2] - qz;
+      double distance = dx * dx + dy * dy + dz * dz;
+      if (count < k) {
+        heap[count] = node;
+        heapDistances[count] = distance;
+        siftUp(heap, heapDistances, count);
+        count++;
+      } else if (distance < heapDistances[0]) {
+        heap[0] = node;
+        heapDistances[0] = distance;
+        siftDown(heap, heapDistances, 0, count);
+      }
+    }
+    int axis = depth % 3;
+    double q = axis == 0 ? qx : axis == 1 ? qy : qz;
+    double diff = q - coordinates[base + axis];
+    if (diff < 0) {
+      count = search(lo, node, depth + 1, qx, qy, qz, k, mustSet, mustClear, heap, heapDistances, count);
+      if (count < k || diff * diff < heapDistances[0]) {
+        count = search(node + 1, hi, depth + 1, qx, qy, qz, k, mustSet, mustClear, heap, heapDistances, count);
+      }
+    } else {
+      count = search(node + 1, hi, depth + 1, qx, qy, qz, k, mustSet, mustClear, heap, heapDistances, count);
+      if (count < k || diff * diff < heapDistances[0]) {
+        count = search(lo, node, depth + 1, qx, qy, qz, k, mustSet, mustClear, heap, heapDistances, count);
+      }
+    }
+    return count;
+  }
+
+  private static void siftUp(int[] heap, double[] distances, int child) {
+    while (child > 0) {
+      int parent = (child - 1) / 2;
+      if (distances[parent] >= distances[child]) {
+        return;
+      }
+      swap(heap, distances, parent, child);
+      child = parent;
+    }
+  }
+
+  private static void siftDown(int[] heap, double[] distances, int parent, int count) {
+    while (true) {
+      int largest = parent;
+      int left = 2 * parent + 1;
+      int right = left + 1;
+      if (left < count && distances[left] > distances[largest]) {
+        largest = left;
+      }
+      if (right < count && distances[right] > distances[largest]) {
+        largest = right;
+      }
+      if (largest == parent) {
+        return;
+      }
+      swap(heap, distances, parent, largest);
+      parent = largest;
+    }
+  }
+
+  private static void swap(int[] heap, double[] distances, int i, int j) {
+    int node = heap[i];
+    heap[i] = heap[j];
+    heap[j] = node;
+    double distance = distances[i];
+    distances[i] = distances[j];
+    distances[j] = distance;
+  }
+
+  private static void toUnitVector(double lat, double lon, double[] points, int offset) {
+    double cosLat = Math.cos(lat);
+    points[offset] = cosLat * Math.cos(lon);
+    points[offset + 1] = cosLat * Math.sin(lon);
+    points[offset + 2] = Math.sin(lat);
+  }
+
+  /**
+   * Reorders order[lo, hi) so that the median by the depth's axis is in the
+   * middle, with smaller points before it and larger ones after, and then does
+   * the same for each half.
+   */
+  private static void arrange(int[] order, double[] points, int lo, int hi, int depth) {
+    if (hi - lo <= 1) {
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    select(order, points, depth % 3, lo, hi - 1, mid);
+    arrange(order, points, lo, mid, depth + 1);
+    arrange(order, points, mid + 1, hi, depth + 1);
+  }
+
+  /** Quickselect: puts the point of rank k (by the axis) of order[lo, hi] at k. */
+  private static void select(int[] order, double[] points, int axis, int lo, int hi, int k) {
+    while (lo < hi) {
+      double pivot = points[3 * order[(lo + hi) >>> 1] + axis];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (points[3 * order[i] + axis] < pivot) {
+          i++;
+        }
+        while (points[3 * order[j] + axis] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          int t = order[i];
+          order[i] = order[j];
+          order[j] = t;
+          i++;
+          j--;
+        }
+      }
+      if (k <= j) {
+        hi = j;
+      } else if (k >= i) {
+        lo = i;
+      } else {
+        return;
+      }
+    }
+  }
+}
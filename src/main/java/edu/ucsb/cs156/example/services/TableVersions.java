@@ -0,0 +1,75 @@
+package edu.ucsb.cs156.example.services;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a service that keeps a modification counter for each entity type
+ * (i.e. each table), so that collection endpoints can answer conditional GETs
+ * (If-None-Match) with a 304 without querying the table.
+ * 
+ * The counter is bumped by {@link TableVersionsListener} whenever Hibernate
+ * inserts, updates or deletes an entity, and explicitly by code that changes
+ * rows with JPQL bulk statements (which bypass entity callbacks).  It is bumped
+ * again when the surrounding transaction completes, so an ETag handed out
+ * while the change was still uncommitted is never reused for the committed data.
+ * 
+ * The counters live in memory, and the ETags include the time the application
+ * started, so ETags from before a restart never match.  With more than one
+ * application instance, each instance would need to see every write; this app
+ * runs as a single instance.
+ */
+@Service
+public class TableVersions {
+
+  private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+  private final ConcurrentHashMap<Class<?>, AtomicLong> versions = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the current modification count for an entity type.
+   * 
+   * @param type the entity class
+   * @return the number of times the table has been changed since startup
+   */
+  public long version(Class<?> type) {
+    return counter(type).get();
+  }
+
+  /**
+   * Returns a strong ETag for the current contents of a table.
+   * 
+   * @param type the entity class
+   * @return the ETag, including the surrounding quotes
+   */
+  public String etag(Class<?> type) {
+    return "\"%s-%d\"".formatted(epoch, version(type));
+  }
+
+  /**
+   * Records that rows of an entity type have changed (or are about to change,
+   * if called inside a transaction).
+   * 
+   * @param type the entity class
+   */
+  public void changed(Class<?> type) {
+    AtomicLong counter = counter(type);
+    counter.incrementAndGet();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          counter.incrementAndGet();
+        }
+      });
+    }
+  }
+
+  private AtomicLong counter(Class<?> type) {
+    return versions.computeIfAbsent(type, t -> new AtomicLong());
+  }
+}
@@ -0,0 +1,31 @@
+package edu.ucsb.cs156.example.services;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * JPA entity listener that bumps the {@link TableVersions} counter for an
+ * entity's table whenever one of its rows is inserted, updated or deleted.
+ * Hibernate creates it through Spring, so the TableVersions bean is injected.
+ */
+public class TableVersionsListener {
+
+  @Autowired
+  TableVersions tableVersions;
+
+  /**
+   * Called by Hibernate after an entity is inserted, updated or deleted.
+   * 
+   * @param entity the entity that changed
+   */
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  public void changed(Object entity) {
+    tableVersions.changed(Hibernate.getClass(entity));
+  }
+}
@@ -0,0 +1,177 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * This is a service that keeps, for each dining commons, its menu items in
+ * order of average rating, so that the best rated items can be listed without
+ * reading the menu items or reviews.
+ *
+ * Each dining commons has a skip list of its items that have at least
+ * {@code app.menu-items.top-rated.min-reviews} reviews, best first; listing
+ * the top n reads the first n entries.  The lists are built from the menu
+ * items and their rating summaries on first use.  After that:
+ * <ul>
+ * <li>when an item's rating summary changes, MenuItemRatingService calls
+ * {@link #ratingChanged}, and the item's entry is re-read once the transaction
+ * commits;</li>
+ * <li>when the menu items table changes (its {@link TableVersions} counter
+ * moves), the lists are rebuilt on the next request.</li>
+ * </ul>
+ */
+@Service
+public class TopRatedMenuItems {
+
+  @Autowired
+  UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @Autowired
+  TableVersions tableVersions;
+
+  @Value("${app.menu-items.top-rated.min-reviews:3}")
+  long minReviews;
+
+  /**
+   * A rated menu item
+   *
+   * @param itemId id of the menu item
+   * @param diningCommonsCode code of the dining commons that serves it
+   * @param name name of the menu item
+   * @param station station that serves it
+   * @param reviewCount number of reviews
+   * @param starsSum total stars of its reviews
+   */
+  public record RatedItem(long itemId, String diningCommonsCode, String name, String station,
+      long reviewCount, long starsSum) {
+
+    /**
+     * Returns the average number of stars.
+     *
+     * @return the average
+     */
+    public double getAverageStars() {
+      return (double) starsSum / reviewCount;
+    }
+  }
+
+  /** Higher average first (compared exactly, without dividing), then more reviews, then lower id. */
+  static final Comparator<RatedItem> BEST_FIRST = (a, b) -> {
+    int byAverage = Long.compare(b.starsSum() * a.reviewCount(), a.starsSum() * b.reviewCount());
+    if (byAverage != 0) {
+      return byAverage;
+    }
+    int byReviews = Long.compare(b.reviewCount(), a.reviewCount());
+    return byReviews != 0 ? byReviews : Long.compare(a.itemId(), b.itemId());
+  };
+
+  private record Lists(long version, Map<String, NavigableSet<RatedItem>> byCommons, Map<Long, RatedItem> byId) {
+  }
+
+  private volatile Lists lists;
+
+  /**
+   * Returns the best rated menu items of a dining commons, best first.  Only
+   * items with at least the minimum number of reviews are included.
+   *
+   * @param diningCommonsCode code of the dining commons
+   * @param limit the maximum number of items to return
+   * @return the items
+   */
+  public List<RatedItem> top(String diningCommonsCode, int limit) {
+    Lists current = lists;
+    if (current == null || current.version() != tableVersions.version(UCSBDiningCommonsMenuItem.class)) {
+      current = load();
+    }
+    NavigableSet<RatedItem> items = current.byCommons().get(diningCommonsCode);
+    if (items == null) {
+      return List.of();
+    }
+    return items.stream().limit(limit).toList();
+  }
+
+  /**
+   * Records that a menu item's rating summary has changed.  Inside a
+   * transaction, the item is re-read after the transaction commits (and not at
+   * all if it rolls back).
+   *
+   * @param itemId id of the menu item
+   */
+  public void ratingChanged(long itemId) {
+    afterCommit(() -> refresh(itemId));
+  }
+
+  /**
+   * Discards the lists, so that they are rebuilt on the next request (e.g. after
+   * every rating summary has been recomputed).
+   */
+  public void invalidate() {
+    afterCommit(() -> lists = null);
+  }
+
+  /**
+   * Builds the lists from the database, unless another thread has just done so.
+   */
+  synchronized Lists load() {
+    long version = tableVersions.version(UCSBDiningCommonsMenuItem.class);
+    Lists current = lists;
+    if (current != null && current.version() == version) {
+      return current;
+    }
+    current = new Lists(version, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    for (UCSBDiningCommonsMenuItemRepository.ItemRating row : ucsbDiningCommonsMenuItemRepository.findAllWithRatings()) {
+      put(current, row);
+    }
+    lists = current;
+    return current;
+  }
+
+  private synchronized void refresh(long itemId) {
+    Lists current = lists;
+    if (current == null) {
+      return;
+    }
+    RatedItem old = current.byId().remove(itemId);
+    if (old != null) {
+      current.byCommons().get(old.diningCommonsCode()).remove(old);
+    }
+    ucsbDiningCommonsMenuItemRepository.findWithRatingById(itemId).ifPresent(row -> put(current, row));
+  }
+
+  private void put(Lists current, UCSBDiningCommonsMenuItemRepository.ItemRating row) {
+    if (row.getReviewCount() == null || row.getReviewCount() < minReviews || row.getDiningCommonsCode() == null) {
+      return;
+    }
+    RatedItem item = new RatedItem(row.getItemId(), row.getDiningCommonsCode(), row.getName(), row.getStation(),
+        row.getReviewCount(), row.getStarsSum());
+    current.byId().put(item.itemId(), item);
+    current.byCommons().computeIfAbsent(item.diningCommonsCode(), code -> new ConcurrentSkipListSet<>(BEST_FIRST))
+        .add(item);
+  }
+
+  private static void afterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.run();
+        }
+      });
+    } else {
+      action.run();
+    }
+  }
+}
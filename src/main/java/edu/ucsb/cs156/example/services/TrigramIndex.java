@@ -0,0 +1,111 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory index for typo-tolerant searches over a short name and a longer
+ * description keyed by a numeric id, using trigram similarity.
+ *
+ * Each word is lower-cased and padded the way Postgres' pg_trgm pads it (two
+ * spaces before, one after), and split into its three-character substrings, so
+ * "taco" becomes {"  t", " ta", "tac", "aco", "co "}.  A misspelled word still
+ * shares most of its trigrams with the right one.  A document's score for a
+ * query is the fraction of the query's distinct trigrams found in its name or
+ * in its description, whichever is higher, and documents that score below
+ * {@link #MIN_SIMILARITY} are not returned.
+ *
+ * The postings, deletion and per-thread scoring are shared with
+ * {@link Bm25Index} (see {@link PostingsIndex}); here each trigram's postings
+ * hold which of the document's fields contain it.
+ */
+public class TrigramIndex extends PostingsIndex<Long> {
+
+  static final float MIN_SIMILARITY = 0.3f;
+
+  /** Longer queries are cut to this many trigrams, so both counts fit in one float score exactly. */
+  static final int MAX_QUERY_TRIGRAMS = 256;
+
+  private static final int NAME = 1;
+  private static final int DESCRIPTION = 2;
+
+  /** A name match adds this to a document's sum, a description match adds 1. */
+  private static final int NAME_MATCH = 1024;
+
+  /**
+   * Adds a document, replacing any earlier document with the same id.
+   *
+   * @param id the document id
+   * @param name the name (may be null)
+   * @param description the description (may be null)
+   */
+  public void put(long id, String name, String description) {
+    Map<Long, Integer> fields = new HashMap<>();
+    for (long trigram : trigrams(name)) {
+      fields.put(trigram, NAME);
+    }
+    for (long trigram : trigrams(description)) {
+      fields.merge(trigram, DESCRIPTION, (a, b) -> a | b);
+    }
+    put(id, fields, doc -> { });
+  }
+
+  /**
+   * Returns the documents most similar to a query, best first.
+   *
+   * @param query the query text
+   * @param limit the maximum number of results
+   * @return at most limit hits scoring at least {@link #MIN_SIMILARITY}, by
+   *         descending score (ties by ascending id)
+   */
+  public List<Hit> search(String query, int limit) {
+    List<Long> queryTrigrams = trigrams(query);
+    if (queryTrigrams.size() > MAX_QUERY_TRIGRAMS) {
+      queryTrigrams = queryTrigrams.subList(0, MAX_QUERY_TRIGRAMS);
+    }
+    int size = queryTrigrams.size();
+    int minShared = (int) Math.ceil(MIN_SIMILARITY * size);
+    return search(queryTrigrams, limit, liveCount -> new Scoring() {
+      @Override
+      public float weight(Postings list) {
+        return 0;
+      }
+
+      @Override
+      public float add(int doc, int field, float weight) {
+        return ((field & NAME) != 0 ? NAME_MATCH : 0) + ((field & DESCRIPTION) != 0 ? 1 : 0);
+      }
+
+      @Override
+      public float score(int doc, float sum) {
+        int shared = Math.max((int) sum / NAME_MATCH, (int) sum % NAME_MATCH);
+        return shared < minShared ? Float.NaN : (float) shared / size;
+      }
+    });
+  }
+
+  /**
+   * Returns the distinct trigrams of the words in a text, in order of first
+   * appearance.  Each trigram is packed into a long, 16 bits per character.
+   *
+   * @param text the text (may be null)
+   * @return the trigrams
+   */
+  static List<Long> trigrams(String text) {
+    Map<Long, Boolean> found = new LinkedHashMap<>();
+    for (String word : Bm25Index.tokenize(text)) {
+      String padded = "  " + word + " ";
+      for (int i = 0; i + 3 <= padded.length(); i++) {
+        found.put(pack(padded.charAt(i), padded.charAt(i + 1), padded.charAt(i + 2)), Boolean.TRUE);
+      }
+    }
+    return new ArrayList<>(found.keySet());
+  }
+
+  static long pack(char a, char b, char c) {
+    return ((long) a << 32) | ((long) b << 16) | c;
+  }
+}
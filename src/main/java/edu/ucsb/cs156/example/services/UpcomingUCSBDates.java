@@ -0,0 +1,97 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * This is a service that keeps the dates of the current quarter and of every
+ * later quarter in memory, so that calendar widgets can show them without a
+ * query.
+ *
+ * The current quarter is taken from the clock, with calendar quarters standing
+ * in for academic ones (Winter = January to March, Spring = April to June,
+ * Summer = July to September, Fall = October to December).  The list is read
+ * from the database on first use and then kept until the next quarter starts
+ * or the dates table changes (its {@link TableVersions} counter moves),
+ * whichever comes first.
+ */
+@Service
+public class UpcomingUCSBDates {
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  @Autowired
+  TableVersions tableVersions;
+
+  Clock clock = Clock.systemDefaultZone();
+
+  /**
+   * The dates of the current and later quarters
+   *
+   * @param quarterYYYYQ the current quarter, in the format YYYYQ
+   * @param dates the dates of that quarter and every later one, in date order
+   */
+  public record Upcoming(String quarterYYYYQ, List<UCSBDate> dates) {
+  }
+
+  private record View(long version, LocalDateTime until, Upcoming upcoming) {
+  }
+
+  private volatile View view;
+
+  /**
+   * Returns the dates of the current quarter and every later quarter.
+   *
+   * @return the current quarter and its dates
+   */
+  public Upcoming upcoming() {
+    View current = view;
+    if (!isFresh(current)) {
+      current = load();
+    }
+    return current.upcoming();
+  }
+
+  /**
+   * Returns the quarter a date falls in.
+   *
+   * @param date the date
+   * @return the quarter, in the format YYYYQ
+   */
+  static String quarterOf(LocalDate date) {
+    return "%04d%d".formatted(date.getYear(), (date.getMonthValue() - 1) / 3 + 1);
+  }
+
+  /**
+   * Reads the dates from the database, unless another thread has just done so.
+   */
+  synchronized View load() {
+    View current = view;
+    if (isFresh(current)) {
+      return current;
+    }
+    long version = tableVersions.version(UCSBDate.class);
+    LocalDate today = LocalDate.now(clock);
+    String quarter = quarterOf(today);
+    LocalDate quarterStart = today.withDayOfMonth(1).withMonth((today.getMonthValue() - 1) / 3 * 3 + 1);
+    current = new View(version, quarterStart.plusMonths(3).atStartOfDay(),
+        new Upcoming(quarter, List.copyOf(ucsbDateRepository.findFromQuarter(quarter))));
+    view = current;
+    return current;
+  }
+
+  private boolean isFresh(View current) {
+    return current != null
+        && current.version() == tableVersions.version(UCSBDate.class)
+        && LocalDateTime.now(clock).isBefore(current.until());
+  }
+}
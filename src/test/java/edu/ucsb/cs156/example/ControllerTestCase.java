@@ -3,21 +3,40 @@ package edu.ucsb.cs156.example;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.repository.Repository;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 
+import edu.ucsb.cs156.example.services.CollectionResponseCache;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.EntityStreamService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.PatchService;
+import edu.ucsb.cs156.example.services.TableVersions;
 import edu.ucsb.cs156.example.services.wiremock.WiremockService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 import java.io.UnsupportedEncodingException;
+import java.util.List;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.when;
+
 @ActiveProfiles("test")
 @Import(TestConfig.class)
 public abstract class ControllerTestCase {
@@ -33,11 +52,82 @@ public abstract class ControllerTestCase {
   @Autowired
   public ObjectMapper mapper;
 
+  @Autowired
+  public ApplicationContext applicationContext;
+
+  @Autowired
+  public TableVersions tableVersions;
+
+  @Autowired
+  public CollectionResponseCache collectionResponseCache;
+
   @MockBean
   WiremockService mockWiremockService;
 
+  @MockBean
+  public EntityStreamService entityStreamService;
+
+  @MockBean
+  public PatchService patchService;
+
+  /**
+   * Table versions don't change when repositories are mocked, so a collection
+   * cached by one test would otherwise be served to the next.  (Subclasses run
+   * without a Spring context, e.g. CurrentUserServiceTests, have no cache.)
+   */
+  @BeforeEach
+  public void clearCollectionResponseCache() {
+    if (collectionResponseCache != null) {
+      collectionResponseCache.clear();
+    }
+  }
+
+  /**
+   * Lets the mocked EntityStreamService write JSON (and exports) for real (just without a
+   * transaction or persistence context), so that streaming endpoints can be
+   * tested against mocked repositories.
+   */
+  @BeforeEach
+  public void streamEntitiesWithoutPersistenceContext() {
+    if (entityStreamService == null) {
+      return;
+    }
+    EntityStreamService streamer = new EntityStreamService();
+    ReflectionTestUtils.setField(streamer, "mapper", mapper);
+    ReflectionTestUtils.setField(streamer, "entityManager", Mockito.mock(EntityManager.class));
+    ReflectionTestUtils.setField(streamer, "self", streamer);
+    when(entityStreamService.jsonArray(any()))
+        .thenAnswer(invocation -> streamer.jsonArray(invocation.getArgument(0)));
+    when(entityStreamService.export(any(), any(), any(), any(), any(), anyBoolean()))
+        .thenAnswer(invocation -> streamer.export(invocation.getArgument(0), invocation.getArgument(1),
+            invocation.getArgument(2), invocation.getArgument(3), invocation.getArgument(4),
+            invocation.<Boolean>getArgument(5)));
+  }
+
   protected Map<String, Object> responseToJson(MvcResult result) throws UnsupportedEncodingException, JsonProcessingException {
     String responseString = result.getResponse().getContentAsString();
     return mapper.readValue(responseString, Map.class);
   }
+
+  /**
+   * Performs the request and fails the test if the controller made more than
+   * {@code budget} calls to the (mocked) repositories while handling it.
+   * Use this to catch N+1 regressions, e.g. a loop calling findById.
+   */
+  protected ResultActions performWithinQueryBudget(int budget, RequestBuilder request) throws Exception {
+    List<Object> repositoryMocks = applicationContext.getBeansOfType(Repository.class).values().stream()
+        .map(Object.class::cast)
+        .filter(bean -> Mockito.mockingDetails(bean).isMock())
+        .toList();
+    repositoryMocks.forEach(mock -> Mockito.clearInvocations(mock));
+
+    ResultActions result = mockMvc.perform(request);
+
+    long calls = repositoryMocks.stream()
+        .mapToLong(mock -> Mockito.mockingDetails(mock).getInvocations().size())
+        .sum();
+    assertTrue(calls <= budget,
+        "expected at most %d repository calls but there were %d".formatted(budget, calls));
+    return result;
+  }
 }
@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(OutputCaptureExtension.class)
+public class RepositoryMetricsAspectTests {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final RepositoryMetricsAspect aspect = new RepositoryMetricsAspect();
+  private final RestaurantRepository target = mock(RestaurantRepository.class);
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(aspect, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(aspect, "slowQueryThresholdMs", 60_000L);
+    RequestQueryCounter.reset();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T advised(T target) {
+    AspectJProxyFactory factory = new AspectJProxyFactory(target);
+    factory.addAspect(aspect);
+    return (T) factory.getProxy();
+  }
+
+  private Timer timer(String repository, String method, String outcome) {
+    return meterRegistry.find("app.repository.calls")
+        .tags("repository", repository, "method", method, "outcome", outcome)
+        .timer();
+  }
+
+  @Test
+  void times_and_counts_repository_calls_under_the_application_interface_name(CapturedOutput output) {
+    List<Restaurant> all = List.of(Restaurant.builder().id(1L).name("Freebirds").build());
+    when(target.findAll()).thenReturn(all);
+    RestaurantRepository repository = advised(target);
+
+    assertSame(all, repository.findAll());
+    repository.findAll();
+
+    assertEquals(2, timer("RestaurantRepository", "findAll", "SUCCESS").count());
+    assertEquals(2, RequestQueryCounter.getRepositoryCalls());
+    assertFalse(output.getOut().contains("Slow repository call"));
+  }
+
+  @Test
+  void failed_calls_are_timed_with_an_error_outcome_and_rethrown() {
+    IllegalStateException failure = new IllegalStateException("database is down");
+    when(target.findAll()).thenThrow(failure);
+    RestaurantRepository repository = advised(target);
+
+    assertSame(failure, assertThrows(IllegalStateException.class, repository::findAll));
+
+    assertEquals(1, timer("RestaurantRepository", "findAll", "ERROR").count());
+    assertEquals(1, RequestQueryCounter.getRepositoryCalls());
+  }
+
+  @Test
+  void calls_at_or_over_the_threshold_are_logged_as_slow(CapturedOutput output) {
+    ReflectionTestUtils.setField(aspect, "slowQueryThresholdMs", 0L);
+
+    advised(target).count();
+
+    assertTrue(output.getOut().contains("Slow repository call RestaurantRepository.count took"));
+  }
+
+  @Test
+  void repositories_without_an_application_interface_use_the_declaring_interface_name() {
+    @SuppressWarnings("unchecked")
+    CrudRepository<Restaurant, Long> repository = advised(mock(CrudRepository.class));
+
+    repository.count();
+
+    assertEquals(1, timer("CrudRepository", "count", "SUCCESS").count());
+  }
+}
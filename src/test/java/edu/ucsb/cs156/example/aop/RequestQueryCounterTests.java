@@ -0,0 +1,51 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RequestQueryCounterTests {
+
+  @BeforeEach
+  void setup() {
+    RequestQueryCounter.reset();
+  }
+
+  @Test
+  void counts_statements_and_repository_calls_separately() {
+    RequestQueryCounter.statementPrepared();
+    RequestQueryCounter.statementPrepared();
+    RequestQueryCounter.repositoryCalled();
+
+    assertEquals(2, RequestQueryCounter.getStatements());
+    assertEquals(1, RequestQueryCounter.getRepositoryCalls());
+  }
+
+  @Test
+  void reset_clears_both_counters() {
+    RequestQueryCounter.statementPrepared();
+    RequestQueryCounter.repositoryCalled();
+
+    RequestQueryCounter.reset();
+
+    assertEquals(0, RequestQueryCounter.getStatements());
+    assertEquals(0, RequestQueryCounter.getRepositoryCalls());
+  }
+
+  @Test
+  void counters_are_per_thread() throws Exception {
+    RequestQueryCounter.statementPrepared();
+
+    long otherThread = CompletableFuture.supplyAsync(() -> {
+      RequestQueryCounter.repositoryCalled();
+      return RequestQueryCounter.getStatements();
+    }).get();
+
+    assertEquals(0, otherThread);
+    assertEquals(1, RequestQueryCounter.getStatements());
+    assertEquals(0, RequestQueryCounter.getRepositoryCalls());
+  }
+}
@@ -0,0 +1,84 @@
+package edu.ucsb.cs156.example.config;
+
+import jakarta.servlet.http.Cookie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.DeferredCsrfToken;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-request cost of the CSRF cookie filter before (token always materialized)
+ * and after (token only materialized when the cookie is missing).
+ * 
+ * Run with: see docs/benchmarks.md
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsrfCookieFilterBenchmark {
+
+  @Param({ "true", "false" })
+  public boolean cookiePresent;
+
+  private final CookieCsrfTokenRepository repository = CookieCsrfTokenRepository.withHttpOnlyFalse();
+  private final SpaCsrfTokenRequestHandler requestHandler = new SpaCsrfTokenRequestHandler();
+  private final CsrfCookieFilter filter = new CsrfCookieFilter();
+  private String existingToken;
+
+  @Setup
+  public void setup() {
+    existingToken = repository.generateToken(new MockHttpServletRequest()).getToken();
+  }
+
+  private MockHttpServletRequest request(MockHttpServletResponse response) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/ucsbdates/all");
+    if (cookiePresent) {
+      request.setCookies(new Cookie(CsrfCookieFilter.CSRF_COOKIE_NAME, existingToken));
+    }
+    // what CsrfFilter does before our filter runs
+    DeferredCsrfToken deferredCsrfToken = repository.loadDeferredToken(request, response);
+    requestHandler.handle(request, response, deferredCsrfToken::get);
+    return request;
+  }
+
+  /**
+   * The old behavior: always load the deferred token
+   */
+  @Benchmark
+  public MockHttpServletResponse eagerTokenMaterialization() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    MockHttpServletRequest request = request(response);
+    ((CsrfToken) request.getAttribute("_csrf")).getToken();
+    new MockFilterChain().doFilter(request, response);
+    return response;
+  }
+
+  /**
+   * The current CsrfCookieFilter
+   */
+  @Benchmark
+  public MockHttpServletResponse lazyTokenMaterialization() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    MockHttpServletRequest request = request(response);
+    filter.doFilter(request, response, new MockFilterChain());
+    return response;
+  }
+}
@@ -0,0 +1,139 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.ResolvableType;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PostAuthorize;
+import org.springframework.security.access.prepost.PostFilter;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.config.ObjectPostProcessor;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.UserInfoController;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+/**
+ * Method security is enabled with all of Spring Security's annotations; only
+ * the @PreAuthorize manager is wrapped in a RoleBitsetAuthorizationManager.
+ */
+@WebMvcTest(controllers = UserInfoController.class)
+@Import({ TestConfig.class, MethodSecurityTests.Secured.class })
+public class MethodSecurityTests extends ControllerTestCase {
+
+  static class Secured {
+    @PreAuthorize("hasRole('ADMIN')")
+    public String admin() {
+      return "admin";
+    }
+
+    @PreAuthorize("hasRole('USER')")
+    public String user() {
+      return "user";
+    }
+
+    @PreAuthorize("hasRole('USER') and #name == authentication.name")
+    public String own(String name) {
+      return name;
+    }
+
+    @PostAuthorize("returnObject == authentication.name")
+    public String lookup(String name) {
+      return name;
+    }
+
+    @PostFilter("filterObject != 'secret'")
+    public List<String> names() {
+      return new ArrayList<>(List.of("public", "secret"));
+    }
+  }
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Autowired
+  Secured secured;
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void pre_authorize_has_role_is_enforced() {
+    assertEquals("user", secured.user());
+    assertThrows(AccessDeniedException.class, secured::admin);
+  }
+
+  @WithMockUser(roles = { "ADMIN" })
+  @Test
+  public void pre_authorize_has_role_follows_the_role_hierarchy() {
+    assertEquals("admin", secured.admin());
+    assertEquals("user", secured.user());
+  }
+
+  @WithMockUser(username = "cgaucho", roles = { "USER" })
+  @Test
+  public void other_pre_authorize_expressions_are_evaluated() {
+    assertEquals("cgaucho", secured.own("cgaucho"));
+    assertThrows(AccessDeniedException.class, () -> secured.own("ldelplaya"));
+  }
+
+  @WithMockUser(username = "cgaucho", roles = { "USER" })
+  @Test
+  public void post_authorize_is_enforced() {
+    assertEquals("cgaucho", secured.lookup("cgaucho"));
+    assertThrows(AccessDeniedException.class, () -> secured.lookup("ldelplaya"));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void post_filter_is_applied() {
+    assertEquals(List.of("public"), secured.names());
+  }
+
+  @Test
+  public void the_role_bitset_post_processor_is_the_one_spring_security_uses() {
+    ObjectProvider<ObjectPostProcessor<AuthorizationManager<MethodInvocation>>> postProcessors = applicationContext
+        .getBeanProvider(ResolvableType.forClassWithGenerics(ObjectPostProcessor.class,
+            ResolvableType.forClassWithGenerics(AuthorizationManager.class, MethodInvocation.class)));
+
+    assertSame(applicationContext.getBean("preAuthorizeRoleBitsetPostProcessor"), postProcessors.getIfUnique());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void the_post_processor_wraps_the_manager_and_then_applies_the_observation_one() {
+    AuthorizationManager<MethodInvocation> manager = mock(AuthorizationManager.class);
+    AuthorizationManager<MethodInvocation> observed = mock(AuthorizationManager.class);
+    ObjectPostProcessor<AuthorizationManager<MethodInvocation>> observation = new ObjectPostProcessor<>() {
+      @Override
+      public <O extends AuthorizationManager<MethodInvocation>> O postProcess(O object) {
+        assertInstanceOf(RoleBitsetAuthorizationManager.class, object);
+        return (O) observed;
+      }
+    };
+    ObjectProvider<ObjectPostProcessor<AuthorizationManager<MethodInvocation>>> none = mock(ObjectProvider.class);
+    ObjectProvider<ObjectPostProcessor<AuthorizationManager<MethodInvocation>>> some = mock(ObjectProvider.class);
+    when(some.getIfAvailable()).thenReturn(observation);
+
+    assertInstanceOf(RoleBitsetAuthorizationManager.class,
+        SecurityConfig.preAuthorizeRoleBitsetPostProcessor(SecurityConfig.roleHierarchy(), none).postProcess(manager));
+    assertSame(observed,
+        SecurityConfig.preAuthorizeRoleBitsetPostProcessor(SecurityConfig.roleHierarchy(), some).postProcess(manager));
+  }
+}
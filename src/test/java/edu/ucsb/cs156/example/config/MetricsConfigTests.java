@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class MetricsConfigTests {
+
+  private final MetricsConfig config = new MetricsConfig();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void response_size_filter_is_registered_for_the_api() {
+    FilterRegistrationBean<ResponseSizeMetricsFilter> registration = config.responseSizeMetricsFilter(meterRegistry);
+
+    assertNotNull(registration.getFilter());
+    assertEquals(Set.of("/api/*"), registration.getUrlPatterns());
+  }
+
+  @Test
+  void query_count_filter_is_registered_for_the_api() {
+    FilterRegistrationBean<QueryCountFilter> registration = config.queryCountFilter(meterRegistry, 20);
+
+    assertNotNull(registration.getFilter());
+    assertEquals(Set.of("/api/*"), registration.getUrlPatterns());
+  }
+}
@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import edu.ucsb.cs156.example.aop.LoggingAspect;
+import edu.ucsb.cs156.example.aop.RequestQueryCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+
+@ExtendWith(OutputCaptureExtension.class)
+public class QueryCountFilterTests {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final QueryCountFilter filter = new QueryCountFilter(meterRegistry, 3);
+
+  private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/restaurants/all");
+  private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+  private static FilterChain doing(int statements, int repositoryCalls) {
+    return (req, res) -> {
+      for (int i = 0; i < statements; i++) {
+        RequestQueryCounter.statementPrepared();
+      }
+      for (int i = 0; i < repositoryCalls; i++) {
+        RequestQueryCounter.repositoryCalled();
+      }
+    };
+  }
+
+  private DistributionSummary summary(String name, String handler) {
+    return meterRegistry.find(name).tag("handler", handler).summary();
+  }
+
+  @Test
+  void records_the_counts_of_this_request_only_per_handler(CapturedOutput output) throws Exception {
+    request.setAttribute(LoggingAspect.HANDLER_ATTRIBUTE, "RestaurantsController.allRestaurants");
+    RequestQueryCounter.statementPrepared();
+    RequestQueryCounter.repositoryCalled();
+
+    filter.doFilter(request, response, doing(3, 2));
+
+    assertEquals(3.0, summary("app.request.statements", "RestaurantsController.allRestaurants").totalAmount());
+    assertEquals(2.0, summary("app.request.repository.calls", "RestaurantsController.allRestaurants").totalAmount());
+    assertFalse(output.getOut().contains("budget is"));
+  }
+
+  @Test
+  void requests_without_a_handler_are_recorded_as_none() throws Exception {
+    filter.doFilter(request, response, doing(1, 1));
+
+    assertEquals(1, summary("app.request.statements", "none").count());
+    assertEquals(1, summary("app.request.repository.calls", "none").count());
+  }
+
+  @Test
+  void requests_over_the_statement_budget_are_logged(CapturedOutput output) throws Exception {
+    filter.doFilter(request, response, doing(4, 1));
+
+    assertTrue(output.getOut().contains(
+        "GET /api/restaurants/all (none) prepared 4 statements in 1 repository calls; budget is 3"));
+  }
+
+  @Test
+  void counts_are_recorded_when_the_request_fails() {
+    FilterChain failing = (req, res) -> {
+      RequestQueryCounter.statementPrepared();
+      throw new ServletException("handler failed");
+    };
+
+    assertThrows(ServletException.class, () -> filter.doFilter(request, response, failing));
+
+    assertEquals(1.0, summary("app.request.statements", "none").totalAmount());
+  }
+}
@@ -0,0 +1,112 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import edu.ucsb.cs156.example.aop.LoggingAspect;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class ResponseSizeMetricsFilterTests {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final ResponseSizeMetricsFilter filter = new ResponseSizeMetricsFilter(meterRegistry);
+
+  private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/restaurants/all");
+  private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+  /** A chain that writes a 5 byte body, one byte and then four. */
+  private final FilterChain writeHello = (req, res) -> {
+    res.getOutputStream().write('h');
+    res.getOutputStream().write("xello".getBytes(), 1, 4);
+  };
+
+  private DistributionSummary summary() {
+    return meterRegistry.find("app.controller.response.size").summary();
+  }
+
+  @Test
+  void records_the_bytes_written_by_a_controller_method() throws Exception {
+    request.setAttribute(LoggingAspect.HANDLER_ATTRIBUTE, "RestaurantsController.allRestaurants");
+
+    filter.doFilter(request, response, writeHello);
+
+    assertEquals("hello", response.getContentAsString());
+    DistributionSummary summary = summary();
+    assertEquals(1, summary.count());
+    assertEquals(5.0, summary.totalAmount());
+    assertEquals("RestaurantsController.allRestaurants", summary.getId().getTag("handler"));
+    assertEquals("GET", summary.getId().getTag("method"));
+    assertEquals("bytes", summary.getId().getBaseUnit());
+  }
+
+  @Test
+  void does_not_record_requests_without_a_handler() throws Exception {
+    filter.doFilter(request, response, writeHello);
+
+    assertEquals("hello", response.getContentAsString());
+    assertNull(summary());
+  }
+
+  @Test
+  void records_streamed_bodies_when_the_async_request_completes() throws Exception {
+    request.setAsyncSupported(true);
+    request.setAttribute(LoggingAspect.HANDLER_ATTRIBUTE, "RestaurantsController.allRestaurantsStream");
+    ServletResponse[] wrapped = new ServletResponse[1];
+    FilterChain startAsync = (req, res) -> {
+      wrapped[0] = res;
+      req.startAsync();
+    };
+
+    filter.doFilter(request, response, startAsync);
+    wrapped[0].getOutputStream().write("streamed".getBytes());
+
+    assertTrue(request.isAsyncStarted());
+    assertNull(summary());
+
+    request.getAsyncContext().complete();
+
+    assertEquals(1, summary().count());
+    assertEquals(8.0, summary().totalAmount());
+  }
+
+  @Test
+  void counting_stream_delegates_to_the_response_stream() throws Exception {
+    HttpServletResponse wrapped = mock(HttpServletResponse.class);
+    ServletOutputStream delegate = mock(ServletOutputStream.class);
+    WriteListener listener = mock(WriteListener.class);
+    when(wrapped.getOutputStream()).thenReturn(delegate);
+    when(delegate.isReady()).thenReturn(true);
+    ResponseSizeMetricsFilter.CountingResponseWrapper counting = new ResponseSizeMetricsFilter.CountingResponseWrapper(wrapped);
+
+    ServletOutputStream stream = counting.getOutputStream();
+    stream.write(7);
+    stream.write(new byte[] { 1, 2, 3 }, 0, 3);
+    stream.setWriteListener(listener);
+    stream.flush();
+    stream.close();
+
+    assertSame(stream, counting.getOutputStream());
+    assertTrue(stream.isReady());
+    assertEquals(4, counting.getByteCount());
+    verify(delegate).write(7);
+    verify(delegate).write(new byte[] { 1, 2, 3 }, 0, 3);
+    verify(delegate).setWriteListener(listener);
+    verify(delegate).flush();
+    verify(delegate).close();
+  }
+}
@@ -0,0 +1,81 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+/**
+ * Compares the @PreAuthorize("hasRole(...)") check done by the default
+ * SpEL-evaluating manager with RoleBitsetAuthorizationManager, for the same
+ * (session-lived) Authentication.
+ * 
+ * Run with: see docs/benchmarks.md
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoleBitsetAuthorizationManagerBenchmark {
+
+  public static class Secured {
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public void user() {
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public void admin() {
+    }
+  }
+
+  @Param({ "user", "admin" })
+  public String method;
+
+  private AuthorizationManager<MethodInvocation> expressions;
+  private AuthorizationManager<MethodInvocation> bitset;
+  private MethodInvocation invocation;
+  private Supplier<Authentication> authentication;
+
+  @Setup
+  public void setup() throws Exception {
+    RoleHierarchy roleHierarchy = SecurityConfig.roleHierarchy();
+    expressions = RoleBitsetAuthorizationManager.expressionAuthorizationManager(roleHierarchy);
+    bitset = new RoleBitsetAuthorizationManager(roleHierarchy);
+    invocation = new SimpleMethodInvocation(new Secured(), Secured.class.getMethod(method));
+    // roughly what an OAuth2 login leaves us with for a regular user
+    Authentication user = UsernamePasswordAuthenticationToken.authenticated("user", null,
+        AuthorityUtils.createAuthorityList("OAUTH2_USER", "SCOPE_openid", "SCOPE_email", "SCOPE_profile",
+            "ROLE_USER", "ROLE_MEMBER"));
+    authentication = () -> user;
+  }
+
+  @Benchmark
+  public boolean spelExpression() {
+    return expressions.authorize(authentication, invocation).isGranted();
+  }
+
+  @Benchmark
+  public boolean roleBitset() {
+    return bitset.authorize(authentication, invocation).isGranted();
+  }
+}
@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+public class RoleBitsetAuthorizationManagerTests {
+
+  static class Secured {
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public void admin() {
+    }
+
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public void user() {
+    }
+
+    @PreAuthorize("hasRole('MEMBER')")
+    public void member() {
+    }
+
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_MEMBER')")
+    public void adminOrMember() {
+    }
+  }
+
+  private final RoleHierarchy roleHierarchy = SecurityConfig.roleHierarchy();
+  private final RoleBitsetAuthorizationManager manager = new RoleBitsetAuthorizationManager(roleHierarchy);
+  private final Secured target = new Secured();
+
+  private static Supplier<Authentication> authentication(String... roles) {
+    Authentication authentication = UsernamePasswordAuthenticationToken.authenticated("user", null,
+        AuthorityUtils.createAuthorityList(roles));
+    return () -> authentication;
+  }
+
+  private MethodInvocation invocation(String methodName) throws Exception {
+    return new SimpleMethodInvocation(target, Secured.class.getMethod(methodName));
+  }
+
+  private boolean granted(Supplier<Authentication> authentication, String methodName) throws Exception {
+    return manager.authorize(authentication, invocation(methodName)).isGranted();
+  }
+
+  @Test
+  void admin_gets_user_through_role_hierarchy() throws Exception {
+    Supplier<Authentication> admin = authentication("ROLE_ADMIN");
+    assertTrue(granted(admin, "admin"));
+    assertTrue(granted(admin, "user"));
+    assertFalse(granted(admin, "member"));
+  }
+
+  @Test
+  void user_is_not_admin() throws Exception {
+    Supplier<Authentication> user = authentication("ROLE_USER", "OAUTH2_USER");
+    assertFalse(granted(user, "admin"));
+    assertTrue(granted(user, "user"));
+  }
+
+  @Test
+  void role_prefix_is_added_like_hasRole() throws Exception {
+    assertTrue(granted(authentication("ROLE_MEMBER"), "member"));
+    assertFalse(granted(authentication("MEMBER"), "member"));
+  }
+
+  @Test
+  void other_expressions_use_the_expression_manager() throws Exception {
+    assertTrue(granted(authentication("ROLE_MEMBER"), "adminOrMember"));
+    assertFalse(granted(authentication("ROLE_USER"), "adminOrMember"));
+  }
+
+  @Test
+  void decisions_agree_with_the_expression_manager() throws Exception {
+    var expressions = RoleBitsetAuthorizationManager.expressionAuthorizationManager(roleHierarchy);
+    for (List<String> roles : List.of(List.<String>of(), List.of("ROLE_USER"), List.of("ROLE_ADMIN"),
+        List.of("ROLE_USER", "ROLE_MEMBER"))) {
+      Supplier<Authentication> authentication = authentication(roles.toArray(String[]::new));
+      for (String method : List.of("admin", "user", "member", "adminOrMember")) {
+        assertEquals(expressions.authorize(authentication, invocation(method)).isGranted(),
+            granted(authentication, method), roles + " " + method);
+      }
+    }
+  }
+
+  @SuppressWarnings("deprecation")
+  @Test
+  void check_returns_the_same_decision() throws Exception {
+    assertTrue(manager.check(authentication("ROLE_ADMIN"), invocation("admin")).isGranted());
+    assertFalse(manager.check(authentication("ROLE_USER"), invocation("admin")).isGranted());
+  }
+}
@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.aop.RequestQueryCounter;
+
+public class StatementCountingInspectorTests {
+
+  private final StatementCountingInspector inspector = new StatementCountingInspector();
+
+  @Test
+  void inspect_counts_the_statement_and_leaves_it_unchanged() {
+    RequestQueryCounter.reset();
+
+    assertEquals("select 1", inspector.inspect("select 1"));
+    assertEquals("select 2", inspector.inspect("select 2"));
+
+    assertEquals(2, RequestQueryCounter.getStatements());
+  }
+}
@@ -2,6 +2,7 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.errors.BadRequestException;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 
 import org.junit.jupiter.api.Test;
@@ -13,9 +14,12 @@ import org.springframework.test.web.servlet.MvcResult;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.util.List;
 import java.util.Map;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @WebMvcTest(controllers = DummyController.class)
 @Import(TestConfig.class)
@@ -58,5 +62,94 @@ public class ApiControllerTests extends ControllerTestCase {
                 assertEquals("String with id 7 not found", json.get("message"));
         }
 
-}
+        @Test
+        public void page_size_is_capped() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/dummycontroller/paged?size=1000"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "NTAw"))
+                                .andReturn();
+
+                // assert
+
+                List<?> page = mapper.readValue(response.getResponse().getContentAsString(), List.class);
+                assertEquals(ApiController.MAX_PAGE_SIZE, page.size());
+        }
+
+        @Test
+        public void cursor_continues_after_last_row() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/dummycontroller/paged?size=2&cursor=NTAw"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "NTAy"))
+                                .andReturn();
+
+                // assert
+
+                assertEquals("[501,502]", response.getResponse().getContentAsString());
+        }
+
+        @Test
+        public void size_below_one_is_a_bad_request() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/dummycontroller/paged?size=0"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("BadRequestException", json.get("type"));
+                assertEquals("size must be at least 1", json.get("message"));
+        }
+
+        @Test
+        public void malformed_cursor_is_a_bad_request() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/dummycontroller/paged?cursor=not*base64"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("BadRequestException", json.get("type"));
+                assertEquals("Invalid cursor: not*base64", json.get("message"));
+        }
+
+        @Test
+        public void non_numeric_cursor_is_a_bad_request() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/dummycontroller/paged?cursor=YWJj"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Invalid cursor: YWJj", json.get("message"));
+        }
+
+        @Test
+        public void bulkDeleteKeys_returns_the_keys() {
+                List<Long> ids = List.of(1L, 2L);
+                assertEquals(ids, new DummyController().bulkDeleteKeys(ids));
+        }
 
+        @Test
+        public void bulkDeleteKeys_rejects_an_empty_list() {
+                BadRequestException e = assertThrows(BadRequestException.class,
+                                () -> new DummyController().bulkDeleteKeys(List.of()));
+                assertEquals("Nothing to delete", e.getMessage());
+        }
+
+        @Test
+        public void bulkDeleteKeys_rejects_too_many_keys() {
+                List<Long> ids = LongStream.rangeClosed(0, ApiController.MAX_BULK_DELETE).boxed().toList();
+                BadRequestException e = assertThrows(BadRequestException.class,
+                                () -> new DummyController().bulkDeleteKeys(ids));
+                assertEquals("At most 1000 rows can be deleted at once", e.getMessage());
+        }
+}
@@ -6,9 +6,12 @@ import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Article;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.services.ArticleSearchService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import org.springframework.data.domain.Limit;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -32,9 +35,12 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = ArticlesController.class)
@@ -46,6 +52,9 @@ public class ArticlesControllerTests extends ControllerTestCase {
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    ArticleSearchService articleSearchService;
+
     // Authorization tests for /api/articles/admin/all
 
     @Test
@@ -107,7 +116,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
             when(articlesRepository.findAll()).thenReturn(expectedArticles);
 
             // act
-            MvcResult response = mockMvc.perform(get("/api/articles/all"))
+            MvcResult response = mockMvc.perform(get("/api/articles/all?unpaged=true"))
                             .andExpect(status().isOk()).andReturn();
 
             // assert
@@ -299,7 +308,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
                 .dateAdded(ldt1)
                 .build();
 
-            when(articlesRepository.findById(eq(123L))).thenReturn(Optional.of(article1));
+            when(articlesRepository.deleteRowById(eq(123L))).thenReturn(1);
 
             // act
             MvcResult response = mockMvc.perform(
@@ -308,8 +317,9 @@ public class ArticlesControllerTests extends ControllerTestCase {
                             .andExpect(status().isOk()).andReturn();
 
             // assert
-            verify(articlesRepository, times(1)).findById(123L);
-            verify(articlesRepository, times(1)).delete(eq(article1));
+            verify(articlesRepository, times(1)).deleteRowById(123L);
+            verify(articlesRepository, never()).findById(any());
+            verify(articleSearchService, times(1)).removed(List.of(123L));
 
             Map<String, Object> json = responseToJson(response);
             assertEquals("Article with id 123 deleted", json.get("message"));
@@ -320,7 +330,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
                     throws Exception {
             // arrange
 
-            when(articlesRepository.findById(eq(123L))).thenReturn(Optional.empty());
+            when(articlesRepository.deleteRowById(eq(123L))).thenReturn(0);
 
             // act
             MvcResult response = mockMvc.perform(
@@ -329,8 +339,390 @@ public class ArticlesControllerTests extends ControllerTestCase {
                             .andExpect(status().isNotFound()).andReturn();
 
             // assert
-            verify(articlesRepository, times(1)).findById(123L);
+            verify(articlesRepository, times(1)).deleteRowById(123L);
             Map<String, Object> json = responseToJson(response);
             assertEquals("Article with id 123 not found", json.get("message"));
     }
-}
\ No newline at end of file
+
+    // Tests for keyset pagination of /all
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_first_page_with_cursor_for_next_page() throws Exception {
+
+        // arrange
+
+        List<Article> rows = List.of(
+                Article.builder().id(1L).title("first").build(),
+                Article.builder().id(2L).title("second").build(),
+                Article.builder().id(3L).title("third").build());
+        when(articlesRepository.findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), any(Limit.class))).thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles/all?size=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "Mg"))
+                .andReturn();
+
+        // assert
+
+        verify(articlesRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), argThat(limit -> limit.max() == 3));
+        String expectedJson = mapper.writeValueAsString(rows.subList(0, 2));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_last_page_from_cursor_without_next_cursor() throws Exception {
+
+        // arrange
+
+        List<Article> rows = List.of(Article.builder().id(3L).title("third").build());
+        when(articlesRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), any(Limit.class))).thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles/all?size=2&cursor=Mg"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        // assert
+
+        String expectedJson = mapper.writeValueAsString(rows);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for streaming /all/stream
+
+    @Test
+    public void logged_out_users_cannot_stream_all() throws Exception {
+        mockMvc.perform(get("/api/articles/all/stream"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_stream_all() throws Exception {
+
+        // arrange
+
+        List<Article> rows = List.of(
+                Article.builder().id(1L).title("first").build(),
+                Article.builder().id(2L).title("second").build());
+        when(articlesRepository.streamAll()).thenReturn(rows.stream());
+
+        // act
+        MvcResult started = mockMvc.perform(get("/api/articles/all/stream"))
+                .andExpect(request().asyncStarted()).andReturn();
+        MvcResult response = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(articlesRepository, times(1)).streamAll();
+        String expectedJson = mapper.writeValueAsString(rows);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for GET /export
+
+    @Test
+    public void logged_out_users_cannot_export() throws Exception {
+        mockMvc.perform(get("/api/articles/export?columns=id,title"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_export_selected_columns_as_csv() throws Exception {
+
+        // arrange
+
+        List<Article> rows = List.of(
+                Article.builder().id(1L).title("first").build(),
+                Article.builder().id(2L).title("second").build());
+        when(articlesRepository.streamAll()).thenReturn(rows.stream());
+
+        // act
+        MvcResult started = mockMvc.perform(get("/api/articles/export?columns=id,title"))
+                .andExpect(request().asyncStarted()).andReturn();
+        MvcResult response = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(articlesRepository, times(1)).streamAll();
+        String expectedCsv = "id,title\n1,first\n2,second\n";
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedCsv, responseString);
+        assertEquals("text/csv", response.getResponse().getContentType());
+    }
+
+    // Tests for POST /bulk
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+        mockMvc.perform(post("/api/articles/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]")
+                .with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_post_bulk_which_ignores_ids_and_versions_and_saves_all_rows() throws Exception {
+
+        // arrange
+
+        List<Article> incoming = List.of(
+                Article.builder().id(7L).version(3L).title("first").build(),
+                Article.builder().id(8L).version(3L).title("second").build());
+        List<Article> expected = List.of(
+                Article.builder().title("first").build(),
+                Article.builder().title("second").build());
+        when(articlesRepository.saveAll(eq(expected))).thenReturn(expected);
+
+        // act
+        MvcResult response = mockMvc.perform(post("/api/articles/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(mapper.writeValueAsString(incoming))
+                .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(articlesRepository, times(1)).saveAll(eq(expected));
+        String expectedJson = mapper.writeValueAsString(expected);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for PATCH
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_patch() throws Exception {
+        mockMvc.perform(patch("/api/articles?id=7")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"version\":0,\"title\":\"changed\"}")
+                .with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_patch_which_updates_only_the_given_fields() throws Exception {
+
+        // arrange
+
+        Article patched = Article.builder().id(7L).title("changed").version(4L).build();
+        Map<String, Object> changes = Map.of("version", 3, "title", "changed");
+        when(patchService.patch(eq(Article.class), eq(7L), eq(changes), any())).thenReturn(patched);
+
+        // act
+        MvcResult response = mockMvc.perform(patch("/api/articles?id=7")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(mapper.writeValueAsString(changes))
+                .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(patchService, times(1)).patch(eq(Article.class), eq(7L), eq(changes), argThat(fields -> fields.contains("title")));
+        verify(articleSearchService, times(1)).indexed(List.of(patched));
+        String expectedJson = mapper.writeValueAsString(patched);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for DELETE /bulk
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_delete_bulk() throws Exception {
+        mockMvc.perform(delete("/api/articles/bulk?ids=1,2").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_delete_bulk_with_one_statement() throws Exception {
+
+        // arrange
+
+        when(articlesRepository.deleteRowsByIdIn(eq(List.of(1L, 2L)))).thenReturn(2);
+
+        // act
+        MvcResult response = mockMvc.perform(delete("/api/articles/bulk?ids=1,2").with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(articlesRepository, times(1)).deleteRowsByIdIn(eq(List.of(1L, 2L)));
+        verify(articlesRepository, never()).findById(any());
+        verify(articleSearchService, times(1)).removed(List.of(1L, 2L));
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("2 Article rows deleted", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_all_is_not_modified_when_etag_matches() throws Exception {
+
+        // arrange
+
+        String etag = tableVersions.etag(Article.class);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles/all").header("If-None-Match", etag))
+                .andExpect(status().isNotModified()).andReturn();
+
+        // assert
+
+        assertEquals(etag, response.getResponse().getHeader("ETag"));
+        assertEquals("", response.getResponse().getContentAsString());
+        verifyNoInteractions(articlesRepository);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_by_id_is_not_modified_when_row_version_matches() throws Exception {
+
+        // arrange
+
+        when(articlesRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles?id=7").header("If-None-Match", "\"7-3\""))
+                .andExpect(status().isNotModified()).andReturn();
+
+        // assert
+
+        assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+        verify(articlesRepository, never()).findById(any());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_by_id_returns_the_row_when_etag_is_stale() throws Exception {
+
+        // arrange
+
+        Article article = Article.builder().id(7L).version(3L).build();
+        when(articlesRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+        when(articlesRepository.findById(eq(7L))).thenReturn(Optional.of(article));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles?id=7").header("If-None-Match", "\"7-2\""))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+        assertEquals(mapper.writeValueAsString(article), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_by_id_with_etag_is_not_found_when_the_id_does_not_exist() throws Exception {
+
+        // arrange
+
+        when(articlesRepository.findVersionById(eq(7L))).thenReturn(Optional.empty());
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles?id=7").header("If-None-Match", "\"7-2\""))
+            .andExpect(status().isNotFound()).andReturn();
+
+        // assert
+
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("Article with id 7 not found", json.get("message"));
+        verify(articlesRepository, never()).findById(any());
+    }
+
+    // Tests for GET /search
+
+    @Test
+    public void logged_out_users_cannot_search() throws Exception {
+        mockMvc.perform(get("/api/articles/search?q=lagoon"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_search_articles() throws Exception {
+
+        // arrange
+
+        Article article = Article.builder().id(7L).title("Lagoon cleanup").explanation("volunteers needed").build();
+        when(articleSearchService.search("lagoon cleanup", 500)).thenReturn(List.of(article));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles/search?q=lagoon cleanup&size=1000"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(articleSearchService, times(1)).search("lagoon cleanup", 500);
+        assertEquals(mapper.writeValueAsString(List.of(article)), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void search_with_blank_query_is_a_bad_request() throws Exception {
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles/search?q= "))
+                .andExpect(status().isBadRequest()).andReturn();
+
+        // assert
+
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("q must not be blank", json.get("message"));
+        verifyNoInteractions(articleSearchService);
+    }
+
+    @Test
+    public void logged_out_users_cannot_get_their_own_articles() throws Exception {
+        mockMvc.perform(get("/api/articles/mine"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(username = "Pconrad", roles = { "USER" })
+    @Test
+    public void logged_in_user_can_page_through_their_own_articles() throws Exception {
+
+        // arrange
+
+        Article first = Article.builder().id(5L).email("pconrad@example.org").build();
+        Article second = Article.builder().id(9L).email("PConrad@Example.org").build();
+        when(articlesRepository.findMine(eq("pconrad@example.org"), eq(Long.MIN_VALUE), eq(Limit.of(2))))
+                .thenReturn(List.of(first, second));
+        when(articlesRepository.findMine(eq("pconrad@example.org"), eq(5L), eq(Limit.of(2))))
+                .thenReturn(List.of(second));
+
+        // act
+
+        MvcResult page1 = mockMvc.perform(get("/api/articles/mine?size=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "NQ"))
+                .andReturn();
+        MvcResult page2 = mockMvc.perform(get("/api/articles/mine?size=1&cursor=NQ"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        // assert
+
+        assertEquals(mapper.writeValueAsString(List.of(first)), page1.getResponse().getContentAsString());
+        assertEquals(mapper.writeValueAsString(List.of(second)), page2.getResponse().getContentAsString());
+    }
+}
@@ -1,5 +1,6 @@
 package edu.ucsb.cs156.example.controllers;
 
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -7,9 +8,12 @@ import org.springframework.web.bind.annotation.RestController;
 
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 
+import java.util.List;
+import java.util.stream.LongStream;
+
 
 /**
- * This class is used to test ApiController and EntityNotFoundException
+ * This class is used to test ApiController, EntityNotFoundException and BadRequestException
  */
 
 @RequestMapping("/dummycontroller")
@@ -23,4 +27,12 @@ public class DummyController extends ApiController {
         }
         throw new EntityNotFoundException(String.class, id);
     }
+
+    @GetMapping("/paged")
+    public ResponseEntity<Iterable<Long>> paged(@RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size) {
+        long after = cursor == null ? 0 : decodeIdCursor(cursor);
+        List<Long> rows = LongStream.rangeClosed(after + 1, after + pageLimit(size).max()).boxed().toList();
+        return keysetPage(rows, size, id -> id);
+    }
 }
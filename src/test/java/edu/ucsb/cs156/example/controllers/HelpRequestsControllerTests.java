@@ -8,8 +8,11 @@ import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import org.springframework.data.domain.Limit;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
@@ -27,9 +30,13 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -38,6 +45,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import edu.ucsb.cs156.example.controllers.HelpRequestController;
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.HelpRequestQueueService;
 
 
 
@@ -54,6 +62,9 @@ public class HelpRequestsControllerTests extends ControllerTestCase{
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        HelpRequestQueueService helpRequestQueueService;
+
         @Autowired
         ObjectMapper mapper;
 
@@ -112,7 +123,7 @@ public class HelpRequestsControllerTests extends ControllerTestCase{
                 when(helpRequestRepository.findAll()).thenReturn(expectedHelpRequests);
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/helprequests/all"))
+                MvcResult response = performWithinQueryBudget(1, get("/api/helprequests/all?unpaged=true"))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
@@ -321,7 +332,7 @@ public class HelpRequestsControllerTests extends ControllerTestCase{
                         .build();
               
 
-                when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.of(helprequestEdit));
+                when(helpRequestRepository.deleteRowById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -330,8 +341,8 @@ public class HelpRequestsControllerTests extends ControllerTestCase{
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(helpRequestRepository, times(1)).findById(15L);
-                verify(helpRequestRepository, times(1)).delete(eq(helprequestEdit));
+                verify(helpRequestRepository, times(1)).deleteRowById(15L);
+                verify(helpRequestRepository, never()).findById(any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("HelpRequest with id 15 deleted", json.get("message"));
@@ -344,7 +355,7 @@ public class HelpRequestsControllerTests extends ControllerTestCase{
                         throws Exception {
                 // arrange
 
-                when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(helpRequestRepository.deleteRowById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -353,15 +364,478 @@ public class HelpRequestsControllerTests extends ControllerTestCase{
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(helpRequestRepository, times(1)).findById(15L);
+                verify(helpRequestRepository, times(1)).deleteRowById(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("HelpRequest with id 15 not found", json.get("message"));
         }
 
+        // Tests for keyset pagination of /all
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_with_cursor_for_next_page() throws Exception {
+
+                // arrange
+
+                List<HelpRequest> rows = List.of(
+                                HelpRequest.builder().id(1L).requesterEmail("first").build(),
+                                HelpRequest.builder().id(2L).requesterEmail("second").build(),
+                                HelpRequest.builder().id(3L).requesterEmail("third").build());
+                when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), any(Limit.class))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/helprequests/all?size=2"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "Mg"))
+                                .andReturn();
+
+                // assert
+
+                verify(helpRequestRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), argThat(limit -> limit.max() == 3));
+                String expectedJson = mapper.writeValueAsString(rows.subList(0, 2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_from_cursor_without_next_cursor() throws Exception {
+
+                // arrange
+
+                List<HelpRequest> rows = List.of(HelpRequest.builder().id(3L).requesterEmail("third").build());
+                when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), any(Limit.class))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/helprequests/all?size=2&cursor=Mg"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                                .andReturn();
+
+                // assert
+
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for streaming /all/stream
+
+        @Test
+        public void logged_out_users_cannot_stream_all() throws Exception {
+                mockMvc.perform(get("/api/helprequests/all/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all() throws Exception {
+
+                // arrange
+
+                List<HelpRequest> rows = List.of(
+                                HelpRequest.builder().id(1L).requesterEmail("first").build(),
+                                HelpRequest.builder().id(2L).requesterEmail("second").build());
+                when(helpRequestRepository.streamAll()).thenReturn(rows.stream());
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/helprequests/all/stream"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(helpRequestRepository, times(1)).streamAll();
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for GET /export
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/helprequests/export?columns=id,requesterEmail"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_selected_columns_as_csv() throws Exception {
+
+                // arrange
+
+                List<HelpRequest> rows = List.of(
+                                HelpRequest.builder().id(1L).requesterEmail("first").build(),
+                                HelpRequest.builder().id(2L).requesterEmail("second").build());
+                when(helpRequestRepository.streamAll()).thenReturn(rows.stream());
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/helprequests/export?columns=id,requesterEmail"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(helpRequestRepository, times(1)).streamAll();
+                String expectedCsv = "id,requesterEmail\n1,first\n2,second\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedCsv, responseString);
+                assertEquals("text/csv", response.getResponse().getContentType());
+        }
+
+        // Tests for POST /bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/helprequests/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[]")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk_which_ignores_ids_and_versions_and_saves_all_rows() throws Exception {
+
+                // arrange
+
+                List<HelpRequest> incoming = List.of(
+                                HelpRequest.builder().id(7L).version(3L).requesterEmail("first").build(),
+                                HelpRequest.builder().id(8L).version(3L).requesterEmail("second").build());
+                List<HelpRequest> expected = List.of(
+                                HelpRequest.builder().requesterEmail("first").build(),
+                                HelpRequest.builder().requesterEmail("second").build());
+                when(helpRequestRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/helprequests/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .characterEncoding("utf-8")
+                                .content(mapper.writeValueAsString(incoming))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(helpRequestRepository, times(1)).saveAll(eq(expected));
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for PATCH
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_patch() throws Exception {
+                mockMvc.perform(patch("/api/helprequests?id=7")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"version\":0,\"requesterEmail\":\"changed\"}")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_patch_which_updates_only_the_given_fields() throws Exception {
 
+                // arrange
 
+                HelpRequest patched = HelpRequest.builder().id(7L).requesterEmail("changed").version(4L).build();
+                Map<String, Object> changes = Map.of("version", 3, "requesterEmail", "changed");
+                when(patchService.patch(eq(HelpRequest.class), eq(7L), eq(changes), any())).thenReturn(patched);
 
+                // act
+                MvcResult response = mockMvc.perform(patch("/api/helprequests?id=7")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .characterEncoding("utf-8")
+                                .content(mapper.writeValueAsString(changes))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
 
+                // assert
+
+                verify(patchService, times(1)).patch(eq(HelpRequest.class), eq(7L), eq(changes), argThat(fields -> fields.contains("requesterEmail")));
+                String expectedJson = mapper.writeValueAsString(patched);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patching_a_stale_version_is_a_conflict() throws Exception {
+
+                // arrange
+
+                when(patchService.patch(eq(HelpRequest.class), eq(7L), any(), any()))
+                                .thenThrow(new OptimisticLockingFailureException("HelpRequest with id 7 has been updated since version 3"));
+
+                // act
+                MvcResult response = mockMvc.perform(patch("/api/helprequests?id=7")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"version\":3,\"solved\":true}")
+                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("OptimisticLockingFailureException", json.get("type"));
+                assertEquals("HelpRequest with id 7 has been updated since version 3", json.get("message"));
+        }
+
+        // Tests for DELETE /bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_bulk() throws Exception {
+                mockMvc.perform(delete("/api/helprequests/bulk?ids=1,2").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_with_one_statement() throws Exception {
+
+                // arrange
+
+                when(helpRequestRepository.deleteRowsByIdIn(eq(List.of(1L, 2L)))).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/helprequests/bulk?ids=1,2").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
 
-}
\ No newline at end of file
+                // assert
+
+                verify(helpRequestRepository, times(1)).deleteRowsByIdIn(eq(List.of(1L, 2L)));
+                verify(helpRequestRepository, never()).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 HelpRequest rows deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_solved_requests_made_before_a_time() throws Exception {
+
+                // arrange
+
+                ZonedDateTime before = ZonedDateTime.parse("2024-01-01T00:00:00Z");
+                when(helpRequestRepository.deleteSolvedBefore(any())).thenReturn(5);
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/helprequests/solved?before=2024-01-01T00:00:00Z").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(helpRequestRepository, times(1)).deleteSolvedBefore(argThat(time -> time.isEqual(before)));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("5 solved HelpRequest rows deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_solved_requests() throws Exception {
+                mockMvc.perform(delete("/api/helprequests/solved?before=2024-01-01T00:00:00Z").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_is_not_modified_when_etag_matches() throws Exception {
+
+                // arrange
+
+                String etag = tableVersions.etag(HelpRequest.class);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/helprequests/all").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                assertEquals(etag, response.getResponse().getHeader("ETag"));
+                assertEquals("", response.getResponse().getContentAsString());
+                verifyNoInteractions(helpRequestRepository);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_when_row_version_matches() throws Exception {
+
+                // arrange
+
+                when(helpRequestRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/helprequests?id=7").header("If-None-Match", "\"7-3\""))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+                verify(helpRequestRepository, never()).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_returns_the_row_when_etag_is_stale() throws Exception {
+
+                // arrange
+
+                HelpRequest helpRequest = HelpRequest.builder().id(7L).explanation("help").version(3L).build();
+                when(helpRequestRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+                when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.of(helpRequest));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/helprequests?id=7").header("If-None-Match", "\"7-2\""))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(helpRequest), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_with_etag_is_not_found_when_the_id_does_not_exist() throws Exception {
+
+                // arrange
+
+                when(helpRequestRepository.findVersionById(eq(7L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/helprequests?id=7").header("If-None-Match", "\"7-2\""))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("HelpRequest with id 7 not found", json.get("message"));
+                verify(helpRequestRepository, never()).findById(any());
+        }
+
+        // Tests for the filtered /queue
+
+        @Test
+        public void logged_out_users_cannot_get_queue() throws Exception {
+                mockMvc.perform(get("/api/helprequests/queue"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_filtered_queue_with_cursor_for_next_page() throws Exception {
+
+                // arrange
+
+                List<HelpRequest> rows = List.of(
+                                HelpRequest.builder().id(1L).teamId("s24-5pm-1").requestTime(ZonedDateTime.parse("2024-01-01T10:00:00Z")).build(),
+                                HelpRequest.builder().id(2L).teamId("s24-5pm-1").requestTime(ZonedDateTime.parse("2024-01-01T10:01:00Z")).build(),
+                                HelpRequest.builder().id(3L).teamId("s24-5pm-1").requestTime(ZonedDateTime.parse("2024-01-01T10:02:00Z")).build());
+                when(helpRequestQueueService.queue(any(), isNull(), eq(3))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/helprequests/queue?teamId=s24-5pm-1&tableOrBreakoutRoom=7&solved=false"
+                                + "&requestedAfter=2024-01-01T00:00:00Z&requestedBefore=2024-01-02T00:00:00Z&size=2"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "MjAyNC0wMS0wMVQxMDowMTowMFovMg"))
+                                .andReturn();
+
+                // assert
+
+                verify(helpRequestQueueService, times(1)).queue(argThat(filter -> filter.teamId().equals("s24-5pm-1")
+                                && filter.tableOrBreakoutRoom().equals("7")
+                                && !filter.solved()
+                                && filter.requestedAfter().toInstant().toString().equals("2024-01-01T00:00:00Z")
+                                && filter.requestedBefore().toInstant().toString().equals("2024-01-02T00:00:00Z")),
+                                isNull(), eq(3));
+                String expectedJson = mapper.writeValueAsString(rows.subList(0, 2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_next_page_of_queue_from_cursor() throws Exception {
+
+                // arrange
+
+                List<HelpRequest> rows = List.of(HelpRequest.builder().id(3L).requestTime(ZonedDateTime.parse("2024-01-01T10:02:00Z")).build());
+                HelpRequestQueueService.Position after = new HelpRequestQueueService.Position(ZonedDateTime.parse("2024-01-01T10:01:00Z"), 2L);
+                when(helpRequestQueueService.queue(any(), eq(after), eq(3))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/helprequests/queue?size=2&cursor=MjAyNC0wMS0wMVQxMDowMTowMFovMg"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                                .andReturn();
+
+                // assert
+
+                verify(helpRequestQueueService, times(1)).queue(
+                                eq(new HelpRequestQueueService.Filter(null, null, null, null, null)), eq(after), eq(3));
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void queue_rejects_invalid_cursors() throws Exception {
+
+                // act
+                MvcResult noSeparator = mockMvc.perform(get("/api/helprequests/queue?cursor=YWJj"))
+                                .andExpect(status().isBadRequest()).andReturn();
+                MvcResult badId = mockMvc.perform(get("/api/helprequests/queue?cursor=MjAyNC0wMS0wMVQxMDowMTowMFoveA"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+
+                assertEquals("Invalid cursor: YWJj", responseToJson(noSeparator).get("message"));
+                assertEquals("Invalid cursor: MjAyNC0wMS0wMVQxMDowMTowMFoveA", responseToJson(badId).get("message"));
+                verifyNoInteractions(helpRequestQueueService);
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_their_own_help_requests() throws Exception {
+                mockMvc.perform(get("/api/helprequests/mine"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(username = "Pconrad", roles = { "USER" })
+        @Test
+        public void logged_in_user_can_page_through_their_own_help_requests() throws Exception {
+
+                // arrange
+
+                HelpRequest first = HelpRequest.builder().id(5L).requesterEmail("pconrad@example.org").build();
+                HelpRequest second = HelpRequest.builder().id(9L).requesterEmail("PConrad@Example.org").build();
+                when(helpRequestRepository.findMine(eq("pconrad@example.org"), eq(Long.MIN_VALUE), eq(Limit.of(2))))
+                                .thenReturn(List.of(first, second));
+                when(helpRequestRepository.findMine(eq("pconrad@example.org"), eq(5L), eq(Limit.of(2))))
+                                .thenReturn(List.of(second));
+
+                // act
+
+                MvcResult page1 = mockMvc.perform(get("/api/helprequests/mine?size=1"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "NQ"))
+                                .andReturn();
+                MvcResult page2 = mockMvc.perform(get("/api/helprequests/mine?size=1&cursor=NQ"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                                .andReturn();
+
+                // assert
+
+                assertEquals(mapper.writeValueAsString(List.of(first)), page1.getResponse().getContentAsString());
+                assertEquals(mapper.writeValueAsString(List.of(second)), page2.getResponse().getContentAsString());
+        }
+}
@@ -9,6 +9,8 @@ import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import org.springframework.data.domain.Limit;
 import java.util.Map;
 
 import org.junit.jupiter.api.Test;
@@ -32,12 +34,23 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.services.MenuItemRatingService;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import org.mockito.ArgumentCaptor;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
 
 @WebMvcTest(controllers = MenuItemReviewController.class)
@@ -49,6 +62,31 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
     @MockBean
     UserRepository userRepository;
+
+    @MockBean
+    MenuItemRatingService menuItemRatingService;
+
+    @MockBean
+    JobService jobService;
+
+    private static MenuItemReviewRepository.Rating rating(long id, long itemId, int stars) {
+        return new MenuItemReviewRepository.Rating() {
+            @Override
+            public long getId() {
+                return id;
+            }
+
+            @Override
+            public long getItemId() {
+                return itemId;
+            }
+
+            @Override
+            public int getStars() {
+                return stars;
+            }
+        };
+    }
     
     @Test
     public void logged_out_users_cannot_get_all() throws Exception {
@@ -96,7 +134,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 when(menuItemReviewRepository.findAll()).thenReturn(expectedMenuItemReviews);
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/menuitemreview/all"))
+                MvcResult response = mockMvc.perform(get("/api/menuitemreview/all?unpaged=true"))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
@@ -116,6 +154,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
 
                 MenuItemReview menuItemReview1 = MenuItemReview.builder()
+                    .itemId(27)
                     .reviewerEmail("null")
                     .stars(1)
                     .dateReviewed(ldt1)
@@ -126,12 +165,13 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
                 // act
                 MvcResult response = mockMvc.perform(
-                                post("/api/menuitemreview/post?reviewerEmail=null&stars=1&dateReviewed=2022-01-03T00:00:00&comments=ldt1")
+                                post("/api/menuitemreview/post?itemId=27&reviewerEmail=null&stars=1&dateReviewed=2022-01-03T00:00:00&comments=ldt1")
                                                 .with(csrf()))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
                 verify(menuItemReviewRepository, times(1)).save(eq(menuItemReview1));
+                verify(menuItemRatingService, times(1)).added(eq(List.of(menuItemReview1)));
                 String expectedJson = mapper.writeValueAsString(menuItemReview1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -234,6 +274,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 // assert
                 verify(menuItemReviewRepository, times(1)).findById(67L);
                 verify(menuItemReviewRepository, times(1)).save(editedMenuItemReview);
+                verify(menuItemRatingService, times(1)).changed(0L, 1, 4);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -286,7 +327,9 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                     .comments("ldt1")
                     .build();
 
-                when(menuItemReviewRepository.findById(eq(15L))).thenReturn(Optional.of(menuItemReview1));
+                List<MenuItemReviewRepository.Rating> ratings = List.of(rating(15L, 0L, 1));
+                when(menuItemReviewRepository.lockRatingsByIdIn(eq(List.of(15L)))).thenReturn(ratings);
+                when(menuItemReviewRepository.deleteRowById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -295,8 +338,9 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(menuItemReviewRepository, times(1)).findById(15L);
-                verify(menuItemReviewRepository, times(1)).delete(eq(menuItemReview1));
+                verify(menuItemReviewRepository, times(1)).deleteRowById(15L);
+                verify(menuItemReviewRepository, never()).findById(any());
+                verify(menuItemRatingService, times(1)).removed(eq(ratings));
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("MenuItemReview with id 15 deleted", json.get("message"));
@@ -308,7 +352,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(menuItemReviewRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(menuItemReviewRepository.lockRatingsByIdIn(eq(List.of(15L)))).thenReturn(List.of());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -317,9 +361,481 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(menuItemReviewRepository, times(1)).findById(15L);
+                verify(menuItemReviewRepository, never()).deleteRowById(anyLong());
+                verify(menuItemRatingService, never()).removed(any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("MenuItemReview with id 15 not found", json.get("message"));
         }
 
+    // Tests for keyset pagination of /all
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_first_page_with_cursor_for_next_page() throws Exception {
+
+        // arrange
+
+        List<MenuItemReview> rows = List.of(
+                MenuItemReview.builder().id(1L).reviewerEmail("first").build(),
+                MenuItemReview.builder().id(2L).reviewerEmail("second").build(),
+                MenuItemReview.builder().id(3L).reviewerEmail("third").build());
+        when(menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), any(Limit.class))).thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreview/all?size=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "Mg"))
+                .andReturn();
+
+        // assert
+
+        verify(menuItemReviewRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), argThat(limit -> limit.max() == 3));
+        String expectedJson = mapper.writeValueAsString(rows.subList(0, 2));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_last_page_from_cursor_without_next_cursor() throws Exception {
+
+        // arrange
+
+        List<MenuItemReview> rows = List.of(MenuItemReview.builder().id(3L).reviewerEmail("third").build());
+        when(menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), any(Limit.class))).thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreview/all?size=2&cursor=Mg"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        // assert
+
+        String expectedJson = mapper.writeValueAsString(rows);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for streaming /all/stream
+
+    @Test
+    public void logged_out_users_cannot_stream_all() throws Exception {
+        mockMvc.perform(get("/api/menuitemreview/all/stream"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_stream_all() throws Exception {
+
+        // arrange
+
+        List<MenuItemReview> rows = List.of(
+                MenuItemReview.builder().id(1L).reviewerEmail("first").build(),
+                MenuItemReview.builder().id(2L).reviewerEmail("second").build());
+        when(menuItemReviewRepository.streamAll()).thenReturn(rows.stream());
+
+        // act
+        MvcResult started = mockMvc.perform(get("/api/menuitemreview/all/stream"))
+                .andExpect(request().asyncStarted()).andReturn();
+        MvcResult response = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(menuItemReviewRepository, times(1)).streamAll();
+        String expectedJson = mapper.writeValueAsString(rows);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for GET /export
+
+    @Test
+    public void logged_out_users_cannot_export() throws Exception {
+        mockMvc.perform(get("/api/menuitemreview/export?columns=id,reviewerEmail"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_export_selected_columns_as_csv() throws Exception {
+
+        // arrange
+
+        List<MenuItemReview> rows = List.of(
+                MenuItemReview.builder().id(1L).reviewerEmail("first").build(),
+                MenuItemReview.builder().id(2L).reviewerEmail("second").build());
+        when(menuItemReviewRepository.streamAll()).thenReturn(rows.stream());
+
+        // act
+        MvcResult started = mockMvc.perform(get("/api/menuitemreview/export?columns=id,reviewerEmail"))
+                .andExpect(request().asyncStarted()).andReturn();
+        MvcResult response = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(menuItemReviewRepository, times(1)).streamAll();
+        String expectedCsv = "id,reviewerEmail\n1,first\n2,second\n";
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedCsv, responseString);
+        assertEquals("text/csv", response.getResponse().getContentType());
+    }
+
+    // Tests for POST /bulk
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+        mockMvc.perform(post("/api/menuitemreview/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]")
+                .with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_post_bulk_which_ignores_ids_and_versions_and_saves_all_rows() throws Exception {
+
+        // arrange
+
+        List<MenuItemReview> incoming = List.of(
+                MenuItemReview.builder().id(7L).version(3L).reviewerEmail("first").build(),
+                MenuItemReview.builder().id(8L).version(3L).reviewerEmail("second").build());
+        List<MenuItemReview> expected = List.of(
+                MenuItemReview.builder().reviewerEmail("first").build(),
+                MenuItemReview.builder().reviewerEmail("second").build());
+        when(menuItemReviewRepository.saveAll(eq(expected))).thenReturn(expected);
+
+        // act
+        MvcResult response = mockMvc.perform(post("/api/menuitemreview/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(mapper.writeValueAsString(incoming))
+                .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(menuItemReviewRepository, times(1)).saveAll(eq(expected));
+        verify(menuItemRatingService, times(1)).added(eq(expected));
+        String expectedJson = mapper.writeValueAsString(expected);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for PATCH
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_patch() throws Exception {
+        mockMvc.perform(patch("/api/menuitemreview?id=7")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"version\":0,\"reviewerEmail\":\"changed\"}")
+                .with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_patch_which_updates_only_the_given_fields() throws Exception {
+
+        // arrange
+
+        MenuItemReview patched = MenuItemReview.builder().id(7L).reviewerEmail("changed").version(4L).build();
+        Map<String, Object> changes = Map.of("version", 3, "reviewerEmail", "changed");
+        when(patchService.patch(eq(MenuItemReview.class), eq(7L), eq(changes), any())).thenReturn(patched);
+
+        // act
+        MvcResult response = mockMvc.perform(patch("/api/menuitemreview?id=7")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(mapper.writeValueAsString(changes))
+                .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(patchService, times(1)).patch(eq(MenuItemReview.class), eq(7L), eq(changes), argThat(fields -> fields.contains("reviewerEmail")));
+        verifyNoInteractions(menuItemRatingService);
+        String expectedJson = mapper.writeValueAsString(patched);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for DELETE /bulk
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_delete_bulk() throws Exception {
+        mockMvc.perform(delete("/api/menuitemreview/bulk?ids=1,2").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_delete_bulk_with_one_statement() throws Exception {
+
+        // arrange
+
+        List<MenuItemReviewRepository.Rating> ratings = List.of(rating(1L, 27L, 5), rating(2L, 27L, 3));
+        when(menuItemReviewRepository.lockRatingsByIdIn(eq(List.of(1L, 2L)))).thenReturn(ratings);
+        when(menuItemReviewRepository.deleteRowsByIdIn(eq(List.of(1L, 2L)))).thenReturn(2);
+
+        // act
+        MvcResult response = mockMvc.perform(delete("/api/menuitemreview/bulk?ids=1,2").with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(menuItemReviewRepository, times(1)).deleteRowsByIdIn(eq(List.of(1L, 2L)));
+        verify(menuItemRatingService, times(1)).removed(eq(ratings));
+        verify(menuItemReviewRepository, never()).findById(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("2 MenuItemReview rows deleted", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void bulk_delete_only_deletes_and_uncounts_the_rows_it_locked() throws Exception {
+
+        // arrange
+
+        List<MenuItemReviewRepository.Rating> ratings = List.of(rating(2L, 27L, 3));
+        when(menuItemReviewRepository.lockRatingsByIdIn(eq(List.of(1L, 2L, 3L)))).thenReturn(ratings);
+        when(menuItemReviewRepository.deleteRowsByIdIn(eq(List.of(2L)))).thenReturn(1);
+
+        // act
+        MvcResult response = mockMvc.perform(delete("/api/menuitemreview/bulk?ids=1,2,3").with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(menuItemReviewRepository, times(1)).deleteRowsByIdIn(eq(List.of(2L)));
+        verify(menuItemRatingService, times(1)).removed(eq(ratings));
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("1 MenuItemReview rows deleted", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void bulk_delete_of_rows_that_are_already_gone_deletes_nothing() throws Exception {
+
+        // arrange
+
+        when(menuItemReviewRepository.lockRatingsByIdIn(eq(List.of(1L, 2L)))).thenReturn(List.of());
+
+        // act
+        MvcResult response = mockMvc.perform(delete("/api/menuitemreview/bulk?ids=1,2").with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(menuItemReviewRepository, never()).deleteRowsByIdIn(any());
+        verify(menuItemRatingService, never()).removed(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("0 MenuItemReview rows deleted", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_all_is_not_modified_when_etag_matches() throws Exception {
+
+        // arrange
+
+        String etag = tableVersions.etag(MenuItemReview.class);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreview/all").header("If-None-Match", etag))
+                .andExpect(status().isNotModified()).andReturn();
+
+        // assert
+
+        assertEquals(etag, response.getResponse().getHeader("ETag"));
+        assertEquals("", response.getResponse().getContentAsString());
+        verifyNoInteractions(menuItemReviewRepository);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_by_id_is_not_modified_when_row_version_matches() throws Exception {
+
+        // arrange
+
+        when(menuItemReviewRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreview?id=7").header("If-None-Match", "\"7-3\""))
+                .andExpect(status().isNotModified()).andReturn();
+
+        // assert
+
+        assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+        verify(menuItemReviewRepository, never()).findById(any());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_by_id_returns_the_row_when_etag_is_stale() throws Exception {
+
+        // arrange
+
+        MenuItemReview menuItemReview = MenuItemReview.builder().id(7L).version(3L).build();
+        when(menuItemReviewRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+        when(menuItemReviewRepository.findById(eq(7L))).thenReturn(Optional.of(menuItemReview));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreview?id=7").header("If-None-Match", "\"7-2\""))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+        assertEquals(mapper.writeValueAsString(menuItemReview), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_by_id_with_etag_is_not_found_when_the_id_does_not_exist() throws Exception {
+
+        // arrange
+
+        when(menuItemReviewRepository.findVersionById(eq(7L))).thenReturn(Optional.empty());
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreview?id=7").header("If-None-Match", "\"7-2\""))
+            .andExpect(status().isNotFound()).andReturn();
+
+        // assert
+
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("MenuItemReview with id 7 not found", json.get("message"));
+        verify(menuItemReviewRepository, never()).findById(any());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void patching_stars_moves_the_review_in_the_rating_summary() throws Exception {
+
+        // arrange
+
+        MenuItemReview patched = MenuItemReview.builder().id(7L).itemId(27L).stars(5).version(4L).build();
+        Map<String, Object> changes = Map.of("version", 3, "stars", 5);
+        when(menuItemReviewRepository.lockRatingsByIdIn(eq(List.of(7L)))).thenReturn(List.of(rating(7L, 27L, 2)));
+        when(patchService.patch(eq(MenuItemReview.class), eq(7L), eq(changes), any())).thenReturn(patched);
+
+        // act
+        MvcResult response = mockMvc.perform(patch("/api/menuitemreview?id=7")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(mapper.writeValueAsString(changes))
+                .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(menuItemRatingService, times(1)).changed(27L, 2, 5);
+        assertEquals(mapper.writeValueAsString(patched), response.getResponse().getContentAsString());
+    }
+
+    // Tests for the rating summary
+
+    @Test
+    public void logged_out_users_cannot_get_summary() throws Exception {
+        mockMvc.perform(get("/api/menuitemreview/summary?itemId=27"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_the_rating_summary_of_an_item() throws Exception {
+
+        // arrange
+
+        MenuItemRatingSummary summary = MenuItemRatingSummary.builder()
+                .itemId(27L).reviewCount(4).starsSum(14).twoStar(1).fourStar(2).fiveStar(1).build();
+        when(menuItemRatingService.summary(eq(27L))).thenReturn(summary);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreview/summary?itemId=27"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.averageStars").value(3.5))
+                .andExpect(jsonPath("$.fourStar").value(2))
+                .andReturn();
+
+        // assert
+
+        verify(menuItemReviewRepository, never()).findAll();
+        assertEquals(mapper.writeValueAsString(summary), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_rebuild_summaries() throws Exception {
+        mockMvc.perform(post("/api/menuitemreview/summary/rebuild").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_rebuild_summaries_in_a_job() throws Exception {
+
+        // arrange
+
+        Job job = Job.builder().id(17L).status("running").build();
+        String expectedJson = mapper.writeValueAsString(job);
+        ArgumentCaptor<JobContextConsumer> rebuildJob = ArgumentCaptor.forClass(JobContextConsumer.class);
+        when(jobService.runAsJob(rebuildJob.capture())).thenReturn(job);
+        when(menuItemRatingService.rebuild()).thenReturn(3);
+
+        // act
+        MvcResult response = mockMvc.perform(post("/api/menuitemreview/summary/rebuild").with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+        rebuildJob.getValue().accept(new JobContext(null, job));
+
+        // assert
+
+        verify(menuItemRatingService, times(1)).rebuild();
+        assertEquals("Rebuilding menu item rating summaries\nRebuilt rating summaries for 3 menu items", job.getLog());
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @Test
+    public void logged_out_users_cannot_get_their_own_menu_item_reviews() throws Exception {
+        mockMvc.perform(get("/api/menuitemreview/mine"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(username = "Pconrad", roles = { "USER" })
+    @Test
+    public void logged_in_user_can_page_through_their_own_menu_item_reviews() throws Exception {
+
+        // arrange
+
+        MenuItemReview first = MenuItemReview.builder().id(5L).reviewerEmail("pconrad@example.org").build();
+        MenuItemReview second = MenuItemReview.builder().id(9L).reviewerEmail("PConrad@Example.org").build();
+        when(menuItemReviewRepository.findMine(eq("pconrad@example.org"), eq(Long.MIN_VALUE), eq(Limit.of(2))))
+                .thenReturn(List.of(first, second));
+        when(menuItemReviewRepository.findMine(eq("pconrad@example.org"), eq(5L), eq(Limit.of(2))))
+                .thenReturn(List.of(second));
+
+        // act
+
+        MvcResult page1 = mockMvc.perform(get("/api/menuitemreview/mine?size=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "NQ"))
+                .andReturn();
+        MvcResult page2 = mockMvc.perform(get("/api/menuitemreview/mine?size=1&cursor=NQ"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        // assert
+
+        assertEquals(mapper.writeValueAsString(List.of(first)), page1.getResponse().getContentAsString());
+        assertEquals(mapper.writeValueAsString(List.of(second)), page2.getResponse().getContentAsString());
+    }
 }
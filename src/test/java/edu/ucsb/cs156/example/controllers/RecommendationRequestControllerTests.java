@@ -8,6 +8,8 @@ import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import org.springframework.data.domain.Limit;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -27,9 +29,12 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = RecommendationRequestController.class)
@@ -93,7 +98,7 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
         when(recommendationRequestRepository.findAll()).thenReturn(expectedRecommendationRequests);
 
         // act
-        MvcResult response = mockMvc.perform(get("/api/recommendationRequest/all"))
+        MvcResult response = mockMvc.perform(get("/api/recommendationRequest/all?unpaged=true"))
                         .andExpect(status().isOk()).andReturn();
 
         // assert
@@ -268,15 +273,15 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
                         .dateNeeded(ldt2)
                         .done(true)
                         .build();
-            when(recommendationRequestRepository.findById(eq(15L))).thenReturn(Optional.of(recommendationRequest1));
+            when(recommendationRequestRepository.deleteRowById(eq(15L))).thenReturn(1);
             // act
             MvcResult response = mockMvc.perform(
                             delete("/api/recommendationRequest?id=15")
                                             .with(csrf()))
                             .andExpect(status().isOk()).andReturn();
             // assert
-            verify(recommendationRequestRepository, times(1)).findById(15L);
-            verify(recommendationRequestRepository, times(1)).delete(any());
+            verify(recommendationRequestRepository, times(1)).deleteRowById(15L);
+            verify(recommendationRequestRepository, never()).findById(any());
             Map<String, Object> json = responseToJson(response);
             assertEquals("RecommendationRequest with id 15 deleted", json.get("message"));
     }
@@ -286,15 +291,484 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
     public void admin_tries_to_delete_non_existant_admin_can_delete_a_recommendationrequest_and_gets_right_error_message()
                     throws Exception {
             // arrange
-            when(recommendationRequestRepository.findById(eq(15L))).thenReturn(Optional.empty());
+            when(recommendationRequestRepository.deleteRowById(eq(15L))).thenReturn(0);
             // act
             MvcResult response = mockMvc.perform(
                             delete("/api/recommendationRequest?id=15")
                                             .with(csrf()))
                             .andExpect(status().isNotFound()).andReturn();
             // assert
-            verify(recommendationRequestRepository, times(1)).findById(15L);
+            verify(recommendationRequestRepository, times(1)).deleteRowById(15L);
             Map<String, Object> json = responseToJson(response);
             assertEquals("RecommendationRequest with id 15 not found", json.get("message"));
     }
-}
\ No newline at end of file
+
+    // Tests for keyset pagination of /all
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_first_page_with_cursor_for_next_page() throws Exception {
+
+        // arrange
+
+        List<RecommendationRequest> rows = List.of(
+                RecommendationRequest.builder().id(1L).requesterEmail("first").build(),
+                RecommendationRequest.builder().id(2L).requesterEmail("second").build(),
+                RecommendationRequest.builder().id(3L).requesterEmail("third").build());
+        when(recommendationRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), any(Limit.class))).thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationRequest/all?size=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "Mg"))
+                .andReturn();
+
+        // assert
+
+        verify(recommendationRequestRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), argThat(limit -> limit.max() == 3));
+        String expectedJson = mapper.writeValueAsString(rows.subList(0, 2));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_last_page_from_cursor_without_next_cursor() throws Exception {
+
+        // arrange
+
+        List<RecommendationRequest> rows = List.of(RecommendationRequest.builder().id(3L).requesterEmail("third").build());
+        when(recommendationRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), any(Limit.class))).thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationRequest/all?size=2&cursor=Mg"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        // assert
+
+        String expectedJson = mapper.writeValueAsString(rows);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for streaming /all/stream
+
+    @Test
+    public void logged_out_users_cannot_stream_all() throws Exception {
+        mockMvc.perform(get("/api/recommendationRequest/all/stream"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_stream_all() throws Exception {
+
+        // arrange
+
+        List<RecommendationRequest> rows = List.of(
+                RecommendationRequest.builder().id(1L).requesterEmail("first").build(),
+                RecommendationRequest.builder().id(2L).requesterEmail("second").build());
+        when(recommendationRequestRepository.streamAll()).thenReturn(rows.stream());
+
+        // act
+        MvcResult started = mockMvc.perform(get("/api/recommendationRequest/all/stream"))
+                .andExpect(request().asyncStarted()).andReturn();
+        MvcResult response = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(recommendationRequestRepository, times(1)).streamAll();
+        String expectedJson = mapper.writeValueAsString(rows);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for GET /export
+
+    @Test
+    public void logged_out_users_cannot_export() throws Exception {
+        mockMvc.perform(get("/api/recommendationRequest/export?columns=id,requesterEmail"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_export_selected_columns_as_csv() throws Exception {
+
+        // arrange
+
+        List<RecommendationRequest> rows = List.of(
+                RecommendationRequest.builder().id(1L).requesterEmail("first").build(),
+                RecommendationRequest.builder().id(2L).requesterEmail("second").build());
+        when(recommendationRequestRepository.streamAll()).thenReturn(rows.stream());
+
+        // act
+        MvcResult started = mockMvc.perform(get("/api/recommendationRequest/export?columns=id,requesterEmail"))
+                .andExpect(request().asyncStarted()).andReturn();
+        MvcResult response = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(recommendationRequestRepository, times(1)).streamAll();
+        String expectedCsv = "id,requesterEmail\n1,first\n2,second\n";
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedCsv, responseString);
+        assertEquals("text/csv", response.getResponse().getContentType());
+    }
+
+    // Tests for POST /bulk
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+        mockMvc.perform(post("/api/recommendationRequest/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]")
+                .with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_post_bulk_which_ignores_ids_and_versions_and_saves_all_rows() throws Exception {
+
+        // arrange
+
+        List<RecommendationRequest> incoming = List.of(
+                RecommendationRequest.builder().id(7L).version(3L).requesterEmail("first").build(),
+                RecommendationRequest.builder().id(8L).version(3L).requesterEmail("second").build());
+        List<RecommendationRequest> expected = List.of(
+                RecommendationRequest.builder().requesterEmail("first").build(),
+                RecommendationRequest.builder().requesterEmail("second").build());
+        when(recommendationRequestRepository.saveAll(eq(expected))).thenReturn(expected);
+
+        // act
+        MvcResult response = mockMvc.perform(post("/api/recommendationRequest/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(mapper.writeValueAsString(incoming))
+                .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(recommendationRequestRepository, times(1)).saveAll(eq(expected));
+        String expectedJson = mapper.writeValueAsString(expected);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for PATCH
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_patch() throws Exception {
+        mockMvc.perform(patch("/api/recommendationRequest?id=7")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"version\":0,\"requesterEmail\":\"changed\"}")
+                .with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_patch_which_updates_only_the_given_fields() throws Exception {
+
+        // arrange
+
+        RecommendationRequest patched = RecommendationRequest.builder().id(7L).requesterEmail("changed").version(4L).build();
+        Map<String, Object> changes = Map.of("version", 3, "requesterEmail", "changed");
+        when(patchService.patch(eq(RecommendationRequest.class), eq(7L), eq(changes), any())).thenReturn(patched);
+
+        // act
+        MvcResult response = mockMvc.perform(patch("/api/recommendationRequest?id=7")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(mapper.writeValueAsString(changes))
+                .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(patchService, times(1)).patch(eq(RecommendationRequest.class), eq(7L), eq(changes), argThat(fields -> fields.contains("requesterEmail")));
+        String expectedJson = mapper.writeValueAsString(patched);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for DELETE /bulk
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_delete_bulk() throws Exception {
+        mockMvc.perform(delete("/api/recommendationRequest/bulk?ids=1,2").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_delete_bulk_with_one_statement() throws Exception {
+
+        // arrange
+
+        when(recommendationRequestRepository.deleteRowsByIdIn(eq(List.of(1L, 2L)))).thenReturn(2);
+
+        // act
+        MvcResult response = mockMvc.perform(delete("/api/recommendationRequest/bulk?ids=1,2").with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(recommendationRequestRepository, times(1)).deleteRowsByIdIn(eq(List.of(1L, 2L)));
+        verify(recommendationRequestRepository, never()).findById(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("2 RecommendationRequest rows deleted", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_all_is_not_modified_when_etag_matches() throws Exception {
+
+        // arrange
+
+        String etag = tableVersions.etag(RecommendationRequest.class);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationRequest/all").header("If-None-Match", etag))
+                .andExpect(status().isNotModified()).andReturn();
+
+        // assert
+
+        assertEquals(etag, response.getResponse().getHeader("ETag"));
+        assertEquals("", response.getResponse().getContentAsString());
+        verifyNoInteractions(recommendationRequestRepository);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_by_id_is_not_modified_when_row_version_matches() throws Exception {
+
+        // arrange
+
+        when(recommendationRequestRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationRequest?id=7").header("If-None-Match", "\"7-3\""))
+                .andExpect(status().isNotModified()).andReturn();
+
+        // assert
+
+        assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+        verify(recommendationRequestRepository, never()).findById(any());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_by_id_returns_the_row_when_etag_is_stale() throws Exception {
+
+        // arrange
+
+        RecommendationRequest recommendationRequest = RecommendationRequest.builder().id(7L).version(3L).build();
+        when(recommendationRequestRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+        when(recommendationRequestRepository.findById(eq(7L))).thenReturn(Optional.of(recommendationRequest));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationRequest?id=7").header("If-None-Match", "\"7-2\""))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+        assertEquals(mapper.writeValueAsString(recommendationRequest), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_by_id_with_etag_is_not_found_when_the_id_does_not_exist() throws Exception {
+
+        // arrange
+
+        when(recommendationRequestRepository.findVersionById(eq(7L))).thenReturn(Optional.empty());
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationRequest?id=7").header("If-None-Match", "\"7-2\""))
+            .andExpect(status().isNotFound()).andReturn();
+
+        // assert
+
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("RecommendationRequest with id 7 not found", json.get("message"));
+        verify(recommendationRequestRepository, never()).findById(any());
+    }
+
+    private static RecommendationRequest dueRequest(long id, String professorEmail, String dateNeeded) {
+        return RecommendationRequest.builder().id(id).requesterEmail("student@ucsb.edu").professorEmail(professorEmail)
+                .explanation("grad school").dateRequested(LocalDateTime.parse("2024-01-01T00:00:00"))
+                .dateNeeded(LocalDateTime.parse(dateNeeded)).done(false).build();
+    }
+
+    @Test
+    public void logged_out_users_cannot_get_due_requests_or_counts() throws Exception {
+        mockMvc.perform(get("/api/recommendationRequest/due")).andExpect(status().is(403));
+        mockMvc.perform(get("/api/recommendationRequest/due/counts")).andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_page_through_due_requests() throws Exception {
+
+        // arrange
+
+        RecommendationRequest first = dueRequest(5L, "pconrad@ucsb.edu", "2024-05-01T00:00:00");
+        RecommendationRequest second = dueRequest(2L, "ziad@ucsb.edu", "2024-05-03T00:00:00");
+        when(recommendationRequestRepository.findByDoneFalseAndDateNeededNotNullOrderByDateNeededAscIdAsc(eq(Limit.of(2))))
+                .thenReturn(List.of(first, second));
+        when(recommendationRequestRepository.findDueAfter(eq(LocalDateTime.parse("2024-05-01T00:00:00")), eq(5L), eq(Limit.of(2))))
+                .thenReturn(List.of(second));
+
+        // act
+
+        MvcResult page1 = mockMvc.perform(get("/api/recommendationRequest/due?size=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "MjAyNC0wNS0wMVQwMDowMC81"))
+                .andReturn();
+        MvcResult page2 = mockMvc.perform(get("/api/recommendationRequest/due?size=1&cursor=MjAyNC0wNS0wMVQwMDowMC81"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        // assert
+
+        assertEquals(mapper.writeValueAsString(List.of(first)), page1.getResponse().getContentAsString());
+        assertEquals(mapper.writeValueAsString(List.of(second)), page2.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_page_through_one_professors_due_requests() throws Exception {
+
+        // arrange
+
+        RecommendationRequest first = dueRequest(5L, "pconrad@ucsb.edu", "2024-05-01T00:00:00");
+        RecommendationRequest second = dueRequest(7L, "pconrad@ucsb.edu", "2024-05-01T00:00:00");
+        when(recommendationRequestRepository.findByDoneFalseAndProfessorEmailAndDateNeededNotNullOrderByDateNeededAscIdAsc(eq("pconrad@ucsb.edu"), eq(Limit.of(2))))
+                .thenReturn(List.of(first, second));
+        when(recommendationRequestRepository.findDueForProfessorAfter(eq("pconrad@ucsb.edu"), eq(LocalDateTime.parse("2024-05-01T00:00:00")), eq(5L), eq(Limit.of(2))))
+                .thenReturn(List.of(second));
+
+        // act
+
+        MvcResult page1 = mockMvc.perform(get("/api/recommendationRequest/due?professorEmail=pconrad@ucsb.edu&size=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "MjAyNC0wNS0wMVQwMDowMC81"))
+                .andReturn();
+        MvcResult page2 = mockMvc.perform(get("/api/recommendationRequest/due?professorEmail=pconrad@ucsb.edu&size=1&cursor=MjAyNC0wNS0wMVQwMDowMC81"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        // assert
+
+        assertEquals(mapper.writeValueAsString(List.of(first)), page1.getResponse().getContentAsString());
+        assertEquals(mapper.writeValueAsString(List.of(second)), page2.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void due_rejects_invalid_cursors() throws Exception {
+
+        // act
+
+        for (String cursor : List.of("YWJj", "YWJjLzI", "MjAyNC0wNS0wMVQwMDowMC94")) {
+            MvcResult response = mockMvc.perform(get("/api/recommendationRequest/due?cursor=" + cursor))
+                    .andExpect(status().isBadRequest()).andReturn();
+
+            // assert
+
+            Map<String, Object> json = responseToJson(response);
+            assertEquals("Invalid cursor: " + cursor, json.get("message"));
+        }
+        verifyNoInteractions(recommendationRequestRepository);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_due_counts_per_professor() throws Exception {
+
+        // arrange
+
+        RecommendationRequestRepository.ProfessorDue counts = new RecommendationRequestRepository.ProfessorDue() {
+            @Override
+            public String getProfessorEmail() {
+                return "pconrad@ucsb.edu";
+            }
+
+            @Override
+            public long getOpenCount() {
+                return 3;
+            }
+
+            @Override
+            public LocalDateTime getNextDateNeeded() {
+                return LocalDateTime.parse("2024-05-01T00:00:00");
+            }
+        };
+        when(recommendationRequestRepository.countDueByProfessor()).thenReturn(List.of(counts));
+        String etag = tableVersions.etag(RecommendationRequest.class);
+
+        // act
+
+        MvcResult response = mockMvc.perform(get("/api/recommendationRequest/due/counts"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag))
+                .andReturn();
+        mockMvc.perform(get("/api/recommendationRequest/due/counts").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        // assert
+
+        verify(recommendationRequestRepository, times(1)).countDueByProfessor();
+        List<?> json = mapper.readValue(response.getResponse().getContentAsString(), List.class);
+        assertEquals(List.of(Map.of("professorEmail", "pconrad@ucsb.edu", "openCount", 3, "nextDateNeeded", "2024-05-01T00:00:00")), json);
+    }
+
+    @Test
+    public void logged_out_users_cannot_get_their_own_recommendation_requests() throws Exception {
+        mockMvc.perform(get("/api/recommendationRequest/mine"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(username = "Pconrad", roles = { "USER" })
+    @Test
+    public void logged_in_user_can_page_through_their_own_recommendation_requests() throws Exception {
+
+        // arrange
+
+        RecommendationRequest first = RecommendationRequest.builder().id(5L).requesterEmail("pconrad@example.org").build();
+        RecommendationRequest second = RecommendationRequest.builder().id(9L).requesterEmail("PConrad@Example.org").build();
+        when(recommendationRequestRepository.findMine(eq("pconrad@example.org"), eq(Long.MIN_VALUE), eq(Limit.of(2))))
+                .thenReturn(List.of(first, second));
+        when(recommendationRequestRepository.findMine(eq("pconrad@example.org"), eq(5L), eq(Limit.of(2))))
+                .thenReturn(List.of(second));
+
+        // act
+
+        MvcResult page1 = mockMvc.perform(get("/api/recommendationRequest/mine?size=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "NQ"))
+                .andReturn();
+        MvcResult page2 = mockMvc.perform(get("/api/recommendationRequest/mine?size=1&cursor=NQ"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        // assert
+
+        assertEquals(mapper.writeValueAsString(List.of(first)), page1.getResponse().getContentAsString());
+        assertEquals(mapper.writeValueAsString(List.of(second)), page2.getResponse().getContentAsString());
+    }
+}
@@ -5,9 +5,12 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Restaurant;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.services.RestaurantSearchService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import org.springframework.data.domain.Limit;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -25,9 +28,12 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = RestaurantsController.class)
@@ -40,6 +46,9 @@ public class RestaurantsControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        RestaurantSearchService restaurantSearchService;
+
         // Authorization tests for /api/phones/admin/all
 
         @Test
@@ -146,7 +155,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                 when(restaurantRepository.findAll()).thenReturn(expectedRestaurants);
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/restaurants/all"))
+                MvcResult response = mockMvc.perform(get("/api/restaurants/all?unpaged=true"))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
@@ -177,6 +186,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(restaurantRepository, times(1)).save(restaurant1);
+                verify(restaurantSearchService, times(1)).indexed(List.of(restaurant1));
                 String expectedJson = mapper.writeValueAsString(restaurant1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -192,7 +202,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                                 .description("Mexican")
                                 .build();
 
-                when(restaurantRepository.findById(eq(15L))).thenReturn(Optional.of(restaurant));
+                when(restaurantRepository.deleteRowById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -201,8 +211,9 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(restaurantRepository, times(1)).findById(15L);
-                verify(restaurantRepository, times(1)).delete(any());
+                verify(restaurantRepository, times(1)).deleteRowById(15L);
+                verify(restaurantRepository, never()).findById(any());
+                verify(restaurantSearchService, times(1)).removed(List.of(15L));
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Restaurant with id 15 deleted", json.get("message"));
@@ -214,7 +225,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(restaurantRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(restaurantRepository.deleteRowById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -223,7 +234,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(restaurantRepository, times(1)).findById(15L);
+                verify(restaurantRepository, times(1)).deleteRowById(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Restaurant with id 15 not found", json.get("message"));
         }
@@ -259,6 +270,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                 // assert
                 verify(restaurantRepository, times(1)).findById(67L);
                 verify(restaurantRepository, times(1)).save(restaurantEdited); // should be saved with correct user
+                verify(restaurantSearchService, times(1)).indexed(List.of(restaurantEdited));
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -294,4 +306,364 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                 assertEquals("Restaurant with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination of /all
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_with_cursor_for_next_page() throws Exception {
+
+                // arrange
+
+                List<Restaurant> rows = List.of(
+                                Restaurant.builder().id(1L).name("first").build(),
+                                Restaurant.builder().id(2L).name("second").build(),
+                                Restaurant.builder().id(3L).name("third").build());
+                when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), any(Limit.class))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/all?size=2"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "Mg"))
+                                .andReturn();
+
+                // assert
+
+                verify(restaurantRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), argThat(limit -> limit.max() == 3));
+                String expectedJson = mapper.writeValueAsString(rows.subList(0, 2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_from_cursor_without_next_cursor() throws Exception {
+
+                // arrange
+
+                List<Restaurant> rows = List.of(Restaurant.builder().id(3L).name("third").build());
+                when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), any(Limit.class))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/all?size=2&cursor=Mg"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                                .andReturn();
+
+                // assert
+
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for streaming /all/stream
+
+        @Test
+        public void logged_out_users_cannot_stream_all() throws Exception {
+                mockMvc.perform(get("/api/restaurants/all/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all() throws Exception {
+
+                // arrange
+
+                List<Restaurant> rows = List.of(
+                                Restaurant.builder().id(1L).name("first").build(),
+                                Restaurant.builder().id(2L).name("second").build());
+                when(restaurantRepository.streamAll()).thenReturn(rows.stream());
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/restaurants/all/stream"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(restaurantRepository, times(1)).streamAll();
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for GET /export
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/restaurants/export?columns=id,name"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_selected_columns_as_csv() throws Exception {
+
+                // arrange
+
+                List<Restaurant> rows = List.of(
+                                Restaurant.builder().id(1L).name("first").build(),
+                                Restaurant.builder().id(2L).name("second").build());
+                when(restaurantRepository.streamAll()).thenReturn(rows.stream());
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/restaurants/export?columns=id,name"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(restaurantRepository, times(1)).streamAll();
+                String expectedCsv = "id,name\n1,first\n2,second\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedCsv, responseString);
+                assertEquals("text/csv", response.getResponse().getContentType());
+        }
+
+        // Tests for POST /bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/restaurants/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[]")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk_which_ignores_ids_and_versions_and_saves_all_rows() throws Exception {
+
+                // arrange
+
+                List<Restaurant> incoming = List.of(
+                                Restaurant.builder().id(7L).version(3L).name("first").build(),
+                                Restaurant.builder().id(8L).version(3L).name("second").build());
+                List<Restaurant> expected = List.of(
+                                Restaurant.builder().name("first").build(),
+                                Restaurant.builder().name("second").build());
+                when(restaurantRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/restaurants/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .characterEncoding("utf-8")
+                                .content(mapper.writeValueAsString(incoming))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(restaurantRepository, times(1)).saveAll(eq(expected));
+                verify(restaurantSearchService, times(1)).indexed(expected);
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for PATCH
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_patch() throws Exception {
+                mockMvc.perform(patch("/api/restaurants?id=7")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"version\":0,\"name\":\"changed\"}")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_patch_which_updates_only_the_given_fields() throws Exception {
+
+                // arrange
+
+                Restaurant patched = Restaurant.builder().id(7L).name("changed").version(4L).build();
+                Map<String, Object> changes = Map.of("version", 3, "name", "changed");
+                when(patchService.patch(eq(Restaurant.class), eq(7L), eq(changes), any())).thenReturn(patched);
+
+                // act
+                MvcResult response = mockMvc.perform(patch("/api/restaurants?id=7")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .characterEncoding("utf-8")
+                                .content(mapper.writeValueAsString(changes))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(patchService, times(1)).patch(eq(Restaurant.class), eq(7L), eq(changes), argThat(fields -> fields.contains("name")));
+                verify(restaurantSearchService, times(1)).indexed(List.of(patched));
+                String expectedJson = mapper.writeValueAsString(patched);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for DELETE /bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_bulk() throws Exception {
+                mockMvc.perform(delete("/api/restaurants/bulk?ids=1,2").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_with_one_statement() throws Exception {
+
+                // arrange
+
+                when(restaurantRepository.deleteRowsByIdIn(eq(List.of(1L, 2L)))).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/restaurants/bulk?ids=1,2").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(restaurantRepository, times(1)).deleteRowsByIdIn(eq(List.of(1L, 2L)));
+                verify(restaurantSearchService, times(1)).removed(List.of(1L, 2L));
+                verify(restaurantRepository, never()).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 Restaurant rows deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_is_not_modified_when_etag_matches() throws Exception {
+
+                // arrange
+
+                String etag = tableVersions.etag(Restaurant.class);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/all").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                assertEquals(etag, response.getResponse().getHeader("ETag"));
+                assertEquals("", response.getResponse().getContentAsString());
+                verifyNoInteractions(restaurantRepository);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_when_row_version_matches() throws Exception {
+
+                // arrange
+
+                when(restaurantRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants?id=7").header("If-None-Match", "\"7-3\""))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+                verify(restaurantRepository, never()).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_returns_the_row_when_etag_is_stale() throws Exception {
+
+                // arrange
+
+                Restaurant restaurant = Restaurant.builder().id(7L).version(3L).build();
+                when(restaurantRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+                when(restaurantRepository.findById(eq(7L))).thenReturn(Optional.of(restaurant));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants?id=7").header("If-None-Match", "\"7-2\""))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(restaurant), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_with_etag_is_not_found_when_the_id_does_not_exist() throws Exception {
+
+                // arrange
+
+                when(restaurantRepository.findVersionById(eq(7L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants?id=7").header("If-None-Match", "\"7-2\""))
+                        .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Restaurant with id 7 not found", json.get("message"));
+                verify(restaurantRepository, never()).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_is_not_modified_for_wildcard_etag() throws Exception {
+
+                // act
+                mockMvc.perform(get("/api/restaurants/all").header("If-None-Match", "*"))
+                                .andExpect(status().isNotModified());
+
+                // assert
+
+                verifyNoInteractions(restaurantRepository);
+        }
+
+        // Tests for GET /search
+
+        @Test
+        public void logged_out_users_cannot_search() throws Exception {
+                mockMvc.perform(get("/api/restaurants/search?q=pizzaria"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_search_restaurants_with_a_misspelled_query() throws Exception {
+
+                // arrange
+
+                Restaurant restaurant = Restaurant.builder().id(7L).name("Pizzeria Bella").description("wood fired").build();
+                when(restaurantSearchService.search("pizzaria", 500)).thenReturn(List.of(restaurant));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/search?q=pizzaria&size=1000"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(restaurantSearchService, times(1)).search("pizzaria", 500);
+                assertEquals(mapper.writeValueAsString(List.of(restaurant)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void search_with_blank_query_is_a_bad_request() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/search?q= "))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("q must not be blank", json.get("message"));
+                verifyNoInteractions(restaurantSearchService);
+        }
 }
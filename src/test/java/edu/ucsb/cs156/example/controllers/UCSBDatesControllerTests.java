@@ -8,10 +8,22 @@ import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import org.springframework.data.domain.Limit;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.io.ByteArrayInputStream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.services.UpcomingUCSBDates;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+import java.nio.charset.StandardCharsets;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -27,9 +39,12 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = UCSBDatesController.class)
@@ -42,6 +57,12 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        JobService jobService;
+
+        @MockBean
+        UpcomingUCSBDates upcomingUCSBDates;
+
         // Authorization tests for /api/ucsbdates/admin/all
 
         @Test
@@ -155,7 +176,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 when(ucsbDateRepository.findAll()).thenReturn(expectedDates);
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all"))
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?unpaged=true"))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
@@ -207,7 +228,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .localDateTime(ldt1)
                                 .build();
 
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate1));
+                when(ucsbDateRepository.deleteRowById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -216,8 +237,8 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
-                verify(ucsbDateRepository, times(1)).delete(any());
+                verify(ucsbDateRepository, times(1)).deleteRowById(15L);
+                verify(ucsbDateRepository, never()).findById(any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -229,7 +250,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(ucsbDateRepository.deleteRowById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -238,7 +259,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
+                verify(ucsbDateRepository, times(1)).deleteRowById(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 not found", json.get("message"));
         }
@@ -315,4 +336,542 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDate with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination of /all
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_with_cursor_for_next_page() throws Exception {
+
+                // arrange
+
+                List<UCSBDate> rows = List.of(
+                                UCSBDate.builder().id(1L).name("first").build(),
+                                UCSBDate.builder().id(2L).name("second").build(),
+                                UCSBDate.builder().id(3L).name("third").build());
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), any(Limit.class))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?size=2"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "Mg"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), argThat(limit -> limit.max() == 3));
+                String expectedJson = mapper.writeValueAsString(rows.subList(0, 2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_from_cursor_without_next_cursor() throws Exception {
+
+                // arrange
+
+                List<UCSBDate> rows = List.of(UCSBDate.builder().id(3L).name("third").build());
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), any(Limit.class))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?size=2&cursor=Mg"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                                .andReturn();
+
+                // assert
+
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for streaming /all/stream
+
+        @Test
+        public void logged_out_users_cannot_stream_all() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/all/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all() throws Exception {
+
+                // arrange
+
+                List<UCSBDate> rows = List.of(
+                                UCSBDate.builder().id(1L).name("first").build(),
+                                UCSBDate.builder().id(2L).name("second").build());
+                when(ucsbDateRepository.streamAll()).thenReturn(rows.stream());
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdates/all/stream"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).streamAll();
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for GET /export
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/export?columns=id,name"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_selected_columns_as_csv() throws Exception {
+
+                // arrange
+
+                List<UCSBDate> rows = List.of(
+                                UCSBDate.builder().id(1L).name("first").build(),
+                                UCSBDate.builder().id(2L).name("second").build());
+                when(ucsbDateRepository.streamAll()).thenReturn(rows.stream());
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdates/export?columns=id,name"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).streamAll();
+                String expectedCsv = "id,name\n1,first\n2,second\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedCsv, responseString);
+                assertEquals("text/csv", response.getResponse().getContentType());
+        }
+
+        // Tests for POST /bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/ucsbdates/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[]")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk_which_ignores_ids_and_versions_and_saves_all_rows() throws Exception {
+
+                // arrange
+
+                List<UCSBDate> incoming = List.of(
+                                UCSBDate.builder().id(7L).version(3L).name("first").build(),
+                                UCSBDate.builder().id(8L).version(3L).name("second").build());
+                List<UCSBDate> expected = List.of(
+                                UCSBDate.builder().name("first").build(),
+                                UCSBDate.builder().name("second").build());
+                when(ucsbDateRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/ucsbdates/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .characterEncoding("utf-8")
+                                .content(mapper.writeValueAsString(incoming))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).saveAll(eq(expected));
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for POST /import
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                MockMultipartFile file = new MockMultipartFile("file", "dates.csv", "text/csv", new byte[0]);
+                mockMvc.perform(multipart("/api/ucsbdates/import").file(file).with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_import_dates_and_the_job_saves_the_valid_rows() throws Exception {
+
+                // arrange
+
+                String contents = "id,version,quarterYYYYQ,name,localDateTime\n"
+                                + "7,3,20221,firstDayOfClasses,2022-01-03T00:00:00\n"
+                                + ",,2022Q,badQuarter,2022-01-03T00:00:00\n"
+                                + ",,20222,noDate,\n"
+                                + ",,20223,lastDayOfClasses,2022-09-23T00:00:00\n"
+                                + ",,,noQuarter,2022-01-03T00:00:00\n"
+                                + ",,20224,,2022-01-03T00:00:00\n";
+                MockMultipartFile file = new MockMultipartFile("file", "dates.csv", "text/csv",
+                                contents.getBytes(StandardCharsets.UTF_8));
+                Job job = Job.builder().id(17L).status("running").build();
+                ArgumentCaptor<JobContextConsumer> importJob = ArgumentCaptor.forClass(JobContextConsumer.class);
+                when(jobService.runAsJob(importJob.capture())).thenReturn(job);
+                String expectedJson = mapper.writeValueAsString(job);
+
+                // act
+
+                MvcResult response = mockMvc.perform(multipart("/api/ucsbdates/import").file(file).with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+                importJob.getValue().accept(new JobContext(null, job));
+
+                // assert
+
+                List<UCSBDate> expected = List.of(
+                                UCSBDate.builder().quarterYYYYQ("20221").name("firstDayOfClasses").localDateTime(LocalDateTime.parse("2022-01-03T00:00:00")).build(),
+                                UCSBDate.builder().quarterYYYYQ("20223").name("lastDayOfClasses").localDateTime(LocalDateTime.parse("2022-09-23T00:00:00")).build());
+                verify(ucsbDateRepository, times(1)).saveAll(eq(expected));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+                assertEquals("Importing UCSBDate rows from CSV\n"
+                                + "Row 2 rejected: quarterYYYYQ must look like 20241\n"
+                                + "Row 3 rejected: localDateTime is required\n"
+                                + "Row 5 rejected: quarterYYYYQ is required\n"
+                                + "Row 6 rejected: name is required\n"
+                                + "Imported 2 rows, rejected 4",
+                                job.getLog());
+        }
+
+        // Tests for PATCH
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_patch() throws Exception {
+                mockMvc.perform(patch("/api/ucsbdates?id=7")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"version\":0,\"name\":\"changed\"}")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_patch_which_updates_only_the_given_fields() throws Exception {
+
+                // arrange
+
+                UCSBDate patched = UCSBDate.builder().id(7L).name("changed").version(4L).build();
+                Map<String, Object> changes = Map.of("version", 3, "name", "changed");
+                when(patchService.patch(eq(UCSBDate.class), eq(7L), eq(changes), any())).thenReturn(patched);
+
+                // act
+                MvcResult response = mockMvc.perform(patch("/api/ucsbdates?id=7")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .characterEncoding("utf-8")
+                                .content(mapper.writeValueAsString(changes))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(patchService, times(1)).patch(eq(UCSBDate.class), eq(7L), eq(changes), argThat(fields -> fields.contains("name")));
+                String expectedJson = mapper.writeValueAsString(patched);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for DELETE /bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_bulk() throws Exception {
+                mockMvc.perform(delete("/api/ucsbdates/bulk?ids=1,2").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_with_one_statement() throws Exception {
+
+                // arrange
+
+                when(ucsbDateRepository.deleteRowsByIdIn(eq(List.of(1L, 2L)))).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/ucsbdates/bulk?ids=1,2").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).deleteRowsByIdIn(eq(List.of(1L, 2L)));
+                verify(ucsbDateRepository, never()).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 UCSBDate rows deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_is_not_modified_when_etag_matches() throws Exception {
+
+                // arrange
+
+                String etag = tableVersions.etag(UCSBDate.class);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                assertEquals(etag, response.getResponse().getHeader("ETag"));
+                assertEquals("", response.getResponse().getContentAsString());
+                verifyNoInteractions(ucsbDateRepository);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_when_row_version_matches() throws Exception {
+
+                // arrange
+
+                when(ucsbDateRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates?id=7").header("If-None-Match", "\"7-3\""))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+                verify(ucsbDateRepository, never()).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_returns_the_row_when_etag_is_stale() throws Exception {
+
+                // arrange
+
+                UCSBDate uCSBDate = UCSBDate.builder().id(7L).version(3L).build();
+                when(ucsbDateRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(uCSBDate));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates?id=7").header("If-None-Match", "\"7-2\""))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(uCSBDate), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_with_etag_is_not_found_when_the_id_does_not_exist() throws Exception {
+
+                // arrange
+
+                when(ucsbDateRepository.findVersionById(eq(7L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates?id=7").header("If-None-Match", "\"7-2\""))
+                        .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 7 not found", json.get("message"));
+                verify(ucsbDateRepository, never()).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void unpaged_all_is_serialized_once_and_gzipped_when_accepted() throws Exception {
+
+                // arrange
+
+                List<UCSBDate> rows = List.of(UCSBDate.builder().name("firstDayOfClasses").quarterYYYYQ("20222").build());
+                when(ucsbDateRepository.findAll()).thenReturn(rows);
+
+                // act
+
+                MvcResult plain = mockMvc.perform(get("/api/ucsbdates/all?unpaged=true"))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult gzipped = mockMvc.perform(get("/api/ucsbdates/all?unpaged=true").header("Accept-Encoding", "gzip, deflate"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Encoding", "gzip"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findAll();
+                String etag = tableVersions.etag(UCSBDate.class);
+                assertEquals(etag, plain.getResponse().getHeader("ETag"));
+                assertEquals(etag.substring(0, etag.length() - 1) + "-gzip\"", gzipped.getResponse().getHeader("ETag"));
+                String expectedJson = mapper.writeValueAsString(rows);
+                assertEquals(expectedJson, plain.getResponse().getContentAsString());
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+                        assertEquals(expectedJson, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void unpaged_all_is_not_modified_only_for_the_etag_of_the_negotiated_coding() throws Exception {
+
+                // arrange
+
+                String etag = tableVersions.etag(UCSBDate.class);
+                String gzipETag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+
+                // act
+
+                MvcResult gzipNotModified = mockMvc.perform(get("/api/ucsbdates/all?unpaged=true")
+                                .header("Accept-Encoding", "gzip").header("If-None-Match", gzipETag))
+                                .andExpect(status().isNotModified()).andReturn();
+                MvcResult gzipWithPlainETag = mockMvc.perform(get("/api/ucsbdates/all?unpaged=true")
+                                .header("Accept-Encoding", "gzip").header("If-None-Match", etag))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult plainWithGzipETag = mockMvc.perform(get("/api/ucsbdates/all?unpaged=true")
+                                .header("If-None-Match", gzipETag))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals(gzipETag, gzipNotModified.getResponse().getHeader("ETag"));
+                assertEquals(gzipETag, gzipWithPlainETag.getResponse().getHeader("ETag"));
+                assertEquals("gzip", gzipWithPlainETag.getResponse().getHeader("Content-Encoding"));
+                assertEquals(etag, plainWithGzipETag.getResponse().getHeader("ETag"));
+                verify(ucsbDateRepository, times(1)).findAll();
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_quarter_range_or_upcoming() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/quarter/20242")).andExpect(status().is(403));
+                mockMvc.perform(get("/api/ucsbdates/range?from=2024-04-01T00:00:00&to=2024-07-01T00:00:00")).andExpect(status().is(403));
+                mockMvc.perform(get("/api/ucsbdates/upcoming")).andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_dates_of_a_quarter() throws Exception {
+
+                // arrange
+
+                List<UCSBDate> rows = List.of(
+                                UCSBDate.builder().id(1L).quarterYYYYQ("20242").name("firstDayOfClasses").localDateTime(LocalDateTime.parse("2024-04-01T00:00:00")).build(),
+                                UCSBDate.builder().id(2L).quarterYYYYQ("20242").name("lastDayOfClasses").localDateTime(LocalDateTime.parse("2024-06-07T00:00:00")).build());
+                when(ucsbDateRepository.findByQuarterYYYYQOrderByLocalDateTimeAscIdAsc("20242")).thenReturn(rows);
+                String etag = tableVersions.etag(UCSBDate.class);
+
+                // act
+
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/quarter/20242"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", etag))
+                                .andReturn();
+                mockMvc.perform(get("/api/ucsbdates/quarter/20242").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified());
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findByQuarterYYYYQOrderByLocalDateTimeAscIdAsc("20242");
+                assertEquals(mapper.writeValueAsString(rows), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void quarter_must_look_like_yyyyq() throws Exception {
+
+                // act
+
+                for (String quarter : List.of("2024", "20245", "2024a")) {
+                        MvcResult response = mockMvc.perform(get("/api/ucsbdates/quarter/" + quarter))
+                                        .andExpect(status().isBadRequest()).andReturn();
+
+                        // assert
+
+                        Map<String, Object> json = responseToJson(response);
+                        assertEquals("quarter must look like 20241", json.get("message"));
+                }
+                verifyNoInteractions(ucsbDateRepository);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_page_through_a_date_range() throws Exception {
+
+                // arrange
+
+                LocalDateTime from = LocalDateTime.parse("2024-04-01T00:00:00");
+                LocalDateTime to = LocalDateTime.parse("2024-07-01T00:00:00");
+                UCSBDate first = UCSBDate.builder().id(3L).quarterYYYYQ("20242").name("a").localDateTime(LocalDateTime.parse("2024-06-07T09:30:00")).build();
+                UCSBDate second = UCSBDate.builder().id(2L).quarterYYYYQ("20242").name("b").localDateTime(LocalDateTime.parse("2024-06-07T09:30:00")).build();
+                when(ucsbDateRepository.findInRange(eq(from), eq(to), eq(from), eq(Long.MIN_VALUE), eq(Limit.of(2))))
+                                .thenReturn(List.of(second, first));
+                when(ucsbDateRepository.findInRange(eq(from), eq(to), eq(LocalDateTime.parse("2024-06-07T09:30:00")), eq(2L), eq(Limit.of(2))))
+                                .thenReturn(List.of(first));
+
+                // act
+
+                MvcResult page1 = mockMvc.perform(get("/api/ucsbdates/range?from=2024-04-01T00:00:00&to=2024-07-01T00:00:00&size=1"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "MjAyNC0wNi0wN1QwOTozMC8y"))
+                                .andReturn();
+                MvcResult page2 = mockMvc.perform(get("/api/ucsbdates/range?from=2024-04-01T00:00:00&to=2024-07-01T00:00:00&size=1&cursor=MjAyNC0wNi0wN1QwOTozMC8y"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                                .andReturn();
+
+                // assert
+
+                assertEquals(mapper.writeValueAsString(List.of(second)), page1.getResponse().getContentAsString());
+                assertEquals(mapper.writeValueAsString(List.of(first)), page2.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void range_rejects_invalid_cursors() throws Exception {
+
+                // act
+
+                for (String cursor : List.of("YWJj", "YWJjLzI", "MjAyNC0wNi0wN1QwOTozMC94")) {
+                        MvcResult response = mockMvc.perform(get("/api/ucsbdates/range?from=2024-04-01T00:00:00&to=2024-07-01T00:00:00&cursor=" + cursor))
+                                        .andExpect(status().isBadRequest()).andReturn();
+
+                        // assert
+
+                        Map<String, Object> json = responseToJson(response);
+                        assertEquals("Invalid cursor: " + cursor, json.get("message"));
+                }
+                verifyNoInteractions(ucsbDateRepository);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_upcoming_dates() throws Exception {
+
+                // arrange
+
+                UpcomingUCSBDates.Upcoming upcoming = new UpcomingUCSBDates.Upcoming("20242", List.of(
+                                UCSBDate.builder().id(2L).quarterYYYYQ("20242").name("lastDayOfClasses").localDateTime(LocalDateTime.parse("2024-06-07T00:00:00")).build()));
+                when(upcomingUCSBDates.upcoming()).thenReturn(upcoming);
+
+                // act
+
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/upcoming"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals(mapper.writeValueAsString(upcoming), response.getResponse().getContentAsString());
+                verifyNoInteractions(ucsbDateRepository);
+        }
 }
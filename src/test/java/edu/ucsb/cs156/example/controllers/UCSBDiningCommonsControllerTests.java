@@ -8,10 +8,22 @@ import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import org.springframework.data.domain.Limit;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.io.ByteArrayInputStream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.services.NearestDiningCommons;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+import java.nio.charset.StandardCharsets;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -25,9 +37,12 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = UCSBDiningCommonsController.class)
@@ -40,6 +55,12 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        JobService jobService;
+
+        @MockBean
+        NearestDiningCommons nearestDiningCommons;
+
         // Authorization tests for /api/ucsbdiningcommons/admin/all
 
         @Test
@@ -161,7 +182,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 when(ucsbDiningCommonsRepository.findAll()).thenReturn(expectedCommons);
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all"))
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all?unpaged=true"))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
@@ -217,7 +238,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .longitude(-119.867427)
                                 .build();
 
-                when(ucsbDiningCommonsRepository.findById(eq("portola"))).thenReturn(Optional.of(portola));
+                when(ucsbDiningCommonsRepository.deleteRowById(eq("portola"))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -226,8 +247,8 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
-                verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+                verify(ucsbDiningCommonsRepository, times(1)).deleteRowById("portola");
+                verify(ucsbDiningCommonsRepository, never()).findById(any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -239,7 +260,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.deleteRowById(eq("munger-hall"))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -248,7 +269,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).deleteRowById("munger-hall");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
         }
@@ -332,4 +353,397 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination of /all
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_with_cursor_for_next_page() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommons> rows = List.of(
+                                UCSBDiningCommons.builder().code("carrillo").name("first").build(),
+                                UCSBDiningCommons.builder().code("dlg").name("second").build(),
+                                UCSBDiningCommons.builder().code("ortega").name("third").build());
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq(""), any(Limit.class))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all?size=2"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "ZGxn"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc(eq(""), argThat(limit -> limit.max() == 3));
+                String expectedJson = mapper.writeValueAsString(rows.subList(0, 2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_from_cursor_without_next_cursor() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommons> rows = List.of(UCSBDiningCommons.builder().code("ortega").name("third").build());
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq("dlg"), any(Limit.class))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all?size=2&cursor=ZGxn"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                                .andReturn();
+
+                // assert
+
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for streaming /all/stream
+
+        @Test
+        public void logged_out_users_cannot_stream_all() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/all/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommons> rows = List.of(
+                                UCSBDiningCommons.builder().code("carrillo").name("first").build(),
+                                UCSBDiningCommons.builder().code("dlg").name("second").build());
+                when(ucsbDiningCommonsRepository.streamAll()).thenReturn(rows.stream());
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdiningcommons/all/stream"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).streamAll();
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for GET /export
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/export?columns=code,name"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_selected_columns_as_csv() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommons> rows = List.of(
+                                UCSBDiningCommons.builder().code("carrillo").name("first").build(),
+                                UCSBDiningCommons.builder().code("dlg").name("second").build());
+                when(ucsbDiningCommonsRepository.streamAll()).thenReturn(rows.stream());
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdiningcommons/export?columns=code,name"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).streamAll();
+                String expectedCsv = "code,name\ncarrillo,first\ndlg,second\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedCsv, responseString);
+                assertEquals("text/csv", response.getResponse().getContentType());
+        }
+
+        // Tests for POST /bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/ucsbdiningcommons/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[]")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk_which_saves_all_rows() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommons> incoming = List.of(
+                                UCSBDiningCommons.builder().code("carrillo").name("first").build(),
+                                UCSBDiningCommons.builder().code("dlg").name("second").build());
+                List<UCSBDiningCommons> expected = incoming;
+                when(ucsbDiningCommonsRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/ucsbdiningcommons/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .characterEncoding("utf-8")
+                                .content(mapper.writeValueAsString(incoming))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).saveAll(eq(expected));
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for POST /import
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                MockMultipartFile file = new MockMultipartFile("file", "commons.csv", "text/csv", new byte[0]);
+                mockMvc.perform(multipart("/api/ucsbdiningcommons/import").file(file).with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_import_dining_commons_and_the_job_saves_the_valid_rows() throws Exception {
+
+                // arrange
+
+                String contents = "code,name,hasSackMeal,hasTakeOutMeal,hasDiningCam,latitude,longitude\n"
+                                + "carrillo,Carrillo,false,false,true,34.409953,-119.85277\n"
+                                + "dlg,De La Guerra,false,true,false,34.409811,-119.845026\n"
+                                + ",No Code,false,false,false,34.4,-119.8\n"
+                                + "nameless,,false,false,false,34.4,-119.8\n";
+                MockMultipartFile file = new MockMultipartFile("file", "commons.csv", "text/csv",
+                                contents.getBytes(StandardCharsets.UTF_8));
+                Job job = Job.builder().id(17L).status("running").build();
+                ArgumentCaptor<JobContextConsumer> importJob = ArgumentCaptor.forClass(JobContextConsumer.class);
+                when(jobService.runAsJob(importJob.capture())).thenReturn(job);
+                String expectedJson = mapper.writeValueAsString(job);
+
+                // act
+
+                MvcResult response = mockMvc.perform(multipart("/api/ucsbdiningcommons/import").file(file).with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+                importJob.getValue().accept(new JobContext(null, job));
+
+                // assert
+
+                List<UCSBDiningCommons> expected = List.of(
+                                UCSBDiningCommons.builder().code("carrillo").name("Carrillo").hasSackMeal(false).hasTakeOutMeal(false).hasDiningCam(true).latitude(34.409953).longitude(-119.85277).build(),
+                                UCSBDiningCommons.builder().code("dlg").name("De La Guerra").hasSackMeal(false).hasTakeOutMeal(true).hasDiningCam(false).latitude(34.409811).longitude(-119.845026).build());
+                verify(ucsbDiningCommonsRepository, times(1)).saveAll(eq(expected));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+                assertEquals("Importing UCSBDiningCommons rows from CSV\n"
+                                + "Row 3 rejected: code is required\n"
+                                + "Row 4 rejected: name is required\n"
+                                + "Imported 2 rows, rejected 2",
+                                job.getLog());
+        }
+
+        // Tests for DELETE /bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_bulk() throws Exception {
+                mockMvc.perform(delete("/api/ucsbdiningcommons/bulk?codes=carrillo,dlg").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_with_one_statement() throws Exception {
+
+                // arrange
+
+                when(ucsbDiningCommonsRepository.deleteRowsByIdIn(eq(List.of("carrillo", "dlg")))).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/ucsbdiningcommons/bulk?codes=carrillo,dlg").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).deleteRowsByIdIn(eq(List.of("carrillo", "dlg")));
+                verify(ucsbDiningCommonsRepository, never()).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 UCSBDiningCommons rows deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_is_not_modified_when_etag_matches() throws Exception {
+
+                // arrange
+
+                String etag = tableVersions.etag(UCSBDiningCommons.class);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                assertEquals(etag, response.getResponse().getHeader("ETag"));
+                assertEquals("", response.getResponse().getContentAsString());
+                verifyNoInteractions(ucsbDiningCommonsRepository);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_when_etag_matches() throws Exception {
+
+                // arrange
+
+                String etag = tableVersions.etag(UCSBDiningCommons.class);
+
+                // act
+                mockMvc.perform(get("/api/ucsbdiningcommons?code=DLG").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified());
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, never()).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void unpaged_all_is_serialized_once_and_gzipped_when_accepted() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommons> rows = List.of(UCSBDiningCommons.builder().code("ortega").name("Ortega").build());
+                when(ucsbDiningCommonsRepository.findAll()).thenReturn(rows);
+
+                // act
+
+                MvcResult plain = mockMvc.perform(get("/api/ucsbdiningcommons/all?unpaged=true"))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult gzipped = mockMvc.perform(get("/api/ucsbdiningcommons/all?unpaged=true").header("Accept-Encoding", "gzip, deflate"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Encoding", "gzip"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findAll();
+                String etag = tableVersions.etag(UCSBDiningCommons.class);
+                assertEquals(etag, plain.getResponse().getHeader("ETag"));
+                assertEquals(etag.substring(0, etag.length() - 1) + "-gzip\"", gzipped.getResponse().getHeader("ETag"));
+                String expectedJson = mapper.writeValueAsString(rows);
+                assertEquals(expectedJson, plain.getResponse().getContentAsString());
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+                        assertEquals(expectedJson, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void unpaged_all_is_not_modified_only_for_the_etag_of_the_negotiated_coding() throws Exception {
+
+                // arrange
+
+                String etag = tableVersions.etag(UCSBDiningCommons.class);
+                String gzipETag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+
+                // act
+
+                MvcResult gzipNotModified = mockMvc.perform(get("/api/ucsbdiningcommons/all?unpaged=true")
+                                .header("Accept-Encoding", "gzip").header("If-None-Match", gzipETag))
+                                .andExpect(status().isNotModified()).andReturn();
+                MvcResult gzipWithPlainETag = mockMvc.perform(get("/api/ucsbdiningcommons/all?unpaged=true")
+                                .header("Accept-Encoding", "gzip").header("If-None-Match", etag))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult plainWithGzipETag = mockMvc.perform(get("/api/ucsbdiningcommons/all?unpaged=true")
+                                .header("If-None-Match", gzipETag))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals(gzipETag, gzipNotModified.getResponse().getHeader("ETag"));
+                assertEquals(gzipETag, gzipWithPlainETag.getResponse().getHeader("ETag"));
+                assertEquals("gzip", gzipWithPlainETag.getResponse().getHeader("Content-Encoding"));
+                assertEquals(etag, plainWithGzipETag.getResponse().getHeader("ETag"));
+                verify(ucsbDiningCommonsRepository, times(1)).findAll();
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_nearest() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.85"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_nearest_commons_with_filters() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons ortega = UCSBDiningCommons.builder().code("ortega").name("Ortega")
+                                .hasSackMeal(true).hasTakeOutMeal(true).hasDiningCam(true)
+                                .latitude(34.410987).longitude(-119.84709).build();
+                List<NearestDiningCommons.Nearby> found = List.of(new NearestDiningCommons.Nearby(ortega, 0.25));
+                when(nearestDiningCommons.nearest(34.41, -119.845, 3, null, true, false)).thenReturn(found);
+
+                // act
+
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.845&k=3&hasTakeOutMeal=true&hasDiningCam=false"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(nearestDiningCommons, times(1)).nearest(34.41, -119.845, 3, null, true, false);
+                assertEquals(mapper.writeValueAsString(found), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void nearest_defaults_to_five_and_caps_k() throws Exception {
+
+                // act
+
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=0&lon=0")).andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=0&lon=0&k=100000")).andExpect(status().isOk());
+
+                // assert
+
+                verify(nearestDiningCommons, times(1)).nearest(0.0, 0.0, 5, null, null, null);
+                verify(nearestDiningCommons, times(1)).nearest(0.0, 0.0, 500, null, null, null);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void nearest_rejects_invalid_coordinates_and_k() throws Exception {
+
+                // act
+
+                for (String query : List.of("lat=-90.5&lon=0", "lat=90.5&lon=0", "lat=0&lon=-180.5", "lat=0&lon=180.5", "lat=0&lon=0&k=0")) {
+                        MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/nearest?" + query))
+                                        .andExpect(status().isBadRequest()).andReturn();
+
+                        // assert
+
+                        Map<String, Object> json = responseToJson(response);
+                        assertEquals("BadRequestException", json.get("type"));
+                }
+                verifyNoInteractions(nearestDiningCommons);
+        }
 }
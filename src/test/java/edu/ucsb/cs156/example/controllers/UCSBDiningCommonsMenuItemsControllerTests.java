@@ -10,12 +10,24 @@ import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import org.springframework.data.domain.Limit;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.io.ByteArrayInputStream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.services.TopRatedMenuItems;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+import java.nio.charset.StandardCharsets;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -30,9 +42,13 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = UCSBDiningCommonsMenuItemsController.class)
@@ -45,6 +61,12 @@ public class UCSBDiningCommonsMenuItemsControllerTests extends ControllerTestCas
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        JobService jobService;
+
+        @MockBean
+        TopRatedMenuItems topRatedMenuItems;
+
         @Test
         public void logged_out_users_cannot_get_all() throws Exception {
                 mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all"))
@@ -94,7 +116,7 @@ public class UCSBDiningCommonsMenuItemsControllerTests extends ControllerTestCas
                 when(ucsbDiningCommonsMenuItemRepository.findAll()).thenReturn(expectedMenuItems);
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all"))
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all?unpaged=true"))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
@@ -265,7 +287,7 @@ public class UCSBDiningCommonsMenuItemsControllerTests extends ControllerTestCas
                                 .station("fruits")
                                 .build();
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDiningCommonsMenuItem1));
+                when(ucsbDiningCommonsMenuItemRepository.deleteRowById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -274,8 +296,8 @@ public class UCSBDiningCommonsMenuItemsControllerTests extends ControllerTestCas
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(15L);
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).delete(eq(ucsbDiningCommonsMenuItem1));
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteRowById(15L);
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 15 deleted", json.get("message"));
@@ -287,7 +309,7 @@ public class UCSBDiningCommonsMenuItemsControllerTests extends ControllerTestCas
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsMenuItemRepository.deleteRowById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -296,8 +318,464 @@ public class UCSBDiningCommonsMenuItemsControllerTests extends ControllerTestCas
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(15L);
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteRowById(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 15 not found", json.get("message"));
         }
+
+        // Tests for keyset pagination of /all
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_with_cursor_for_next_page() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommonsMenuItem> rows = List.of(
+                                UCSBDiningCommonsMenuItem.builder().id(1L).name("first").build(),
+                                UCSBDiningCommonsMenuItem.builder().id(2L).name("second").build(),
+                                UCSBDiningCommonsMenuItem.builder().id(3L).name("third").build());
+                when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), any(Limit.class))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all?size=2"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "Mg"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), argThat(limit -> limit.max() == 3));
+                String expectedJson = mapper.writeValueAsString(rows.subList(0, 2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_from_cursor_without_next_cursor() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommonsMenuItem> rows = List.of(UCSBDiningCommonsMenuItem.builder().id(3L).name("third").build());
+                when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), any(Limit.class))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all?size=2&cursor=Mg"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                                .andReturn();
+
+                // assert
+
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for streaming /all/stream
+
+        @Test
+        public void logged_out_users_cannot_stream_all() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommonsMenuItem> rows = List.of(
+                                UCSBDiningCommonsMenuItem.builder().id(1L).name("first").build(),
+                                UCSBDiningCommonsMenuItem.builder().id(2L).name("second").build());
+                when(ucsbDiningCommonsMenuItemRepository.streamAll()).thenReturn(rows.stream());
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all/stream"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).streamAll();
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for GET /export
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/export?columns=id,name"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_selected_columns_as_csv() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommonsMenuItem> rows = List.of(
+                                UCSBDiningCommonsMenuItem.builder().id(1L).name("first").build(),
+                                UCSBDiningCommonsMenuItem.builder().id(2L).name("second").build());
+                when(ucsbDiningCommonsMenuItemRepository.streamAll()).thenReturn(rows.stream());
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/export?columns=id,name"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).streamAll();
+                String expectedCsv = "id,name\n1,first\n2,second\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedCsv, responseString);
+                assertEquals("text/csv", response.getResponse().getContentType());
+        }
+
+        // Tests for POST /bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/ucsbdiningcommonsmenuitems/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[]")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk_which_ignores_ids_and_versions_and_saves_all_rows() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommonsMenuItem> incoming = List.of(
+                                UCSBDiningCommonsMenuItem.builder().id(7L).version(3L).name("first").build(),
+                                UCSBDiningCommonsMenuItem.builder().id(8L).version(3L).name("second").build());
+                List<UCSBDiningCommonsMenuItem> expected = List.of(
+                                UCSBDiningCommonsMenuItem.builder().name("first").build(),
+                                UCSBDiningCommonsMenuItem.builder().name("second").build());
+                when(ucsbDiningCommonsMenuItemRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/ucsbdiningcommonsmenuitems/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .characterEncoding("utf-8")
+                                .content(mapper.writeValueAsString(incoming))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).saveAll(eq(expected));
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for POST /import
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                MockMultipartFile file = new MockMultipartFile("file", "items.ndjson", "application/x-ndjson", new byte[0]);
+                mockMvc.perform(multipart("/api/ucsbdiningcommonsmenuitems/import").file(file).with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_import_menu_items_and_the_job_saves_the_valid_rows() throws Exception {
+
+                // arrange
+
+                String contents = "{\"id\":7,\"version\":3,\"diningCommonsCode\":\"ortega\",\"name\":\"Baked Pesto Pasta\",\"station\":\"Entree Specials\"}\n"
+                                + "{\"diningCommonsCode\":\"ortega\",\"name\":\"\",\"station\":\"Grill\"}\n"
+                                + "{\"diningCommonsCode\":\"carrillo\",\"name\":\"Tofu Banh Mi\",\"station\":\"Entree Specials\"}\n"
+                                + "{\"name\":\"Veggie Burger\",\"station\":\"Grill\"}\n";
+                MockMultipartFile file = new MockMultipartFile("file", "items.ndjson", "application/x-ndjson",
+                                contents.getBytes(StandardCharsets.UTF_8));
+                Job job = Job.builder().id(17L).status("running").build();
+                ArgumentCaptor<JobContextConsumer> importJob = ArgumentCaptor.forClass(JobContextConsumer.class);
+                when(jobService.runAsJob(importJob.capture())).thenReturn(job);
+                String expectedJson = mapper.writeValueAsString(job);
+
+                // act
+
+                MvcResult response = mockMvc.perform(multipart("/api/ucsbdiningcommonsmenuitems/import").file(file).with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+                importJob.getValue().accept(new JobContext(null, job));
+
+                // assert
+
+                List<UCSBDiningCommonsMenuItem> expected = List.of(
+                                UCSBDiningCommonsMenuItem.builder().diningCommonsCode("ortega").name("Baked Pesto Pasta").station("Entree Specials").build(),
+                                UCSBDiningCommonsMenuItem.builder().diningCommonsCode("carrillo").name("Tofu Banh Mi").station("Entree Specials").build());
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).saveAll(eq(expected));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+                assertEquals("Importing UCSBDiningCommonsMenuItem rows from NDJSON\n"
+                                + "Row 2 rejected: name is required\n"
+                                + "Row 4 rejected: diningCommonsCode is required\n"
+                                + "Imported 2 rows, rejected 2",
+                                job.getLog());
+        }
+
+        // Tests for PATCH
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_patch() throws Exception {
+                mockMvc.perform(patch("/api/ucsbdiningcommonsmenuitems?id=7")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"version\":0,\"name\":\"changed\"}")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_patch_which_updates_only_the_given_fields() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommonsMenuItem patched = UCSBDiningCommonsMenuItem.builder().id(7L).name("changed").version(4L).build();
+                Map<String, Object> changes = Map.of("version", 3, "name", "changed");
+                when(patchService.patch(eq(UCSBDiningCommonsMenuItem.class), eq(7L), eq(changes), any())).thenReturn(patched);
+
+                // act
+                MvcResult response = mockMvc.perform(patch("/api/ucsbdiningcommonsmenuitems?id=7")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .characterEncoding("utf-8")
+                                .content(mapper.writeValueAsString(changes))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(patchService, times(1)).patch(eq(UCSBDiningCommonsMenuItem.class), eq(7L), eq(changes), argThat(fields -> fields.contains("name")));
+                String expectedJson = mapper.writeValueAsString(patched);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for DELETE /bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_bulk() throws Exception {
+                mockMvc.perform(delete("/api/ucsbdiningcommonsmenuitems/bulk?ids=1,2").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_with_one_statement() throws Exception {
+
+                // arrange
+
+                when(ucsbDiningCommonsMenuItemRepository.deleteRowsByIdIn(eq(List.of(1L, 2L)))).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/ucsbdiningcommonsmenuitems/bulk?ids=1,2").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteRowsByIdIn(eq(List.of(1L, 2L)));
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 UCSBDiningCommonsMenuItem rows deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_is_not_modified_when_etag_matches() throws Exception {
+
+                // arrange
+
+                String etag = tableVersions.etag(UCSBDiningCommonsMenuItem.class);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                assertEquals(etag, response.getResponse().getHeader("ETag"));
+                assertEquals("", response.getResponse().getContentAsString());
+                verifyNoInteractions(ucsbDiningCommonsMenuItemRepository);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_when_row_version_matches() throws Exception {
+
+                // arrange
+
+                when(ucsbDiningCommonsMenuItemRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems?id=7").header("If-None-Match", "\"7-3\""))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_returns_the_row_when_etag_is_stale() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommonsMenuItem uCSBDiningCommonsMenuItem = UCSBDiningCommonsMenuItem.builder().id(7L).version(3L).build();
+                when(ucsbDiningCommonsMenuItemRepository.findVersionById(eq(7L))).thenReturn(Optional.of(3L));
+                when(ucsbDiningCommonsMenuItemRepository.findById(eq(7L))).thenReturn(Optional.of(uCSBDiningCommonsMenuItem));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems?id=7").header("If-None-Match", "\"7-2\""))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals("\"7-3\"", response.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(uCSBDiningCommonsMenuItem), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_with_etag_is_not_found_when_the_id_does_not_exist() throws Exception {
+
+                // arrange
+
+                when(ucsbDiningCommonsMenuItemRepository.findVersionById(eq(7L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems?id=7").header("If-None-Match", "\"7-2\""))
+                        .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommonsMenuItem with id 7 not found", json.get("message"));
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void unpaged_all_is_serialized_once_and_gzipped_when_accepted() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommonsMenuItem> rows = List.of(UCSBDiningCommonsMenuItem.builder().diningCommonsCode("ortega").name("Pizza").station("Entrees").build());
+                when(ucsbDiningCommonsMenuItemRepository.findAll()).thenReturn(rows);
+
+                // act
+
+                MvcResult plain = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all?unpaged=true"))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult gzipped = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all?unpaged=true").header("Accept-Encoding", "gzip, deflate"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Encoding", "gzip"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAll();
+                String etag = tableVersions.etag(UCSBDiningCommonsMenuItem.class);
+                assertEquals(etag, plain.getResponse().getHeader("ETag"));
+                assertEquals(etag.substring(0, etag.length() - 1) + "-gzip\"", gzipped.getResponse().getHeader("ETag"));
+                String expectedJson = mapper.writeValueAsString(rows);
+                assertEquals(expectedJson, plain.getResponse().getContentAsString());
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+                        assertEquals(expectedJson, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void unpaged_all_is_not_modified_only_for_the_etag_of_the_negotiated_coding() throws Exception {
+
+                // arrange
+
+                String etag = tableVersions.etag(UCSBDiningCommonsMenuItem.class);
+                String gzipETag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+
+                // act
+
+                MvcResult gzipNotModified = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all?unpaged=true")
+                                .header("Accept-Encoding", "gzip").header("If-None-Match", gzipETag))
+                                .andExpect(status().isNotModified()).andReturn();
+                MvcResult gzipWithPlainETag = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all?unpaged=true")
+                                .header("Accept-Encoding", "gzip").header("If-None-Match", etag))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult plainWithGzipETag = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/all?unpaged=true")
+                                .header("If-None-Match", gzipETag))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals(gzipETag, gzipNotModified.getResponse().getHeader("ETag"));
+                assertEquals(gzipETag, gzipWithPlainETag.getResponse().getHeader("ETag"));
+                assertEquals("gzip", gzipWithPlainETag.getResponse().getHeader("Content-Encoding"));
+                assertEquals(etag, plainWithGzipETag.getResponse().getHeader("ETag"));
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAll();
+        }
+
+        // Tests for /toprated
+
+        @Test
+        public void logged_out_users_cannot_get_top_rated() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/toprated?diningCommonsCode=carrillo"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_top_rated_items_of_a_commons() throws Exception {
+
+                // arrange
+
+                List<TopRatedMenuItems.RatedItem> top = List.of(
+                                new TopRatedMenuItems.RatedItem(2L, "carrillo", "Tacos", "Entrees", 4L, 19L),
+                                new TopRatedMenuItems.RatedItem(5L, "carrillo", "Salad", "Greens", 3L, 12L));
+                when(topRatedMenuItems.top(eq("carrillo"), eq(10))).thenReturn(top);
+
+                // act
+
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/toprated?diningCommonsCode=carrillo"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$[0].averageStars").value(4.75))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(top), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void top_rated_limit_is_capped() throws Exception {
+
+                // act
+
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenuitems/toprated?diningCommonsCode=carrillo&limit=100000"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(topRatedMenuItems, times(1)).top(eq("carrillo"), eq(ApiController.MAX_PAGE_SIZE));
+        }
 }
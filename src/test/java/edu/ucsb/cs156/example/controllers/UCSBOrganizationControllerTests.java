@@ -9,10 +9,22 @@ import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import org.springframework.data.domain.Limit;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.io.ByteArrayInputStream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.services.OrganizationSuggestions;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+import java.nio.charset.StandardCharsets;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -26,9 +38,12 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = UCSBOrganizationController.class)
@@ -41,6 +56,12 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        JobService jobService;
+
+        @MockBean
+        OrganizationSuggestions organizationSuggestions;
+
         // Authorization tests for /api/ucsborganization/admin/all
 
         @Test
@@ -154,7 +175,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                 when(ucsbOrganizationRepository.findAll()).thenReturn(expectedOrgs);
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/ucsborganization/all"))
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/all?unpaged=true"))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
@@ -204,7 +225,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .inactive(true)
                                 .build();
 
-                when(ucsbOrganizationRepository.findById(eq("IEEE"))).thenReturn(Optional.of(ItripleE));
+                when(ucsbOrganizationRepository.deleteRowById(eq("IEEE"))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -213,8 +234,8 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("IEEE");
-                verify(ucsbOrganizationRepository, times(1)).delete(any());
+                verify(ucsbOrganizationRepository, times(1)).deleteRowById("IEEE");
+                verify(ucsbOrganizationRepository, never()).findById(any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id IEEE deleted", json.get("message"));
@@ -226,7 +247,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbOrganizationRepository.findById(eq("GAME"))).thenReturn(Optional.empty());
+                when(ucsbOrganizationRepository.deleteRowById(eq("GAME"))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -235,7 +256,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("GAME");
+                verify(ucsbOrganizationRepository, times(1)).deleteRowById("GAME");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id GAME not found", json.get("message"));
         }
@@ -310,5 +331,402 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                 assertEquals("UCSBOrganization with id IEEE not found", json.get("message"));
 
         }
-        
+
+        // Tests for keyset pagination of /all
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_with_cursor_for_next_page() throws Exception {
+
+                // arrange
+
+                List<UCSBOrganization> rows = List.of(
+                                UCSBOrganization.builder().orgCode("DIVE").orgTranslationShort("first").build(),
+                                UCSBOrganization.builder().orgCode("IEEE").orgTranslationShort("second").build(),
+                                UCSBOrganization.builder().orgCode("ZETA").orgTranslationShort("third").build());
+                when(ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq(""), any(Limit.class))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/all?size=2"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "SUVFRQ"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbOrganizationRepository, times(1)).findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq(""), argThat(limit -> limit.max() == 3));
+                String expectedJson = mapper.writeValueAsString(rows.subList(0, 2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_from_cursor_without_next_cursor() throws Exception {
+
+                // arrange
+
+                List<UCSBOrganization> rows = List.of(UCSBOrganization.builder().orgCode("ZETA").orgTranslationShort("third").build());
+                when(ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq("IEEE"), any(Limit.class))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/all?size=2&cursor=SUVFRQ"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                                .andReturn();
+
+                // assert
+
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for streaming /all/stream
+
+        @Test
+        public void logged_out_users_cannot_stream_all() throws Exception {
+                mockMvc.perform(get("/api/ucsborganization/all/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all() throws Exception {
+
+                // arrange
+
+                List<UCSBOrganization> rows = List.of(
+                                UCSBOrganization.builder().orgCode("DIVE").orgTranslationShort("first").build(),
+                                UCSBOrganization.builder().orgCode("IEEE").orgTranslationShort("second").build());
+                when(ucsbOrganizationRepository.streamAll()).thenReturn(rows.stream());
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsborganization/all/stream"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbOrganizationRepository, times(1)).streamAll();
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for GET /export
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ucsborganization/export?columns=orgCode,orgTranslationShort"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_selected_columns_as_csv() throws Exception {
+
+                // arrange
+
+                List<UCSBOrganization> rows = List.of(
+                                UCSBOrganization.builder().orgCode("DIVE").orgTranslationShort("first").build(),
+                                UCSBOrganization.builder().orgCode("IEEE").orgTranslationShort("second").build());
+                when(ucsbOrganizationRepository.streamAll()).thenReturn(rows.stream());
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsborganization/export?columns=orgCode,orgTranslationShort"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbOrganizationRepository, times(1)).streamAll();
+                String expectedCsv = "orgCode,orgTranslationShort\nDIVE,first\nIEEE,second\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedCsv, responseString);
+                assertEquals("text/csv", response.getResponse().getContentType());
+        }
+
+        // Tests for POST /bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/ucsborganization/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[]")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk_which_saves_all_rows() throws Exception {
+
+                // arrange
+
+                List<UCSBOrganization> incoming = List.of(
+                                UCSBOrganization.builder().orgCode("DIVE").orgTranslationShort("first").build(),
+                                UCSBOrganization.builder().orgCode("IEEE").orgTranslationShort("second").build());
+                List<UCSBOrganization> expected = incoming;
+                when(ucsbOrganizationRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/ucsborganization/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .characterEncoding("utf-8")
+                                .content(mapper.writeValueAsString(incoming))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbOrganizationRepository, times(1)).saveAll(eq(expected));
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for POST /import
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                MockMultipartFile file = new MockMultipartFile("file", "orgs.csv", "text/csv", new byte[0]);
+                mockMvc.perform(multipart("/api/ucsborganization/import").file(file).with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_import_organizations_and_the_job_saves_the_valid_rows() throws Exception {
+
+                // arrange
+
+                String contents = "orgCode,orgTranslationShort,orgTranslation,inactive\n"
+                                + "DIVE,Dive Club,UCSB Dive Club,false\n"
+                                + "IEEE,IEEE,Institute of Electrical and Electronics Engineers,true\n"
+                                + ",No Code,No Code Club,false\n"
+                                + "NOSHORT,,No Short Name Club,false\n";
+                MockMultipartFile file = new MockMultipartFile("file", "orgs.csv", "text/csv",
+                                contents.getBytes(StandardCharsets.UTF_8));
+                Job job = Job.builder().id(17L).status("running").build();
+                ArgumentCaptor<JobContextConsumer> importJob = ArgumentCaptor.forClass(JobContextConsumer.class);
+                when(jobService.runAsJob(importJob.capture())).thenReturn(job);
+                String expectedJson = mapper.writeValueAsString(job);
+
+                // act
+
+                MvcResult response = mockMvc.perform(multipart("/api/ucsborganization/import").file(file).with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+                importJob.getValue().accept(new JobContext(null, job));
+
+                // assert
+
+                List<UCSBOrganization> expected = List.of(
+                                UCSBOrganization.builder().orgCode("DIVE").orgTranslationShort("Dive Club").orgTranslation("UCSB Dive Club").inactive(false).build(),
+                                UCSBOrganization.builder().orgCode("IEEE").orgTranslationShort("IEEE").orgTranslation("Institute of Electrical and Electronics Engineers").inactive(true).build());
+                verify(ucsbOrganizationRepository, times(1)).saveAll(eq(expected));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+                assertEquals("Importing UCSBOrganization rows from CSV\n"
+                                + "Row 3 rejected: orgCode is required\n"
+                                + "Row 4 rejected: orgTranslationShort is required\n"
+                                + "Imported 2 rows, rejected 2",
+                                job.getLog());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void import_with_an_unknown_format_is_a_bad_request() throws Exception {
+                MockMultipartFile file = new MockMultipartFile("file", "orgs.xml", "application/xml", new byte[0]);
+                MvcResult response = mockMvc.perform(multipart("/api/ucsborganization/import").file(file).with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Cannot tell the format of orgs.xml; pass format=csv or format=ndjson", json.get("message"));
+        }
+
+        // Tests for DELETE /bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_bulk() throws Exception {
+                mockMvc.perform(delete("/api/ucsborganization/bulk?orgCodes=DIVE,IEEE").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_with_one_statement() throws Exception {
+
+                // arrange
+
+                when(ucsbOrganizationRepository.deleteRowsByIdIn(eq(List.of("DIVE", "IEEE")))).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/ucsborganization/bulk?orgCodes=DIVE,IEEE").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbOrganizationRepository, times(1)).deleteRowsByIdIn(eq(List.of("DIVE", "IEEE")));
+                verify(ucsbOrganizationRepository, never()).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 UCSBOrganization rows deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_is_not_modified_when_etag_matches() throws Exception {
+
+                // arrange
+
+                String etag = tableVersions.etag(UCSBOrganization.class);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/all").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                assertEquals(etag, response.getResponse().getHeader("ETag"));
+                assertEquals("", response.getResponse().getContentAsString());
+                verifyNoInteractions(ucsbOrganizationRepository);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_when_etag_matches() throws Exception {
+
+                // arrange
+
+                String etag = tableVersions.etag(UCSBOrganization.class);
+
+                // act
+                mockMvc.perform(get("/api/ucsborganization?orgCode=ZPR").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified());
+
+                // assert
+
+                verify(ucsbOrganizationRepository, never()).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void unpaged_all_is_serialized_once_and_gzipped_when_accepted() throws Exception {
+
+                // arrange
+
+                List<UCSBOrganization> rows = List.of(UCSBOrganization.builder().orgCode("ZPR").orgTranslationShort("ZETA PHI RHO").build());
+                when(ucsbOrganizationRepository.findAll()).thenReturn(rows);
+
+                // act
+
+                MvcResult plain = mockMvc.perform(get("/api/ucsborganization/all?unpaged=true"))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult gzipped = mockMvc.perform(get("/api/ucsborganization/all?unpaged=true").header("Accept-Encoding", "gzip, deflate"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Encoding", "gzip"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbOrganizationRepository, times(1)).findAll();
+                String etag = tableVersions.etag(UCSBOrganization.class);
+                assertEquals(etag, plain.getResponse().getHeader("ETag"));
+                assertEquals(etag.substring(0, etag.length() - 1) + "-gzip\"", gzipped.getResponse().getHeader("ETag"));
+                String expectedJson = mapper.writeValueAsString(rows);
+                assertEquals(expectedJson, plain.getResponse().getContentAsString());
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+                        assertEquals(expectedJson, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void unpaged_all_is_not_modified_only_for_the_etag_of_the_negotiated_coding() throws Exception {
+
+                // arrange
+
+                String etag = tableVersions.etag(UCSBOrganization.class);
+                String gzipETag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+
+                // act
+
+                MvcResult gzipNotModified = mockMvc.perform(get("/api/ucsborganization/all?unpaged=true")
+                                .header("Accept-Encoding", "gzip").header("If-None-Match", gzipETag))
+                                .andExpect(status().isNotModified()).andReturn();
+                MvcResult gzipWithPlainETag = mockMvc.perform(get("/api/ucsborganization/all?unpaged=true")
+                                .header("Accept-Encoding", "gzip").header("If-None-Match", etag))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult plainWithGzipETag = mockMvc.perform(get("/api/ucsborganization/all?unpaged=true")
+                                .header("If-None-Match", gzipETag))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals(gzipETag, gzipNotModified.getResponse().getHeader("ETag"));
+                assertEquals(gzipETag, gzipWithPlainETag.getResponse().getHeader("ETag"));
+                assertEquals("gzip", gzipWithPlainETag.getResponse().getHeader("Content-Encoding"));
+                assertEquals(etag, plainWithGzipETag.getResponse().getHeader("ETag"));
+                verify(ucsbOrganizationRepository, times(1)).findAll();
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_suggestions() throws Exception {
+                mockMvc.perform(get("/api/ucsborganization/suggest?prefix=sk"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_suggestions() throws Exception {
+
+                // arrange
+
+                List<UCSBOrganization> found = List.of(UCSBOrganization.builder().orgCode("SKY").orgTranslationShort("SKYDIVING CLUB")
+                                .orgTranslation("SKYDIVING CLUB AT UCSB").inactive(false).build());
+                when(organizationSuggestions.suggest("sk", 10, false)).thenReturn(found);
+
+                // act
+
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/suggest?prefix=sk"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(organizationSuggestions, times(1)).suggest("sk", 10, false);
+                assertEquals(mapper.writeValueAsString(found), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void suggestions_can_include_inactive_orgs_and_cap_the_limit() throws Exception {
+
+                // act
+
+                mockMvc.perform(get("/api/ucsborganization/suggest?prefix=k&limit=100000&includeInactive=true"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(organizationSuggestions, times(1)).suggest("k", 500, true);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void suggestions_need_a_prefix() throws Exception {
+
+                // act
+
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/suggest").param("prefix", " "))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("prefix must not be blank", json.get("message"));
+                verifyNoInteractions(organizationSuggestions);
+        }
 }
@@ -3,16 +3,22 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.CurrentUserResponseCache;
+import edu.ucsb.cs156.example.services.CurrentUserResponseCache.CachedResponse;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 
+import java.nio.charset.StandardCharsets;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpSession;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -47,4 +53,52 @@ public class UserInfoControllerTests extends ControllerTestCase {
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void currentUser__returns_etag_and_304_when_it_matches() throws Exception {
+
+    // arrange
+
+    MockHttpSession session = new MockHttpSession();
+    MvcResult first = mockMvc.perform(get("/api/currentUser").session(session))
+        .andExpect(status().isOk()).andReturn();
+    String etag = first.getResponse().getHeader("ETag");
+    assertNotNull(etag);
+
+    // act
+
+    MvcResult second = mockMvc.perform(get("/api/currentUser").session(session).header("If-None-Match", etag))
+        .andExpect(status().isNotModified()).andReturn();
+
+    // assert
+    assertEquals("", second.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void currentUser__is_served_from_the_session_cache() throws Exception {
+
+    // arrange
+
+    String expectedJson = mapper.writeValueAsString(currentUserService.getCurrentUser());
+    MockHttpSession session = new MockHttpSession();
+    MvcResult first = mockMvc.perform(get("/api/currentUser").session(session))
+        .andExpect(status().isOk()).andReturn();
+    CachedResponse cached = (CachedResponse) session.getAttribute(CurrentUserResponseCache.SESSION_ATTRIBUTE_NAME);
+    // swap in a different body, so a response that was not served from the cache would show
+    session.setAttribute(CurrentUserResponseCache.SESSION_ATTRIBUTE_NAME, new CachedResponse(
+        cached.generation(), cached.principalName(), "{\"cached\":true}".getBytes(StandardCharsets.UTF_8), cached.etag()));
+
+    // act
+
+    MvcResult second = mockMvc.perform(get("/api/currentUser").session(session))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    assertEquals(expectedJson, first.getResponse().getContentAsString());
+    assertEquals("{\"cached\":true}", second.getResponse().getContentAsString());
+    assertEquals(cached.etag(), second.getResponse().getHeader("ETag"));
+  }
 }
@@ -55,17 +55,19 @@ public class UsersControllerTests extends ControllerTestCase {
     ArrayList<User> expectedUsers = new ArrayList<>();
     expectedUsers.addAll(Arrays.asList(u1, u2, u));
 
-    when(userRepository.findAll()).thenReturn(expectedUsers);
+    when(userRepository.streamAll()).thenReturn(expectedUsers.stream());
     String expectedJson = mapper.writeValueAsString(expectedUsers);
     
     // act
 
-    MvcResult response = mockMvc.perform(get("/api/admin/users"))
+    MvcResult started = mockMvc.perform(get("/api/admin/users"))
+        .andExpect(request().asyncStarted()).andReturn();
+    MvcResult response = mockMvc.perform(asyncDispatch(started))
         .andExpect(status().isOk()).andReturn();
 
     // assert
 
-    verify(userRepository, times(1)).findAll();
+    verify(userRepository, times(1)).streamAll();
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
 
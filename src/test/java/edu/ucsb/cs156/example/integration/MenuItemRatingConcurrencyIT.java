@@ -0,0 +1,96 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.MenuItemRatingService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+/**
+ * Stress test for the rating summaries: many threads count the first reviews
+ * of the same new menu items at the same time.  With the summary row created
+ * by an upsert, no transaction fails and every review is counted.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class MenuItemRatingConcurrencyIT {
+        private static final int THREADS = 8;
+        private static final int ITEMS = 25;
+
+        @Autowired
+        MenuItemRatingService menuItemRatingService;
+
+        @Autowired
+        TransactionTemplate transactionTemplate;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @Test
+        public void concurrent_first_reviews_of_an_item_are_all_counted() throws Exception {
+                // arrange
+
+                CountDownLatch start = new CountDownLatch(1);
+                ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+                // act
+
+                List<Future<?>> workers = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                        int stars = t % 5 + 1;
+                        workers.add(pool.submit(() -> {
+                                start.await();
+                                for (long itemId = 1; itemId <= ITEMS; itemId++) {
+                                        MenuItemReview review = MenuItemReview.builder()
+                                                        .itemId(itemId)
+                                                        .reviewerEmail("cgaucho@ucsb.edu")
+                                                        .stars(stars)
+                                                        .build();
+                                        transactionTemplate.executeWithoutResult(
+                                                        status -> menuItemRatingService.added(List.of(review)));
+                                }
+                                return null;
+                        }));
+                }
+                start.countDown();
+                for (Future<?> worker : workers) {
+                        worker.get(2, TimeUnit.MINUTES);
+                }
+                pool.shutdown();
+
+                // assert
+
+                for (long itemId = 1; itemId <= ITEMS; itemId++) {
+                        MenuItemRatingSummary summary = menuItemRatingService.summary(itemId);
+                        assertEquals(THREADS, summary.getReviewCount());
+                        assertEquals(2 * 1 + 2 * 2 + 2 * 3 + 4 + 5, summary.getStarsSum());
+                        assertEquals(2, summary.getOneStar());
+                        assertEquals(1, summary.getFiveStar());
+                }
+        }
+}
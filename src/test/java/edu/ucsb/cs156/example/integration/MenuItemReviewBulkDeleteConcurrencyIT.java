@@ -0,0 +1,129 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.controllers.MenuItemReviewController;
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.MenuItemRatingService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+/**
+ * Stress test for bulk deletes of reviews: many threads delete overlapping sets
+ * of reviews at the same time.  Since the reviews are locked before their
+ * ratings are read, each review is deleted (and taken out of its rating
+ * summary) exactly once, and the summaries match the ones rebuilt from the
+ * remaining reviews.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class MenuItemReviewBulkDeleteConcurrencyIT {
+        private static final int THREADS = 8;
+        private static final int ITEMS = 10;
+        private static final int CHUNK = 7;
+
+        @Autowired
+        MenuItemReviewController menuItemReviewController;
+
+        @Autowired
+        MenuItemRatingService menuItemRatingService;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @Test
+        public void overlapping_bulk_deletes_keep_the_summaries_in_step_with_the_reviews() throws Exception {
+                // arrange
+
+                actAsAdmin();
+                List<MenuItemReview> reviews = new ArrayList<>();
+                for (long itemId = 1; itemId <= ITEMS; itemId++) {
+                        for (int stars = 1; stars <= 5; stars++) {
+                                reviews.add(MenuItemReview.builder()
+                                                .itemId(itemId)
+                                                .reviewerEmail("cgaucho@ucsb.edu")
+                                                .stars(stars)
+                                                .build());
+                        }
+                }
+                List<Long> doomed = new ArrayList<>();
+                int index = 0;
+                for (MenuItemReview saved : menuItemReviewController.postMenuItemReviewBulk(reviews)) {
+                        if (index++ % 3 != 0) {
+                                doomed.add(saved.getId());
+                        }
+                }
+                CountDownLatch start = new CountDownLatch(1);
+                ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+                // act
+
+                List<Future<Integer>> workers = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                        int offset = t * CHUNK / 2;
+                        workers.add(pool.submit(() -> {
+                                actAsAdmin();
+                                start.await();
+                                int deleted = 0;
+                                for (int from = 0; from < doomed.size(); from += CHUNK) {
+                                        List<Long> ids = new ArrayList<>();
+                                        for (int i = from; i < Math.min(from + CHUNK, doomed.size()); i++) {
+                                                ids.add(doomed.get((i + offset) % doomed.size()));
+                                        }
+                                        Map<?, ?> message = (Map<?, ?>) menuItemReviewController.deleteMenuItemReviewsBulk(ids);
+                                        deleted += Integer.parseInt(message.get("message").toString().split(" ")[0]);
+                                }
+                                return deleted;
+                        }));
+                }
+                start.countDown();
+                int deleted = 0;
+                for (Future<Integer> worker : workers) {
+                        deleted += worker.get(2, TimeUnit.MINUTES);
+                }
+                pool.shutdown();
+
+                // assert
+
+                assertEquals(doomed.size(), deleted);
+                List<MenuItemRatingSummary> maintained = new ArrayList<>();
+                for (long itemId = 1; itemId <= ITEMS; itemId++) {
+                        maintained.add(menuItemRatingService.summary(itemId));
+                }
+                menuItemRatingService.rebuild();
+                for (long itemId = 1; itemId <= ITEMS; itemId++) {
+                        assertEquals(menuItemRatingService.summary(itemId), maintained.get((int) itemId - 1));
+                }
+        }
+
+        private static void actAsAdmin() {
+                SecurityContextHolder.getContext().setAuthentication(
+                                new TestingAuthenticationToken("admingaucho@ucsb.edu", null, "ROLE_ADMIN"));
+        }
+}
@@ -0,0 +1,104 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.PatchService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+/**
+ * Stress test for PATCH: many threads increment the same counter with
+ * read-then-patch, retrying on conflict.  With the version check in the
+ * UPDATE, every increment must survive.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class PatchConcurrencyIT {
+        private static final int THREADS = 8;
+        private static final int INCREMENTS_PER_THREAD = 25;
+
+        @Autowired
+        PatchService patchService;
+
+        @Autowired
+        MenuItemReviewRepository menuItemReviewRepository;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @Test
+        public void concurrent_patches_do_not_lose_updates() throws Exception {
+                // arrange
+
+                MenuItemReview review = menuItemReviewRepository.save(MenuItemReview.builder()
+                                .itemId(1L)
+                                .reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(0)
+                                .build());
+                long id = review.getId();
+                CountDownLatch start = new CountDownLatch(1);
+                ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+                // act
+
+                List<Future<?>> workers = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                        workers.add(pool.submit(() -> {
+                                start.await();
+                                for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+                                        while (true) {
+                                                MenuItemReview current = menuItemReviewRepository.findById(id).orElseThrow();
+                                                try {
+                                                        patchService.patch(MenuItemReview.class, id,
+                                                                        Map.of("version", current.getVersion(),
+                                                                                        "stars", current.getStars() + 1),
+                                                                        Set.of("stars"));
+                                                        break;
+                                                } catch (OptimisticLockingFailureException e) {
+                                                        // someone else got there first; read again and retry
+                                                }
+                                        }
+                                }
+                                return null;
+                        }));
+                }
+                start.countDown();
+                for (Future<?> worker : workers) {
+                        worker.get(2, TimeUnit.MINUTES);
+                }
+                pool.shutdown();
+
+                // assert
+
+                MenuItemReview result = menuItemReviewRepository.findById(id).orElseThrow();
+                assertEquals(THREADS * INCREMENTS_PER_THREAD, result.getStars());
+                assertEquals(THREADS * INCREMENTS_PER_THREAD, result.getVersion());
+        }
+}
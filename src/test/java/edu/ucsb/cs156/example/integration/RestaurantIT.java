@@ -99,4 +99,29 @@ public class RestaurantIT {
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_restaurants_by_id_and_in_bulk() throws Exception {
+                // arrange
+
+                Restaurant first = restaurantRepository.save(Restaurant.builder().name("Chipotle").build());
+                Restaurant second = restaurantRepository.save(Restaurant.builder().name("Freebirds").build());
+                Restaurant third = restaurantRepository.save(Restaurant.builder().name("Woodstocks").build());
+
+                // act
+
+                mockMvc.perform(delete("/api/restaurants?id=%d".formatted(first.getId())).with(csrf()))
+                                .andExpect(status().isOk());
+                mockMvc.perform(delete("/api/restaurants?id=%d".formatted(first.getId())).with(csrf()))
+                                .andExpect(status().isNotFound());
+                mockMvc.perform(delete("/api/restaurants/bulk?ids=%d,%d".formatted(second.getId(), third.getId()))
+                                .with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.message").value("2 Restaurant rows deleted"));
+
+                // assert
+
+                assertEquals(0, restaurantRepository.count());
+        }
 }
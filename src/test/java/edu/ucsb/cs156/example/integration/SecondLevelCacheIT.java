@@ -0,0 +1,124 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class SecondLevelCacheIT {
+        @Autowired
+        UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
+        @Autowired
+        public MockMvc mockMvc;
+
+        @Autowired
+        public ObjectMapper mapper;
+
+        @MockBean
+        UserRepository userRepository;
+
+        private UCSBDiningCommons saveCommons() {
+                return ucsbDiningCommonsRepository.save(UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Ortega")
+                                .hasSackMeal(true)
+                                .build());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void put_replaces_the_cached_commons() throws Exception {
+                // arrange
+
+                saveCommons();
+                mockMvc.perform(get("/api/ucsbdiningcommons?code=ortega"))
+                                .andExpect(status().isOk());
+                assertTrue(entityManagerFactory.getCache().contains(UCSBDiningCommons.class, "ortega"));
+
+                UCSBDiningCommons edited = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Ortega Dining Commons")
+                                .build();
+
+                // act
+
+                mockMvc.perform(put("/api/ucsbdiningcommons?code=ortega")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(mapper.writeValueAsString(edited))
+                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                mockMvc.perform(get("/api/ucsbdiningcommons?code=ortega"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.name").value("Ortega Dining Commons"))
+                                .andExpect(jsonPath("$.hasSackMeal").value(false));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void delete_evicts_the_cached_commons() throws Exception {
+                // arrange
+
+                saveCommons();
+                mockMvc.perform(get("/api/ucsbdiningcommons?code=ortega"))
+                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdiningcommons/all?unpaged=true"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.length()").value(1));
+                assertTrue(entityManagerFactory.getCache().contains(UCSBDiningCommons.class, "ortega"));
+
+                // act
+
+                mockMvc.perform(delete("/api/ucsbdiningcommons?code=ortega").with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                assertFalse(entityManagerFactory.getCache().contains(UCSBDiningCommons.class, "ortega"));
+                mockMvc.perform(get("/api/ucsbdiningcommons?code=ortega"))
+                                .andExpect(status().isNotFound());
+                mockMvc.perform(get("/api/ucsbdiningcommons/all?unpaged=true"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.length()").value(0));
+                assertEquals(0, ucsbDiningCommonsRepository.count());
+        }
+}
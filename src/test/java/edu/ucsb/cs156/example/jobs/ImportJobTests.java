@@ -0,0 +1,291 @@
+package edu.ucsb.cs156.example.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.errors.BadRequestException;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+public class ImportJobTests {
+
+  private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+  private final UCSBOrganizationRepository organizationRepository =
+      mock(UCSBOrganizationRepository.class);
+  private final List<List<UCSBOrganization>> savedChunks = new ArrayList<>();
+
+  private static UCSBOrganization org(String orgCode, boolean inactive) {
+    return UCSBOrganization.builder()
+        .orgCode(orgCode)
+        .orgTranslationShort(orgCode + " short")
+        .orgTranslation(orgCode + " long")
+        .inactive(inactive)
+        .build();
+  }
+
+  private Path file(String contents, String suffix) throws Exception {
+    Path file = Files.createTempFile("import-test-", suffix);
+    Files.writeString(file, contents);
+    return file;
+  }
+
+  @SuppressWarnings("unchecked")
+  private ImportJob.ImportJobBuilder<UCSBOrganization> organizationImport(
+      Path file, ImportJob.Format format) {
+    when(organizationRepository.saveAll(any()))
+        .thenAnswer(
+            invocation -> {
+              savedChunks.add((List<UCSBOrganization>) invocation.getArgument(0));
+              return invocation.getArgument(0);
+            });
+    return ImportJob.<UCSBOrganization>builder()
+        .file(file)
+        .format(format)
+        .type(UCSBOrganization.class)
+        .repository(organizationRepository)
+        .mapper(mapper)
+        .validator(row -> row.getOrgCode() == null ? "orgCode is required" : null);
+  }
+
+  @Test
+  public void csv_rows_are_saved_in_chunks_and_file_is_deleted() throws Exception {
+
+    // arrange
+
+    Path file =
+        file(
+            """
+            orgCode,orgTranslationShort,orgTranslation,inactive,unknownColumn
+            A,A short,A long,false,x
+            B,B short,B long,true,x
+            C,C short,C long,false,x
+            D,D short,D long,false,x
+            E,E short,E long,true,x
+            """,
+            ".csv");
+    Job job = Job.builder().build();
+
+    // act
+
+    organizationImport(file, ImportJob.Format.CSV)
+        .chunkSize(2)
+        .progressEveryChunks(1)
+        .build()
+        .accept(new JobContext(null, job));
+
+    // assert
+
+    assertEquals(
+        List.of(
+            List.of(org("A", false), org("B", true)),
+            List.of(org("C", false), org("D", false)),
+            List.of(org("E", true))),
+        savedChunks);
+    assertEquals(
+        """
+        Importing UCSBOrganization rows from CSV
+        Imported 2 rows so far
+        Imported 4 rows so far
+        Imported 5 rows, rejected 0""",
+        job.getLog());
+    assertFalse(Files.exists(file));
+  }
+
+  @Test
+  public void progress_is_logged_every_few_chunks() throws Exception {
+
+    // arrange
+
+    Path file =
+        file(
+            """
+            orgCode,orgTranslationShort,orgTranslation,inactive
+            A,A short,A long,false
+            B,B short,B long,true
+            C,C short,C long,false
+            D,D short,D long,false
+            E,E short,E long,true
+            """,
+            ".csv");
+    Job job = Job.builder().build();
+
+    // act
+
+    organizationImport(file, ImportJob.Format.CSV)
+        .chunkSize(1)
+        .progressEveryChunks(2)
+        .build()
+        .accept(new JobContext(null, job));
+
+    // assert
+
+    assertEquals(5, savedChunks.size());
+    assertEquals(
+        """
+        Importing UCSBOrganization rows from CSV
+        Imported 2 rows so far
+        Imported 4 rows so far
+        Imported 5 rows, rejected 0""",
+        job.getLog());
+  }
+
+  @Test
+  public void invalid_and_malformed_rows_are_reported_and_skipped() throws Exception {
+
+    // arrange
+
+    Path file =
+        file(
+            """
+            {"orgCode":"A","orgTranslationShort":"A short","orgTranslation":"A long","inactive":false}
+            {"orgTranslationShort":"no code"}
+            {"orgCode":"B","inactive":"maybe"}
+            {"orgCode":"C","orgTranslationShort":"C short","orgTranslation":"C long","inactive":true}
+            """,
+            ".ndjson");
+    Job job = Job.builder().build();
+
+    // act
+
+    organizationImport(file, ImportJob.Format.NDJSON).build().accept(new JobContext(null, job));
+
+    // assert
+
+    assertEquals(List.of(List.of(org("A", false), org("C", true))), savedChunks);
+    String[] log = job.getLog().split("\n");
+    assertEquals("Row 2 rejected: orgCode is required", log[1]);
+    assertEquals(true, log[2].startsWith("Row 3 rejected: "));
+    assertEquals("Imported 2 rows, rejected 2", log[3]);
+  }
+
+  @Test
+  public void import_stops_after_too_many_rejected_rows() throws Exception {
+
+    // arrange
+
+    Path file = file("{}\n{}\n{\"orgCode\":\"A\"}\n", ".ndjson");
+    Job job = Job.builder().build();
+    ImportJob<UCSBOrganization> importJob =
+        organizationImport(file, ImportJob.Format.NDJSON).maxErrors(2).build();
+
+    // act
+
+    Exception e = assertThrows(Exception.class, () -> importJob.accept(new JobContext(null, job)));
+
+    // assert
+
+    assertEquals("Too many rejected rows (2); stopping", e.getMessage());
+    verify(organizationRepository, never()).saveAll(any());
+    assertFalse(Files.exists(file));
+  }
+
+  @Test
+  public void empty_file_saves_nothing() throws Exception {
+
+    // arrange
+
+    Path file = file("orgCode,orgTranslationShort,orgTranslation,inactive\n", ".csv");
+    Job job = Job.builder().build();
+
+    // act
+
+    organizationImport(file, ImportJob.Format.CSV).build().accept(new JobContext(null, job));
+
+    // assert
+
+    verify(organizationRepository, never()).saveAll(any());
+    assertEquals(
+        "Importing UCSBOrganization rows from CSV\nImported 0 rows, rejected 0", job.getLog());
+  }
+
+  @Test
+  public void csv_dates_are_parsed_and_defaults_apply() throws Exception {
+
+    // arrange
+
+    UCSBDateRepository dateRepository = mock(UCSBDateRepository.class);
+    Path file = file("quarterYYYYQ,name,localDateTime\n20221,noon,2022-01-03T12:00:00\n", ".csv");
+    Job job = Job.builder().build();
+
+    // act
+
+    ImportJob.<UCSBDate>builder()
+        .file(file)
+        .format(ImportJob.Format.CSV)
+        .type(UCSBDate.class)
+        .repository(dateRepository)
+        .mapper(mapper)
+        .build()
+        .accept(new JobContext(null, job));
+
+    // assert
+
+    verify(dateRepository)
+        .saveAll(
+            List.of(
+                UCSBDate.builder()
+                    .quarterYYYYQ("20221")
+                    .name("noon")
+                    .localDateTime(LocalDateTime.parse("2022-01-03T12:00:00"))
+                    .build()));
+  }
+
+  @Test
+  public void format_comes_from_parameter_or_extension() {
+    assertEquals(ImportJob.Format.CSV, ImportJob.Format.of("csv", "data.txt"));
+    assertEquals(ImportJob.Format.NDJSON, ImportJob.Format.of("NDJSON", "data.csv"));
+    assertEquals(ImportJob.Format.CSV, ImportJob.Format.of(null, "DATA.CSV"));
+    assertEquals(ImportJob.Format.NDJSON, ImportJob.Format.of(null, "data.ndjson"));
+    assertEquals(ImportJob.Format.NDJSON, ImportJob.Format.of(null, "data.jsonl"));
+  }
+
+  @Test
+  public void unknown_format_is_a_bad_request() {
+    BadRequestException e1 =
+        assertThrows(BadRequestException.class, () -> ImportJob.Format.of("xml", "data.xml"));
+    assertEquals("Unsupported format: xml", e1.getMessage());
+
+    BadRequestException e2 =
+        assertThrows(BadRequestException.class, () -> ImportJob.Format.of(null, "data.xml"));
+    assertEquals(
+        "Cannot tell the format of data.xml; pass format=csv or format=ndjson", e2.getMessage());
+
+    BadRequestException e3 =
+        assertThrows(BadRequestException.class, () -> ImportJob.Format.of(null, null));
+    assertEquals(
+        "Cannot tell the format of null; pass format=csv or format=ndjson", e3.getMessage());
+  }
+
+  @Test
+  public void storeUpload_copies_upload_to_temp_file() throws Exception {
+    MockMultipartFile upload =
+        new MockMultipartFile(
+            "file", "orgs.csv", "text/csv", "a,b\n".getBytes(StandardCharsets.UTF_8));
+
+    Path file = ImportJob.storeUpload(upload, ImportJob.Format.CSV);
+
+    assertEquals("a,b\n", Files.readString(file));
+    assertEquals(true, file.getFileName().toString().endsWith(".csv"));
+    Files.delete(file);
+  }
+}
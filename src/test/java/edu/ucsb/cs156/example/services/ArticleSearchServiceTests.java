@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import jakarta.persistence.EntityManager;
+
+public class ArticleSearchServiceTests {
+
+  private final ArticleSearchService service = new ArticleSearchService();
+  private final ArticlesRepository articlesRepository = mock(ArticlesRepository.class);
+  private final EntityManager entityManager = mock(EntityManager.class);
+
+  private final Article lagoon = Article.builder().id(1L).title("Lagoon cleanup").explanation("volunteers needed").build();
+  private final Article tower = Article.builder().id(2L).title("Storke Tower").explanation("carillon concert at the lagoon").build();
+
+  @BeforeEach
+  void setup() {
+    service.articlesRepository = articlesRepository;
+    service.searchIndexLoader = new SearchIndexLoader();
+    service.searchIndexLoader.entityManager = entityManager;
+    service.backend = "index";
+    when(articlesRepository.streamAll()).thenAnswer(invocation -> Stream.of(lagoon, tower));
+  }
+
+  @Test
+  void test_search_loads_index_once_and_returns_articles_best_first() {
+    when(articlesRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(tower, lagoon));
+    when(articlesRepository.findAllById(List.of(2L))).thenReturn(List.of(tower));
+
+    assertEquals(List.of(lagoon, tower), service.search("lagoon", 10));
+    assertEquals(List.of(tower), service.search("carillon", 10));
+
+    verify(articlesRepository, times(1)).streamAll();
+    verify(entityManager).detach(lagoon);
+    verify(entityManager).detach(tower);
+  }
+
+  @Test
+  void test_search_skips_articles_deleted_since_indexing() {
+    when(articlesRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(lagoon));
+
+    assertEquals(List.of(lagoon), service.search("lagoon", 10));
+  }
+
+  @Test
+  void test_changes_before_first_search_are_left_to_the_load() {
+    service.indexed(List.of(Article.builder().id(3L).title("Lagoon trail").build()));
+    service.removed(List.of(1L));
+    when(articlesRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(lagoon, tower));
+
+    assertEquals(List.of(lagoon, tower), service.search("lagoon", 10));
+  }
+
+  @Test
+  void test_changes_after_load_update_the_index() {
+    service.searchIndexLoader.load(service.loadedIndex);
+    service.searchIndexLoader.load(service.loadedIndex);
+
+    service.indexed(List.of(Article.builder().id(3L).title("Lagoon").build()));
+    service.removed(List.of(1L));
+
+    assertEquals(2, service.index.size());
+    assertEquals(List.of(3L, 2L), service.index.search("lagoon", 10).stream().map(Bm25Index.Hit::id).toList());
+    verify(articlesRepository, times(1)).streamAll();
+  }
+
+  @Test
+  void test_postgres_backend_uses_full_text_query_and_keeps_no_index() {
+    service.backend = "postgres";
+    when(articlesRepository.searchFullText("lagoon", 10)).thenReturn(List.of(tower));
+
+    assertEquals(List.of(tower), service.search("lagoon", 10));
+    service.indexed(List.of(lagoon));
+    service.removed(List.of(1L));
+
+    assertEquals(0, service.index.size());
+    verify(articlesRepository, never()).streamAll();
+    verify(articlesRepository, never()).findAllById(any());
+  }
+}
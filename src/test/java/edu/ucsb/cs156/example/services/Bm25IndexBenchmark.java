@@ -0,0 +1,80 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a top-20 article search over a Bm25Index of synthetic articles
+ * (about 15 words each, drawn from a skewed vocabulary), against scanning every
+ * article's words, which is what searching without an index amounts to.
+ * 
+ * Run with: see docs/benchmarks.md
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class Bm25IndexBenchmark {
+
+  @Param({ "100000", "1000000" })
+  public int articles;
+
+  @Param({ "w5000", "w50 w4000", "w3 w10" })
+  public String query;
+
+  private Bm25Index index;
+  private List<List<String>> texts;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(156);
+    index = new Bm25Index();
+    texts = new ArrayList<>(articles);
+    for (int id = 0; id < articles; id++) {
+      StringBuilder text = new StringBuilder();
+      for (int word = 0; word < 15; word++) {
+        // roughly Zipf distributed over a 20000 word vocabulary
+        int rank = (int) Math.pow(20000, random.nextDouble());
+        text.append('w').append(rank).append(' ');
+      }
+      index.put(id, text.toString());
+      texts.add(Bm25Index.tokenize(text.toString()));
+    }
+  }
+
+  @Benchmark
+  public List<Bm25Index.Hit> index() {
+    return index.search(query, 20);
+  }
+
+  @Benchmark
+  public int scan() {
+    List<String> terms = Bm25Index.tokenize(query);
+    int matches = 0;
+    for (List<String> text : texts) {
+      for (String term : terms) {
+        if (text.contains(term)) {
+          matches++;
+          break;
+        }
+      }
+    }
+    return matches;
+  }
+}
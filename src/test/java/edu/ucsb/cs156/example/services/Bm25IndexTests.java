@@ -0,0 +1,130 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.services.PostingsIndex.Hit;
+
+public class Bm25IndexTests {
+
+  private final Bm25Index index = new Bm25Index();
+
+  private List<Long> ids(List<Hit> hits) {
+    return hits.stream().map(Hit::id).toList();
+  }
+
+  @Test
+  void test_tokenize_lower_cases_and_splits_on_punctuation() {
+    assertEquals(List.of("storke", "tower", "is", "175", "ft", "tall"),
+        Bm25Index.tokenize("Storke Tower -- is 175 ft. tall!"));
+    assertEquals(List.of("caf\u00e9", "ucsb"), Bm25Index.tokenize("  Caf\u00c9, UCSB.  "));
+    assertEquals(List.of(), Bm25Index.tokenize(null));
+  }
+
+  @Test
+  void test_search_ranks_rarer_and_more_frequent_terms_higher() {
+    index.put(1, "gaucho news");
+    index.put(2, "gaucho gaucho news");
+    index.put(3, "campus news");
+    index.put(4, "campus events");
+
+    assertEquals(List.of(2L, 1L), ids(index.search("gaucho", 10)));
+    // "gaucho" is in 2 of 4 documents, "news" in 3 of 4, so gaucho matches score higher
+    assertEquals(List.of(2L, 1L, 3L), ids(index.search("Gaucho NEWS", 10)));
+  }
+
+  @Test
+  void test_search_prefers_shorter_documents_and_breaks_ties_by_id() {
+    index.put(3, "lagoon");
+    index.put(1, "lagoon");
+    index.put(2, "lagoon walk at sunset");
+
+    List<Hit> hits = index.search("lagoon", 10);
+
+    assertEquals(List.of(1L, 3L, 2L), ids(hits));
+    assertEquals(hits.get(0).score(), hits.get(1).score());
+    assertTrue(hits.get(1).score() > hits.get(2).score());
+  }
+
+  @Test
+  void test_repeated_searches_do_not_see_earlier_scores() {
+    index.put(1, "gaucho news");
+    index.put(2, "campus news");
+
+    List<Hit> first = index.search("news", 10);
+    index.search("gaucho gaucho", 10);
+
+    assertEquals(first, index.search("news", 10));
+    for (int id = 3; id < 3000; id++) {
+      index.put(id, "storke tower");
+    }
+    assertEquals(List.of(1L, 2L), ids(index.search("news", 10)));
+    assertEquals(2997, index.search("tower", 5000).size());
+  }
+
+  @Test
+  void test_search_returns_at_most_limit_hits() {
+    for (long id = 1; id <= 40; id++) {
+      index.put(id, "article number " + id + (id % 2 == 0 ? " even even" : ""));
+    }
+
+    List<Hit> hits = index.search("article even", 5);
+
+    assertEquals(List.of(2L, 4L, 6L, 8L, 10L), ids(hits));
+    assertEquals(40, index.size());
+  }
+
+  @Test
+  void test_search_with_no_matches_or_no_words_is_empty() {
+    assertEquals(List.of(), index.search("anything", 10));
+
+    index.put(1, "isla vista");
+
+    assertEquals(List.of(), index.search("goleta", 10));
+    assertEquals(List.of(), index.search("?!", 10));
+  }
+
+  @Test
+  void test_put_replaces_and_remove_deletes() {
+    index.put(1, "old title");
+    index.put(2, "another title");
+
+    index.put(1, "new title");
+    index.remove(2);
+    index.remove(3);
+
+    assertEquals(List.of(), index.search("old", 10));
+    assertEquals(List.of(1L), ids(index.search("new", 10)));
+    assertEquals(List.of(1L), ids(index.search("title", 10)));
+    assertEquals(1, index.size());
+  }
+
+  @Test
+  void test_removed_documents_are_compacted_away() {
+    for (long id = 1; id <= 3000; id++) {
+      index.put(id, "common word" + (id == 2999 ? " rare" : ""));
+    }
+    for (long id = 1; id <= 2990; id++) {
+      index.remove(id);
+    }
+    index.put(3001, "common rare");
+
+    assertEquals(11, index.size());
+    assertEquals(List.of(3001L, 2999L), ids(index.search("rare", 10)));
+    assertEquals(11, index.search("common", 20).size());
+  }
+
+  @Test
+  void test_clear_removes_everything() {
+    index.put(1, "one");
+
+    index.clear();
+
+    assertEquals(0, index.size());
+    assertEquals(List.of(), index.search("one", 10));
+  }
+}
@@ -0,0 +1,146 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.services.CollectionResponseCache.CachedCollection;
+
+public class CollectionResponseCacheTests {
+
+  private final CollectionResponseCache cache = new CollectionResponseCache();
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private List<String> rows() {
+    loads.incrementAndGet();
+    return List.of("ortega", "carrillo");
+  }
+
+  @BeforeEach
+  void setup() {
+    cache.mapper = new ObjectMapper();
+    cache.maxBytes = 1024;
+  }
+
+  @Test
+  void test_get_serializes_once_per_etag() throws IOException {
+    CachedCollection first = cache.get(UCSBDiningCommons.class, "\"a-1\"", this::rows);
+    CachedCollection second = cache.get(UCSBDiningCommons.class, "\"a-1\"", this::rows);
+
+    assertSame(first, second);
+    assertEquals(1, loads.get());
+    assertEquals("[\"ortega\",\"carrillo\"]", new String(first.json(), StandardCharsets.UTF_8));
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(first.gzip()))) {
+      assertArrayEquals(first.json(), in.readAllBytes());
+    }
+  }
+
+  @Test
+  void test_get_reloads_when_etag_changes() {
+    CachedCollection first = cache.get(UCSBDiningCommons.class, "\"a-1\"", this::rows);
+    CachedCollection second = cache.get(UCSBDiningCommons.class, "\"a-2\"", this::rows);
+
+    assertNotSame(first, second);
+    assertEquals("\"a-2\"", second.etag());
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void test_get_does_not_keep_collections_larger_than_max_bytes() {
+    cache.maxBytes = 4;
+
+    cache.get(UCSBDiningCommons.class, "\"a-1\"", this::rows);
+    cache.get(UCSBDiningCommons.class, "\"a-1\"", this::rows);
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void test_get_wraps_serialization_errors() {
+    UncheckedIOException e = assertThrows(UncheckedIOException.class,
+        () -> cache.get(UCSBDiningCommons.class, "\"a-1\"", Object::new));
+
+    assertEquals("Could not serialize UCSBDiningCommons collection", e.getMessage());
+  }
+
+  @Test
+  void test_response_is_plain_json_without_accept_encoding() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+
+    ResponseEntity<byte[]> response = cache.response(UCSBDiningCommons.class, "\"a-1\"", this::rows,
+        new ServletWebRequest(request));
+
+    assertEquals("\"a-1\"", response.getHeaders().getETag());
+    assertEquals("application/json", response.getHeaders().getContentType().toString());
+    assertEquals(List.of("Accept-Encoding"), response.getHeaders().getVary());
+    assertFalse(response.getHeaders().containsKey("Content-Encoding"));
+    assertEquals("[\"ortega\",\"carrillo\"]", new String(response.getBody(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void test_response_is_gzipped_when_accepted() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader("Accept-Encoding", "br;q=1.0, gzip;q=0.8");
+
+    ResponseEntity<byte[]> response = cache.response(UCSBDiningCommons.class, "\"a-1\"", this::rows,
+        new ServletWebRequest(request));
+
+    assertEquals("\"a-1-gzip\"", response.getHeaders().getETag());
+    assertEquals("gzip", response.getHeaders().getFirst("Content-Encoding"));
+    assertArrayEquals(cache.get(UCSBDiningCommons.class, "\"a-1\"", this::rows).gzip(), response.getBody());
+  }
+
+  @Test
+  void test_etag_depends_on_the_coding() {
+    MockHttpServletRequest plain = new MockHttpServletRequest();
+    MockHttpServletRequest gzip = new MockHttpServletRequest();
+    gzip.addHeader("Accept-Encoding", "gzip");
+
+    assertEquals("\"a-1\"", cache.etag("\"a-1\"", new ServletWebRequest(plain)));
+    assertEquals("\"a-1-gzip\"", cache.etag("\"a-1\"", new ServletWebRequest(gzip)));
+  }
+
+  @Test
+  void test_clear_drops_cached_collections() {
+    cache.get(UCSBDiningCommons.class, "\"a-1\"", this::rows);
+    cache.clear();
+    cache.get(UCSBDiningCommons.class, "\"a-1\"", this::rows);
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void test_acceptsGzip() {
+    assertFalse(CollectionResponseCache.acceptsGzip(null));
+    assertFalse(CollectionResponseCache.acceptsGzip("identity"));
+    assertFalse(CollectionResponseCache.acceptsGzip("br, gzip;q=0"));
+    assertFalse(CollectionResponseCache.acceptsGzip("gzip; q=0.0"));
+    assertTrue(CollectionResponseCache.acceptsGzip("gzip"));
+    assertTrue(CollectionResponseCache.acceptsGzip("deflate, GZIP;q=0.5"));
+    assertTrue(CollectionResponseCache.acceptsGzip("*"));
+    assertFalse(CollectionResponseCache.acceptsGzip("gzip;q=0, *;q=0.1"));
+    assertFalse(CollectionResponseCache.acceptsGzip("*;q=0"));
+  }
+}
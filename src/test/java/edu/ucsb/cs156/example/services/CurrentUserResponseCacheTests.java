@@ -0,0 +1,61 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+
+import edu.ucsb.cs156.example.services.CurrentUserResponseCache.CachedResponse;
+
+public class CurrentUserResponseCacheTests {
+
+  private final CurrentUserResponseCache cache = new CurrentUserResponseCache();
+
+  @Test
+  void test_get_returns_what_was_put() {
+    MockHttpSession session = new MockHttpSession();
+    byte[] body = "{\"user\":1}".getBytes(StandardCharsets.UTF_8);
+
+    CachedResponse put = cache.put(session, cache.getGeneration(), "user", body);
+
+    assertEquals(put, cache.get(session, "user").get());
+    assertEquals("\"" + org.springframework.util.DigestUtils.md5DigestAsHex(body) + "\"", put.etag());
+  }
+
+  @Test
+  void test_get_is_empty_for_new_session() {
+    assertTrue(cache.get(new MockHttpSession(), "user").isEmpty());
+  }
+
+  @Test
+  void test_get_is_empty_for_different_principal() {
+    MockHttpSession session = new MockHttpSession();
+    cache.put(session, cache.getGeneration(), "user", new byte[] { 1 });
+
+    assertTrue(cache.get(session, "someone-else").isEmpty());
+  }
+
+  @Test
+  void test_invalidateAll_discards_entries() {
+    MockHttpSession session = new MockHttpSession();
+    cache.put(session, cache.getGeneration(), "user", new byte[] { 1 });
+
+    cache.invalidateAll();
+
+    assertTrue(cache.get(session, "user").isEmpty());
+  }
+
+  @Test
+  void test_body_computed_before_invalidation_is_not_served() {
+    MockHttpSession session = new MockHttpSession();
+    long generation = cache.getGeneration();
+    cache.invalidateAll();
+
+    cache.put(session, generation, "user", new byte[] { 1 });
+
+    assertTrue(cache.get(session, "user").isEmpty());
+  }
+}
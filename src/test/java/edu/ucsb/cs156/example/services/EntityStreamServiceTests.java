@@ -0,0 +1,168 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.errors.BadRequestException;
+import jakarta.persistence.EntityManager;
+
+public class EntityStreamServiceTests {
+
+  private final EntityStreamService service = new EntityStreamService();
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final EntityManager entityManager = mock(EntityManager.class);
+
+  private final Restaurant first = Restaurant.builder().id(1L).name("Freebirds").description("Burritos").build();
+  private final Restaurant second = Restaurant.builder().id(2L).name("Woodstocks").description("Pizza").build();
+
+  @BeforeEach
+  void setup() {
+    service.mapper = mapper;
+    service.entityManager = entityManager;
+    service.self = service;
+  }
+
+  @Test
+  void test_writeJsonArray_writes_rows_and_detaches_them() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    AtomicBoolean closed = new AtomicBoolean(false);
+
+    service.writeJsonArray(() -> Stream.of(first, second).onClose(() -> closed.set(true)), out);
+
+    assertEquals(mapper.writeValueAsString(List.of(first, second)), out.toString(StandardCharsets.UTF_8));
+    verify(entityManager).detach(first);
+    verify(entityManager).detach(second);
+    assertTrue(closed.get());
+  }
+
+  @Test
+  void test_writeJsonArray_writes_empty_array() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    service.writeJsonArray(Stream::empty, out);
+
+    assertEquals("[]", out.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void test_jsonArray_returns_streaming_json_response() throws Exception {
+    ResponseEntity<StreamingResponseBody> response = service.jsonArray(() -> Stream.of(first));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    response.getBody().writeTo(out);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+    assertEquals(mapper.writeValueAsString(List.of(first)), out.toString(StandardCharsets.UTF_8));
+  }
+
+  private String body(ResponseEntity<StreamingResponseBody> response) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getBody().writeTo(out);
+    return out.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void test_export_csv_with_all_columns() throws Exception {
+    ResponseEntity<StreamingResponseBody> response =
+        service.export("restaurants", Restaurant.class, () -> Stream.of(first, second), "csv", null, false);
+
+    assertEquals("id,name,description,version\n1,Freebirds,Burritos,0\n2,Woodstocks,Pizza,0\n", body(response));
+    assertEquals(EntityStreamService.TEXT_CSV, response.getHeaders().getContentType());
+    assertEquals("attachment; filename=\"restaurants.csv\"",
+        response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+    assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    verify(entityManager).detach(first);
+    verify(entityManager).detach(second);
+  }
+
+  @Test
+  void test_export_csv_with_selected_columns_in_requested_order() throws Exception {
+    ResponseEntity<StreamingResponseBody> response =
+        service.export("restaurants", Restaurant.class, () -> Stream.of(first, second), "CSV",
+            List.of("name", "id"), false);
+
+    assertEquals("name,id\nFreebirds,1\nWoodstocks,2\n", body(response));
+  }
+
+  @Test
+  void test_export_ndjson_writes_one_object_per_line() throws Exception {
+    ResponseEntity<StreamingResponseBody> response =
+        service.export("restaurants", Restaurant.class, () -> Stream.of(first, second), "ndjson", List.of(), false);
+
+    assertEquals(mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n", body(response));
+    assertEquals(EntityStreamService.APPLICATION_NDJSON, response.getHeaders().getContentType());
+    assertEquals("attachment; filename=\"restaurants.ndjson\"",
+        response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+  }
+
+  @Test
+  void test_export_ndjson_with_selected_columns() throws Exception {
+    ResponseEntity<StreamingResponseBody> response =
+        service.export("restaurants", Restaurant.class, () -> Stream.of(first), "ndjson", List.of("name"), false);
+
+    assertEquals("{\"name\":\"Freebirds\"}\n", body(response));
+  }
+
+  @Test
+  void test_export_ndjson_of_no_rows_is_empty() throws Exception {
+    ResponseEntity<StreamingResponseBody> response =
+        service.export("restaurants", Restaurant.class, Stream::empty, "ndjson", null, false);
+
+    assertEquals("", body(response));
+  }
+
+  @Test
+  void test_export_gzip() throws Exception {
+    ResponseEntity<StreamingResponseBody> response =
+        service.export("restaurants", Restaurant.class, () -> Stream.of(first), "ndjson", null, true);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getBody().writeTo(out);
+
+    String unzipped;
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+      unzipped = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+    assertEquals(mapper.writeValueAsString(first) + "\n", unzipped);
+    assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+  }
+
+  @Test
+  void test_export_rejects_unknown_column() {
+    BadRequestException e = assertThrows(BadRequestException.class,
+        () -> service.export("restaurants", Restaurant.class, Stream::empty, "csv", List.of("name", "price"), false));
+
+    assertEquals("Unknown column: price", e.getMessage());
+  }
+
+  @Test
+  void test_export_rejects_unknown_format() {
+    BadRequestException e = assertThrows(BadRequestException.class,
+        () -> service.export("restaurants", Restaurant.class, Stream::empty, "xml", null, false));
+
+    assertEquals("Unsupported format: xml", e.getMessage());
+  }
+}
@@ -0,0 +1,83 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+public class HelpRequestQueueServiceTests {
+
+  private final HelpRequestQueueService service = new HelpRequestQueueService();
+  private final EntityManager entityManager = mock(EntityManager.class);
+  @SuppressWarnings("unchecked")
+  private final TypedQuery<HelpRequest> query = mock(TypedQuery.class);
+  private final List<HelpRequest> rows = List.of(HelpRequest.builder().id(1L).build());
+
+  @BeforeEach
+  void setup() {
+    service.entityManager = entityManager;
+    when(entityManager.createQuery(anyString(), eq(HelpRequest.class))).thenReturn(query);
+    when(query.setMaxResults(anyInt())).thenReturn(query);
+    when(query.getResultList()).thenReturn(rows);
+  }
+
+  @Test
+  void test_queue_without_filters_orders_by_request_time_and_id() {
+    List<HelpRequest> result = service.queue(new HelpRequestQueueService.Filter(null, null, null, null, null), null, 11);
+
+    assertSame(rows, result);
+    verify(entityManager).createQuery(
+        "select e from helprequests e where e.requestTime is not null order by e.requestTime, e.id", HelpRequest.class);
+    verify(query, never()).setParameter(anyString(), any());
+    verify(query).setMaxResults(11);
+  }
+
+  @Test
+  void test_queue_of_unsolved_requests_uses_a_literal() {
+    service.queue(new HelpRequestQueueService.Filter("s24-5pm-1", null, false, null, null), null, 11);
+
+    verify(entityManager).createQuery(
+        "select e from helprequests e where e.requestTime is not null and e.teamId = :teamId "
+            + "and e.solved = false order by e.requestTime, e.id", HelpRequest.class);
+    verify(query).setParameter("teamId", "s24-5pm-1");
+  }
+
+  @Test
+  void test_queue_with_every_filter_continues_after_the_cursor() {
+    ZonedDateTime from = ZonedDateTime.parse("2024-01-01T00:00:00Z");
+    ZonedDateTime to = ZonedDateTime.parse("2024-01-02T00:00:00Z");
+    ZonedDateTime last = ZonedDateTime.parse("2024-01-01T10:01:00Z");
+
+    service.queue(new HelpRequestQueueService.Filter("s24-5pm-1", "7", true, from, to),
+        new HelpRequestQueueService.Position(last, 2L), 3);
+
+    verify(entityManager).createQuery(
+        "select e from helprequests e where e.requestTime is not null and e.teamId = :teamId "
+            + "and e.tableOrBreakoutRoom = :tableOrBreakoutRoom and e.solved = true "
+            + "and e.requestTime >= :requestedAfter and e.requestTime < :requestedBefore "
+            + "and (e.requestTime > :afterTime or (e.requestTime = :afterTime and e.id > :afterId)) "
+            + "order by e.requestTime, e.id", HelpRequest.class);
+    verify(query).setParameter("teamId", "s24-5pm-1");
+    verify(query).setParameter("tableOrBreakoutRoom", "7");
+    verify(query).setParameter("requestedAfter", from);
+    verify(query).setParameter("requestedBefore", to);
+    verify(query).setParameter("afterTime", last);
+    verify(query).setParameter("afterId", 2L);
+    verify(query).setMaxResults(3);
+  }
+}
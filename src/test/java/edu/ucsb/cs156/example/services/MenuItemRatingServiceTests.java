@@ -0,0 +1,166 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.repositories.MenuItemRatingSummaryRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+
+public class MenuItemRatingServiceTests {
+
+  private final MenuItemRatingService service = new MenuItemRatingService();
+  private final MenuItemRatingSummaryRepository repository = mock(MenuItemRatingSummaryRepository.class);
+  private final TopRatedMenuItems topRatedMenuItems = mock(TopRatedMenuItems.class);
+
+  @BeforeEach
+  void setup() {
+    service.menuItemRatingSummaryRepository = repository;
+    service.topRatedMenuItems = topRatedMenuItems;
+  }
+
+  private static MenuItemReview review(long itemId, int stars) {
+    return MenuItemReview.builder().itemId(itemId).stars(stars).build();
+  }
+
+  private static MenuItemReviewRepository.Rating rating(long itemId, int stars) {
+    return new MenuItemReviewRepository.Rating() {
+      @Override
+      public long getId() {
+        return 1L;
+      }
+
+      @Override
+      public long getItemId() {
+        return itemId;
+      }
+
+      @Override
+      public int getStars() {
+        return stars;
+      }
+    };
+  }
+
+  @Test
+  void test_summary_of_a_reviewed_item() {
+    MenuItemRatingSummary summary = MenuItemRatingSummary.builder().itemId(27L).reviewCount(4).starsSum(14).build();
+    when(repository.findById(27L)).thenReturn(Optional.of(summary));
+
+    assertSame(summary, service.summary(27L));
+    assertEquals(3.5, summary.getAverageStars());
+  }
+
+  @Test
+  void test_summary_of_an_item_without_reviews_is_zero() {
+    when(repository.findById(27L)).thenReturn(Optional.empty());
+
+    MenuItemRatingSummary summary = service.summary(27L);
+
+    assertEquals(MenuItemRatingSummary.builder().itemId(27L).build(), summary);
+    assertEquals(0, summary.getAverageStars());
+  }
+
+  @Test
+  void test_added_updates_the_existing_summary() {
+    when(repository.adjust(27L, 1, 4, 0, 0, 0, 1, 0)).thenReturn(1);
+
+    service.added(List.of(review(27L, 4)));
+
+    verify(repository).adjust(27L, 1, 4, 0, 0, 0, 1, 0);
+    verify(repository, never()).insertEmptySummary(anyLong());
+    verify(topRatedMenuItems).ratingChanged(27L);
+  }
+
+  @Test
+  void test_added_creates_the_summary_of_a_new_item_and_then_updates_it() {
+    when(repository.adjust(27L, 1, 2, 0, 1, 0, 0, 0)).thenReturn(0, 1);
+
+    service.added(List.of(review(27L, 2)));
+
+    InOrder order = inOrder(repository);
+    order.verify(repository).adjust(27L, 1, 2, 0, 1, 0, 0, 0);
+    order.verify(repository).insertEmptySummary(27L);
+    order.verify(repository).adjust(27L, 1, 2, 0, 1, 0, 0, 0);
+  }
+
+  @Test
+  void test_added_updates_a_summary_created_concurrently() {
+    when(repository.adjust(27L, 1, 2, 0, 1, 0, 0, 0)).thenReturn(0, 1);
+    when(repository.insertEmptySummary(27L)).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+    service.added(List.of(review(27L, 2)));
+
+    verify(repository, times(2)).adjust(27L, 1, 2, 0, 1, 0, 0, 0);
+    verify(topRatedMenuItems).ratingChanged(27L);
+  }
+
+  @Test
+  void test_stars_outside_one_to_five_are_not_in_the_histogram() {
+    when(repository.adjust(anyLong(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong()))
+        .thenReturn(1);
+
+    service.added(List.of(review(27L, 0), review(27L, 6)));
+
+    verify(repository).adjust(27L, 1, 0, 0, 0, 0, 0, 0);
+    verify(repository).adjust(27L, 1, 6, 0, 0, 0, 0, 0);
+  }
+
+  @Test
+  void test_changed_moves_the_review_between_buckets() {
+    when(repository.adjust(anyLong(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong()))
+        .thenReturn(1);
+
+    service.changed(27L, 2, 5);
+
+    InOrder order = inOrder(repository);
+    order.verify(repository).adjust(27L, -1, -2, 0, -1, 0, 0, 0);
+    order.verify(repository).adjust(27L, 1, 5, 0, 0, 0, 0, 1);
+  }
+
+  @Test
+  void test_changed_without_a_change_of_stars_does_nothing() {
+    service.changed(27L, 3, 3);
+
+    verifyNoInteractions(repository, topRatedMenuItems);
+  }
+
+  @Test
+  void test_removed_never_creates_a_summary() {
+    when(repository.adjust(27L, -1, -3, 0, 0, -1, 0, 0)).thenReturn(0);
+
+    service.removed(List.of(rating(27L, 3)));
+
+    verify(repository).adjust(27L, -1, -3, 0, 0, -1, 0, 0);
+    verify(repository, never()).insertEmptySummary(anyLong());
+  }
+
+  @Test
+  void test_rebuild_replaces_every_summary() {
+    when(repository.insertSummariesFromReviews()).thenReturn(12);
+
+    assertEquals(12, service.rebuild());
+
+    InOrder order = inOrder(repository);
+    order.verify(repository).deleteAllSummaries();
+    order.verify(repository).insertSummariesFromReviews();
+    verify(topRatedMenuItems).invalidate();
+  }
+}
@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+
+public class NearestDiningCommonsTests {
+
+  private final NearestDiningCommons nearest = new NearestDiningCommons();
+  private final UCSBDiningCommonsRepository repository = mock(UCSBDiningCommonsRepository.class);
+
+  private final UCSBDiningCommons carrillo = UCSBDiningCommons.builder().code("carrillo").name("Carrillo")
+      .hasSackMeal(false).hasTakeOutMeal(false).hasDiningCam(true).latitude(34.409953).longitude(-119.85277).build();
+  private final UCSBDiningCommons dlg = UCSBDiningCommons.builder().code("de-la-guerra").name("De La Guerra")
+      .hasSackMeal(false).hasTakeOutMeal(false).hasDiningCam(true).latitude(34.409811).longitude(-119.845026).build();
+  private final UCSBDiningCommons ortega = UCSBDiningCommons.builder().code("ortega").name("Ortega")
+      .hasSackMeal(true).hasTakeOutMeal(true).hasDiningCam(true).latitude(34.410987).longitude(-119.84709).build();
+  private final UCSBDiningCommons portola = UCSBDiningCommons.builder().code("portola").name("Portola")
+      .hasSackMeal(true).hasTakeOutMeal(true).hasDiningCam(false).latitude(34.417723).longitude(-119.867427).build();
+  private final UCSBDiningCommons unlocated = UCSBDiningCommons.builder().code("nowhere").name("Nowhere")
+      .latitude(34.41).build();
+  private final UCSBDiningCommons unlocated2 = UCSBDiningCommons.builder().code("nowhere2").name("Nowhere 2")
+      .longitude(-119.85).build();
+
+  @BeforeEach
+  void setup() {
+    nearest.ucsbDiningCommonsRepository = repository;
+    nearest.tableVersions = new TableVersions();
+  }
+
+  private static List<String> codes(List<NearestDiningCommons.Nearby> found) {
+    return found.stream().map(nearby -> nearby.commons().getCode()).toList();
+  }
+
+  @Test
+  void test_nearest_lists_located_commons_nearest_first() {
+    when(repository.findAll()).thenReturn(List.of(carrillo, dlg, ortega, portola, unlocated, unlocated2));
+
+    List<NearestDiningCommons.Nearby> found = nearest.nearest(34.4100, -119.8450, 10, null, null, null);
+
+    assertEquals(List.of("de-la-guerra", "ortega", "carrillo", "portola"), codes(found));
+    assertEquals(SphereKdTree.haversineKm(Math.toRadians(34.4100), Math.toRadians(-119.8450),
+        Math.toRadians(34.409811), Math.toRadians(-119.845026)), found.get(0).distanceKm(), 1e-9);
+    assertEquals(List.of("de-la-guerra", "ortega"), codes(nearest.nearest(34.4100, -119.8450, 2, null, null, null)));
+    verify(repository, times(1)).findAll();
+  }
+
+  @Test
+  void test_nearest_applies_the_filters() {
+    when(repository.findAll()).thenReturn(List.of(carrillo, dlg, ortega, portola));
+
+    assertEquals(List.of("ortega", "portola"), codes(nearest.nearest(34.4100, -119.8450, 10, true, null, null)));
+    assertEquals(List.of("de-la-guerra", "carrillo"), codes(nearest.nearest(34.4100, -119.8450, 10, null, false, null)));
+    assertEquals(List.of("portola"), codes(nearest.nearest(34.4100, -119.8450, 10, null, true, false)));
+    assertEquals(List.of("ortega"), codes(nearest.nearest(34.4100, -119.8450, 10, true, true, true)));
+    assertEquals(List.of(), codes(nearest.nearest(34.4100, -119.8450, 10, false, null, false)));
+  }
+
+  @Test
+  void test_nearest_rebuilds_the_tree_when_the_commons_change() {
+    when(repository.findAll())
+        .thenReturn(List.of(carrillo))
+        .thenReturn(List.of(carrillo, dlg));
+    assertEquals(List.of("carrillo"), codes(nearest.nearest(34.4100, -119.8450, 5, null, null, null)));
+
+    nearest.tableVersions.changed(UCSBDiningCommons.class);
+
+    assertEquals(List.of("de-la-guerra", "carrillo"), codes(nearest.nearest(34.4100, -119.8450, 5, null, null, null)));
+    verify(repository, times(2)).findAll();
+  }
+
+  @Test
+  void test_load_does_nothing_when_already_up_to_date() {
+    when(repository.findAll()).thenReturn(List.of(carrillo));
+    nearest.nearest(34.4100, -119.8450, 5, null, null, null);
+
+    nearest.load();
+
+    verify(repository, times(1)).findAll();
+  }
+}
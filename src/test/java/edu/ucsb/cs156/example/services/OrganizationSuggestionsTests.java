@@ -0,0 +1,80 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+
+public class OrganizationSuggestionsTests {
+
+  private final OrganizationSuggestions suggestions = new OrganizationSuggestions();
+  private final UCSBOrganizationRepository repository = mock(UCSBOrganizationRepository.class);
+
+  private final UCSBOrganization zpr = UCSBOrganization.builder().orgCode("ZPR").orgTranslationShort("ZETA PHI RHO")
+      .orgTranslation("ZETA PHI RHO").inactive(false).build();
+  private final UCSBOrganization sky = UCSBOrganization.builder().orgCode("SKY").orgTranslationShort("SKYDIVING CLUB")
+      .orgTranslation("SKYDIVING CLUB AT UCSB").inactive(false).build();
+  private final UCSBOrganization osli = UCSBOrganization.builder().orgCode("OSLI").orgTranslationShort("STUDENT LIFE")
+      .orgTranslation("OFFICE OF STUDENT LIFE").inactive(false).build();
+  private final UCSBOrganization krc = UCSBOrganization.builder().orgCode("KRC").orgTranslationShort("KOREAN RADIO CL")
+      .orgTranslation("KOREAN RADIO CLUB").inactive(true).build();
+
+  @BeforeEach
+  void setup() {
+    suggestions.ucsbOrganizationRepository = repository;
+    suggestions.tableVersions = new TableVersions();
+  }
+
+  @Test
+  void test_terms_are_the_code_and_every_word_start_of_the_translations() {
+    UCSBOrganization org = UCSBOrganization.builder().orgCode("ASUCSB").orgTranslationShort("A.S. - UCSB").build();
+
+    assertEquals(List.of("ASUCSB", "A.S. - UCSB", "S. - UCSB", "UCSB"), OrganizationSuggestions.terms(org));
+    assertEquals(List.of(), OrganizationSuggestions.terms(new UCSBOrganization()));
+  }
+
+  @Test
+  void test_suggest_matches_codes_names_and_words_and_skips_inactive_orgs() {
+    when(repository.findAll()).thenReturn(List.of(zpr, sky, osli, krc));
+
+    assertEquals(List.of(sky), suggestions.suggest("sk", 10, false));
+    assertEquals(List.of(sky), suggestions.suggest("CLUB", 10, false));
+    assertEquals(List.of(sky, osli), suggestions.suggest("s", 10, false));
+    assertEquals(List.of(osli), suggestions.suggest("student l", 10, false));
+    assertEquals(List.of(), suggestions.suggest("korean", 10, false));
+    assertEquals(List.of(krc), suggestions.suggest("korean", 10, true));
+    verify(repository, times(1)).findAll();
+  }
+
+  @Test
+  void test_suggest_rebuilds_the_index_when_the_organizations_change() {
+    when(repository.findAll())
+        .thenReturn(List.of(zpr))
+        .thenReturn(List.of(zpr, sky));
+    assertEquals(List.of(), suggestions.suggest("sky", 10, false));
+
+    suggestions.tableVersions.changed(UCSBOrganization.class);
+
+    assertEquals(List.of(sky), suggestions.suggest("sky", 10, false));
+    verify(repository, times(2)).findAll();
+  }
+
+  @Test
+  void test_load_does_nothing_when_already_up_to_date() {
+    when(repository.findAll()).thenReturn(List.of(zpr));
+    suggestions.suggest("z", 10, false);
+
+    suggestions.load();
+
+    verify(repository, times(1)).findAll();
+  }
+}
@@ -0,0 +1,133 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.errors.BadRequestException;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+public class PatchServiceTests {
+
+  private static final Set<String> PATCHABLE = Set.of("explanation", "solved", "teamId");
+
+  private final PatchService service = new PatchService();
+  private final EntityManager entityManager = mock(EntityManager.class);
+  private final Query query = mock(Query.class);
+
+  @BeforeEach
+  void setup() {
+    service.mapper = new ObjectMapper();
+    service.entityManager = entityManager;
+    service.tableVersions = new TableVersions();
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+  }
+
+  private Map<String, Object> changes(Object... keysAndValues) {
+    Map<String, Object> changes = new LinkedHashMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      changes.put((String) keysAndValues[i], keysAndValues[i + 1]);
+    }
+    return changes;
+  }
+
+  @Test
+  void test_patch_issues_one_update_for_the_given_fields() {
+    HelpRequest updated = HelpRequest.builder().id(7L).explanation("new").solved(true).version(4L).build();
+    when(query.executeUpdate()).thenReturn(1);
+    when(entityManager.find(HelpRequest.class, 7L)).thenReturn(updated);
+
+    HelpRequest result = service.patch(HelpRequest.class, 7L,
+        changes("explanation", "new", "version", 3, "solved", true), PATCHABLE);
+
+    assertSame(updated, result);
+    verify(entityManager).createQuery(
+        "update helprequests e set e.explanation = :explanation, e.solved = :solved, "
+            + "e.version = e.version + 1 where e.id = :id and e.version = :version");
+    verify(query).setParameter("explanation", "new");
+    verify(query).setParameter("solved", true);
+    verify(query).setParameter("id", 7L);
+    verify(query).setParameter("version", 3L);
+    assertEquals(1L, service.tableVersions.version(HelpRequest.class));
+  }
+
+  @Test
+  void test_patch_of_missing_row_is_not_found() {
+    when(query.executeUpdate()).thenReturn(0);
+    when(entityManager.find(HelpRequest.class, 7L)).thenReturn(null);
+
+    EntityNotFoundException e = assertThrows(EntityNotFoundException.class,
+        () -> service.patch(HelpRequest.class, 7L, changes("version", 3, "solved", true), PATCHABLE));
+
+    assertEquals("HelpRequest with id 7 not found", e.getMessage());
+  }
+
+  @Test
+  void test_patch_of_stale_version_is_a_conflict() {
+    when(query.executeUpdate()).thenReturn(0);
+    when(entityManager.find(HelpRequest.class, 7L)).thenReturn(HelpRequest.builder().id(7L).version(5L).build());
+
+    OptimisticLockingFailureException e = assertThrows(OptimisticLockingFailureException.class,
+        () -> service.patch(HelpRequest.class, 7L, changes("version", 3, "solved", true), PATCHABLE));
+
+    assertEquals("HelpRequest with id 7 has been updated since version 3", e.getMessage());
+  }
+
+  @Test
+  void test_patch_requires_a_numeric_version() {
+    BadRequestException missing = assertThrows(BadRequestException.class,
+        () -> service.patch(HelpRequest.class, 7L, changes("solved", true), PATCHABLE));
+    BadRequestException notNumber = assertThrows(BadRequestException.class,
+        () -> service.patch(HelpRequest.class, 7L, changes("version", "3", "solved", true), PATCHABLE));
+
+    assertEquals("version is required", missing.getMessage());
+    assertEquals("version is required", notNumber.getMessage());
+    verify(entityManager, never()).createQuery(anyString());
+  }
+
+  @Test
+  void test_patch_requires_at_least_one_field() {
+    BadRequestException e = assertThrows(BadRequestException.class,
+        () -> service.patch(HelpRequest.class, 7L, changes("version", 3), PATCHABLE));
+
+    assertEquals("No fields to update", e.getMessage());
+  }
+
+  @Test
+  void test_patch_rejects_fields_that_are_not_patchable() {
+    BadRequestException e = assertThrows(BadRequestException.class,
+        () -> service.patch(HelpRequest.class, 7L, changes("version", 3, "id", 8), PATCHABLE));
+
+    assertEquals("Field id cannot be updated", e.getMessage());
+    verify(entityManager, never()).createQuery(anyString());
+  }
+
+  @Test
+  void test_patch_rejects_invalid_values() {
+    BadRequestException e = assertThrows(BadRequestException.class,
+        () -> service.patch(HelpRequest.class, 7L, changes("version", 3, "solved", "maybe"), PATCHABLE));
+
+    assertEquals(true, e.getMessage().startsWith("Invalid value: "));
+    verify(query, never()).executeUpdate();
+    verify(entityManager, never()).find(any(), any());
+  }
+}
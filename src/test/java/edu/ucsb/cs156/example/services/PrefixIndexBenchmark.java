@@ -0,0 +1,93 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+
+/**
+ * Measures a 10-suggestion typeahead lookup in a PrefixIndex of synthetic
+ * organizations (indexed the way OrganizationSuggestions indexes them) against
+ * checking every organization's terms, which is what filtering the full list
+ * amounts to.  Sample-time mode is used so that JMH reports percentiles (p99
+ * should stay well under 1 ms).
+ * 
+ * Run with: see docs/benchmarks.md
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class PrefixIndexBenchmark {
+
+  @Param({ "1000", "100000" })
+  public int orgs;
+
+  @Param({ "s", "stu", "student club" })
+  public String prefix;
+
+  private PrefixIndex<UCSBOrganization> index;
+  private List<UCSBOrganization> all;
+
+  @Setup
+  public void setup() {
+    String[] words = { "student", "club", "association", "society", "council", "alpha", "beta", "gamma",
+        "ucsb", "engineering", "music", "science", "surf", "chess", "dance", "film", "korean", "chinese" };
+    Random random = new Random(156);
+    all = new ArrayList<>(orgs);
+    for (int i = 0; i < orgs; i++) {
+      StringBuilder name = new StringBuilder();
+      int length = 2 + random.nextInt(3);
+      for (int word = 0; word < length; word++) {
+        name.append(words[random.nextInt(words.length)]).append(' ');
+      }
+      all.add(UCSBOrganization.builder()
+          .orgCode("ORG" + i)
+          .orgTranslationShort(name.toString().strip())
+          .orgTranslation(name.append("at ucsb").toString())
+          .inactive(random.nextInt(10) == 0)
+          .build());
+    }
+    index = new PrefixIndex<>(all, OrganizationSuggestions::terms);
+  }
+
+  @Benchmark
+  public List<UCSBOrganization> index() {
+    return index.search(prefix, 10, org -> !org.getInactive());
+  }
+
+  @Benchmark
+  public List<UCSBOrganization> scan() {
+    String normalized = PrefixIndex.normalize(prefix);
+    List<UCSBOrganization> found = new ArrayList<>();
+    for (UCSBOrganization org : all) {
+      if (org.getInactive()) {
+        continue;
+      }
+      for (String term : OrganizationSuggestions.terms(org)) {
+        if (PrefixIndex.normalize(term).startsWith(normalized)) {
+          found.add(org);
+          break;
+        }
+      }
+    }
+    found.sort((a, b) -> a.getOrgCode().compareTo(b.getOrgCode()));
+    return found.subList(0, Math.min(10, found.size()));
+  }
+}
@@ -0,0 +1,55 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class PrefixIndexTests {
+
+  private final PrefixIndex<String> index = new PrefixIndex<>(
+      List.of("Zeta Psi", "Alpha Phi", "Alpha Chi", "Chi Omega", "Beta"),
+      name -> List.of(name.split(" ")));
+
+  @Test
+  void test_terms_of_every_item_are_indexed() {
+    assertEquals(9, index.size());
+  }
+
+  @Test
+  void test_search_returns_items_in_order_of_their_first_matching_term() {
+    assertEquals(List.of("Alpha Phi", "Alpha Chi"), index.search("al", 10, name -> true));
+    assertEquals(List.of("Alpha Chi", "Chi Omega"), index.search("CHI", 10, name -> true));
+    assertEquals(List.of("Alpha Phi", "Zeta Psi"), index.search(" p ", 10, name -> true));
+  }
+
+  @Test
+  void test_search_returns_each_item_once() {
+    PrefixIndex<String> repeated = new PrefixIndex<>(List.of("Chi Chi", "Chip"), name -> List.of(name.split(" ")));
+
+    assertEquals(List.of("Chi Chi", "Chip"), repeated.search("chi", 10, name -> true));
+  }
+
+  @Test
+  void test_search_stops_at_the_limit() {
+    assertEquals(List.of("Alpha Phi"), index.search("a", 1, name -> true));
+  }
+
+  @Test
+  void test_search_applies_the_filter() {
+    assertEquals(List.of("Alpha Chi"), index.search("alpha", 10, name -> name.endsWith("Chi")));
+  }
+
+  @Test
+  void test_search_without_matches() {
+    assertEquals(List.of(), index.search("omicron", 10, name -> true));
+    assertEquals(List.of(), index.search("zz", 10, name -> true));
+    assertEquals(List.of(), new PrefixIndex<String>(List.of(), name -> List.of(name)).search("a", 10, name -> true));
+  }
+
+  @Test
+  void test_an_empty_prefix_matches_everything() {
+    assertEquals(List.of("Alpha Phi", "Alpha Chi", "Beta", "Chi Omega", "Zeta Psi"), index.search("", 10, name -> true));
+  }
+}
@@ -0,0 +1,77 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import jakarta.persistence.EntityManager;
+
+public class RestaurantSearchServiceTests {
+
+  private final RestaurantSearchService service = new RestaurantSearchService();
+  private final RestaurantRepository restaurantRepository = mock(RestaurantRepository.class);
+  private final EntityManager entityManager = mock(EntityManager.class);
+
+  private final Restaurant woodstocks = Restaurant.builder().id(1L).name("Woodstock's Pizza").description("pizza by the slice").build();
+  private final Restaurant bella = Restaurant.builder().id(2L).name("Pizzeria Bella").description("wood fired").build();
+
+  @BeforeEach
+  void setup() {
+    service.restaurantRepository = restaurantRepository;
+    service.searchIndexLoader = new SearchIndexLoader();
+    service.searchIndexLoader.entityManager = entityManager;
+    when(restaurantRepository.streamAll()).thenAnswer(invocation -> Stream.of(woodstocks, bella));
+  }
+
+  @Test
+  void test_search_loads_index_once_and_returns_restaurants_most_similar_first() {
+    when(restaurantRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(woodstocks, bella));
+    when(restaurantRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(woodstocks, bella));
+
+    assertEquals(List.of(bella, woodstocks), service.search("pizzaria", 10));
+    assertEquals(List.of(woodstocks, bella), service.search("woodstok", 10));
+
+    verify(restaurantRepository, times(1)).streamAll();
+    verify(entityManager).detach(woodstocks);
+    verify(entityManager).detach(bella);
+  }
+
+  @Test
+  void test_search_skips_restaurants_deleted_since_indexing() {
+    when(restaurantRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(woodstocks));
+
+    assertEquals(List.of(woodstocks), service.search("pizzaria", 10));
+  }
+
+  @Test
+  void test_changes_before_first_search_are_left_to_the_load() {
+    service.indexed(List.of(Restaurant.builder().id(3L).name("Pizzaria Uno").build()));
+    service.removed(List.of(2L));
+    when(restaurantRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(woodstocks, bella));
+
+    assertEquals(List.of(bella, woodstocks), service.search("pizzaria", 10));
+  }
+
+  @Test
+  void test_changes_after_load_update_the_index() {
+    service.searchIndexLoader.load(service.loadedIndex);
+    service.searchIndexLoader.load(service.loadedIndex);
+
+    service.indexed(List.of(Restaurant.builder().id(3L).name("Pizzaria Uno").build()));
+    service.removed(List.of(2L));
+
+    assertEquals(2, service.index.size());
+    assertEquals(List.of(3L, 1L), service.index.search("pizzaria", 10).stream().map(TrigramIndex.Hit::id).toList());
+    verify(restaurantRepository, times(1)).streamAll();
+  }
+}
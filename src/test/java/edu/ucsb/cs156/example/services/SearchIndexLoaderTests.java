@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.EntityManager;
+
+public class SearchIndexLoaderTests {
+
+  private final SearchIndexLoader loader = new SearchIndexLoader();
+  private final EntityManager entityManager = mock(EntityManager.class);
+  private final List<String> indexed = new ArrayList<>();
+
+  @BeforeEach
+  void setup() {
+    loader.entityManager = entityManager;
+  }
+
+  @Test
+  void test_load_clears_the_index_puts_every_row_and_detaches_it_once() {
+    indexed.add("stale");
+    SearchIndexLoader.Index<String> index = new SearchIndexLoader.Index<>(
+        () -> Stream.of("a", "b"), indexed::clear, indexed::add);
+
+    assertFalse(index.isLoaded());
+    loader.load(index);
+    loader.load(index);
+
+    assertTrue(index.isLoaded());
+    assertEquals(List.of("a", "b"), indexed);
+    verify(entityManager).detach("a");
+    verify(entityManager).detach("b");
+  }
+
+  @Test
+  void test_changes_before_the_load_are_skipped() {
+    SearchIndexLoader.Index<String> index = new SearchIndexLoader.Index<>(
+        () -> Stream.of("a"), indexed::clear, indexed::add);
+
+    loader.apply(index, () -> indexed.add("change"));
+    loader.load(index);
+    loader.apply(index, () -> indexed.add("later"));
+
+    assertEquals(List.of("a", "later"), indexed);
+  }
+
+  @Test
+  void test_a_change_during_the_load_is_applied_after_the_rows() throws Exception {
+    CountDownLatch reading = new CountDownLatch(1);
+    SearchIndexLoader.Index<String> index = new SearchIndexLoader.Index<>(
+        () -> Stream.of("a").peek(row -> {
+          reading.countDown();
+          pause();
+        }), indexed::clear, indexed::add);
+
+    CompletableFuture<Void> load = CompletableFuture.runAsync(() -> loader.load(index));
+    reading.await(10, TimeUnit.SECONDS);
+    CompletableFuture<Void> change = CompletableFuture.runAsync(() -> loader.apply(index, () -> indexed.add("change")));
+    load.get(10, TimeUnit.SECONDS);
+    change.get(10, TimeUnit.SECONDS);
+
+    assertEquals(List.of("a", "change"), indexed);
+  }
+
+  /** Keeps the load reading long enough for the change to start waiting for it. */
+  private static void pause() {
+    try {
+      Thread.sleep(200);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a 5-nearest lookup in a SphereKdTree of random points (with and
+ * without a flag filter) against computing the haversine distance to every
+ * point, which is what a lookup without an index amounts to.  Both keep their
+ * results in preallocated arrays, so neither allocates per lookup.
+ * 
+ * Run with: see docs/benchmarks.md
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SphereKdTreeBenchmark {
+
+  private static final int K = 5;
+
+  @Param({ "100", "100000" })
+  public int points;
+
+  @Param({ "0", "1" })
+  public int mustSet;
+
+  private SphereKdTree tree;
+  private double[] latitudes;
+  private double[] longitudes;
+  private int[] flags;
+  private double[] queryLatitudes;
+  private double[] queryLongitudes;
+  private int query;
+
+  private final int[] found = new int[K];
+  private final double[] distancesKm = new double[K];
+
+  @Setup
+  public void setup() {
+    Random random = new Random(156);
+    double[] latitudeDegrees = new double[points];
+    double[] longitudeDegrees = new double[points];
+    latitudes = new double[points];
+    longitudes = new double[points];
+    flags = new int[points];
+    for (int i = 0; i < points; i++) {
+      // uniform over the sphere
+      latitudeDegrees[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      longitudeDegrees[i] = 360 * random.nextDouble() - 180;
+      latitudes[i] = Math.toRadians(latitudeDegrees[i]);
+      longitudes[i] = Math.toRadians(longitudeDegrees[i]);
+      flags[i] = random.nextInt(8);
+    }
+    tree = new SphereKdTree(latitudeDegrees, longitudeDegrees, flags);
+    queryLatitudes = new double[1024];
+    queryLongitudes = new double[1024];
+    for (int i = 0; i < 1024; i++) {
+      queryLatitudes[i] = 180 * random.nextDouble() - 90;
+      queryLongitudes[i] = 360 * random.nextDouble() - 180;
+    }
+  }
+
+  @Benchmark
+  public int tree() {
+    int q = query++ & 1023;
+    return tree.nearest(queryLatitudes[q], queryLongitudes[q], K, mustSet, 0, found, distancesKm);
+  }
+
+  @Benchmark
+  public int scan() {
+    int q = query++ & 1023;
+    double lat = Math.toRadians(queryLatitudes[q]);
+    double lon = Math.toRadians(queryLongitudes[q]);
+    int count = 0;
+    for (int i = 0; i < points; i++) {
+      if ((flags[i] & mustSet) != mustSet) {
+        continue;
+      }
+      double distance = SphereKdTree.haversineKm(lat, lon, latitudes[i], longitudes[i]);
+      if (count < K) {
+        count++;
+      } else if (distance >= distancesKm[K - 1]) {
+        continue;
+      }
+      // insertion into the sorted top K
+      int at = count - 1;
+      while (at > 0 && distancesKm[at - 1] > distance) {
+        distancesKm[at] = distancesKm[at - 1];
+        found[at] = found[at - 1];
+        at--;
+      }
+      distancesKm[at] = distance;
+      found[at] = i;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,117 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+public class SphereKdTreeTests {
+
+  private static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+    return SphereKdTree.haversineKm(Math.toRadians(lat1), Math.toRadians(lon1), Math.toRadians(lat2),
+        Math.toRadians(lon2));
+  }
+
+  @Test
+  void test_haversine_distances() {
+    assertEquals(0, distanceKm(34.41, -119.85, 34.41, -119.85), 1e-9);
+    assertEquals(111.195, distanceKm(0, 0, 0, 1), 1e-3);
+    assertEquals(Math.PI * SphereKdTree.EARTH_RADIUS_KM, distanceKm(0, 0, 0, 180), 1e-6);
+    assertEquals(distanceKm(10, 179.5, 10, -179.5), distanceKm(10, -0.5, 10, 0.5), 1e-9);
+  }
+
+  @Test
+  void test_nearest_matches_a_brute_force_search() {
+    Random random = new Random(156);
+    int n = 2000;
+    double[] latitudes = new double[n];
+    double[] longitudes = new double[n];
+    int[] flags = new int[n];
+    for (int i = 0; i < n; i++) {
+      latitudes[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      longitudes[i] = 360 * random.nextDouble() - 180;
+      flags[i] = random.nextInt(8);
+    }
+    SphereKdTree tree = new SphereKdTree(latitudes, longitudes, flags);
+    assertEquals(n, tree.size());
+
+    int[] found = new int[10];
+    double[] distances = new double[10];
+    for (int query = 0; query < 200; query++) {
+      double lat = 180 * random.nextDouble() - 90;
+      double lon = 360 * random.nextDouble() - 180;
+      int mustSet = query % 3 == 0 ? 0 : 1;
+      int mustClear = query % 2 == 0 ? 0 : 4;
+      int[] expected = IntStream.range(0, n)
+          .filter(i -> (flags[i] & mustSet) == mustSet && (flags[i] & mustClear) == 0)
+          .boxed()
+          .sorted(Comparator.comparingDouble(i -> distanceKm(lat, lon, latitudes[i], longitudes[i])))
+          .limit(10)
+          .mapToInt(Integer::intValue)
+          .toArray();
+
+      int count = tree.nearest(lat, lon, 10, mustSet, mustClear, found, distances);
+
+      assertEquals(10, count);
+      assertArrayEquals(expected, found);
+      for (int i = 0; i < count; i++) {
+        assertEquals(distanceKm(lat, lon, latitudes[found[i]], longitudes[found[i]]), distances[i], 1e-9);
+      }
+    }
+  }
+
+  @Test
+  void test_nearest_returns_fewer_than_k_when_few_points_match() {
+    SphereKdTree tree = new SphereKdTree(
+        new double[] { 34.4, 34.5, 34.6, 89.9 },
+        new double[] { -119.8, -119.8, -119.8, 10 },
+        new int[] { 1, 0, 1, 1 });
+    int[] found = new int[5];
+    double[] distances = new double[5];
+
+    assertEquals(3, tree.nearest(34.45, -119.8, 5, 1, 0, found, distances));
+    assertArrayEquals(new int[] { 0, 2, 3 }, Arrays.copyOf(found, 3));
+
+    assertEquals(1, tree.nearest(0, 0, 5, 0, 1, found, distances));
+    assertEquals(1, found[0]);
+
+    assertEquals(0, tree.nearest(0, 0, 5, 2, 0, found, distances));
+  }
+
+  @Test
+  void test_an_empty_tree_finds_nothing() {
+    SphereKdTree tree = new SphereKdTree(new double[0], new double[0], new int[0]);
+
+    assertEquals(0, tree.size());
+    assertEquals(0, tree.nearest(0, 0, 1, 0, 0, new int[1], new double[1]));
+  }
+
+  @Test
+  void test_duplicate_points_are_all_found() {
+    SphereKdTree tree = new SphereKdTree(new double[] { 1, 1, 1, 1, 2 }, new double[] { 1, 1, 1, 1, 2 },
+        new int[5]);
+    int[] found = new int[4];
+
+    assertEquals(4, tree.nearest(1, 1, 4, 0, 0, found, new double[4]));
+
+    Arrays.sort(found);
+    assertArrayEquals(new int[] { 0, 1, 2, 3 }, found);
+  }
+
+  @Test
+  void test_invalid_arguments() {
+    assertThrows(IllegalArgumentException.class, () -> new SphereKdTree(new double[1], new double[2], new int[1]));
+    assertThrows(IllegalArgumentException.class, () -> new SphereKdTree(new double[1], new double[1], new int[2]));
+
+    SphereKdTree tree = new SphereKdTree(new double[1], new double[1], new int[1]);
+    assertThrows(IllegalArgumentException.class, () -> tree.nearest(0, 0, 0, 0, 0, new int[1], new double[1]));
+    assertThrows(IllegalArgumentException.class, () -> tree.nearest(0, 0, 2, 0, 0, new int[1], new double[2]));
+    assertThrows(IllegalArgumentException.class, () -> tree.nearest(0, 0, 2, 0, 0, new int[2], new double[1]));
+  }
+}
@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.Article;
+
+public class TableVersionsListenerTests {
+
+  @Test
+  void test_changed_bumps_the_entity_table() {
+    TableVersionsListener listener = new TableVersionsListener();
+    listener.tableVersions = new TableVersions();
+
+    listener.changed(Article.builder().id(1L).build());
+
+    assertEquals(1L, listener.tableVersions.version(Article.class));
+  }
+}
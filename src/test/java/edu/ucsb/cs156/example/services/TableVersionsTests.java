@@ -0,0 +1,61 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+
+public class TableVersionsTests {
+
+  private final TableVersions tableVersions = new TableVersions();
+
+  @Test
+  void test_version_starts_at_zero() {
+    assertEquals(0L, tableVersions.version(Restaurant.class));
+  }
+
+  @Test
+  void test_changed_outside_transaction_bumps_only_that_table() {
+    String before = tableVersions.etag(Restaurant.class);
+
+    tableVersions.changed(Restaurant.class);
+
+    assertEquals(1L, tableVersions.version(Restaurant.class));
+    assertEquals(0L, tableVersions.version(UCSBDate.class));
+    assertNotEquals(before, tableVersions.etag(Restaurant.class));
+  }
+
+  @Test
+  void test_etag_is_quoted_and_ends_with_version() {
+    tableVersions.changed(UCSBDate.class);
+
+    String etag = tableVersions.etag(UCSBDate.class);
+
+    assertTrue(etag.matches("\"[0-9a-z]+-1\""), etag);
+  }
+
+  @Test
+  void test_changed_inside_transaction_bumps_again_after_completion() {
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      tableVersions.changed(Restaurant.class);
+      assertEquals(1L, tableVersions.version(Restaurant.class));
+
+      List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+      assertEquals(1, synchronizations.size());
+      synchronizations.get(0).afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+      assertEquals(2L, tableVersions.version(Restaurant.class));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+
+public class TopRatedMenuItemsTests {
+
+  private final TopRatedMenuItems topRated = new TopRatedMenuItems();
+  private final UCSBDiningCommonsMenuItemRepository repository = mock(UCSBDiningCommonsMenuItemRepository.class);
+
+  @BeforeEach
+  void setup() {
+    topRated.ucsbDiningCommonsMenuItemRepository = repository;
+    topRated.tableVersions = new TableVersions();
+    topRated.minReviews = 3;
+  }
+
+  private static UCSBDiningCommonsMenuItemRepository.ItemRating row(long itemId, String code, Long reviewCount, Long starsSum) {
+    return new UCSBDiningCommonsMenuItemRepository.ItemRating() {
+      @Override
+      public long getItemId() {
+        return itemId;
+      }
+
+      @Override
+      public String getDiningCommonsCode() {
+        return code;
+      }
+
+      @Override
+      public String getName() {
+        return "item " + itemId;
+      }
+
+      @Override
+      public String getStation() {
+        return "station";
+      }
+
+      @Override
+      public Long getReviewCount() {
+        return reviewCount;
+      }
+
+      @Override
+      public Long getStarsSum() {
+        return starsSum;
+      }
+    };
+  }
+
+  private static List<Long> ids(List<TopRatedMenuItems.RatedItem> items) {
+    return items.stream().map(TopRatedMenuItems.RatedItem::itemId).toList();
+  }
+
+  @Test
+  void test_top_lists_items_with_enough_reviews_best_first() {
+    when(repository.findAllWithRatings()).thenReturn(List.of(
+        row(1L, "carrillo", 4L, 12L),
+        row(2L, "carrillo", 3L, 15L),
+        row(3L, "carrillo", 8L, 24L),
+        row(4L, "carrillo", 4L, 12L),
+        row(5L, "carrillo", 2L, 10L),
+        row(6L, "carrillo", null, null),
+        row(7L, null, 5L, 25L),
+        row(8L, "ortega", 3L, 3L)));
+
+    List<TopRatedMenuItems.RatedItem> top = topRated.top("carrillo", 10);
+
+    assertEquals(List.of(2L, 3L, 1L, 4L), ids(top));
+    assertEquals(new TopRatedMenuItems.RatedItem(2L, "carrillo", "item 2", "station", 3L, 15L), top.get(0));
+    assertEquals(5.0, top.get(0).getAverageStars());
+    assertEquals(List.of(2L, 3L), ids(topRated.top("carrillo", 2)));
+    assertEquals(List.of(8L), ids(topRated.top("ortega", 10)));
+    assertEquals(List.of(), topRated.top("portola", 10));
+    verify(repository, times(1)).findAllWithRatings();
+  }
+
+  @Test
+  void test_top_reloads_when_the_menu_items_change() {
+    when(repository.findAllWithRatings())
+        .thenReturn(List.of(row(1L, "carrillo", 4L, 12L)))
+        .thenReturn(List.of(row(1L, "ortega", 4L, 12L)));
+    assertEquals(List.of(1L), ids(topRated.top("carrillo", 10)));
+
+    topRated.tableVersions.changed(UCSBDiningCommonsMenuItem.class);
+
+    assertEquals(List.of(), topRated.top("carrillo", 10));
+    assertEquals(List.of(1L), ids(topRated.top("ortega", 10)));
+    verify(repository, times(2)).findAllWithRatings();
+  }
+
+  @Test
+  void test_load_does_nothing_when_already_up_to_date() {
+    when(repository.findAllWithRatings()).thenReturn(List.of(row(1L, "carrillo", 4L, 12L)));
+    topRated.top("carrillo", 10);
+
+    topRated.load();
+
+    verify(repository, times(1)).findAllWithRatings();
+  }
+
+  @Test
+  void test_rating_changed_before_the_lists_are_built_does_nothing() {
+    topRated.ratingChanged(1L);
+
+    verify(repository, never()).findWithRatingById(1L);
+  }
+
+  @Test
+  void test_rating_changed_moves_adds_and_drops_items() {
+    when(repository.findAllWithRatings()).thenReturn(List.of(
+        row(1L, "carrillo", 4L, 12L),
+        row(2L, "carrillo", 4L, 16L),
+        row(3L, "carrillo", 3L, 9L)));
+    assertEquals(List.of(2L, 1L, 3L), ids(topRated.top("carrillo", 10)));
+    when(repository.findWithRatingById(1L)).thenReturn(Optional.of(row(1L, "carrillo", 5L, 25L)));
+    when(repository.findWithRatingById(2L)).thenReturn(Optional.of(row(2L, "carrillo", 2L, 8L)));
+    when(repository.findWithRatingById(3L)).thenReturn(Optional.empty());
+    when(repository.findWithRatingById(4L)).thenReturn(Optional.of(row(4L, "carrillo", 3L, 12L)));
+
+    topRated.ratingChanged(1L);
+    topRated.ratingChanged(2L);
+    topRated.ratingChanged(3L);
+    topRated.ratingChanged(4L);
+
+    assertEquals(List.of(1L, 4L), ids(topRated.top("carrillo", 10)));
+    verify(repository, times(1)).findAllWithRatings();
+  }
+
+  @Test
+  void test_rating_changed_inside_a_transaction_waits_for_the_commit() {
+    when(repository.findAllWithRatings()).thenReturn(List.of(row(1L, "carrillo", 4L, 12L)));
+    topRated.top("carrillo", 10);
+    when(repository.findWithRatingById(1L)).thenReturn(Optional.empty());
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      topRated.ratingChanged(1L);
+      assertEquals(List.of(1L), ids(topRated.top("carrillo", 10)));
+
+      List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+      assertEquals(1, synchronizations.size());
+      synchronizations.get(0).afterCommit();
+
+      assertEquals(List.of(), topRated.top("carrillo", 10));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  void test_invalidate_rebuilds_the_lists_on_the_next_request() {
+    when(repository.findAllWithRatings()).thenReturn(List.of(row(1L, "carrillo", 4L, 12L)));
+    List<TopRatedMenuItems.RatedItem> before = topRated.top("carrillo", 10);
+
+    topRated.invalidate();
+
+    assertEquals(before, topRated.top("carrillo", 10));
+    verify(repository, times(2)).findAllWithRatings();
+  }
+
+  @Test
+  void test_best_first_orders_by_average_then_reviews_then_id() {
+    TopRatedMenuItems.RatedItem a = new TopRatedMenuItems.RatedItem(1L, "c", "a", "s", 4L, 16L);
+    TopRatedMenuItems.RatedItem b = new TopRatedMenuItems.RatedItem(2L, "c", "b", "s", 8L, 32L);
+    TopRatedMenuItems.RatedItem c = new TopRatedMenuItems.RatedItem(3L, "c", "c", "s", 8L, 32L);
+
+    assertEquals(List.of(b, c, a), List.of(a, c, b).stream().sorted(TopRatedMenuItems.BEST_FIRST).toList());
+    assertEquals(0, TopRatedMenuItems.BEST_FIRST.compare(a, a));
+  }
+}
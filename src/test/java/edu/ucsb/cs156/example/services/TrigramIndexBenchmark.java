@@ -0,0 +1,114 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a top-20 fuzzy restaurant search over a TrigramIndex of synthetic
+ * restaurants (a two word made-up name and a four word description drawn from
+ * a small cuisine vocabulary), against scoring every restaurant's trigrams,
+ * which is what a trigram search without an index amounts to.  The queries are
+ * misspelled: a name word, description words, and a mix of both.
+ *
+ * Run with: see docs/benchmarks.md
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx8g")
+public class TrigramIndexBenchmark {
+
+  private static final String[] SYLLABLES = {
+      "ba", "be", "co", "da", "el", "fi", "go", "ha", "ki", "la", "lo", "ma", "mi",
+      "na", "no", "pa", "pi", "ra", "ro", "sa", "su", "ta", "to", "va", "zo" };
+
+  private static final String[] CUISINE = {
+      "pizza", "taqueria", "sushi", "burgers", "noodles", "vegan", "coffee", "bakery",
+      "grill", "seafood", "tacos", "ramen", "curry", "salads", "sandwiches", "brunch",
+      "late", "night", "delivery", "patio", "thai", "indian", "greek", "bbq" };
+
+  @Param({ "10000", "100000", "1000000" })
+  public int restaurants;
+
+  @Param({ "marozati", "sushy raman", "pizza taqeria lorapi" })
+  public String query;
+
+  private TrigramIndex index;
+  private long[][] names;
+  private long[][] descriptions;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(156);
+    index = new TrigramIndex();
+    names = new long[restaurants][];
+    descriptions = new long[restaurants][];
+    for (int id = 0; id < restaurants; id++) {
+      String name = word(random) + " " + word(random);
+      StringBuilder description = new StringBuilder();
+      for (int word = 0; word < 4; word++) {
+        description.append(CUISINE[random.nextInt(CUISINE.length)]).append(' ');
+      }
+      index.put(id, name, description.toString());
+      names[id] = sorted(TrigramIndex.trigrams(name));
+      descriptions[id] = sorted(TrigramIndex.trigrams(description.toString()));
+    }
+  }
+
+  private static String word(Random random) {
+    return SYLLABLES[random.nextInt(SYLLABLES.length)]
+        + SYLLABLES[random.nextInt(SYLLABLES.length)]
+        + SYLLABLES[random.nextInt(SYLLABLES.length)]
+        + SYLLABLES[random.nextInt(SYLLABLES.length)];
+  }
+
+  private static long[] sorted(List<Long> trigrams) {
+    long[] array = trigrams.stream().mapToLong(Long::longValue).toArray();
+    Arrays.sort(array);
+    return array;
+  }
+
+  @Benchmark
+  public List<TrigramIndex.Hit> index() {
+    return index.search(query, 20);
+  }
+
+  @Benchmark
+  public int scan() {
+    List<Long> trigrams = TrigramIndex.trigrams(query);
+    int minShared = (int) Math.ceil(TrigramIndex.MIN_SIMILARITY * trigrams.size());
+    int matches = 0;
+    for (int id = 0; id < restaurants; id++) {
+      if (Math.max(shared(trigrams, names[id]), shared(trigrams, descriptions[id])) >= minShared) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  private static int shared(List<Long> trigrams, long[] sorted) {
+    int shared = 0;
+    for (long trigram : trigrams) {
+      if (Arrays.binarySearch(sorted, trigram) >= 0) {
+        shared++;
+      }
+    }
+    return shared;
+  }
+}
@@ -0,0 +1,163 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.services.PostingsIndex.Hit;
+
+public class TrigramIndexTests {
+
+  private final TrigramIndex index = new TrigramIndex();
+
+  private List<Long> ids(List<Hit> hits) {
+    return hits.stream().map(Hit::id).toList();
+  }
+
+  @Test
+  void test_trigrams_of_each_padded_word_are_distinct_and_in_order() {
+    assertEquals(List.of(
+        TrigramIndex.pack(' ', ' ', 't'), TrigramIndex.pack(' ', 't', 'a'), TrigramIndex.pack('t', 'a', 'c'),
+        TrigramIndex.pack('a', 'c', 'o'), TrigramIndex.pack('c', 'o', ' ')),
+        TrigramIndex.trigrams("Taco TACO!"));
+    assertEquals(List.of(TrigramIndex.pack(' ', ' ', 'a'), TrigramIndex.pack(' ', 'a', ' ')),
+        TrigramIndex.trigrams("a"));
+    assertEquals(List.of(), TrigramIndex.trigrams(null));
+  }
+
+  @Test
+  void test_search_finds_misspelled_names_and_descriptions() {
+    index.put(1, "Woodstock's Pizza", "pizza by the slice");
+    index.put(2, "Freebirds", "burritos");
+    index.put(3, "Habit Burger", "char burgers and fries");
+    index.put(4, "Pizzeria Bella", "wood fired");
+
+    assertEquals(List.of(4L, 1L), ids(index.search("pizzaria", 10)));
+    assertEquals(List.of(1L, 4L), ids(index.search("woodstok", 10)));
+    assertEquals(List.of(2L, 3L), ids(index.search("BURITO", 10)));
+  }
+
+  @Test
+  void test_score_is_the_fraction_of_query_trigrams_in_the_better_field() {
+    index.put(1, "taco", "tacp");
+    index.put(2, "tacos", null);
+
+    // "tacp" shares "  t", " ta", "tac" with "taco": 3 of its 5 trigrams
+    assertEquals(List.of(new Hit(1, 1.0f), new Hit(2, 0.6f)), index.search("tacp", 10));
+  }
+
+  @Test
+  void test_search_skips_documents_below_the_minimum_similarity() {
+    index.put(1, "Habit Burger", null);
+
+    // "zzzbit" shares only "bit" and "it " with "habit": 2 of its 7 trigrams
+    assertEquals(List.of(), index.search("zzzbit", 10));
+    assertEquals(List.of(1L), ids(index.search("habbit", 10)));
+  }
+
+  @Test
+  void test_search_returns_at_most_limit_hits_breaking_ties_by_id() {
+    for (long id = 1; id <= 40; id++) {
+      index.put(id, "Taco Stand " + id, null);
+    }
+
+    assertEquals(List.of(1L, 2L, 3L), ids(index.search("taco", 3)));
+    assertEquals(40, index.size());
+  }
+
+  @Test
+  void test_repeated_searches_do_not_see_earlier_counts() {
+    index.put(1, "Taco Bell", null);
+    index.put(2, "Habit Burger", "burgers and tacos");
+
+    List<Hit> first = index.search("taco", 10);
+    index.search("taco burger", 10);
+
+    assertEquals(first, index.search("taco", 10));
+    for (long id = 3; id < 3000; id++) {
+      index.put(id, "Storke Tower", null);
+    }
+    assertEquals(first, index.search("taco", 10));
+    assertEquals(2997, index.search("tower", 5000).size());
+  }
+
+  @Test
+  void test_search_keeps_the_best_hits_when_better_ones_are_found_later() {
+    for (long id = 40; id >= 1; id--) {
+      index.put(id, "Taco Stand " + id, null);
+    }
+
+    assertEquals(List.of(1L, 2L, 3L), ids(index.search("taco", 3)));
+  }
+
+  @Test
+  void test_long_queries_are_cut_to_their_first_trigrams() {
+    List<String> words = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      words.add("w" + i);
+    }
+    String query = String.join(" ", words);
+    int prefix = 1;
+    while (TrigramIndex.trigrams(String.join(" ", words.subList(0, prefix))).size() < TrigramIndex.MAX_QUERY_TRIGRAMS) {
+      prefix++;
+    }
+    index.put(1, String.join(" ", words.subList(0, prefix)), null);
+
+    assertTrue(TrigramIndex.trigrams(query).size() > TrigramIndex.MAX_QUERY_TRIGRAMS);
+    assertEquals(List.of(new Hit(1, 1.0f)), index.search(query, 10));
+  }
+
+  @Test
+  void test_search_with_no_matches_or_no_words_is_empty() {
+    assertEquals(List.of(), index.search("anything", 10));
+
+    index.put(1, "Freebirds", null);
+
+    assertEquals(List.of(), index.search("sushi", 10));
+    assertEquals(List.of(), index.search("?!", 10));
+  }
+
+  @Test
+  void test_put_replaces_and_remove_deletes() {
+    index.put(1, "Old Name", null);
+    index.put(2, "Another Name", null);
+
+    index.put(1, "New Name", null);
+    index.remove(2);
+    index.remove(3);
+
+    assertEquals(List.of(), index.search("old", 10));
+    assertEquals(List.of(1L), ids(index.search("new", 10)));
+    assertEquals(List.of(1L), ids(index.search("name", 10)));
+    assertEquals(1, index.size());
+  }
+
+  @Test
+  void test_removed_documents_are_compacted_away() {
+    for (long id = 1; id <= 3000; id++) {
+      index.put(id, "common", id == 2999 ? "rare" : null);
+    }
+    for (long id = 1; id <= 2990; id++) {
+      index.remove(id);
+    }
+    index.put(3001, "common rare", null);
+
+    assertEquals(11, index.size());
+    assertEquals(List.of(2999L, 3001L), ids(index.search("rare", 10)));
+    assertEquals(11, index.search("common", 20).size());
+  }
+
+  @Test
+  void test_clear_removes_everything() {
+    index.put(1, "one", null);
+
+    index.clear();
+
+    assertEquals(0, index.size());
+    assertEquals(List.of(), index.search("one", 10));
+  }
+}
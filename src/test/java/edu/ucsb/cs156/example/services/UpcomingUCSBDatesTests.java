@@ -0,0 +1,100 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+
+public class UpcomingUCSBDatesTests {
+
+  private final UpcomingUCSBDates upcoming = new UpcomingUCSBDates();
+  private final UCSBDateRepository repository = mock(UCSBDateRepository.class);
+
+  private final UCSBDate firstDay = UCSBDate.builder().id(1L).quarterYYYYQ("20242").name("firstDayOfClasses")
+      .localDateTime(LocalDateTime.parse("2024-04-01T00:00:00")).build();
+  private final UCSBDate lastDay = UCSBDate.builder().id(2L).quarterYYYYQ("20242").name("lastDayOfClasses")
+      .localDateTime(LocalDateTime.parse("2024-06-07T00:00:00")).build();
+
+  @BeforeEach
+  void setup() {
+    upcoming.ucsbDateRepository = repository;
+    upcoming.tableVersions = new TableVersions();
+    setClock("2024-05-15T12:00:00");
+  }
+
+  private void setClock(String now) {
+    upcoming.clock = Clock.fixed(LocalDateTime.parse(now).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+  }
+
+  @Test
+  void test_quarter_of_a_date() {
+    assertEquals("20241", UpcomingUCSBDates.quarterOf(LocalDate.parse("2024-01-01")));
+    assertEquals("20241", UpcomingUCSBDates.quarterOf(LocalDate.parse("2024-03-31")));
+    assertEquals("20242", UpcomingUCSBDates.quarterOf(LocalDate.parse("2024-04-01")));
+    assertEquals("20243", UpcomingUCSBDates.quarterOf(LocalDate.parse("2024-09-30")));
+    assertEquals("20244", UpcomingUCSBDates.quarterOf(LocalDate.parse("2024-12-31")));
+  }
+
+  @Test
+  void test_upcoming_reads_the_dates_once_per_quarter() {
+    when(repository.findFromQuarter("20242")).thenReturn(List.of(firstDay, lastDay));
+
+    UpcomingUCSBDates.Upcoming first = upcoming.upcoming();
+    setClock("2024-06-30T23:59:59");
+    UpcomingUCSBDates.Upcoming second = upcoming.upcoming();
+
+    assertEquals(new UpcomingUCSBDates.Upcoming("20242", List.of(firstDay, lastDay)), first);
+    assertSame(first, second);
+    verify(repository, times(1)).findFromQuarter("20242");
+  }
+
+  @Test
+  void test_upcoming_moves_on_when_the_next_quarter_starts() {
+    when(repository.findFromQuarter("20242")).thenReturn(List.of(firstDay, lastDay));
+    when(repository.findFromQuarter("20243")).thenReturn(List.of());
+    upcoming.upcoming();
+
+    setClock("2024-07-01T00:00:00");
+
+    assertEquals(new UpcomingUCSBDates.Upcoming("20243", List.of()), upcoming.upcoming());
+    verify(repository, times(1)).findFromQuarter("20243");
+  }
+
+  @Test
+  void test_upcoming_reloads_when_the_dates_change() {
+    when(repository.findFromQuarter("20242"))
+        .thenReturn(List.of(firstDay))
+        .thenReturn(List.of(firstDay, lastDay));
+    assertEquals(List.of(firstDay), upcoming.upcoming().dates());
+
+    upcoming.tableVersions.changed(UCSBDate.class);
+
+    assertEquals(List.of(firstDay, lastDay), upcoming.upcoming().dates());
+    verify(repository, times(2)).findFromQuarter("20242");
+  }
+
+  @Test
+  void test_load_does_nothing_when_already_up_to_date() {
+    when(repository.findFromQuarter("20244")).thenReturn(List.of());
+    setClock("2024-12-31T23:00:00");
+    upcoming.upcoming();
+
+    upcoming.load();
+
+    verify(repository, times(1)).findFromQuarter("20244");
+  }
+}
@@ -5,12 +5,16 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 
 
+import edu.ucsb.cs156.example.services.CollectionResponseCache;
+import edu.ucsb.cs156.example.services.CurrentUserResponseCache;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.TableVersions;
 import org.springframework.context.annotation.Import;
 
 @TestConfiguration
-@Import(SecurityConfig.class)
+@Import({SecurityConfig.class, CurrentUserResponseCache.class, TableVersions.class,
+    CollectionResponseCache.class})
 public class TestConfig {
 
     @Bean